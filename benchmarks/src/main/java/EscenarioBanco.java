@@ -0,0 +1,186 @@
+import benchmarks.Escenario;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Implementación de {@link Escenario} sobre {@link Banco}.
+ * Está en el paquete por defecto, junto a las clases del banco; los benchmarks la cargan por reflexión.
+ */
+public class EscenarioBanco implements Escenario {
+    private static final double SALDO_INICIAL = 1_000_000_000;
+    private static final LocalDateTime FECHA_INICIAL = LocalDateTime.of(2024, 1, 1, 0, 0);
+
+    private Banco banco = new Banco("Banco de pruebas");
+    private PersistenciaBanco persistencia;
+    private TablaSaldos tablaSaldos;
+    private Thread consumidorEventos;
+    private String[] idsUsuarios = new String[0];
+    private String[] numeros = new String[0];
+    private BilleteraVirtual[] billeteras = new BilleteraVirtual[0];
+    private int historialInicial;
+
+    @Override
+    public void abrirPersistente(Path directorio, boolean sincronizar) throws Exception {
+        persistencia = PersistenciaBanco.abrir(directorio, "Banco de pruebas", sincronizar);
+        banco = persistencia.getBanco();
+    }
+
+    @Override
+    public void abrirTablaSaldos(Path archivo, int capacidad) throws Exception {
+        tablaSaldos = TablaSaldos.abrir(archivo, capacidad);
+        banco = new Banco("Banco de pruebas", tablaSaldos);
+    }
+
+    @Override
+    public void activarEventos(int capacidad) {
+        FlujoEventos flujo = new FlujoEventos(capacidad, FlujoEventos.PoliticaSaturacion.SOBRESCRIBIR);
+        banco.setFlujoEventos(flujo);
+        consumidorEventos = consumir(flujo);
+    }
+
+    // Método auxiliar que lee los eventos de un flujo en un hilo propio, hasta que se interrumpe
+    static Thread consumir(FlujoEventos flujo) {
+        FlujoEventos.Consumidor consumidor = flujo.suscribir();
+        long[] leidos = new long[1];
+        Thread hilo = new Thread(() -> {
+            try (consumidor) {
+                while (!Thread.currentThread().isInterrupted()) {
+                    consumidor.leer((evento, finDeLote) -> leidos[0] += evento.getMontoCentavos(), 1024, Duration.ofMillis(10));
+                }
+            } catch (InterruptedException e) {
+                // Fin del benchmark
+            }
+        }, "consumidor-eventos");
+        hilo.setDaemon(true);
+        hilo.start();
+        return hilo;
+    }
+
+    // Método auxiliar que detiene el hilo consumidor y espera a que termine; si interrumpen la espera, deja
+    // marcada la interrupción y sigue cerrando
+    static void detener(Thread hilo) {
+        hilo.interrupt();
+        try {
+            hilo.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void poblar(int usuarios, int historial) throws Exception {
+        idsUsuarios = new String[usuarios];
+        for (int i = 0; i < usuarios; i++) {
+            idsUsuarios[i] = "u" + i;
+            Usuario usuario = new Usuario("Usuario " + i, "Calle " + i, idsUsuarios[i], "u" + i + "@banco.com", "clave", true);
+            banco.agregarUsuario(usuario);
+            banco.crearBilleteraVirtual(usuario, SALDO_INICIAL);
+        }
+
+        billeteras = banco.getBilleterasVirtuales().toArray(new BilleteraVirtual[0]);
+        numeros = new String[billeteras.length];
+        for (int i = 0; i < billeteras.length; i++) {
+            numeros[i] = billeteras[i].getNumero();
+            for (int k = 0; k < historial; k++) {
+                boolean ingreso = k % 2 == 0;
+                banco.realizarTransaccion(numeros[i], new RegistroTransaccion("t" + i + "-" + k,
+                        FECHA_INICIAL.plusSeconds(k), ingreso ? 100 : -50, "Titular " + (k % 100),
+                        ingreso ? Categoria.INGRESO : Categoria.values()[k % Categoria.values().length]));
+            }
+        }
+        historialInicial = historial;
+    }
+
+    @Override
+    public void reiniciarTransacciones() {
+        boolean cambio = false;
+        for (BilleteraVirtual billetera : billeteras) {
+            List<RegistroTransaccion> transacciones = billetera.getRegistroTransacciones();
+            if (transacciones.size() > historialInicial) {
+                billetera.setRegistroTransacciones(new ArrayList<>(transacciones.subList(0, historialInicial)));
+                billetera.setSaldo(SALDO_INICIAL);
+                cambio = true;
+            }
+        }
+        if (cambio) {
+            // Reconstruir el índice de transacciones del banco sin los IDs descartados
+            banco.setBilleterasVirtuales(banco.getBilleterasVirtuales());
+        }
+    }
+
+    @Override
+    public Object obtenerUsuario(int usuario) {
+        return banco.obtenerUsuario(idsUsuarios[usuario]);
+    }
+
+    @Override
+    public double consultarSaldo(int billetera) {
+        return billeteras[billetera].consultarSaldo();
+    }
+
+    @Override
+    public void realizarTransaccion(int billetera, String id, double monto) throws Exception {
+        banco.realizarTransaccion(numeros[billetera], new RegistroTransaccion(id, LocalDateTime.now(), monto,
+                "Titular", monto >= 0 ? Categoria.INGRESO : Categoria.GASTO));
+    }
+
+    @Override
+    public Object intentarTransaccion(int billetera, String id, double monto) {
+        return banco.intentarTransaccion(numeros[billetera], new RegistroTransaccion(id, LocalDateTime.now(), monto,
+                "Titular", monto >= 0 ? Categoria.INGRESO : Categoria.GASTO));
+    }
+
+    @Override
+    public Object consultarTransaccion(int billetera, int posicion, boolean enBanco) throws Exception {
+        String id = billeteras[billetera].getHistorial().idEn(posicion);
+        return enBanco ? banco.consultarTransaccion(id) : billeteras[billetera].consultarTransaccion(id);
+    }
+
+    @Override
+    public double obtenerPorcentajeGastosIngresos(int billetera) throws Exception {
+        return billeteras[billetera].obtenerPorcentajeGastosIngresos();
+    }
+
+    @Override
+    public Object obtenerGastosPorCategoria(int billetera) {
+        return billeteras[billetera].obtenerGastosPorCategoria();
+    }
+
+    @Override
+    public Object obtenerGastosPorCategoriaDelBanco() {
+        return banco.analizar().gastosPorCategoria(null, null);
+    }
+
+    @Override
+    public void transferir(String id, int origen, int destino, double monto) throws Exception {
+        banco.transferir(new Transferencia(id, numeros[origen], numeros[destino], monto));
+    }
+
+    @Override
+    public int recuperar(Path directorio) throws Exception {
+        try (PersistenciaBanco recuperada = PersistenciaBanco.abrir(directorio, "Banco de pruebas", false)) {
+            return recuperada.getBanco().getBilleterasVirtuales().size();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (consumidorEventos != null) {
+            detener(consumidorEventos);
+            consumidorEventos = null;
+        }
+        if (persistencia != null) {
+            persistencia.close();
+            persistencia = null;
+        }
+        if (tablaSaldos != null) {
+            tablaSaldos.close();
+            tablaSaldos = null;
+        }
+    }
+}
@@ -0,0 +1,168 @@
+import benchmarks.Escenario;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Implementación de {@link Escenario} sobre {@link BancoParticionado}.
+ * Las billeteras se numeran en el orden de creación de los usuarios, igual que en {@link EscenarioBanco}.
+ */
+public class EscenarioBancoParticionado implements Escenario {
+    private static final double SALDO_INICIAL = 1_000_000_000;
+    private static final LocalDateTime FECHA_INICIAL = LocalDateTime.of(2024, 1, 1, 0, 0);
+
+    private final int particiones;
+    private BancoParticionado banco;
+    private PersistenciaBancoParticionado persistencia;
+    private String[] idsUsuarios = new String[0];
+    private String[] numeros = new String[0];
+    private BilleteraVirtual[] billeteras = new BilleteraVirtual[0];
+    private int historialInicial;
+    private Thread consumidorEventos;
+
+    public EscenarioBancoParticionado(int particiones) {
+        this.particiones = particiones;
+        this.banco = new BancoParticionado("Banco de pruebas", particiones);
+    }
+
+    @Override
+    public void abrirPersistente(Path directorio, boolean sincronizar) throws Exception {
+        persistencia = PersistenciaBancoParticionado.abrir(directorio, "Banco de pruebas", particiones, sincronizar);
+        banco = persistencia.getBanco();
+    }
+
+    @Override
+    public void abrirTablaSaldos(Path archivo, int capacidad) {
+        throw new UnsupportedOperationException("El banco particionado no admite una tabla de saldos.");
+    }
+
+    @Override
+    public void activarEventos(int capacidad) {
+        FlujoEventos flujo = new FlujoEventos(capacidad, FlujoEventos.PoliticaSaturacion.SOBRESCRIBIR);
+        banco.setFlujoEventos(flujo);
+        consumidorEventos = EscenarioBanco.consumir(flujo);
+    }
+
+    @Override
+    public void poblar(int usuarios, int historial) throws Exception {
+        idsUsuarios = new String[usuarios];
+        billeteras = new BilleteraVirtual[usuarios];
+        numeros = new String[usuarios];
+        for (int i = 0; i < usuarios; i++) {
+            idsUsuarios[i] = "u" + i;
+            Usuario usuario = new Usuario("Usuario " + i, "Calle " + i, idsUsuarios[i], "u" + i + "@banco.com", "clave", true);
+            banco.agregarUsuario(usuario);
+            banco.crearBilleteraVirtual(usuario, SALDO_INICIAL);
+            List<BilleteraVirtual> delUsuario = particionDe(i).getRegistro().buscarBilleterasDeUsuario(idsUsuarios[i]);
+            billeteras[i] = delUsuario.get(0);
+            numeros[i] = billeteras[i].getNumero();
+            for (int k = 0; k < historial; k++) {
+                boolean ingreso = k % 2 == 0;
+                banco.realizarTransaccion(numeros[i], new RegistroTransaccion("t" + i + "-" + k,
+                        FECHA_INICIAL.plusSeconds(k), ingreso ? 100 : -50, "Titular " + (k % 100),
+                        ingreso ? Categoria.INGRESO : Categoria.values()[k % Categoria.values().length]));
+            }
+        }
+        historialInicial = historial;
+    }
+
+    @Override
+    public void reiniciarTransacciones() {
+        for (BilleteraVirtual billetera : billeteras) {
+            List<RegistroTransaccion> transacciones = billetera.getRegistroTransacciones();
+            if (transacciones.size() > historialInicial) {
+                billetera.setRegistroTransacciones(new ArrayList<>(transacciones.subList(0, historialInicial)));
+                billetera.setSaldo(SALDO_INICIAL);
+            }
+        }
+        // Reconstruir el índice de transacciones compartido sin los IDs descartados
+        for (int p = 0; p < banco.getCantidadParticiones(); p++) {
+            banco.getParticion(p).setBilleterasVirtuales(banco.getParticion(p).getBilleterasVirtuales());
+        }
+    }
+
+    @Override
+    public Object obtenerUsuario(int usuario) {
+        return banco.obtenerUsuario(idsUsuarios[usuario]);
+    }
+
+    @Override
+    public double consultarSaldo(int billetera) {
+        return billeteras[billetera].consultarSaldo();
+    }
+
+    @Override
+    public void realizarTransaccion(int billetera, String id, double monto) throws Exception {
+        banco.realizarTransaccion(numeros[billetera], new RegistroTransaccion(id, LocalDateTime.now(), monto,
+                "Titular", monto >= 0 ? Categoria.INGRESO : Categoria.GASTO));
+    }
+
+    @Override
+    public Object intentarTransaccion(int billetera, String id, double monto) {
+        return banco.intentarTransaccion(numeros[billetera], new RegistroTransaccion(id, LocalDateTime.now(), monto,
+                "Titular", monto >= 0 ? Categoria.INGRESO : Categoria.GASTO));
+    }
+
+    @Override
+    public Object consultarTransaccion(int billetera, int posicion, boolean enBanco) throws Exception {
+        String id = billeteras[billetera].getHistorial().idEn(posicion);
+        return enBanco ? banco.consultarTransaccion(id) : billeteras[billetera].consultarTransaccion(id);
+    }
+
+    @Override
+    public double obtenerPorcentajeGastosIngresos(int billetera) throws Exception {
+        return billeteras[billetera].obtenerPorcentajeGastosIngresos();
+    }
+
+    @Override
+    public Object obtenerGastosPorCategoria(int billetera) {
+        return billeteras[billetera].obtenerGastosPorCategoria();
+    }
+
+    @Override
+    public Object obtenerGastosPorCategoriaDelBanco() {
+        return banco.analizar().gastosPorCategoria(null, null);
+    }
+
+    @Override
+    public void transferir(String id, int origen, int destino, double monto) throws Exception {
+        banco.transferir(new Transferencia(id, numeros[origen], numeros[destino], monto));
+    }
+
+    @Override
+    public int recuperar(Path directorio) throws Exception {
+        try (PersistenciaBancoParticionado recuperada = PersistenciaBancoParticionado.abrir(directorio,
+                "Banco de pruebas", particiones, false)) {
+            int billeteras = 0;
+            for (int p = 0; p < particiones; p++) {
+                billeteras += recuperada.getBanco().getParticion(p).getBilleterasVirtuales().size();
+            }
+            return billeteras;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (consumidorEventos != null) {
+            EscenarioBanco.detener(consumidorEventos);
+            consumidorEventos = null;
+        }
+        if (persistencia != null) {
+            persistencia.close();
+            persistencia = null;
+        }
+    }
+
+    // Partición donde quedó el usuario de una posición
+    private Banco particionDe(int usuario) {
+        for (int p = 0; p < banco.getCantidadParticiones(); p++) {
+            if (banco.getParticion(p).obtenerUsuario(idsUsuarios[usuario]) != null) {
+                return banco.getParticion(p);
+            }
+        }
+        throw new IllegalStateException("El usuario no está en ninguna partición: " + idsUsuarios[usuario]);
+    }
+}
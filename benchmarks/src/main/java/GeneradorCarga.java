@@ -0,0 +1,210 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Generador de carga para {@link ServidorBanco}: abre muchas conexiones a la vez, cada una en un hilo
+ * virtual, y mide la latencia de cada solicitud hasta su respuesta.
+ *
+ * Primero se abren todas las conexiones y se espera a que estén todas abiertas; después cada una envía
+ * sus solicitudes, alternando un ingreso y una consulta de saldo sobre billeteras repartidas. Al final
+ * se muestran los percentiles de latencia y cuántas solicitudes se rechazaron por admisión.
+ *
+ * Uso, con el servidor en el mismo proceso:
+ * <pre>
+ * java -cp benchmarks/target/benchmarks.jar GeneradorCarga 100000 10
+ * </pre>
+ * o contra un servidor ya levantado, agregando {@code host:puerto}. Cada conexión local ocupa un descriptor
+ * en cada extremo, así que con 100 mil conexiones en un proceso hace falta {@code ulimit -n} de más de
+ * 200 mil. Un par de direcciones locales admite unos 28 mil puertos de origen, por eso en la interfaz
+ * local las conexiones salen desde varias direcciones 127.0.0.x.
+ */
+public class GeneradorCarga {
+    private static final int CONEXIONES_POR_DIRECCION = 20_000;
+    private static final int BILLETERAS_MAXIMAS = 10_000;
+    private static final int CONEXIONES_EN_APERTURA = 1_000; // Conexiones que se abren a la vez
+
+    private final HistogramaLatencias latencias = new HistogramaLatencias();
+    private final LongAdder ocupadas = new LongAdder();
+    private final LongAdder errores = new LongAdder();
+    private final LongAdder fallidas = new LongAdder();
+
+    public static void main(String[] args) throws Exception {
+        int conexiones = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        int solicitudes = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        int billeteras = Math.min(conexiones, BILLETERAS_MAXIMAS);
+
+        ServidorBanco servidor = null;
+        InetSocketAddress destino;
+        String[] numeros;
+        if (args.length > 2) {
+            String[] partes = args[2].split(":");
+            destino = new InetSocketAddress(partes[0], Integer.parseInt(partes[1]));
+            numeros = poblarPorSocket(destino, billeteras);
+        } else {
+            Banco banco = new Banco("Banco de carga");
+            numeros = poblar(banco, billeteras);
+            servidor = new ServidorBanco(banco, 0, conexiones, 4 * Runtime.getRuntime().availableProcessors());
+            servidor.iniciar();
+            destino = new InetSocketAddress(InetAddress.getLoopbackAddress(), servidor.getPuerto());
+        }
+
+        try {
+            new GeneradorCarga().ejecutar(destino, conexiones, solicitudes, numeros);
+        } finally {
+            if (servidor != null) {
+                servidor.close();
+            }
+        }
+    }
+
+    private void ejecutar(InetSocketAddress destino, int conexiones, int solicitudes, String[] numeros) throws Exception {
+        CountDownLatch abiertas = new CountDownLatch(conexiones);
+        CountDownLatch largada = new CountDownLatch(1);
+        Semaphore aperturas = new Semaphore(CONEXIONES_EN_APERTURA);
+        boolean local = destino.getAddress().isLoopbackAddress();
+
+        long inicioApertura = System.nanoTime();
+        long inicioCarga;
+        try (ExecutorService hilos = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int c = 0; c < conexiones; c++) {
+                int conexion = c;
+                hilos.submit(() -> {
+                    Socket socket = abrir(destino, conexion, local, aperturas);
+                    abiertas.countDown();
+                    if (socket == null) {
+                        return;
+                    }
+                    try (socket) {
+                        largada.await();
+                        conversar(socket, conexion, solicitudes, numeros);
+                    } catch (IOException | InterruptedException e) {
+                        fallidas.increment();
+                    }
+                });
+            }
+            abiertas.await();
+            System.out.printf("Conexiones abiertas: %d de %d en %.1f s%n", conexiones - fallidas.sum(), conexiones,
+                    (System.nanoTime() - inicioApertura) / 1e9);
+            inicioCarga = System.nanoTime();
+            largada.countDown();
+        } // Cerrar el ejecutor espera a que terminen todas las conexiones
+        double segundos = (System.nanoTime() - inicioCarga) / 1e9;
+
+        HistogramaLatencias.Instantanea medidas = latencias.instantanea();
+        long total = medidas.getCantidad();
+        System.out.printf("Solicitudes: %d en %.1f s (%.0f por segundo)%n", total, segundos, total / segundos);
+        System.out.printf("Ocupado: %d, errores: %d, conexiones fallidas: %d%n", ocupadas.sum(), errores.sum(), fallidas.sum());
+        System.out.printf("Latencia (ms): p50 %.2f, p90 %.2f, p99 %.2f, p99.9 %.2f, máx %.2f%n",
+                medidas.percentil(50) / 1e6, medidas.percentil(90) / 1e6, medidas.percentil(99) / 1e6,
+                medidas.percentil(99.9) / 1e6, medidas.getMaximo() / 1e6);
+    }
+
+    // Abre una conexión, desde una dirección 127.0.0.x distinta cada tantas si el destino es local
+    private Socket abrir(InetSocketAddress destino, int conexion, boolean local, Semaphore aperturas) {
+        Socket socket = new Socket();
+        try {
+            aperturas.acquire();
+            try {
+                if (local) {
+                    socket.bind(new InetSocketAddress("127.0.0." + (2 + conexion / CONEXIONES_POR_DIRECCION), 0));
+                }
+                socket.connect(destino);
+                socket.setTcpNoDelay(true);
+            } finally {
+                aperturas.release();
+            }
+            return socket;
+        } catch (IOException | InterruptedException e) {
+            fallidas.increment();
+            try {
+                socket.close();
+            } catch (IOException ignorada) {
+                // Nada que liberar
+            }
+            return null;
+        }
+    }
+
+    // Envía las solicitudes de una conexión de a una, esperando cada respuesta
+    private void conversar(Socket socket, int conexion, int solicitudes, String[] numeros) throws IOException {
+        InputStream entrada = new BufferedInputStream(socket.getInputStream());
+        OutputStream salida = new BufferedOutputStream(socket.getOutputStream());
+        StringBuilder respuesta = new StringBuilder();
+        for (int i = 0; i < solicitudes; i++) {
+            String numero = numeros[(conexion + i) % numeros.length];
+            String solicitud = i % 2 == 0
+                    ? "TRANSACCION\t" + numero + "\tC" + conexion + "-" + i + "\t1\tcarga\tINGRESO\n"
+                    : "SALDO\t" + numero + "\n";
+            long inicio = System.nanoTime();
+            salida.write(solicitud.getBytes(StandardCharsets.UTF_8));
+            salida.flush();
+            if (!leerLinea(entrada, respuesta)) {
+                throw new IOException("El servidor cerró la conexión.");
+            }
+            latencias.registrar(System.nanoTime() - inicio);
+            if (respuesta.toString().equals(ServidorBanco.OCUPADO)) {
+                ocupadas.increment();
+            } else if (!respuesta.toString().startsWith("OK")) {
+                errores.increment();
+            }
+        }
+    }
+
+    private static boolean leerLinea(InputStream entrada, StringBuilder linea) throws IOException {
+        linea.setLength(0);
+        int b;
+        while ((b = entrada.read()) != '\n') {
+            if (b < 0) {
+                return false;
+            }
+            linea.append((char) b); // Las respuestas que se comparan son ASCII
+        }
+        return true;
+    }
+
+    private static String[] poblar(Banco banco, int billeteras) throws Exception {
+        String[] numeros = new String[billeteras];
+        for (int i = 0; i < billeteras; i++) {
+            Usuario usuario = new Usuario("Usuario " + i, "Calle " + i, "u" + i, "u" + i + "@banco.com", "clave", true);
+            banco.agregarUsuario(usuario);
+            numeros[i] = banco.crearBilleteraVirtual(usuario, 1000).getNumero();
+        }
+        return numeros;
+    }
+
+    private static String[] poblarPorSocket(InetSocketAddress destino, int billeteras) throws IOException {
+        String[] numeros = new String[billeteras];
+        String prefijo = "carga-" + System.currentTimeMillis() + "-"; // Para poder repetir contra el mismo servidor
+        try (Socket socket = new Socket()) {
+            socket.connect(destino);
+            InputStream entrada = new BufferedInputStream(socket.getInputStream());
+            OutputStream salida = new BufferedOutputStream(socket.getOutputStream());
+            StringBuilder respuesta = new StringBuilder();
+            for (int i = 0; i < billeteras; i++) {
+                String id = prefijo + i;
+                salida.write(("USUARIO\t" + id + "\tUsuario " + i + "\tCalle " + i + "\t" + id + "@banco.com\tclave\n"
+                        + "BILLETERA\t" + id + "\t1000\n").getBytes(StandardCharsets.UTF_8));
+                salida.flush();
+                leerLinea(entrada, respuesta);
+                leerLinea(entrada, respuesta);
+                if (!respuesta.toString().startsWith("OK\t")) {
+                    throw new IOException("No se pudo crear la billetera: " + respuesta);
+                }
+                numeros[i] = respuesta.substring(3);
+            }
+        }
+        return numeros;
+    }
+}
@@ -0,0 +1,178 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.ThreadParams;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Operaciones del banco sobre poblaciones de distintos tamaños, con uno y con varios hilos.
+ * Cada usuario tiene una billetera, así que {@code usuarios} es también la cantidad de billeteras.
+ * Para poblaciones de 10 millones hay que dar más memoria: {@code -p usuarios=10000000 -jvmArgs -Xmx24g}.
+ * Con {@code -p saldos=tabla} los saldos se guardan en una tabla mapeada en memoria, fuera del heap.
+ * Con {@code -p eventos=si} el banco publica sus eventos en un flujo que lee otro hilo.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BancoBenchmark {
+    static final int HILOS = 4;
+
+    @Param({"1000", "100000", "1000000"})
+    int usuarios;
+
+    @Param({"10"})
+    int historial;
+
+    @Param({"heap"})
+    String saldos;
+
+    @Param({"no"})
+    String eventos;
+
+    Escenario escenario;
+    Path archivoSaldos;
+
+    @Setup(Level.Trial)
+    public void poblar() throws Exception {
+        escenario = Escenario.crear();
+        if (saldos.equals("tabla")) {
+            archivoSaldos = Files.createTempFile("saldos", ".bin");
+            Files.delete(archivoSaldos);
+            escenario.abrirTablaSaldos(archivoSaldos, 2 * usuarios);
+        }
+        escenario.poblar(usuarios, historial);
+        if (eventos.equals("si")) {
+            escenario.activarEventos(1 << 16);
+        }
+    }
+
+    // Las transacciones de una iteración no se acumulan en las siguientes
+    @TearDown(Level.Iteration)
+    public void reiniciar() throws Exception {
+        escenario.reiniciarTransacciones();
+    }
+
+    @TearDown(Level.Trial)
+    public void cerrar() throws Exception {
+        escenario.close();
+        if (archivoSaldos != null) {
+            Files.deleteIfExists(archivoSaldos);
+        }
+    }
+
+    /**
+     * Estado de cada hilo: genera IDs de transacción que no se repiten entre hilos.
+     */
+    @State(Scope.Thread)
+    public static class Hilo {
+        String prefijo;
+        long secuencia;
+
+        @Setup(Level.Trial)
+        public void preparar(ThreadParams parametros) {
+            prefijo = "b" + parametros.getThreadIndex() + "-";
+        }
+
+        String siguienteId() {
+            return prefijo + secuencia++;
+        }
+    }
+
+    @Benchmark
+    public Object obtenerUsuario() {
+        return escenario.obtenerUsuario(ThreadLocalRandom.current().nextInt(usuarios));
+    }
+
+    @Benchmark
+    @Threads(HILOS)
+    public Object obtenerUsuarioConcurrente() {
+        return escenario.obtenerUsuario(ThreadLocalRandom.current().nextInt(usuarios));
+    }
+
+    @Benchmark
+    public double consultarSaldo() {
+        return escenario.consultarSaldo(ThreadLocalRandom.current().nextInt(usuarios));
+    }
+
+    @Benchmark
+    public void realizarTransaccion(Hilo hilo) throws Exception {
+        escenario.realizarTransaccion(ThreadLocalRandom.current().nextInt(usuarios), hilo.siguienteId(), 10);
+    }
+
+    @Benchmark
+    @Threads(HILOS)
+    public void realizarTransaccionConcurrente(Hilo hilo) throws Exception {
+        escenario.realizarTransaccion(ThreadLocalRandom.current().nextInt(usuarios), hilo.siguienteId(), 10);
+    }
+
+    // Un gasto mayor que el saldo: compara el rechazo con excepción contra el resultado devuelto
+    @Benchmark
+    public Object rechazarTransaccion(Hilo hilo) {
+        try {
+            escenario.realizarTransaccion(ThreadLocalRandom.current().nextInt(usuarios), hilo.siguienteId(), -1e12);
+            return null;
+        } catch (Exception e) {
+            return e;
+        }
+    }
+
+    @Benchmark
+    public Object intentarTransaccionRechazada(Hilo hilo) {
+        return escenario.intentarTransaccion(ThreadLocalRandom.current().nextInt(usuarios), hilo.siguienteId(), -1e12);
+    }
+
+    @Benchmark
+    public Object consultarTransaccion() throws Exception {
+        ThreadLocalRandom aleatorio = ThreadLocalRandom.current();
+        return escenario.consultarTransaccion(aleatorio.nextInt(usuarios), aleatorio.nextInt(historial), true);
+    }
+
+    // Recorre todas las billeteras, así que se mide el tiempo de cada consulta
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public Object obtenerGastosPorCategoriaDelBanco() {
+        return escenario.obtenerGastosPorCategoriaDelBanco();
+    }
+
+    @Benchmark
+    public void transferir(Hilo hilo) throws Exception {
+        transferirAleatorio(hilo);
+    }
+
+    @Benchmark
+    @Threads(HILOS)
+    public void transferirConcurrente(Hilo hilo) throws Exception {
+        transferirAleatorio(hilo);
+    }
+
+    private void transferirAleatorio(Hilo hilo) throws Exception {
+        ThreadLocalRandom aleatorio = ThreadLocalRandom.current();
+        int origen = aleatorio.nextInt(usuarios);
+        int destino = aleatorio.nextInt(usuarios - 1);
+        if (destino >= origen) {
+            destino++; // Nunca la misma billetera
+        }
+        escenario.transferir(hilo.siguienteId(), origen, destino, 1);
+    }
+}
@@ -0,0 +1,74 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Escalabilidad del banco particionado: las mismas operaciones con todos los núcleos y distinta cantidad
+ * de particiones. Con una partición equivale a un {@code Banco} solo; las transferencias cruzan de
+ * partición en la proporción (particiones - 1) / particiones.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(Threads.MAX)
+@State(Scope.Benchmark)
+public class BancoParticionadoBenchmark {
+
+    @Param({"1", "2", "4", "8"})
+    int particiones;
+
+    @Param({"100000"})
+    int usuarios;
+
+    Escenario escenario;
+
+    @Setup(Level.Trial)
+    public void poblar() throws Exception {
+        escenario = Escenario.crearParticionado(particiones);
+        escenario.poblar(usuarios, 10);
+    }
+
+    @TearDown(Level.Iteration)
+    public void reiniciar() throws Exception {
+        escenario.reiniciarTransacciones();
+    }
+
+    @Benchmark
+    public Object obtenerUsuario() {
+        return escenario.obtenerUsuario(ThreadLocalRandom.current().nextInt(usuarios));
+    }
+
+    @Benchmark
+    public void realizarTransaccion(BancoBenchmark.Hilo hilo) throws Exception {
+        escenario.realizarTransaccion(ThreadLocalRandom.current().nextInt(usuarios), hilo.siguienteId(), 10);
+    }
+
+    @Benchmark
+    public void transferir(BancoBenchmark.Hilo hilo) throws Exception {
+        ThreadLocalRandom aleatorio = ThreadLocalRandom.current();
+        int origen = aleatorio.nextInt(usuarios);
+        int destino = aleatorio.nextInt(usuarios - 1);
+        if (destino >= origen) {
+            destino++;
+        }
+        escenario.transferir(hilo.siguienteId(), origen, destino, 1);
+    }
+}
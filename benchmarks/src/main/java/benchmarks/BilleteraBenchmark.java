@@ -0,0 +1,102 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Operaciones de una billetera con un historial largo, con uno y con varios hilos.
+ * Los hilos concurrentes comparten la misma billetera, que es el caso de mayor contención.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BilleteraBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    int historial;
+
+    Escenario escenario;
+
+    @Setup(Level.Trial)
+    public void poblar() throws Exception {
+        escenario = Escenario.crear();
+        escenario.poblar(1, historial);
+    }
+
+    @TearDown(Level.Iteration)
+    public void reiniciar() throws Exception {
+        escenario.reiniciarTransacciones();
+    }
+
+    @TearDown(Level.Trial)
+    public void cerrar() throws Exception {
+        escenario.close();
+    }
+
+    @Benchmark
+    public double obtenerPorcentajeGastosIngresos() throws Exception {
+        return escenario.obtenerPorcentajeGastosIngresos(0);
+    }
+
+    @Benchmark
+    @Threads(BancoBenchmark.HILOS)
+    public double obtenerPorcentajeGastosIngresosConcurrente() throws Exception {
+        return escenario.obtenerPorcentajeGastosIngresos(0);
+    }
+
+    @Benchmark
+    public Object obtenerGastosPorCategoria() {
+        return escenario.obtenerGastosPorCategoria(0);
+    }
+
+    @Benchmark
+    public Object consultarTransaccion() throws Exception {
+        return escenario.consultarTransaccion(0, ThreadLocalRandom.current().nextInt(historial), false);
+    }
+
+    @Benchmark
+    public void realizarTransaccion(BancoBenchmark.Hilo hilo) throws Exception {
+        escenario.realizarTransaccion(0, hilo.siguienteId(), 10);
+    }
+
+    @Benchmark
+    @Threads(BancoBenchmark.HILOS)
+    public void realizarTransaccionConcurrente(BancoBenchmark.Hilo hilo) throws Exception {
+        escenario.realizarTransaccion(0, hilo.siguienteId(), 10);
+    }
+
+    // Lectura del porcentaje mientras otro hilo escribe en la misma billetera
+    @Benchmark
+    @Group("leerMientrasSeEscribe")
+    @GroupThreads(3)
+    public double leer() throws Exception {
+        return escenario.obtenerPorcentajeGastosIngresos(0);
+    }
+
+    @Benchmark
+    @Group("leerMientrasSeEscribe")
+    @GroupThreads(1)
+    public void escribir(BancoBenchmark.Hilo hilo) throws Exception {
+        escenario.realizarTransaccion(0, hilo.siguienteId(), 10);
+    }
+}
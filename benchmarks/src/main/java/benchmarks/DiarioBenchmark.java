@@ -0,0 +1,124 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Costo de la persistencia: transacciones confirmadas en el diario, con y sin fsync, y tiempo de
+ * recuperación al abrir un directorio con muchos eventos.
+ * Con varios hilos se ve el efecto del commit en grupo: un fsync cubre las transacciones de todos.
+ */
+@Fork(1)
+public class DiarioBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Escritura {
+        @Param({"1000"})
+        int usuarios;
+
+        @Param({"false", "true"})
+        boolean sincronizar;
+
+        Path directorio;
+        Escenario escenario;
+
+        @Setup(Level.Trial)
+        public void abrir() throws Exception {
+            directorio = Files.createTempDirectory("diario-benchmark");
+            escenario = Escenario.crear();
+            escenario.abrirPersistente(directorio, sincronizar);
+            escenario.poblar(usuarios, 0);
+        }
+
+        @TearDown(Level.Iteration)
+        public void reiniciar() throws Exception {
+            escenario.reiniciarTransacciones();
+        }
+
+        @TearDown(Level.Trial)
+        public void cerrar() throws Exception {
+            escenario.close();
+            borrar(directorio);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Recuperacion {
+        @Param({"100000", "1000000"})
+        int transacciones;
+
+        Path directorio;
+        Escenario escenario = Escenario.crear();
+
+        // Deja en disco un diario con las billeteras y sus transacciones, sin instantánea
+        @Setup(Level.Trial)
+        public void preparar() throws Exception {
+            directorio = Files.createTempDirectory("recuperacion-benchmark");
+            try (Escenario inicial = Escenario.crear()) {
+                inicial.abrirPersistente(directorio, false);
+                inicial.poblar(transacciones / 100, 100);
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void borrar() throws IOException {
+            DiarioBenchmark.borrar(directorio);
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 2, time = 2)
+    @Measurement(iterations = 5, time = 2)
+    public void realizarTransaccion(Escritura estado, BancoBenchmark.Hilo hilo) throws Exception {
+        estado.escenario.realizarTransaccion(ThreadLocalRandom.current().nextInt(estado.usuarios), hilo.siguienteId(), 10);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 2, time = 2)
+    @Measurement(iterations = 5, time = 2)
+    @Threads(8)
+    public void realizarTransaccionConcurrente(Escritura estado, BancoBenchmark.Hilo hilo) throws Exception {
+        estado.escenario.realizarTransaccion(ThreadLocalRandom.current().nextInt(estado.usuarios), hilo.siguienteId(), 10);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 1)
+    @Measurement(iterations = 5)
+    public int recuperar(Recuperacion estado) throws Exception {
+        return estado.escenario.recuperar(estado.directorio);
+    }
+
+    static void borrar(Path directorio) throws IOException {
+        try (Stream<Path> archivos = Files.walk(directorio)) {
+            for (Path archivo : archivos.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(archivo);
+            }
+        }
+    }
+}
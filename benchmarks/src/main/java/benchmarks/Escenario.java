@@ -0,0 +1,121 @@
+package benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Operaciones del banco que miden los benchmarks.
+ * JMH no admite benchmarks en el paquete por defecto y desde un paquete con nombre no se pueden usar las
+ * clases del banco, así que la implementación ({@code EscenarioBanco}) vive en el paquete por defecto y se
+ * carga una vez por reflexión. {@code EscenarioBancoParticionado} hace lo mismo sobre un banco particionado.
+ * Cada benchmark usa una sola implementación, así que el JIT resuelve las llamadas sin costo.
+ *
+ * Las billeteras y los usuarios se identifican por su posición (de 0 a usuarios - 1) para que el
+ * benchmark no tenga que construir IDs ni números en cada operación.
+ */
+public interface Escenario extends AutoCloseable {
+
+    /**
+     * Método que permite crear la implementación del escenario.
+     * @return Escenario sin poblar, sobre un banco en memoria
+     */
+    static Escenario crear() {
+        try {
+            return (Escenario) Class.forName("EscenarioBanco").getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("No se pudo cargar el escenario del banco.", e);
+        }
+    }
+
+    /**
+     * Método que permite crear el escenario sobre un banco particionado.
+     * @param particiones Cantidad de particiones del banco
+     * @return Escenario sin poblar; no admite una tabla de saldos
+     */
+    static Escenario crearParticionado(int particiones) {
+        try {
+            return (Escenario) Class.forName("EscenarioBancoParticionado").getDeclaredConstructor(int.class)
+                    .newInstance(particiones);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("No se pudo cargar el escenario del banco particionado.", e);
+        }
+    }
+
+    /**
+     * Método que permite que el banco registre sus cambios en un diario dentro del directorio.
+     * Debe llamarse antes de poblar.
+     * @param directorio Directorio de la persistencia
+     * @param sincronizar true para hacer fsync antes de confirmar cada operación
+     */
+    void abrirPersistente(Path directorio, boolean sincronizar) throws Exception;
+
+    /**
+     * Método que permite que el banco guarde los saldos en una tabla mapeada en memoria, fuera del heap.
+     * Debe llamarse antes de poblar.
+     * @param archivo Archivo de la tabla
+     * @param capacidad Cantidad de registros de la tabla
+     */
+    void abrirTablaSaldos(Path archivo, int capacidad) throws Exception;
+
+    /**
+     * Método que permite que el banco publique sus eventos en un flujo, con un consumidor que los lee en
+     * otro hilo. El flujo sobrescribe los eventos viejos, así un consumidor lento no frena las operaciones.
+     * @param capacidad Cantidad de eventos del flujo
+     */
+    void activarEventos(int capacidad);
+
+    /**
+     * Método que permite crear los usuarios, una billetera por usuario y su historial inicial.
+     * @param usuarios Cantidad de usuarios y billeteras
+     * @param historial Cantidad de transacciones iniciales de cada billetera, alternando ingresos y gastos
+     */
+    void poblar(int usuarios, int historial) throws Exception;
+
+    /**
+     * Método que permite dejar cada billetera con solo su historial inicial, descartando lo que agregó el benchmark.
+     */
+    void reiniciarTransacciones() throws Exception;
+
+    Object obtenerUsuario(int usuario);
+
+    double consultarSaldo(int billetera);
+
+    void realizarTransaccion(int billetera, String id, double monto) throws Exception;
+
+    /**
+     * Método que permite intentar una transacción sin excepciones por los rechazos.
+     * @return Resultado de la transacción
+     */
+    Object intentarTransaccion(int billetera, String id, double monto);
+
+    /**
+     * Método que permite consultar una transacción del historial inicial de una billetera.
+     * @param banco true para buscarla en todo el banco, false para buscarla en la billetera
+     */
+    Object consultarTransaccion(int billetera, int posicion, boolean banco) throws Exception;
+
+    double obtenerPorcentajeGastosIngresos(int billetera) throws Exception;
+
+    Object obtenerGastosPorCategoria(int billetera);
+
+    /**
+     * Método que permite sumar los gastos por categoría de todas las billeteras del banco, en paralelo.
+     * @return Gastos por categoría
+     */
+    Object obtenerGastosPorCategoriaDelBanco();
+
+    void transferir(String id, int origen, int destino, double monto) throws Exception;
+
+    /**
+     * Método que permite abrir la persistencia de un directorio y cerrarla, como al reiniciar el servidor.
+     * @return Cantidad de billeteras recuperadas
+     */
+    int recuperar(Path directorio) throws Exception;
+
+    /**
+     * Método que permite detener el consumidor de eventos y cerrar la persistencia y la tabla de saldos.
+     * Si se interrumpe la espera del consumidor, deja marcada la interrupción del hilo y termina de cerrar.
+     */
+    @Override
+    void close() throws IOException;
+}
@@ -0,0 +1,81 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Heap que retiene cada billetera del banco, con su usuario y sus entradas en los índices.
+ * Se mide la memoria usada después de forzar la recolección, antes y después de poblar un banco nuevo, y el
+ * resultado por billetera queda en el contador {@code bytesPorBilletera}; el tiempo que informa JMH es el de poblar.
+ * Con {@code -p saldos=tabla} los saldos viven en la tabla mapeada y no cuentan; con {@code -p historial=0}
+ * las billeteras no tienen transacciones.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MemoriaBenchmark {
+
+    @Param({"100000"})
+    int usuarios;
+
+    @Param({"0", "10"})
+    int historial;
+
+    @Param({"heap", "tabla"})
+    String saldos;
+
+    /**
+     * Resultado de cada medición, que JMH informa junto al tiempo.
+     */
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Memoria {
+        public long bytesPorBilletera;
+    }
+
+    @Benchmark
+    public void poblar(Memoria memoria) throws Exception {
+        Path archivoSaldos = null;
+        long antes = memoriaUsada();
+        Escenario escenario = Escenario.crear();
+        try {
+            if (saldos.equals("tabla")) {
+                archivoSaldos = Files.createTempFile("saldos", ".bin");
+                Files.delete(archivoSaldos);
+                escenario.abrirTablaSaldos(archivoSaldos, 2 * usuarios);
+            }
+            escenario.poblar(usuarios, historial);
+            memoria.bytesPorBilletera = (memoriaUsada() - antes) / usuarios;
+        } finally {
+            escenario.close();
+            if (archivoSaldos != null) {
+                Files.deleteIfExists(archivoSaldos);
+            }
+        }
+    }
+
+    // Método auxiliar que devuelve el heap ocupado después de recolectar lo que ya no se usa
+    private static long memoriaUsada() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,122 @@
+package benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Compara dos resultados de JMH en CSV ({@code -rf csv}) y termina con código 1 si alguno empeoró.
+ * Se comparan el puntaje de cada benchmark y, si se usó {@code -prof gc}, los bytes asignados por operación.
+ *
+ * Uso: {@code PuertaRegresion base.csv actual.csv [tolerancia en %]}
+ */
+public class PuertaRegresion {
+    private static final double TOLERANCIA_POR_DEFECTO = 10;
+    // Diferencias de asignación menores a esto son ruido del perfilador
+    private static final double BYTES_IGNORADOS = 16;
+    private static final String ASIGNACION = ":gc.alloc.rate.norm";
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Uso: PuertaRegresion base.csv actual.csv [tolerancia en %]");
+            System.exit(2);
+        }
+        double tolerancia = args.length > 2 ? Double.parseDouble(args[2]) : TOLERANCIA_POR_DEFECTO;
+        Map<String, Resultado> base = leer(Path.of(args[0]));
+        Map<String, Resultado> actual = leer(Path.of(args[1]));
+
+        int regresiones = 0;
+        for (Map.Entry<String, Resultado> entrada : actual.entrySet()) {
+            Resultado anterior = base.get(entrada.getKey());
+            if (anterior == null) {
+                continue; // Benchmark nuevo, no hay con qué comparar
+            }
+            Resultado nuevo = entrada.getValue();
+            double cambio = nuevo.mayorEsMejor()
+                    ? (anterior.puntaje - nuevo.puntaje) / anterior.puntaje
+                    : (nuevo.puntaje - anterior.puntaje) / Math.max(anterior.puntaje, Double.MIN_VALUE);
+            boolean empeoro = cambio * 100 > tolerancia;
+            if (empeoro && entrada.getKey().contains(ASIGNACION)) {
+                empeoro = nuevo.puntaje - anterior.puntaje > BYTES_IGNORADOS;
+            }
+            if (empeoro) {
+                regresiones++;
+            }
+            System.out.printf(Locale.ROOT, "%-10s %s: %.3f -> %.3f %s (%+.1f%%)%n", empeoro ? "REGRESIÓN" : "ok",
+                    entrada.getKey(), anterior.puntaje, nuevo.puntaje, nuevo.unidad,
+                    (nuevo.puntaje - anterior.puntaje) * 100 / anterior.puntaje);
+        }
+        System.out.println(regresiones == 0 ? "Sin regresiones." : "Regresiones: " + regresiones);
+        System.exit(regresiones == 0 ? 0 : 1);
+    }
+
+    // Puntaje de un benchmark con sus parámetros
+    private record Resultado(double puntaje, String unidad) {
+        // En throughput (ops/tiempo) más es mejor; en tiempos y bytes por operación, menos
+        boolean mayorEsMejor() {
+            return unidad.startsWith("ops/");
+        }
+    }
+
+    // Lee el CSV de JMH; la clave es el nombre del benchmark, el modo, los hilos y los parámetros
+    static Map<String, Resultado> leer(Path archivo) throws IOException {
+        List<String> lineas = Files.readAllLines(archivo);
+        List<String> encabezado = separar(lineas.get(0));
+        int columnaPuntaje = encabezado.indexOf("Score");
+        int columnaUnidad = encabezado.indexOf("Unit");
+
+        Map<String, Resultado> resultados = new LinkedHashMap<>();
+        for (String linea : lineas.subList(1, lineas.size())) {
+            if (linea.isBlank()) {
+                continue;
+            }
+            List<String> campos = separar(linea);
+            String nombre = campos.get(0);
+            // Solo el puntaje principal y la asignación por operación; el resto del perfilador varía demasiado
+            if (nombre.contains(":") && !nombre.endsWith(ASIGNACION)) {
+                continue;
+            }
+            StringBuilder clave = new StringBuilder(nombre).append(' ').append(campos.get(1))
+                    .append(" hilos=").append(campos.get(2));
+            for (int i = columnaUnidad + 1; i < campos.size(); i++) {
+                if (campos.get(i).isEmpty()) {
+                    continue; // Parámetro de otro benchmark
+                }
+                clave.append(' ').append(encabezado.get(i).replace("Param: ", "")).append('=').append(campos.get(i));
+            }
+            double puntaje = Double.parseDouble(campos.get(columnaPuntaje).replace(',', '.'));
+            resultados.put(clave.toString(), new Resultado(puntaje, campos.get(columnaUnidad)));
+        }
+        return resultados;
+    }
+
+    // Separa una línea CSV respetando los campos entre comillas
+    private static List<String> separar(String linea) {
+        List<String> campos = new ArrayList<>();
+        StringBuilder campo = new StringBuilder();
+        boolean entreComillas = false;
+        for (int i = 0; i < linea.length(); i++) {
+            char c = linea.charAt(i);
+            if (c == '"') {
+                if (entreComillas && i + 1 < linea.length() && linea.charAt(i + 1) == '"') {
+                    campo.append('"');
+                    i++;
+                } else {
+                    entreComillas = !entreComillas;
+                }
+            } else if (c == ',' && !entreComillas) {
+                campos.add(campo.toString());
+                campo.setLength(0);
+            } else {
+                campo.append(c);
+            }
+        }
+        campos.add(campo.toString());
+        return campos;
+    }
+}
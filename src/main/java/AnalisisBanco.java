@@ -0,0 +1,209 @@
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * Consultas analíticas sobre todas las billeteras de un banco: gastos por categoría, gastos por mes y
+ * categoría, y los usuarios que más gastan en una categoría.
+ *
+ * Cada consulta recorre las billeteras en paralelo en un pool de fork-join. Cada tarea acumula en sus
+ * propios arreglos de centavos y los parciales se suman al final, así los hilos no comparten nada mientras
+ * recorren. Los registros se leen por columnas y sin cerrojos, igual que una consulta por rango de fechas:
+ * las transacciones que lleguen durante la consulta no la bloquean, y la consulta ve de cada billetera lo
+ * que tenía al recorrerla.
+ */
+public class AnalisisBanco {
+    private static final Categoria[] CATEGORIAS = Categoria.values();
+    private static final int SIN_CATEGORIA = CATEGORIAS.length; // Posición de los gastos sin categoría
+
+    private final BilleteraVirtual[] billeteras;
+    private final ForkJoinPool pool;
+
+    // Constructor: toma las billeteras del banco en este momento
+    AnalisisBanco(List<BilleteraVirtual> billeteras, ForkJoinPool pool) {
+        if (pool == null) {
+            throw new IllegalArgumentException("El pool no puede ser nulo.");
+        }
+        this.billeteras = billeteras.toArray(new BilleteraVirtual[0]);
+        this.pool = pool;
+    }
+
+    /**
+     * Método que permite obtener el total de gastos por categoría de todas las billeteras.
+     * @param desde Inicio del rango, incluido, o null para no acotarlo
+     * @param hasta Fin del rango, excluido, o null para no acotarlo
+     * @return Gastos de cada categoría que tenga movimientos
+     */
+    public Map<Categoria, Double> gastosPorCategoria(LocalDateTime desde, LocalDateTime hasta) {
+        long[] totales = pool.submit(() -> IntStream.range(0, billeteras.length).parallel().collect(
+                () -> new long[SIN_CATEGORIA + 1],
+                (parcial, i) -> billeteras[i].getHistorial().recorrerGastos(desde, hasta,
+                        (fecha, monto, categoria) -> parcial[categoria] = Dinero.sumar(parcial[categoria], monto)),
+                AnalisisBanco::sumar)).join();
+        return Collections.unmodifiableMap(BilleteraVirtual.porCategoria(totales));
+    }
+
+    /**
+     * Método que permite obtener los gastos de todas las billeteras por mes y categoría.
+     * Los meses se toman de la fecha de cada transacción.
+     * @param desde Inicio del rango, incluido, o null para no acotarlo
+     * @param hasta Fin del rango, excluido, o null para no acotarlo
+     * @return Gastos por categoría de cada mes con movimientos, del más antiguo al más reciente
+     */
+    public Map<YearMonth, Map<Categoria, Double>> gastosPorMes(LocalDateTime desde, LocalDateTime hasta) {
+        GastosMensuales totales = pool.submit(() -> IntStream.range(0, billeteras.length).parallel().collect(
+                GastosMensuales::new,
+                (parcial, i) -> billeteras[i].getHistorial().recorrerGastos(desde, hasta, parcial),
+                GastosMensuales::combinar)).join();
+
+        Map<YearMonth, Map<Categoria, Double>> resultado = new TreeMap<>();
+        for (Map.Entry<YearMonth, long[]> mes : totales.meses.entrySet()) {
+            Map<Categoria, Double> categorias = BilleteraVirtual.porCategoria(mes.getValue());
+            if (!categorias.isEmpty()) {
+                resultado.put(mes.getKey(), Collections.unmodifiableMap(categorias));
+            }
+        }
+        return Collections.unmodifiableMap(resultado);
+    }
+
+    /**
+     * Método que permite obtener los usuarios que más gastaron en una categoría, sumando todas sus billeteras.
+     * @param categoria Categoría de los gastos
+     * @param cantidad Cantidad máxima de usuarios
+     * @param desde Inicio del rango, incluido, o null para no acotarlo
+     * @param hasta Fin del rango, excluido, o null para no acotarlo
+     * @return Usuarios con gastos en la categoría, del que más gastó al que menos; los empates van por ID
+     */
+    public List<GastoUsuario> mayoresGastos(Categoria categoria, int cantidad, LocalDateTime desde, LocalDateTime hasta) {
+        if (categoria == null) {
+            throw new IllegalArgumentException("La categoría no puede ser nula.");
+        }
+        if (cantidad <= 0) {
+            throw new IllegalArgumentException("La cantidad debe ser positiva.");
+        }
+
+        // Cada billetera escribe solo su propia posición, así el recorrido en paralelo no comparte acumuladores
+        int ordinal = categoria.ordinal();
+        long[] porBilletera = new long[billeteras.length];
+        pool.submit(() -> IntStream.range(0, billeteras.length).parallel().forEach(i -> {
+            long[] total = new long[1];
+            billeteras[i].getHistorial().recorrerGastos(desde, hasta, (fecha, monto, categoriaGasto) -> {
+                if (categoriaGasto == ordinal) {
+                    total[0] = Dinero.sumar(total[0], monto);
+                }
+            });
+            porBilletera[i] = total[0];
+        })).join();
+
+        // Sumar las billeteras de cada usuario y quedarse con los mayores en un montículo acotado
+        Map<String, GastoUsuario> porUsuario = new HashMap<>();
+        for (int i = 0; i < billeteras.length; i++) {
+            Usuario usuario = billeteras[i].getUsuario();
+            if (porBilletera[i] != 0 && usuario != null) {
+                porUsuario.computeIfAbsent(usuario.getId(), id -> new GastoUsuario(usuario)).sumar(porBilletera[i]);
+            }
+        }
+        PriorityQueue<GastoUsuario> mayores = new PriorityQueue<>(cantidad + 1, (a, b) -> -comparar(a, b));
+        for (GastoUsuario gasto : porUsuario.values()) {
+            mayores.add(gasto);
+            if (mayores.size() > cantidad) {
+                mayores.poll();
+            }
+        }
+        List<GastoUsuario> resultado = new ArrayList<>(mayores);
+        resultado.sort(AnalisisBanco::comparar);
+        return Collections.unmodifiableList(resultado);
+    }
+
+    // Orden de los resultados: mayor gasto primero y, con el mismo gasto, por ID de usuario
+    private static int comparar(GastoUsuario a, GastoUsuario b) {
+        int porTotal = Long.compare(b.total, a.total);
+        return porTotal != 0 ? porTotal : a.idUsuario.compareTo(b.idUsuario);
+    }
+
+    // Método auxiliar que suma un parcial de totales por categoría a otro
+    private static void sumar(long[] destino, long[] origen) {
+        for (int c = 0; c < destino.length; c++) {
+            destino[c] = Dinero.sumar(destino[c], origen[c]);
+        }
+    }
+
+    /**
+     * Parcial de gastos por mes de una tarea. Guarda los límites del último mes usado, así las transacciones
+     * de un mismo mes, que en un registro suelen venir juntas, no calculan su mes cada vez.
+     */
+    private static final class GastosMensuales implements HistorialTransacciones.ConsumidorGasto {
+        final Map<YearMonth, long[]> meses = new HashMap<>();
+        long inicioMes = Long.MAX_VALUE; // Nanosegundos del inicio del último mes usado
+        long finMes = Long.MIN_VALUE; // Nanosegundos del inicio del mes siguiente
+        long[] actual;
+
+        @Override
+        public void aceptar(long fecha, long monto, int categoria) {
+            if (fecha < inicioMes || fecha >= finMes) {
+                YearMonth mes = YearMonth.from(HistorialTransacciones.aFecha(fecha));
+                inicioMes = HistorialTransacciones.aNanosAcotado(mes.atDay(1).atStartOfDay());
+                finMes = HistorialTransacciones.aNanosAcotado(mes.plusMonths(1).atDay(1).atStartOfDay());
+                actual = meses.computeIfAbsent(mes, m -> new long[SIN_CATEGORIA + 1]);
+            }
+            actual[categoria] = Dinero.sumar(actual[categoria], monto);
+        }
+
+        void combinar(GastosMensuales otro) {
+            for (Map.Entry<YearMonth, long[]> mes : otro.meses.entrySet()) {
+                long[] propio = meses.putIfAbsent(mes.getKey(), mes.getValue());
+                if (propio != null) {
+                    sumar(propio, mes.getValue());
+                }
+            }
+        }
+    }
+
+    /**
+     * Gasto total de un usuario en una categoría.
+     */
+    public static final class GastoUsuario {
+        private final String idUsuario;
+        private final String nombre;
+        private long total; // Centavos; solo cambia mientras se arma el resultado
+
+        GastoUsuario(Usuario usuario) {
+            this.idUsuario = usuario.getId();
+            this.nombre = usuario.getNombre();
+        }
+
+        void sumar(long monto) {
+            total = Dinero.sumar(total, monto);
+        }
+
+        // Getters
+        public String getIdUsuario() {
+            return idUsuario;
+        }
+
+        public String getNombre() {
+            return nombre;
+        }
+
+        public double getTotal() {
+            return Dinero.aDouble(total);
+        }
+
+        @Override
+        public String toString() {
+            return "GastoUsuario{" +
+                    "idUsuario='" + idUsuario + '\'' +
+                    ", nombre='" + nombre + '\'' +
+                    ", total=" + Dinero.formatear(total) +
+                    '}';
+        }
+    }
+}
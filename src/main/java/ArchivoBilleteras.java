@@ -0,0 +1,190 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.zip.CRC32;
+
+/**
+ * Archivo de billeteras cerradas: el almacenamiento frío donde terminan las billeteras que ya no se usan,
+ * con su historial, para que la memoria del banco dependa solo de las billeteras en uso.
+ *
+ * Cada billetera se agrega al final de un archivo como un registro [longitud][datos][crc32], igual que los
+ * eventos del diario, y en memoria solo queda la posición de cada número. Sin archivo, los registros se
+ * guardan codificados en memoria: ocupan mucho menos que la billetera con su historial e índices.
+ * Al abrir un archivo existente se descarta un registro final cortado.
+ */
+public class ArchivoBilleteras implements AutoCloseable {
+    private final FileChannel canal; // null si los registros se guardan en memoria
+    private final Map<String, Long> posiciones = new ConcurrentHashMap<>(); // Número -> inicio del registro
+    private final Map<String, byte[]> enMemoria = new ConcurrentHashMap<>(); // Número -> datos, sin archivo
+    private final ReentrantLock cerrojo = new ReentrantLock(); // Ordena las escrituras al final del archivo
+    private long fin; // Posición donde se agrega el próximo registro
+
+    // Constructor de un archivo en memoria
+    public ArchivoBilleteras() {
+        this.canal = null;
+    }
+
+    /**
+     * Constructor que abre (o crea) el archivo y lee la posición de cada billetera archivada.
+     * @param archivo Ruta del archivo
+     * @throws IOException Si no se puede leer o crear el archivo
+     */
+    public ArchivoBilleteras(Path archivo) throws IOException {
+        this.canal = FileChannel.open(archivo, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        indexar();
+    }
+
+    /**
+     * Método que permite archivar una billetera con su historial.
+     * Cuando termina, la billetera ya está en disco (o en memoria, si no hay archivo).
+     * @param billetera Billetera a archivar
+     * @throws IOException Si no se puede escribir el archivo
+     */
+    public void archivar(BilleteraVirtual billetera) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ReentrantLock cerrojoBilletera = billetera.getCerrojo();
+        cerrojoBilletera.lock();
+        try {
+            DiarioBanco.escribirBilletera(new DataOutputStream(bytes), billetera);
+        } finally {
+            cerrojoBilletera.unlock();
+        }
+        byte[] datos = bytes.toByteArray();
+        if (canal == null) {
+            enMemoria.put(billetera.getNumero(), datos);
+            return;
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(datos);
+        ByteBuffer registro = ByteBuffer.allocate(Integer.BYTES + datos.length + Integer.BYTES);
+        registro.putInt(datos.length).put(datos).putInt((int) crc.getValue()).flip();
+        cerrojo.lock();
+        try {
+            long inicio = fin;
+            while (registro.hasRemaining()) {
+                canal.write(registro, inicio + registro.position());
+            }
+            canal.force(false);
+            fin = inicio + registro.limit();
+            posiciones.put(billetera.getNumero(), inicio);
+        } finally {
+            cerrojo.unlock();
+        }
+    }
+
+    /**
+     * Método que permite leer una billetera archivada.
+     * @param numero Número de la billetera
+     * @param buscarUsuario Búsqueda del usuario de la billetera por su ID; puede devolver null si ya no existe
+     * @return Billetera cerrada con su historial, o null si no está archivada
+     * @throws IOException Si no se puede leer el archivo
+     */
+    public BilleteraVirtual buscar(String numero, Function<String, Usuario> buscarUsuario) throws IOException {
+        byte[] datos;
+        if (canal == null) {
+            datos = numero == null ? null : enMemoria.get(numero);
+        } else {
+            Long posicion = numero == null ? null : posiciones.get(numero);
+            datos = posicion == null ? null : leerRegistro(posicion);
+        }
+        if (datos == null) {
+            return null;
+        }
+        BilleteraVirtual billetera = DiarioBanco.leerBilletera(new DataInputStream(new ByteArrayInputStream(datos)),
+                buscarUsuario);
+        billetera.setEstado(EstadoBilletera.CERRADA);
+        return billetera;
+    }
+
+    /**
+     * Método que permite saber si una billetera está archivada.
+     * @param numero Número de la billetera
+     * @return true si está archivada
+     */
+    public boolean contiene(String numero) {
+        return numero != null && (canal == null ? enMemoria.containsKey(numero) : posiciones.containsKey(numero));
+    }
+
+    // Números de las billeteras archivadas
+    public Set<String> numeros() {
+        return Collections.unmodifiableSet(canal == null ? enMemoria.keySet() : posiciones.keySet());
+    }
+
+    // Cantidad de billeteras archivadas
+    public int cantidad() {
+        return canal == null ? enMemoria.size() : posiciones.size();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (canal != null) {
+            canal.close();
+        }
+    }
+
+    // Método auxiliar que lee los datos del registro que empieza en una posición
+    private byte[] leerRegistro(long posicion) throws IOException {
+        ByteBuffer longitud = ByteBuffer.allocate(Integer.BYTES);
+        leerCompleto(longitud, posicion);
+        ByteBuffer datos = ByteBuffer.allocate(longitud.flip().getInt());
+        leerCompleto(datos, posicion + Integer.BYTES);
+        return datos.array();
+    }
+
+    // Método auxiliar que llena un búfer desde una posición del archivo; devuelve false si el archivo termina antes
+    private boolean leerCompleto(ByteBuffer bufer, long posicion) throws IOException {
+        while (bufer.hasRemaining()) {
+            if (canal.read(bufer, posicion + bufer.position()) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Método auxiliar que recorre el archivo, anota la posición de cada número y recorta un final cortado
+    private void indexar() throws IOException {
+        long posicion = 0;
+        long tamano = canal.size();
+        ByteBuffer encabezado = ByteBuffer.allocate(Integer.BYTES);
+        CRC32 crc = new CRC32();
+        while (posicion + Integer.BYTES <= tamano) {
+            encabezado.clear();
+            if (!leerCompleto(encabezado, posicion)) {
+                break;
+            }
+            int longitud = encabezado.flip().getInt();
+            if (longitud <= 0 || posicion + Integer.BYTES + longitud + Integer.BYTES > tamano) {
+                break;
+            }
+            ByteBuffer registro = ByteBuffer.allocate(longitud + Integer.BYTES);
+            if (!leerCompleto(registro, posicion + Integer.BYTES)) {
+                break;
+            }
+            crc.reset();
+            crc.update(registro.array(), 0, longitud);
+            if ((int) crc.getValue() != registro.getInt(longitud)) {
+                break;
+            }
+            String numero = DiarioBanco.leerTexto(new DataInputStream(new ByteArrayInputStream(registro.array(), 0, longitud)));
+            posiciones.put(numero, posicion);
+            posicion += Integer.BYTES + longitud + Integer.BYTES;
+        }
+        if (posicion < tamano) {
+            canal.truncate(posicion);
+        }
+        fin = posicion;
+    }
+}
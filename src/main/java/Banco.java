@@ -1,16 +1,64 @@
+import java.io.IOException;
+import java.time.Clock;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
 
 public class Banco {
     private String nombre;
-    private ArrayList<Usuario> listaUsuarios;
-    private ArrayList<BilleteraVirtual> billeterasVirtuales;
+    private final RegistroBanco registro; // Usuarios y billeteras indexados
+    private GeneradorNumeros generadorNumeros; // Asigna los números de las billeteras nuevas
+    private volatile DiarioBanco diario; // Diario donde se registran los cambios, o null si no hay persistencia
+    private volatile ArchivoBilleteras archivo = new ArchivoBilleteras(); // Billeteras cerradas, fuera del registro
+    private final TablaSaldos tablaSaldos; // Tabla fuera del heap con los saldos, o null si viven en cada billetera
+    private final MetricasBanco metricas = new MetricasBanco(); // Contadores y latencias de las operaciones
+    private final Map<String, ControlLimites> limitesUsuarios = new ConcurrentHashMap<>(); // ID de usuario -> límites
+    private volatile Clock reloj = Clock.systemUTC(); // Reloj de las ventanas de los límites de gasto
+    private volatile FlujoEventos flujoEventos; // Flujo donde se publican los eventos de dominio, o null si no hay
+    private static final int INTENTOS_LECTURA = 16; // Lecturas sin cerrojo de varios saldos antes de bloquear
 
     // Constructor
     public Banco(String nombre) {
+        this(nombre, (TablaSaldos) null);
+    }
+
+    /**
+     * Constructor de un banco que guarda los saldos de sus billeteras en una tabla mapeada en memoria, fuera
+     * del heap. Los saldos sobreviven a un reinicio con la tabla; las billeteras se vuelven a asociar a sus
+     * usuarios con {@link #restaurarBilletera}. Los historiales no están en la tabla, así que después de un
+     * reinicio los IDs de las transacciones anteriores ya no se reconocen como duplicados.
+     * @param nombre Nombre del banco
+     * @param tablaSaldos Tabla de saldos, o null para guardar cada saldo en su billetera
+     */
+    public Banco(String nombre, TablaSaldos tablaSaldos) {
         this.nombre = nombre;
-        this.listaUsuarios = new ArrayList<>();
-        this.billeterasVirtuales = new ArrayList<>();
+        this.registro = new RegistroBanco();
+        this.generadorNumeros = BilleteraVirtual.getGeneradorPorDefecto();
+        this.tablaSaldos = tablaSaldos;
+        if (tablaSaldos != null) {
+            // Los números que ya están en la tabla no se vuelven a asignar
+            tablaSaldos.numeros().forEach(numero -> generadorNumeros.marcarUtilizado(Long.toString(numero)));
+        }
+    }
+
+    // Constructor de una partición: comparte con las demás el índice de IDs de transacción y los IDs archivados
+    Banco(String nombre, Map<String, BilleteraVirtual> billeterasPorTransaccion, IdsArchivados idsArchivados,
+          GeneradorNumeros generadorNumeros) {
+        this.nombre = nombre;
+        this.registro = new RegistroBanco(billeterasPorTransaccion, idsArchivados);
+        this.generadorNumeros = generadorNumeros;
+        this.tablaSaldos = null;
     }
 
     /**
@@ -19,34 +67,68 @@ public class Banco {
      * @throws Exception Si el usuario ya existe o es nulo
      */
     public void agregarUsuario(Usuario usuario) throws Exception {
+        long inicio = metricas.iniciar();
         if (usuario == null) {
+            metricas.registrar(MetricasBanco.Operacion.AGREGAR_USUARIO, MetricasBanco.Resultado.INVALIDA, inicio);
             throw new IllegalArgumentException("El usuario no puede ser nulo.");
         }
 
-        Usuario usuarioBuscado = obtenerUsuario(usuario.getId());
-
         // Si el usuario ya existe, lanzar una excepción
-        if (usuarioBuscado != null) {
+        if (!registro.agregarUsuario(usuario)) {
+            metricas.registrar(MetricasBanco.Operacion.AGREGAR_USUARIO, MetricasBanco.Resultado.USUARIO_DUPLICADO, inicio);
             throw new Exception("Ya existe un usuario con el mismo ID.");
-        } else {
-            listaUsuarios.add(usuario);
         }
+        registrarUsuarioEnDiario(DiarioBanco.USUARIO_AGREGADO, usuario);
+        publicarUsuario(EventoBanco.Tipo.USUARIO_AGREGADO, usuario.getId());
+        metricas.registrar(MetricasBanco.Operacion.AGREGAR_USUARIO, MetricasBanco.Resultado.EXITO, inicio);
     }
 
     /**
      * Método que permite eliminar un usuario de la lista de usuarios.
+     * Sus billeteras se cierran y se archivan antes, así ninguna queda apuntando a un usuario eliminado;
+     * por eso todas deben tener saldo cero. Quitar el usuario del registro es O(1).
      * @param id ID del usuario a eliminar
-     * @throws Exception Si no se encuentra un usuario con el ID dado
+     * @throws Exception Si no se encuentra un usuario con el ID dado o alguna de sus billeteras tiene saldo
      */
     public void eliminarUsuario(String id) throws Exception {
-        Usuario usuarioBuscado = obtenerUsuario(id);
-
-        // Si el usuario no existe, lanzar una excepción
-        if (usuarioBuscado == null) {
+        long inicio = metricas.iniciar();
+        if (registro.buscarUsuario(id) == null) {
+            metricas.registrar(MetricasBanco.Operacion.ELIMINAR_USUARIO, MetricasBanco.Resultado.USUARIO_DESCONOCIDO, inicio);
             throw new Exception("No existe un usuario con el ID dado.");
-        } else {
-            listaUsuarios.remove(usuarioBuscado);
         }
+
+        // Cerrar todas sus billeteras de una vez, o ninguna si alguna tiene saldo. El usuario se quita solo si
+        // ya no le queda ninguna; si se le creó otra mientras tanto, se cierra también
+        List<BilleteraVirtual> billeteras = List.copyOf(registro.buscarBilleterasDeUsuario(id));
+        while (true) {
+            try {
+                cerrar(billeteras);
+            } catch (Exception e) {
+                metricas.registrar(MetricasBanco.Operacion.ELIMINAR_USUARIO, MetricasBanco.Resultado.INVALIDA, inicio);
+                throw e;
+            }
+            for (BilleteraVirtual billetera : billeteras) {
+                archivar(billetera);
+            }
+            billeteras = registro.eliminarUsuarioSinBilleteras(id);
+
+            // Si otro hilo lo eliminó mientras tanto, lanzar una excepción
+            if (billeteras == null) {
+                metricas.registrar(MetricasBanco.Operacion.ELIMINAR_USUARIO, MetricasBanco.Resultado.USUARIO_DESCONOCIDO, inicio);
+                throw new Exception("No existe un usuario con el ID dado.");
+            }
+            if (billeteras.isEmpty()) {
+                break;
+            }
+        }
+        limitesUsuarios.remove(id);
+        DiarioBanco diarioActual = diario;
+        if (diarioActual != null) {
+            diarioActual.esperarDurable(diarioActual.registrar(DiarioBanco.USUARIO_ELIMINADO,
+                    salida -> DiarioBanco.escribirTexto(salida, id)));
+        }
+        publicarUsuario(EventoBanco.Tipo.USUARIO_ELIMINADO, id);
+        metricas.registrar(MetricasBanco.Operacion.ELIMINAR_USUARIO, MetricasBanco.Resultado.EXITO, inicio);
     }
 
     /**
@@ -55,7 +137,8 @@ public class Banco {
      * @throws Exception Si no se encuentra un usuario con el ID dado
      */
     public void actualizarUsuario(Usuario usuarioActualizado) throws Exception {
-        Usuario usuarioBuscado = obtenerUsuario(usuarioActualizado.getId());
+        long inicio = metricas.iniciar();
+        Usuario usuarioBuscado = registro.buscarUsuario(usuarioActualizado.getId());
 
         // Si el usuario no existe, lanzar una excepción
         if (usuarioBuscado != null) {
@@ -64,9 +147,204 @@ public class Banco {
             usuarioBuscado.setCorreo(usuarioActualizado.getCorreo());
             usuarioBuscado.setContraseña(usuarioActualizado.getContraseña());
             usuarioBuscado.setEstado(usuarioActualizado.isEstado());
+            registrarUsuarioEnDiario(DiarioBanco.USUARIO_ACTUALIZADO, usuarioBuscado);
+            publicarUsuario(EventoBanco.Tipo.USUARIO_ACTUALIZADO, usuarioBuscado.getId());
+            metricas.registrar(MetricasBanco.Operacion.ACTUALIZAR_USUARIO, MetricasBanco.Resultado.EXITO, inicio);
         } else {
+            metricas.registrar(MetricasBanco.Operacion.ACTUALIZAR_USUARIO, MetricasBanco.Resultado.USUARIO_DESCONOCIDO, inicio);
+            throw new Exception("No existe un usuario con el ID dado.");
+        }
+    }
+
+    /**
+     * Método que permite desactivar un usuario y congelar sus billeteras activas, que rechazan todo
+     * movimiento hasta que se reactivan con {@link #reactivarBilletera}. El costo depende solo de la
+     * cantidad de billeteras del usuario.
+     * @param id ID del usuario
+     * @throws Exception Si no se encuentra un usuario con el ID dado
+     */
+    public void desactivarUsuario(String id) throws Exception {
+        long inicio = metricas.iniciar();
+        Usuario usuario = registro.buscarUsuario(id);
+        if (usuario == null) {
+            metricas.registrar(MetricasBanco.Operacion.ACTUALIZAR_USUARIO, MetricasBanco.Resultado.USUARIO_DESCONOCIDO, inicio);
+            throw new Exception("No existe un usuario con el ID dado.");
+        }
+        usuario.setEstado(false);
+        registrarUsuarioEnDiario(DiarioBanco.USUARIO_ACTUALIZADO, usuario);
+        publicarUsuario(EventoBanco.Tipo.USUARIO_ACTUALIZADO, id);
+
+        long posicion = -1;
+        for (BilleteraVirtual billetera : registro.buscarBilleterasDeUsuario(id)) {
+            ReentrantLock cerrojo = billetera.getCerrojo();
+            cerrojo.lock();
+            try {
+                if (billetera.getEstado() == EstadoBilletera.ACTIVA) {
+                    billetera.setEstado(EstadoBilletera.CONGELADA);
+                    posicion = anotarEstadoEnDiario(billetera);
+                }
+            } finally {
+                cerrojo.unlock();
+            }
+        }
+        esperarDiario(posicion);
+        metricas.registrar(MetricasBanco.Operacion.ACTUALIZAR_USUARIO, MetricasBanco.Resultado.EXITO, inicio);
+    }
+
+    /**
+     * Método que permite congelar una billetera: rechaza todo movimiento hasta que se reactiva.
+     * @param numeroBilletera Número de la billetera
+     * @throws Exception Si no se encuentra la billetera o no está activa
+     */
+    public void congelarBilletera(String numeroBilletera) throws Exception {
+        cambiarEstado(obtenerBilleteraExistente(numeroBilletera), EstadoBilletera.ACTIVA, EstadoBilletera.CONGELADA);
+    }
+
+    /**
+     * Método que permite reactivar una billetera congelada.
+     * @param numeroBilletera Número de la billetera
+     * @throws Exception Si no se encuentra la billetera o no está congelada
+     */
+    public void reactivarBilletera(String numeroBilletera) throws Exception {
+        cambiarEstado(obtenerBilleteraExistente(numeroBilletera), EstadoBilletera.CONGELADA, EstadoBilletera.ACTIVA);
+    }
+
+    /**
+     * Método que permite cerrar una billetera sin saldo y pasarla, con su historial, al archivo de billeteras
+     * cerradas. Deja de estar en las listas e índices del banco, aunque los IDs de sus transacciones siguen
+     * reservados y no se pueden volver a usar; se puede seguir consultando con {@link #consultarBilleteraArchivada}.
+     * @param numeroBilletera Número de la billetera
+     * @throws Exception Si no se encuentra la billetera o su saldo no es cero
+     */
+    public void cerrarBilletera(String numeroBilletera) throws Exception {
+        BilleteraVirtual billetera = obtenerBilleteraExistente(numeroBilletera);
+        cerrar(List.of(billetera));
+        archivar(billetera);
+    }
+
+    /**
+     * Método que permite consultar una billetera cerrada y su historial desde el archivo.
+     * @param numeroBilletera Número de la billetera
+     * @return Copia de la billetera archivada, o null si no está archivada
+     * @throws IOException Si no se puede leer el archivo
+     */
+    public BilleteraVirtual consultarBilleteraArchivada(String numeroBilletera) throws IOException {
+        return archivo.buscar(numeroBilletera, registro::buscarUsuario);
+    }
+
+    /**
+     * Método que permite fijar los límites de gasto de una billetera, como un monto máximo por hora o una
+     * cantidad máxima de gastos por minuto en una categoría. Se verifican dentro de cada transacción y
+     * transferencia, con contadores de ventana deslizante de costo constante, y los gastos que los exceden
+     * se rechazan con LIMITE_EXCEDIDO. Los contadores empiezan en cero y los límites no se guardan en el diario.
+     * @param numeroBilletera Número de la billetera
+     * @param limites Límites de la billetera, o null o vacío para quitarlos
+     * @throws Exception Si no se encuentra la billetera
+     */
+    public void establecerLimites(String numeroBilletera, List<LimiteGasto> limites) throws Exception {
+        BilleteraVirtual billetera = obtenerBilleteraExistente(numeroBilletera);
+        billetera.setLimites(limites == null || limites.isEmpty() ? null : new ControlLimites(limites, reloj));
+    }
+
+    /**
+     * Método que permite fijar límites de gasto que comparten todas las billeteras de un usuario, incluidas
+     * las que se creen después: un gasto en cualquiera de ellas cuenta para todas.
+     * @param idUsuario ID del usuario
+     * @param limites Límites del usuario, o null o vacío para quitarlos
+     * @throws Exception Si no existe un usuario con el ID dado
+     */
+    public void establecerLimitesUsuario(String idUsuario, List<LimiteGasto> limites) throws Exception {
+        if (registro.buscarUsuario(idUsuario) == null) {
             throw new Exception("No existe un usuario con el ID dado.");
         }
+        ControlLimites control = limites == null || limites.isEmpty() ? null : new ControlLimites(limites, reloj);
+        if (control == null) {
+            limitesUsuarios.remove(idUsuario);
+        } else {
+            limitesUsuarios.put(idUsuario, control);
+        }
+        for (BilleteraVirtual billetera : List.copyOf(registro.buscarBilleterasDeUsuario(idUsuario))) {
+            billetera.setLimitesUsuario(control);
+        }
+    }
+
+    /**
+     * Método que permite consultar los límites de gasto de una billetera.
+     * @param numeroBilletera Número de la billetera
+     * @return Límites propios de la billetera, o una lista vacía si no tiene
+     * @throws Exception Si no se encuentra la billetera
+     */
+    public List<LimiteGasto> consultarLimites(String numeroBilletera) throws Exception {
+        ControlLimites control = obtenerBilleteraExistente(numeroBilletera).getLimites();
+        return control == null ? List.of() : control.getLimites();
+    }
+
+    // Método auxiliar que cambia el estado de una billetera, si está en el estado esperado, y lo registra en el diario
+    private void cambiarEstado(BilleteraVirtual billetera, EstadoBilletera desde, EstadoBilletera hacia) throws Exception {
+        long posicion;
+        ReentrantLock cerrojo = billetera.getCerrojo();
+        cerrojo.lock();
+        try {
+            if (billetera.getEstado() != desde) {
+                throw new Exception((desde == EstadoBilletera.ACTIVA ? "La billetera no está activa: "
+                        : "La billetera no está congelada: ") + billetera.getNumero());
+            }
+            billetera.setEstado(hacia);
+            posicion = anotarEstadoEnDiario(billetera);
+        } finally {
+            cerrojo.unlock();
+        }
+        esperarDiario(posicion);
+    }
+
+    // Método auxiliar que cierra varias billeteras de una vez, o ninguna si alguna tiene saldo.
+    // Con los cerrojos tomados ningún movimiento puede colarse entre la verificación y el cierre
+    private void cerrar(List<BilleteraVirtual> billeteras) throws Exception {
+        long posicion = -1;
+        bloquearEnOrden(billeteras);
+        try {
+            for (BilleteraVirtual billetera : billeteras) {
+                if (billetera.getEstado() != EstadoBilletera.CERRADA && billetera.consultarSaldoCentavos() != 0) {
+                    throw new Exception("La billetera debe tener saldo cero para cerrarse: " + billetera.getNumero());
+                }
+            }
+            for (BilleteraVirtual billetera : billeteras) {
+                if (billetera.getEstado() != EstadoBilletera.CERRADA) {
+                    billetera.setEstado(EstadoBilletera.CERRADA);
+                    posicion = anotarEstadoEnDiario(billetera);
+                }
+            }
+        } finally {
+            desbloquear(billeteras);
+        }
+        esperarDiario(posicion);
+    }
+
+    // Método auxiliar que pasa una billetera cerrada al archivo y la quita del registro
+    private void archivar(BilleteraVirtual billetera) throws IOException {
+        ArchivoBilleteras archivoActual = archivo;
+        if (!archivoActual.contiene(billetera.getNumero())) {
+            archivoActual.archivar(billetera);
+        }
+        if (registro.quitarBilletera(billetera)) {
+            // Su registro en la tabla de saldos queda libre para otra billetera
+            ReentrantLock cerrojo = billetera.getCerrojo();
+            cerrojo.lock();
+            try {
+                billetera.soltarTabla();
+            } finally {
+                cerrojo.unlock();
+            }
+        }
+    }
+
+    // Método auxiliar que archiva las billeteras que quedaron cerradas sin archivar, por ejemplo al recuperar
+    void archivarCerradas() throws IOException {
+        for (BilleteraVirtual billetera : registro.copiarBilleteras()) {
+            if (billetera.getEstado() == EstadoBilletera.CERRADA) {
+                archivar(billetera);
+            }
+        }
     }
 
     /**
@@ -75,63 +353,1141 @@ public class Banco {
      * @return Usuario encontrado o null si no se encuentra
      */
     public Usuario obtenerUsuario(String id) {
-        return listaUsuarios
-                .stream()
-                .filter(u -> u.getId().equals(id))
-                .findFirst()
-                .orElse(null);
+        long inicio = metricas.iniciar();
+        Usuario usuario = registro.buscarUsuario(id);
+        metricas.registrar(MetricasBanco.Operacion.OBTENER_USUARIO,
+                usuario != null ? MetricasBanco.Resultado.EXITO : MetricasBanco.Resultado.USUARIO_DESCONOCIDO, inicio);
+        return usuario;
     }
 
     /**
      * Método que permite crear una billetera virtual para un usuario.
      * @param usuario Usuario al que se le creará la billetera
      * @param saldoInicial Saldo inicial de la billetera
+     * @return Billetera creada
      * @throws Exception Si el usuario no está registrado o es nulo
      */
-    public void crearBilleteraVirtual(Usuario usuario, double saldoInicial) throws Exception {
+    public BilleteraVirtual crearBilleteraVirtual(Usuario usuario, double saldoInicial) throws Exception {
+        long inicio = metricas.iniciar();
         if (usuario == null) {
+            metricas.registrar(MetricasBanco.Operacion.CREAR_BILLETERA, MetricasBanco.Resultado.INVALIDA, inicio);
             throw new IllegalArgumentException("El usuario no puede ser nulo.");
         }
 
-        Usuario usuarioBuscado = obtenerUsuario(usuario.getId());
+        Usuario usuarioBuscado = registro.buscarUsuario(usuario.getId());
 
         // Si el usuario no está registrado, lanzar una excepción
         if (usuarioBuscado == null) {
+            metricas.registrar(MetricasBanco.Operacion.CREAR_BILLETERA, MetricasBanco.Resultado.USUARIO_DESCONOCIDO, inicio);
             throw new Exception("El usuario no está registrado en el banco.");
         } else {
-            BilleteraVirtual billetera = new BilleteraVirtual(saldoInicial, usuario);
-            billeterasVirtuales.add(billetera);
+            BilleteraVirtual billetera = nuevaBilletera(generadorNumeros.siguiente(), Dinero.desdeDouble(saldoInicial), usuario);
+            DiarioBanco diarioActual = diario;
+            FlujoEventos flujo = flujoEventos;
+            // Se agrega solo si el usuario sigue registrado, por si otro hilo lo está eliminando
+            boolean agregada;
+            if (diarioActual == null && flujo == null) {
+                agregada = registro.agregarBilleteraDeUsuario(billetera);
+            } else {
+                // Con el cerrojo tomado ninguna transacción de la billetera llega al diario ni al flujo antes que su creación
+                long posicion = -1;
+                billetera.getCerrojo().lock();
+                try {
+                    agregada = registro.agregarBilleteraDeUsuario(billetera);
+                    if (agregada && diarioActual != null) {
+                        posicion = diarioActual.registrar(DiarioBanco.BILLETERA_CREADA, salida -> {
+                            DiarioBanco.escribirTexto(salida, billetera.getNumero());
+                            DiarioBanco.escribirTexto(salida, usuario.getId());
+                            salida.writeLong(billetera.consultarSaldoCentavos());
+                        });
+                    }
+                    if (agregada && flujo != null) {
+                        flujo.publicar(EventoBanco.Tipo.BILLETERA_CREADA, usuario.getId(), billetera.getNumero(), null,
+                                null, billetera.consultarSaldoCentavos());
+                    }
+                } finally {
+                    billetera.getCerrojo().unlock();
+                }
+                if (agregada && diarioActual != null) {
+                    diarioActual.esperarDurable(posicion);
+                }
+            }
+            if (!agregada) {
+                // Su registro en la tabla de saldos, si tiene, queda libre
+                billetera.getCerrojo().lock();
+                try {
+                    billetera.soltarTabla();
+                } finally {
+                    billetera.getCerrojo().unlock();
+                }
+                metricas.registrar(MetricasBanco.Operacion.CREAR_BILLETERA, MetricasBanco.Resultado.USUARIO_DESCONOCIDO, inicio);
+                throw new Exception("El usuario no está registrado en el banco.");
+            }
+            metricas.registrar(MetricasBanco.Operacion.CREAR_BILLETERA, MetricasBanco.Resultado.EXITO, inicio);
+            return billetera;
         }
     }
 
+    /**
+     * Método que permite volver a asociar a su usuario una billetera de la tabla de saldos, por ejemplo
+     * después de un reinicio. El saldo es el que quedó en la tabla; el historial empieza vacío, por lo que el
+     * reintento de una transacción aplicada antes del reinicio se vuelve a aplicar en vez de rechazarse como ID
+     * duplicado. Para que los reintentos sigan siendo seguros después de un reinicio hay que usar
+     * {@link PersistenciaBanco}, que reconstruye los historiales desde su diario.
+     * @param numeroBilletera Número de la billetera en la tabla
+     * @param usuario Usuario de la billetera, ya registrado en el banco
+     * @return Billetera restaurada
+     * @throws Exception Si el banco no usa una tabla de saldos, el número no está en ella, la billetera ya
+     *                   está en el banco o el usuario no está registrado
+     */
+    public BilleteraVirtual restaurarBilletera(String numeroBilletera, Usuario usuario) throws Exception {
+        if (tablaSaldos == null) {
+            throw new Exception("El banco no usa una tabla de saldos.");
+        }
+        if (usuario == null || registro.buscarUsuario(usuario.getId()) == null) {
+            throw new Exception("El usuario no está registrado en el banco.");
+        }
+        int ranura = numeroBilletera == null || !numeroBilletera.matches("\\d{10}")
+                ? -1 : tablaSaldos.buscar(Long.parseLong(numeroBilletera));
+        if (ranura < 0) {
+            throw new Exception("No se encontró una billetera con el número: " + numeroBilletera);
+        }
+        if (registro.buscarBilletera(numeroBilletera) != null) {
+            throw new Exception("La billetera ya está en el banco: " + numeroBilletera);
+        }
+        BilleteraVirtual billetera = new BilleteraVirtual(numeroBilletera, usuario, tablaSaldos, ranura);
+        billetera.setLimitesUsuario(limitesUsuarios.get(usuario.getId()));
+        generadorNumeros.marcarUtilizado(numeroBilletera);
+        if (!registro.agregarBilleteraDeUsuario(billetera)) {
+            throw new Exception("El usuario no está registrado en el banco.");
+        }
+        return billetera;
+    }
+
+    // Método auxiliar que crea una billetera, con su saldo en la tabla de saldos si el banco usa una
+    private BilleteraVirtual nuevaBilletera(String numero, long saldoCentavos, Usuario usuario) {
+        BilleteraVirtual billetera = tablaSaldos == null
+                ? new BilleteraVirtual(numero, saldoCentavos, usuario)
+                : new BilleteraVirtual(numero, usuario, tablaSaldos, tablaSaldos.agregar(Long.parseLong(numero), saldoCentavos));
+        billetera.setLimitesUsuario(limitesUsuarios.get(usuario.getId()));
+        return billetera;
+    }
+
+    /**
+     * Método que permite consultar el saldo de una billetera.
+     * @param numeroBilletera Número de la billetera
+     * @return Saldo actual de la billetera
+     * @throws Exception Si no se encuentra la billetera
+     */
+    public double consultarSaldo(String numeroBilletera) throws Exception {
+        long inicio = metricas.iniciar();
+        BilleteraVirtual billetera = obtenerBilleteraPorNumero(numeroBilletera);
+        if (billetera == null) {
+            metricas.registrar(MetricasBanco.Operacion.CONSULTAR_SALDO, MetricasBanco.Resultado.BILLETERA_DESCONOCIDA, inicio);
+            throw new Exception("No se encontró una billetera con el número: " + numeroBilletera);
+        }
+        double saldo = billetera.consultarSaldo();
+        metricas.registrar(MetricasBanco.Operacion.CONSULTAR_SALDO, MetricasBanco.Resultado.EXITO, inicio);
+        return saldo;
+    }
+
+    /**
+     * Método que permite consultar el saldo total de un usuario, sumando todas sus billeteras.
+     * Los saldos se leen como estaban en un mismo instante, así una transferencia entre dos billeteras del
+     * usuario nunca se ve a medias, y sin demorar a las transacciones que se realizan a la vez.
+     * @param idUsuario ID del usuario
+     * @return Suma de los saldos de las billeteras del usuario, o 0 si no tiene billeteras
+     * @throws Exception Si no existe un usuario con el ID dado
+     */
+    public double consultarSaldoTotal(String idUsuario) throws Exception {
+        if (registro.buscarUsuario(idUsuario) == null) {
+            throw new Exception("No existe un usuario con el ID dado.");
+        }
+        List<BilleteraVirtual> billeteras = List.copyOf(registro.buscarBilleterasDeUsuario(idUsuario));
+        long[] saldos = new long[billeteras.size()];
+        leerConsistente(billeteras, (i, billetera) -> saldos[i] = billetera.consultarSaldoCentavos());
+        long total = 0;
+        for (long saldo : saldos) {
+            total = Dinero.sumar(total, saldo);
+        }
+        return Dinero.aDouble(total);
+    }
+
+    /**
+     * Método que permite obtener las billeteras de un usuario, a partir del índice de usuario a billeteras.
+     * @param idUsuario ID del usuario
+     * @return Lista de solo lectura con las billeteras del usuario, en el orden en que se crearon
+     * @throws Exception Si no existe un usuario con el ID dado
+     */
+    public List<BilleteraVirtual> obtenerBilleterasDeUsuario(String idUsuario) throws Exception {
+        if (registro.buscarUsuario(idUsuario) == null) {
+            throw new Exception("No existe un usuario con el ID dado.");
+        }
+        return List.copyOf(registro.buscarBilleterasDeUsuario(idUsuario));
+    }
+
+    /**
+     * Método que permite obtener el resumen de todas las billeteras de un usuario: saldo total, ingresos,
+     * gastos y gastos por categoría. Cada billetera mantiene sus totales al registrar cada transacción,
+     * así el resumen no recorre los historiales, y todas se leen como estaban en un mismo instante.
+     * @param idUsuario ID del usuario
+     * @return Portafolio del usuario
+     * @throws Exception Si no existe un usuario con el ID dado
+     */
+    public PortafolioUsuario obtenerPortafolio(String idUsuario) throws Exception {
+        List<BilleteraVirtual> billeteras = obtenerBilleterasDeUsuario(idUsuario);
+        long[] saldos = new long[billeteras.size()];
+        long[][] totales = new long[billeteras.size()][];
+        long[][] gastosPorCategoria = new long[billeteras.size()][];
+        leerConsistente(billeteras, (i, billetera) -> {
+            HistorialTransacciones historial = billetera.getHistorial();
+            saldos[i] = billetera.consultarSaldoCentavos();
+            totales[i] = historial.totales();
+            gastosPorCategoria[i] = historial.totalesPorCategoria(false);
+        });
+        return new PortafolioUsuario(idUsuario, billeteras, saldos, totales, gastosPorCategoria);
+    }
+
     /**
      * Método que permite realizar una transacción en una billetera virtual.
      * @param numeroBilletera Número de la billetera
      * @param transaccion Transacción a realizar
-     * @throws Exception Si no se encuentra la billetera o la transacción no es válida
+     * @throws Exception Si no se encuentra la billetera, el ID de la transacción ya existe en el banco
+     *                   o la transacción no es válida
      */
     public void realizarTransaccion(String numeroBilletera, RegistroTransaccion transaccion) throws Exception {
+        ResultadoTransaccion resultado = intentarTransaccion(numeroBilletera, transaccion);
+        if (resultado != ResultadoTransaccion.ACEPTADA) {
+            lanzarRechazo(resultado, numeroBilletera, transaccion);
+        }
+    }
+
+    /**
+     * Método que permite intentar una transacción sin lanzar excepciones por los rechazos esperables,
+     * como la falta de saldo. Solo lanza ante fallas del diario.
+     * @param numeroBilletera Número de la billetera
+     * @param transaccion Transacción a realizar
+     * @return ACEPTADA si se aplicó, o el motivo del rechazo
+     */
+    public ResultadoTransaccion intentarTransaccion(String numeroBilletera, RegistroTransaccion transaccion) {
+        long inicio = metricas.iniciar();
+        ResultadoTransaccion resultado = aplicarTransaccion(numeroBilletera, transaccion);
+        metricas.registrar(MetricasBanco.Operacion.REALIZAR_TRANSACCION, MetricasBanco.Resultado.de(resultado), inicio);
+        return resultado;
+    }
+
+    // Método auxiliar que aplica una transacción y la registra en el diario y en el flujo de eventos, si hay
+    private ResultadoTransaccion aplicarTransaccion(String numeroBilletera, RegistroTransaccion transaccion) {
         BilleteraVirtual billetera = obtenerBilleteraPorNumero(numeroBilletera);
+        if (billetera == null) {
+            return publicarRechazo(numeroBilletera, transaccion, ResultadoTransaccion.BILLETERA_DESCONOCIDA);
+        }
+        if (transaccion == null || transaccion.getId() == null) {
+            return publicarRechazo(numeroBilletera, transaccion, ResultadoTransaccion.INVALIDA);
+        }
+
+        // Reservar el ID en todo el banco para detectar transacciones repetidas
+        if (!registro.reclamarTransaccion(transaccion.getId(), billetera)) {
+            return publicarRechazo(numeroBilletera, transaccion, ResultadoTransaccion.ID_DUPLICADO);
+        }
+        DiarioBanco diarioActual = diario;
+        FlujoEventos flujo = flujoEventos;
+        long[] posicion = {-1};
+        ResultadoTransaccion resultado = ResultadoTransaccion.INVALIDA;
+        ReentrantLock cerrojo = billetera.getCerrojo();
+        cerrojo.lock();
+        try {
+            // La transacción aceptada se registra en el diario antes de aplicarse: si el diario falla,
+            // la billetera no cambia
+            resultado = billetera.intentarConCerrojo(transaccion, diarioActual == null ? null
+                    : aceptada -> posicion[0] = registrarTransaccionEnDiario(diarioActual, numeroBilletera, aceptada));
+            if (flujo != null) {
+                // Con el cerrojo tomado los eventos de una billetera salen en el orden en que se aplicaron
+                flujo.publicar(EventoBanco.Tipo.TRANSACCION, null, numeroBilletera, transaccion, resultado,
+                        resultado == ResultadoTransaccion.ACEPTADA ? billetera.consultarSaldoCentavos() : 0);
+            }
+        } finally {
+            if (resultado != ResultadoTransaccion.ACEPTADA) {
+                liberarSiNoAplicada(transaccion.getId(), billetera);
+            }
+            cerrojo.unlock();
+        }
+        if (resultado == ResultadoTransaccion.ACEPTADA && diarioActual != null) {
+            try {
+                diarioActual.esperarDurable(posicion[0]);
+            } catch (RuntimeException e) {
+                // Ya se publicó como aceptada: el flujo la corrige antes de propagar el error
+                publicarRechazo(numeroBilletera, transaccion, ResultadoTransaccion.NO_REGISTRADA);
+                throw e;
+            }
+        }
+        return resultado;
+    }
+
+    // Método auxiliar que publica un movimiento aceptado de una transferencia, si hay flujo; requiere el cerrojo de
+    // la billetera tomado
+    private void publicarMovimiento(BilleteraVirtual billetera, RegistroTransaccion movimiento, long saldo) {
+        FlujoEventos flujo = flujoEventos;
+        if (flujo != null) {
+            flujo.publicar(EventoBanco.Tipo.TRANSACCION, null, billetera.getNumero(), movimiento,
+                    ResultadoTransaccion.ACEPTADA, saldo);
+        }
+    }
+
+    // Método auxiliar que publica una transacción rechazada fuera del cerrojo de su billetera, si hay flujo; también
+    // corrige una ya publicada como aceptada cuyo registro en el diario falló
+    private ResultadoTransaccion publicarRechazo(String numeroBilletera, RegistroTransaccion transaccion,
+                                                 ResultadoTransaccion resultado) {
+        FlujoEventos flujo = flujoEventos;
+        if (flujo != null) {
+            flujo.publicar(EventoBanco.Tipo.TRANSACCION, null, numeroBilletera, transaccion, resultado, 0);
+        }
+        return resultado;
+    }
+
+    // Método auxiliar que publica un cambio de usuario en el flujo de eventos, si hay
+    private void publicarUsuario(EventoBanco.Tipo tipo, String idUsuario) {
+        FlujoEventos flujo = flujoEventos;
+        if (flujo != null) {
+            flujo.publicar(tipo, idUsuario, null, null, null, 0);
+        }
+    }
 
-        // Si la billetera no existe, lanzar una excepción
+    // Método auxiliar que lanza la excepción de una transacción rechazada; solo se usa fuera del camino rápido
+    private static void lanzarRechazo(ResultadoTransaccion resultado, String numeroBilletera,
+                                      RegistroTransaccion transaccion) throws Exception {
+        switch (resultado) {
+            case BILLETERA_DESCONOCIDA -> throw new Exception("No se encontró una billetera con el número: " + numeroBilletera);
+            case BILLETERA_INACTIVA -> throw new Exception("La billetera no está activa: " + numeroBilletera);
+            case ID_DUPLICADO -> throw new Exception("Ya existe una transacción con el ID: " + transaccion.getId());
+            case SALDO_INSUFICIENTE -> throw new Exception("Saldo insuficiente para realizar la transacción.");
+            case LIMITE_EXCEDIDO -> throw new Exception("Se excedió un límite de gasto de la billetera: " + numeroBilletera);
+            default -> BilleteraVirtual.lanzarInvalida(transaccion);
+        }
+    }
+
+    /**
+     * Método que permite realizar un lote de transacciones, por ejemplo las de un archivo de liquidación.
+     * Las transacciones se agrupan por billetera: cada billetera se busca y se bloquea una sola vez y sus
+     * transacciones aceptadas se agregan juntas al registro. Los grupos se aplican en paralelo en el pool
+     * común de fork-join, y dentro de cada billetera se respeta el orden del lote.
+     * A diferencia de {@link #realizarTransaccion}, un rechazo no detiene el lote. Si el diario no puede
+     * registrar el grupo de una billetera, sus transacciones quedan como NO_REGISTRADA y no se aplican.
+     * @param numerosBilletera Número de billetera de cada transacción
+     * @param transacciones Transacciones a realizar
+     * @return Resultado de cada transacción, en el orden del lote
+     */
+    public ResultadoLote realizarTransacciones(String[] numerosBilletera, RegistroTransaccion[] transacciones) {
+        return realizarTransacciones(numerosBilletera, transacciones, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Método que permite realizar un lote de transacciones en un pool de fork-join dado.
+     * @param numerosBilletera Número de billetera de cada transacción
+     * @param transacciones Transacciones a realizar
+     * @param pool Pool donde se aplican los grupos de cada billetera
+     * @return Resultado de cada transacción, en el orden del lote
+     */
+    public ResultadoLote realizarTransacciones(String[] numerosBilletera, RegistroTransaccion[] transacciones,
+                                               ForkJoinPool pool) {
+        if (numerosBilletera == null || transacciones == null || pool == null) {
+            throw new IllegalArgumentException("Los números de billetera, las transacciones y el pool no pueden ser nulos.");
+        }
+        if (numerosBilletera.length != transacciones.length) {
+            throw new IllegalArgumentException("Debe haber un número de billetera por transacción.");
+        }
+
+        // Agrupar por billetera, buscando cada una una sola vez
+        ResultadoLote resultado = new ResultadoLote(transacciones.length);
+        Map<String, GrupoLote> grupos = new HashMap<>();
+        for (int i = 0; i < transacciones.length; i++) {
+            if (transacciones[i] == null || transacciones[i].getId() == null) {
+                resultado.marcar(i, ResultadoTransaccion.INVALIDA);
+                continue;
+            }
+            GrupoLote grupo = grupos.get(numerosBilletera[i]);
+            if (grupo == null) {
+                grupo = new GrupoLote(obtenerBilleteraPorNumero(numerosBilletera[i]));
+                grupos.put(numerosBilletera[i], grupo);
+            }
+            if (grupo.billetera == null) {
+                resultado.marcar(i, ResultadoTransaccion.BILLETERA_DESCONOCIDA);
+            } else {
+                grupo.agregar(i);
+            }
+        }
+
+        List<GrupoLote> pendientes = new ArrayList<>(grupos.values());
+        if (pendientes.size() == 1) {
+            aplicarGrupo(pendientes.get(0), transacciones, resultado);
+        } else {
+            pool.submit(() -> pendientes.parallelStream()
+                    .forEach(grupo -> aplicarGrupo(grupo, transacciones, resultado))).join();
+        }
+
+        long posicion = -1;
+        for (GrupoLote grupo : pendientes) {
+            posicion = Math.max(posicion, grupo.posicionDiario);
+        }
+        try {
+            esperarDiario(posicion);
+        } catch (RuntimeException e) {
+            // Las aceptadas ya se publicaron: el flujo las corrige antes de propagar el error
+            for (int i = 0; i < transacciones.length; i++) {
+                if (resultado.get(i) == ResultadoTransaccion.ACEPTADA) {
+                    publicarRechazo(numerosBilletera[i], transacciones[i], ResultadoTransaccion.NO_REGISTRADA);
+                }
+            }
+            throw e;
+        }
+
+        // Las aceptadas ya se publicaron con el cerrojo de su billetera; los rechazos se publican al final
+        if (flujoEventos != null) {
+            for (int i = 0; i < transacciones.length; i++) {
+                if (resultado.get(i) != ResultadoTransaccion.ACEPTADA) {
+                    publicarRechazo(numerosBilletera[i], transacciones[i], resultado.get(i));
+                }
+            }
+        }
+
+        // Las transacciones del lote se cuentan como individuales, sin latencia propia
+        for (ResultadoTransaccion tipo : ResultadoTransaccion.values()) {
+            metricas.contar(MetricasBanco.Operacion.REALIZAR_TRANSACCION, MetricasBanco.Resultado.de(tipo),
+                    resultado.contar(tipo));
+        }
+        return resultado;
+    }
+
+    // Transacciones de un lote que van a una misma billetera, como posiciones dentro del lote
+    private static final class GrupoLote {
+        final BilleteraVirtual billetera; // null si el número no existe
+        int[] posiciones = new int[4];
+        int cantidad;
+        long posicionDiario = -1; // Posición en el diario de la última transacción aceptada
+
+        GrupoLote(BilleteraVirtual billetera) {
+            this.billetera = billetera;
+        }
+
+        void agregar(int posicion) {
+            if (cantidad == posiciones.length) {
+                posiciones = Arrays.copyOf(posiciones, cantidad * 2);
+            }
+            posiciones[cantidad++] = posicion;
+        }
+    }
+
+    // Método auxiliar que aplica las transacciones de un grupo con el cerrojo de su billetera tomado una vez
+    private void aplicarGrupo(GrupoLote grupo, RegistroTransaccion[] transacciones, ResultadoLote resultado) {
+        BilleteraVirtual billetera = grupo.billetera;
         if (billetera == null) {
-            throw new Exception("No se encontró una billetera con el número: " + numeroBilletera);
+            return;
+        }
+        RegistroTransaccion[] aceptadas = new RegistroTransaccion[grupo.cantidad];
+        int[] posicionesAceptadas = new int[grupo.cantidad];
+        long[][] reservas = new long[grupo.cantidad][]; // Reserva en los límites de cada aceptada
+        int cantidad = 0;
+        DiarioBanco diarioActual = diario;
+
+        ReentrantLock cerrojo = billetera.getCerrojo();
+        cerrojo.lock();
+        try {
+            if (!billetera.estaActiva()) {
+                for (int k = 0; k < grupo.cantidad; k++) {
+                    resultado.marcar(grupo.posiciones[k], ResultadoTransaccion.BILLETERA_INACTIVA);
+                }
+                return;
+            }
+            long saldoInicial = billetera.consultarSaldoCentavos();
+            long saldo = saldoInicial;
+            for (int k = 0; k < grupo.cantidad; k++) {
+                int posicion = grupo.posiciones[k];
+                RegistroTransaccion transaccion = transacciones[posicion];
+                String id = transaccion.getId();
+                if (!registro.reclamarTransaccion(id, billetera) || billetera.getHistorial().buscar(id) >= 0) {
+                    resultado.marcar(posicion, ResultadoTransaccion.ID_DUPLICADO);
+                    continue;
+                }
+                ResultadoTransaccion rechazo = null;
+                try {
+                    HistorialTransacciones.aNanos(transaccion.getFecha());
+                    long monto = transaccion.getMontoCentavos();
+                    if (monto < 0 && saldo < Dinero.absoluto(monto)) {
+                        rechazo = ResultadoTransaccion.SALDO_INSUFICIENTE;
+                    } else {
+                        long nuevoSaldo = Dinero.sumar(saldo, monto);
+                        reservas[cantidad] = billetera.reservarLimites(monto, transaccion.getCategoria());
+                        if (reservas[cantidad] == null) {
+                            rechazo = ResultadoTransaccion.LIMITE_EXCEDIDO;
+                        } else {
+                            saldo = nuevoSaldo;
+                        }
+                    }
+                } catch (ArithmeticException | IllegalArgumentException e) {
+                    rechazo = ResultadoTransaccion.INVALIDA;
+                }
+                if (rechazo != null) {
+                    registro.liberarTransaccion(id, billetera);
+                    resultado.marcar(posicion, rechazo);
+                    continue;
+                }
+                aceptadas[cantidad] = transaccion;
+                posicionesAceptadas[cantidad++] = posicion;
+            }
+
+            if (cantidad == 0) {
+                return;
+            }
+            try {
+                billetera.verificarAnotaciones(aceptadas, cantidad);
+            } catch (ArithmeticException e) {
+                // Los totales de la billetera desbordarían: no se aplica ninguna del grupo
+                descartarAceptadas(billetera, aceptadas, reservas, cantidad);
+                for (int k = 0; k < cantidad; k++) {
+                    resultado.marcar(posicionesAceptadas[k], ResultadoTransaccion.INVALIDA);
+                }
+                return;
+            }
+
+            // Registrar el grupo en el diario antes de aplicarlo: si el diario falla, la billetera no cambia
+            if (diarioActual != null) {
+                try {
+                    grupo.posicionDiario = registrarTransaccionesEnDiario(diarioActual, billetera.getNumero(),
+                            aceptadas, cantidad);
+                } catch (RuntimeException e) {
+                    descartarAceptadas(billetera, aceptadas, reservas, cantidad);
+                    for (int k = 0; k < cantidad; k++) {
+                        resultado.marcar(posicionesAceptadas[k], ResultadoTransaccion.NO_REGISTRADA);
+                    }
+                    return;
+                }
+            }
+            billetera.abrirCambio();
+            try {
+                billetera.anotarTodas(aceptadas, cantidad);
+                billetera.ajustarSaldo(Dinero.restar(saldo, saldoInicial));
+            } finally {
+                billetera.cerrarCambio();
+            }
+            FlujoEventos flujo = flujoEventos;
+            if (flujo != null) {
+                long saldoEvento = saldoInicial;
+                for (int k = 0; k < cantidad; k++) {
+                    saldoEvento += aceptadas[k].getMontoCentavos();
+                    flujo.publicar(EventoBanco.Tipo.TRANSACCION, null, billetera.getNumero(), aceptadas[k],
+                            ResultadoTransaccion.ACEPTADA, saldoEvento);
+                }
+            }
+        } finally {
+            cerrojo.unlock();
+        }
+    }
+
+    // Método auxiliar que libera los IDs y devuelve las reservas de límites de las transacciones aceptadas de un
+    // grupo que al final no se aplicaron; requiere el cerrojo de la billetera tomado
+    private void descartarAceptadas(BilleteraVirtual billetera, RegistroTransaccion[] aceptadas, long[][] reservas,
+                                    int cantidad) {
+        for (int k = 0; k < cantidad; k++) {
+            registro.liberarTransaccion(aceptadas[k].getId(), billetera);
+            billetera.devolverLimites(reservas[k], aceptadas[k].getMontoCentavos(), aceptadas[k].getCategoria());
+        }
+    }
+
+    /**
+     * Método que permite consultar una transacción del banco sin conocer su billetera.
+     * @param id ID de la transacción
+     * @return Transacción encontrada
+     * @throws Exception Si no se encuentra una transacción con el ID dado
+     */
+    public RegistroTransaccion consultarTransaccion(String id) throws Exception {
+        long inicio = metricas.iniciar();
+        BilleteraVirtual billetera = registro.buscarBilleteraDeTransaccion(id);
+        if (billetera == null) {
+            metricas.registrar(MetricasBanco.Operacion.CONSULTAR_TRANSACCION, MetricasBanco.Resultado.TRANSACCION_DESCONOCIDA, inicio);
+            throw new Exception("No se encontró una transacción con el ID: " + id);
+        }
+        RegistroTransaccion transaccion = billetera.consultarTransaccion(id);
+        metricas.registrar(MetricasBanco.Operacion.CONSULTAR_TRANSACCION, MetricasBanco.Resultado.EXITO, inicio);
+        return transaccion;
+    }
+
+    /**
+     * Método que permite consultar las transacciones de una billetera en un rango de fechas.
+     * @param numeroBilletera Número de la billetera
+     * @param desde Inicio del rango, incluido, o null para no acotarlo
+     * @param hasta Fin del rango, excluido, o null para no acotarlo
+     * @param categoria Categoría de las transacciones, o null para todas
+     * @return Transacciones del rango, de la más antigua a la más reciente
+     * @throws Exception Si no se encuentra la billetera
+     */
+    public Stream<RegistroTransaccion> consultarTransacciones(String numeroBilletera, LocalDateTime desde,
+                                                              LocalDateTime hasta, Categoria categoria) throws Exception {
+        BilleteraVirtual billetera = obtenerBilleteraExistente(numeroBilletera);
+        return categoria == null
+                ? billetera.consultarTransacciones(desde, hasta)
+                : billetera.consultarTransacciones(desde, hasta, categoria);
+    }
+
+    /**
+     * Método que permite exportar el banco tal como está ahora, mientras sigue recibiendo operaciones.
+     * @return Exportación con los usuarios, las billeteras y las transacciones de este momento
+     */
+    public ExportacionBanco iniciarExportacion() {
+        return new ExportacionBanco(registro);
+    }
+
+    /**
+     * Método que permite consultar gastos de todo el banco, como los gastos por categoría y mes o los
+     * usuarios que más gastan. Las consultas corren en el pool común de fork-join sin bloquear las transacciones.
+     * @return Análisis sobre las billeteras de este momento
+     */
+    public AnalisisBanco analizar() {
+        return analizar(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Método que permite consultar gastos de todo el banco en un pool de fork-join dado.
+     * @param pool Pool donde corren las consultas
+     * @return Análisis sobre las billeteras de este momento
+     */
+    public AnalisisBanco analizar(ForkJoinPool pool) {
+        return new AnalisisBanco(registro.copiarBilleteras(), pool);
+    }
+
+    // Copia de las billeteras de este momento
+    List<BilleteraVirtual> copiarBilleteras() {
+        return registro.copiarBilleteras();
+    }
+
+    /**
+     * Método que permite transferir dinero entre dos billeteras.
+     * El origen paga el monto más el costo de envío y el destino recibe el monto, en un solo paso atómico.
+     * Las dos billeteras se bloquean en orden de número, así transferencias cruzadas no se bloquean mutuamente.
+     * @param transferencia Transferencia a realizar
+     * @throws Exception Si alguna billetera no existe, el monto no es válido o no hay saldo suficiente
+     */
+    public void transferir(Transferencia transferencia) throws Exception {
+        ResultadoTransaccion resultado = intentarTransferencia(transferencia);
+        if (resultado != ResultadoTransaccion.ACEPTADA) {
+            lanzarRechazo(resultado, transferencia);
+        }
+    }
+
+    /**
+     * Método que permite intentar una transferencia sin lanzar excepciones por los rechazos esperables.
+     * @param transferencia Transferencia a realizar
+     * @return ACEPTADA si se aplicó, o el motivo del rechazo; INVALIDA si el monto no es positivo, el
+     *         origen y el destino son la misma billetera o algún saldo o total desbordaría
+     */
+    public ResultadoTransaccion intentarTransferencia(Transferencia transferencia) {
+        long inicio = metricas.iniciar();
+        ResultadoTransaccion resultado;
+        if (transferencia == null || transferencia.getMontoCentavos() <= 0) {
+            resultado = ResultadoTransaccion.INVALIDA;
         } else {
-            billetera.realizarTransaccion(transaccion);
+            BilleteraVirtual origen = obtenerBilleteraPorNumero(transferencia.getNumeroOrigen());
+            BilleteraVirtual destino = obtenerBilleteraPorNumero(transferencia.getNumeroDestino());
+            resultado = origen == null || destino == null
+                    ? ResultadoTransaccion.BILLETERA_DESCONOCIDA
+                    : intentarTransferencia(transferencia, origen, this, destino);
+        }
+        metricas.registrar(MetricasBanco.Operacion.TRANSFERIR, MetricasBanco.Resultado.de(resultado), inicio);
+        return resultado;
+    }
+
+    /**
+     * Método auxiliar que transfiere entre una billetera de este banco y una de otro banco (o de este mismo).
+     * Los dos bancos deben compartir el índice de IDs de transacción, como las particiones de un
+     * {@link BancoParticionado}. Cada movimiento se registra en el diario del banco de su billetera.
+     * El monto ya debe estar validado como positivo.
+     */
+    ResultadoTransaccion intentarTransferencia(Transferencia transferencia, BilleteraVirtual origen, Banco bancoDestino,
+                                               BilleteraVirtual destino) {
+        if (origen == destino) {
+            return ResultadoTransaccion.INVALIDA;
+        }
+
+        // Reservar los IDs de los dos movimientos
+        String id = transferencia.getId();
+        if (!registro.reclamarTransaccion(id + "-E", origen)) {
+            return ResultadoTransaccion.ID_DUPLICADO;
+        }
+        if (!registro.reclamarTransaccion(id + "-R", destino)) {
+            registro.liberarTransaccion(id + "-E", origen);
+            return ResultadoTransaccion.ID_DUPLICADO;
+        }
+
+        ResultadoTransaccion resultado = ResultadoTransaccion.SALDO_INSUFICIENTE;
+        long posicionOrigen = -1;
+        long posicionDestino = -1;
+        RegistroTransaccion[] movimientos = null;
+        List<BilleteraVirtual> billeteras = List.of(origen, destino);
+        bloquearEnOrden(billeteras);
+        abrirCambio(billeteras);
+        try {
+            // Crear los dos movimientos y comprobar que ninguno desborda antes de tocar alguna billetera
+            movimientos = crearMovimientos(transferencia, origen, destino, LocalDateTime.now());
+            long debito = -movimientos[0].getMontoCentavos();
+            if (!origen.estaActiva() || !destino.estaActiva()) {
+                resultado = ResultadoTransaccion.BILLETERA_INACTIVA;
+            } else if (origen.consultarSaldoCentavos() < debito) {
+                resultado = ResultadoTransaccion.SALDO_INSUFICIENTE;
+            } else if (!origen.puedeAplicar(movimientos[0]) || !destino.puedeAplicar(movimientos[1])) {
+                resultado = ResultadoTransaccion.INVALIDA;
+            } else {
+                long[] reserva = origen.reservarLimites(-debito, Categoria.GASTO);
+                if (reserva == null) {
+                    resultado = ResultadoTransaccion.LIMITE_EXCEDIDO;
+                } else {
+                    // Registrar los dos movimientos antes de aplicarlos: si el diario falla, ninguna billetera cambia
+                    try {
+                        if (bancoDestino == this) {
+                            posicionOrigen = anotarEnDiario(new String[]{origen.getNumero(), destino.getNumero()},
+                                    movimientos);
+                        } else {
+                            // Uno en cada diario: si el segundo no llega a escribirse, el primero se descarta al recuperar
+                            posicionOrigen = anotarTramo(origen.getNumero(), movimientos[0]);
+                            posicionDestino = bancoDestino.anotarTramo(destino.getNumero(), movimientos[1]);
+                        }
+                    } catch (RuntimeException e) {
+                        origen.devolverLimites(reserva, -debito, Categoria.GASTO);
+                        throw e;
+                    }
+                    origen.aplicar(movimientos[0]);
+                    destino.aplicar(movimientos[1]);
+                    resultado = ResultadoTransaccion.ACEPTADA;
+
+                    // Con los cerrojos tomados, cada movimiento sale en el flujo del banco de su billetera en orden
+                    publicarMovimiento(origen, movimientos[0], origen.consultarSaldoCentavos());
+                    bancoDestino.publicarMovimiento(destino, movimientos[1], destino.consultarSaldoCentavos());
+                }
+            }
+        } catch (ArithmeticException e) {
+            resultado = ResultadoTransaccion.INVALIDA; // El débito desborda
+        } finally {
+            cerrarCambio(billeteras);
+            desbloquear(billeteras);
+            if (resultado != ResultadoTransaccion.ACEPTADA) {
+                registro.liberarTransaccion(id + "-E", origen);
+                registro.liberarTransaccion(id + "-R", destino);
+            }
+        }
+        if (resultado == ResultadoTransaccion.ACEPTADA) {
+            try {
+                esperarDiario(posicionOrigen);
+                bancoDestino.esperarDiario(posicionDestino);
+            } catch (RuntimeException e) {
+                // Los dos movimientos ya se publicaron: cada flujo los corrige antes de propagar el error
+                publicarRechazo(origen.getNumero(), movimientos[0], ResultadoTransaccion.NO_REGISTRADA);
+                bancoDestino.publicarRechazo(destino.getNumero(), movimientos[1], ResultadoTransaccion.NO_REGISTRADA);
+                throw e;
+            }
+        }
+        return resultado;
+    }
+
+    // Método auxiliar que lanza la excepción de una transferencia rechazada; solo se usa fuera del camino rápido
+    void lanzarRechazo(ResultadoTransaccion resultado, Transferencia transferencia) throws Exception {
+        switch (resultado) {
+            case BILLETERA_DESCONOCIDA -> {
+                String numero = obtenerBilleteraPorNumero(transferencia.getNumeroOrigen()) == null
+                        ? transferencia.getNumeroOrigen() : transferencia.getNumeroDestino();
+                throw new Exception("No se encontró una billetera con el número: " + numero);
+            }
+            case BILLETERA_INACTIVA -> {
+                BilleteraVirtual origen = obtenerBilleteraPorNumero(transferencia.getNumeroOrigen());
+                String numero = origen == null || !origen.estaActiva()
+                        ? transferencia.getNumeroOrigen() : transferencia.getNumeroDestino();
+                throw new Exception("La billetera no está activa: " + numero);
+            }
+            case ID_DUPLICADO -> {
+                String id = transferencia.getId();
+                throw new Exception("Ya existe una transacción con el ID: "
+                        + (registro.buscarBilleteraDeTransaccion(id + "-E") != null ? id + "-E" : id + "-R"));
+            }
+            case SALDO_INSUFICIENTE -> throw new Exception("Saldo insuficiente para realizar la transacción.");
+            case LIMITE_EXCEDIDO -> throw new Exception("Se excedió un límite de gasto de la billetera: "
+                    + transferencia.getNumeroOrigen());
+            default -> {
+                if (transferencia == null) {
+                    throw new IllegalArgumentException("La transferencia no puede ser nula.");
+                }
+                if (transferencia.getMontoCentavos() <= 0) {
+                    throw new IllegalArgumentException("El monto de la transferencia debe ser positivo.");
+                }
+                if (Objects.equals(transferencia.getNumeroOrigen(), transferencia.getNumeroDestino())) {
+                    throw new IllegalArgumentException("La billetera de origen y la de destino deben ser distintas.");
+                }
+                throw new ArithmeticException("Desbordamiento al sumar montos.");
+            }
+        }
+    }
+
+    /**
+     * Método que permite realizar un lote de transferencias de forma atómica.
+     * Los movimientos se compensan por billetera antes de aplicarse: cada saldo se actualiza una sola vez
+     * y solo se exige que el saldo neto de cada billetera no quede negativo. Si alguna no cumple,
+     * no se aplica ninguna transferencia del lote. Con un diario, el lote se registra en un solo evento
+     * cualquiera sea su tamaño, así se recupera entero o no se recupera.
+     * @param transferencias Transferencias a realizar
+     * @throws Exception Si alguna billetera no existe, algún monto no es válido o no hay saldo suficiente
+     */
+    public void transferirLote(List<Transferencia> transferencias) throws Exception {
+        if (transferencias == null) {
+            throw new IllegalArgumentException("La lista de transferencias no puede ser nula.");
+        }
+
+        // Resolver las billeteras y calcular el movimiento neto de cada una
+        Map<BilleteraVirtual, Long> netos = new HashMap<>();
+        BilleteraVirtual[] origenes = new BilleteraVirtual[transferencias.size()];
+        BilleteraVirtual[] destinos = new BilleteraVirtual[transferencias.size()];
+        for (int i = 0; i < transferencias.size(); i++) {
+            Transferencia transferencia = transferencias.get(i);
+            if (transferencia == null || transferencia.getMontoCentavos() <= 0) {
+                throw new IllegalArgumentException("El monto de la transferencia debe ser positivo.");
+            }
+            origenes[i] = obtenerBilleteraExistente(transferencia.getNumeroOrigen());
+            destinos[i] = obtenerBilleteraExistente(transferencia.getNumeroDestino());
+            if (origenes[i] == destinos[i]) {
+                throw new IllegalArgumentException("La billetera de origen y la de destino deben ser distintas.");
+            }
+            long debito = Dinero.sumar(transferencia.getMontoCentavos(), origenes[i].getCostoEnvioCentavos());
+            netos.merge(origenes[i], -debito, Dinero::sumar);
+            netos.merge(destinos[i], transferencia.getMontoCentavos(), Dinero::sumar);
+        }
+
+        reclamarTransferencias(transferencias, origenes, destinos);
+        boolean aplicado = false;
+        long posicion = -1;
+        String[] numerosMovimientos = new String[2 * transferencias.size()];
+        RegistroTransaccion[] todos = new RegistroTransaccion[2 * transferencias.size()];
+        List<BilleteraVirtual> billeteras = new ArrayList<>(netos.keySet());
+        bloquearEnOrden(billeteras);
+        abrirCambio(billeteras);
+        try {
+            for (BilleteraVirtual billetera : billeteras) {
+                if (!billetera.estaActiva()) {
+                    throw new Exception("La billetera no está activa: " + billetera.getNumero());
+                }
+                if (Dinero.sumar(billetera.consultarSaldoCentavos(), netos.get(billetera)) < 0) {
+                    throw new Exception("Saldo insuficiente en la billetera: " + billetera.getNumero());
+                }
+            }
+
+            // Crear los movimientos y agruparlos por billetera, para comprobar que ningún registro desborda
+            // antes de modificar alguno
+            LocalDateTime fecha = LocalDateTime.now();
+            RegistroTransaccion[][] movimientos = new RegistroTransaccion[transferencias.size()][];
+            Map<BilleteraVirtual, List<RegistroTransaccion>> anotaciones = new HashMap<>();
+            for (int i = 0; i < transferencias.size(); i++) {
+                movimientos[i] = crearMovimientos(transferencias.get(i), origenes[i], destinos[i], fecha);
+                anotaciones.computeIfAbsent(origenes[i], b -> new ArrayList<>()).add(movimientos[i][0]);
+                anotaciones.computeIfAbsent(destinos[i], b -> new ArrayList<>()).add(movimientos[i][1]);
+            }
+            Map<BilleteraVirtual, RegistroTransaccion[]> porBilletera = new HashMap<>();
+            for (BilleteraVirtual billetera : billeteras) {
+                RegistroTransaccion[] propias = anotaciones.get(billetera).toArray(new RegistroTransaccion[0]);
+                billetera.verificarAnotaciones(propias, propias.length);
+                porBilletera.put(billetera, propias);
+            }
+            long[][] reservas = reservarLimites(transferencias, origenes);
+
+            // Registrar todos los movimientos antes de aplicarlos: si el diario falla, ninguna billetera cambia
+            for (int i = 0; i < transferencias.size(); i++) {
+                numerosMovimientos[2 * i] = origenes[i].getNumero();
+                todos[2 * i] = movimientos[i][0];
+                numerosMovimientos[2 * i + 1] = destinos[i].getNumero();
+                todos[2 * i + 1] = movimientos[i][1];
+            }
+            try {
+                posicion = anotarEnDiario(numerosMovimientos, todos);
+            } catch (RuntimeException e) {
+                devolverLimites(transferencias, origenes, reservas, transferencias.size());
+                throw e;
+            }
+
+            for (BilleteraVirtual billetera : billeteras) {
+                RegistroTransaccion[] propias = porBilletera.get(billetera);
+                billetera.anotarTodas(propias, propias.length);
+                billetera.ajustarSaldo(netos.get(billetera));
+            }
+            aplicado = true;
+
+            // Con los cerrojos tomados; cada evento lleva el saldo que deja su movimiento
+            for (BilleteraVirtual billetera : billeteras) {
+                long saldoEvento = billetera.consultarSaldoCentavos() - netos.get(billetera);
+                for (RegistroTransaccion movimiento : porBilletera.get(billetera)) {
+                    saldoEvento += movimiento.getMontoCentavos();
+                    publicarMovimiento(billetera, movimiento, saldoEvento);
+                }
+            }
+        } finally {
+            cerrarCambio(billeteras);
+            desbloquear(billeteras);
+            if (!aplicado) {
+                liberarTransferencias(transferencias, origenes, destinos);
+            }
+        }
+        try {
+            esperarDiario(posicion);
+        } catch (RuntimeException e) {
+            // Los movimientos ya se publicaron: el flujo los corrige antes de propagar el error
+            for (int i = 0; i < todos.length; i++) {
+                publicarRechazo(numerosMovimientos[i], todos[i], ResultadoTransaccion.NO_REGISTRADA);
+            }
+            throw e;
+        }
+    }
+
+    // Método auxiliar que reserva los envíos de varias transferencias en los límites de sus orígenes, o ninguno si
+    // alguno se excedería; requiere los cerrojos tomados. Devuelve la reserva de cada transferencia
+    private static long[][] reservarLimites(List<Transferencia> transferencias, BilleteraVirtual[] origenes)
+            throws Exception {
+        long[][] reservas = new long[transferencias.size()][];
+        for (int i = 0; i < transferencias.size(); i++) {
+            long debito = -Dinero.sumar(transferencias.get(i).getMontoCentavos(), origenes[i].getCostoEnvioCentavos());
+            reservas[i] = origenes[i].reservarLimites(debito, Categoria.GASTO);
+            if (reservas[i] == null) {
+                devolverLimites(transferencias, origenes, reservas, i);
+                throw new Exception("Se excedió un límite de gasto de la billetera: " + origenes[i].getNumero());
+            }
+        }
+        return reservas;
+    }
+
+    // Método auxiliar que devuelve las reservas de las primeras transferencias de una lista; requiere los cerrojos tomados
+    private static void devolverLimites(List<Transferencia> transferencias, BilleteraVirtual[] origenes,
+                                        long[][] reservas, int cantidad) {
+        for (int k = 0; k < cantidad; k++) {
+            long devuelto = -Dinero.sumar(transferencias.get(k).getMontoCentavos(), origenes[k].getCostoEnvioCentavos());
+            origenes[k].devolverLimites(reservas[k], devuelto, Categoria.GASTO);
+        }
+    }
+
+    // Método auxiliar que reserva los IDs de los movimientos de varias transferencias, o ninguno si alguno ya existe
+    private void reclamarTransferencias(List<Transferencia> transferencias, BilleteraVirtual[] origenes,
+                                        BilleteraVirtual[] destinos) throws Exception {
+        for (int i = 0; i < transferencias.size(); i++) {
+            String id = transferencias.get(i).getId();
+            if (!registro.reclamarTransaccion(id + "-E", origenes[i])) {
+                liberarTransferencias(transferencias.subList(0, i), origenes, destinos);
+                throw new Exception("Ya existe una transacción con el ID: " + id + "-E");
+            }
+            if (!registro.reclamarTransaccion(id + "-R", destinos[i])) {
+                registro.liberarTransaccion(id + "-E", origenes[i]);
+                liberarTransferencias(transferencias.subList(0, i), origenes, destinos);
+                throw new Exception("Ya existe una transacción con el ID: " + id + "-R");
+            }
+        }
+    }
+
+    // Método auxiliar que libera los IDs reservados de transferencias que no se aplicaron
+    private void liberarTransferencias(List<Transferencia> transferencias, BilleteraVirtual[] origenes,
+                                       BilleteraVirtual[] destinos) {
+        for (int i = 0; i < transferencias.size(); i++) {
+            registro.liberarTransaccion(transferencias.get(i).getId() + "-E", origenes[i]);
+            registro.liberarTransaccion(transferencias.get(i).getId() + "-R", destinos[i]);
+        }
+    }
+
+    // Método auxiliar que libera el ID reservado de una transacción rechazada, si la billetera no lo tiene ya
+    private void liberarSiNoAplicada(String id, BilleteraVirtual billetera) {
+        if (billetera.getHistorial().buscar(id) < 0) {
+            registro.liberarTransaccion(id, billetera);
+        }
+    }
+
+    // Método auxiliar que crea los dos movimientos de una transferencia sin aplicarlos: el de envío y el de recibo.
+    // Lanza ArithmeticException si el débito desborda
+    private static RegistroTransaccion[] crearMovimientos(Transferencia transferencia, BilleteraVirtual origen,
+                                                          BilleteraVirtual destino, LocalDateTime fecha) {
+        long debito = Dinero.sumar(transferencia.getMontoCentavos(), origen.getCostoEnvioCentavos());
+        RegistroTransaccion envio = RegistroTransaccion.conCentavos(
+                transferencia.getId() + "-E", fecha, -debito, destino.getUsuario().getNombre(), Categoria.GASTO
+        );
+        RegistroTransaccion recibo = RegistroTransaccion.conCentavos(
+                transferencia.getId() + "-R", fecha, transferencia.getMontoCentavos(), origen.getUsuario().getNombre(),
+                Categoria.INGRESO
+        );
+        return new RegistroTransaccion[]{envio, recibo};
+    }
+
+    // Método auxiliar que registra en el diario, si hay, un movimiento de una transferencia con otro banco antes de
+    // aplicarlo; al recuperar se aplica solo si el otro movimiento también quedó registrado en su diario. Devuelve la
+    // posición en el diario o -1 si no hay diario
+    private long anotarTramo(String numeroBilletera, RegistroTransaccion transaccion) {
+        DiarioBanco diarioActual = diario;
+        return diarioActual == null ? -1
+                : diarioActual.registrar(DiarioBanco.TRAMO_TRANSFERENCIA, datosTransaccion(numeroBilletera, transaccion));
+    }
+
+    // Método auxiliar que registra en el diario, si hay, varias transacciones en un solo evento antes de aplicarlas:
+    // al recuperar se aplican todas o ninguna. Se llama con los cerrojos de sus billeteras tomados. Devuelve la
+    // posición del final o -1 si no hay diario
+    private long anotarEnDiario(String[] numeros, RegistroTransaccion[] transacciones) {
+        DiarioBanco diarioActual = diario;
+        return diarioActual == null ? -1 : diarioActual.registrar(DiarioBanco.TRANSACCIONES,
+                salida -> DiarioBanco.escribirTransacciones(salida, numeros, transacciones, transacciones.length));
+    }
+
+    // Método auxiliar que registra un usuario en el diario y espera a que sea durable
+    private void registrarUsuarioEnDiario(byte tipo, Usuario usuario) {
+        DiarioBanco diarioActual = diario;
+        if (diarioActual != null) {
+            diarioActual.esperarDurable(diarioActual.registrar(tipo, salida -> DiarioBanco.escribirUsuario(salida, usuario)));
+        }
+    }
+
+    // Método auxiliar que registra el estado de una billetera en el diario, si hay; se llama con su cerrojo tomado.
+    // Devuelve la posición en el diario o -1 si no hay diario
+    private long anotarEstadoEnDiario(BilleteraVirtual billetera) {
+        DiarioBanco diarioActual = diario;
+        return diarioActual == null ? -1 : diarioActual.registrar(DiarioBanco.BILLETERA_ESTADO, salida -> {
+            DiarioBanco.escribirTexto(salida, billetera.getNumero());
+            salida.writeByte(billetera.getEstado().ordinal());
+        });
+    }
+
+    // Método auxiliar que registra una transacción antes de aplicarla; se llama con el cerrojo de la billetera tomado
+    private static long registrarTransaccionEnDiario(DiarioBanco diarioActual, String numeroBilletera,
+                                                     RegistroTransaccion transaccion) {
+        return diarioActual.registrar(DiarioBanco.TRANSACCION, datosTransaccion(numeroBilletera, transaccion));
+    }
+
+    // Método auxiliar que registra en un solo evento varias transacciones de una billetera antes de aplicarlas;
+    // se llama con el cerrojo de la billetera tomado
+    private static long registrarTransaccionesEnDiario(DiarioBanco diarioActual, String numeroBilletera,
+                                                       RegistroTransaccion[] transacciones, int cantidad) {
+        String[] numeros = new String[cantidad];
+        Arrays.fill(numeros, numeroBilletera);
+        return diarioActual.registrar(DiarioBanco.TRANSACCIONES,
+                salida -> DiarioBanco.escribirTransacciones(salida, numeros, transacciones, cantidad));
+    }
+
+    // Método auxiliar que arma el escritor de los datos de una transacción para el diario
+    private static DiarioBanco.Datos datosTransaccion(String numeroBilletera, RegistroTransaccion transaccion) {
+        return salida -> {
+            DiarioBanco.escribirTexto(salida, numeroBilletera);
+            DiarioBanco.escribirTransaccion(salida, transaccion);
+        };
+    }
+
+    // Método auxiliar que espera a que una posición del diario sea durable, si hay diario
+    private void esperarDiario(long posicion) {
+        DiarioBanco diarioActual = diario;
+        if (diarioActual != null && posicion >= 0) {
+            diarioActual.esperarDurable(posicion);
+        }
+    }
+
+    // Método auxiliar que toma los cerrojos de varias billeteras siempre en orden de número
+    private static void bloquearEnOrden(List<BilleteraVirtual> billeteras) {
+        if (billeteras.size() > 1) {
+            billeteras = new ArrayList<>(billeteras);
+            billeteras.sort(Comparator.comparing(BilleteraVirtual::getNumero));
+        }
+        for (BilleteraVirtual billetera : billeteras) {
+            billetera.getCerrojo().lock();
+        }
+    }
+
+    // Método auxiliar que libera los cerrojos de varias billeteras
+    private static void desbloquear(List<BilleteraVirtual> billeteras) {
+        for (BilleteraVirtual billetera : billeteras) {
+            billetera.getCerrojo().unlock();
+        }
+    }
+
+    // Método auxiliar que abre un cambio en varias billeteras ya bloqueadas
+    private static void abrirCambio(List<BilleteraVirtual> billeteras) {
+        for (BilleteraVirtual billetera : billeteras) {
+            billetera.abrirCambio();
+        }
+    }
+
+    // Método auxiliar que cierra el cambio abierto en varias billeteras, antes de desbloquearlas
+    private static void cerrarCambio(List<BilleteraVirtual> billeteras) {
+        for (BilleteraVirtual billetera : billeteras) {
+            billetera.cerrarCambio();
         }
     }
 
+    // Lector de los datos de una billetera dentro de una lectura consistente; puede llamarse varias veces por billetera
+    interface LectorBilletera {
+        void leer(int posicion, BilleteraVirtual billetera);
+    }
+
+    /**
+     * Método auxiliar que lee varias billeteras tal como estaban en un mismo instante, sin tomar sus
+     * cerrojos. Lee la versión y los datos de cada una y después vuelve a leer las versiones: si ninguna
+     * cambió ni estaba en medio de un cambio, los datos leídos coincidieron en el tiempo y si no, se repite
+     * la lectura. Si las escrituras no dejan de interferir, bloquea las billeteras en orden un instante.
+     * @param billeteras Billeteras a leer
+     * @param lector Lector que guarda los datos de cada billetera según su posición
+     */
+    static void leerConsistente(List<BilleteraVirtual> billeteras, LectorBilletera lector) {
+        long[] versiones = new long[billeteras.size()];
+        for (int intento = 0; intento < INTENTOS_LECTURA; intento++) {
+            if (leerSinBloquear(billeteras, lector, versiones)) {
+                return;
+            }
+            Thread.onSpinWait();
+        }
+        bloquearEnOrden(billeteras);
+        try {
+            for (int i = 0; i < billeteras.size(); i++) {
+                lector.leer(i, billeteras.get(i));
+            }
+        } finally {
+            desbloquear(billeteras);
+        }
+    }
+
+    // Método auxiliar que hace un intento de leerConsistente; devuelve false si hay que reintentar
+    private static boolean leerSinBloquear(List<BilleteraVirtual> billeteras, LectorBilletera lector, long[] versiones) {
+        for (int i = 0; i < versiones.length; i++) {
+            BilleteraVirtual billetera = billeteras.get(i);
+            versiones[i] = billetera.getVersionSaldo();
+            if ((versiones[i] & 1) != 0) {
+                return false;
+            }
+            lector.leer(i, billetera);
+        }
+        for (int i = 0; i < versiones.length; i++) {
+            if (billeteras.get(i).getVersionSaldo() != versiones[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Método que permite consultar las métricas del banco: cuántas veces terminó cada operación con cada
+     * resultado, las latencias medidas y la cantidad de usuarios, billeteras y transacciones.
+     * @return Copia de las métricas en este momento
+     */
+    public MetricasBanco.Instantanea obtenerMetricas() {
+        DiarioBanco diarioActual = diario;
+        return metricas.instantanea(registro.cantidadUsuarios(), registro.cantidadBilleteras(),
+                registro.cantidadTransacciones(), diarioActual == null ? 0 : diarioActual.posicion());
+    }
+
+    // Método auxiliar que obtiene una billetera o lanza una excepción si no existe
+    private BilleteraVirtual obtenerBilleteraExistente(String numeroBilletera) throws Exception {
+        BilleteraVirtual billetera = obtenerBilleteraPorNumero(numeroBilletera);
+        if (billetera == null) {
+            throw new Exception("No se encontró una billetera con el número: " + numeroBilletera);
+        }
+        return billetera;
+    }
+
     /**
      * Método auxiliar para obtener una billetera por su número.
      * @param numeroBilletera Número de la billetera
      * @return Billetera encontrada o null si no se encuentra
      */
     private BilleteraVirtual obtenerBilleteraPorNumero(String numeroBilletera) {
-        return billeterasVirtuales
-                .stream()
-                .filter(b -> b.getNumero().equals(numeroBilletera))
-                .findFirst()
-                .orElse(null);
+        return registro.buscarBilletera(numeroBilletera);
     }
 
     // Getters y Setters
@@ -143,19 +1499,95 @@ public class Banco {
         this.nombre = nombre;
     }
 
-    public ArrayList<Usuario> getListaUsuarios() {
-        return listaUsuarios;
+    public Clock getReloj() {
+        return reloj;
+    }
+
+    // Cambia el reloj de los límites que se fijen desde ahora; los ya fijados siguen con el suyo
+    public void setReloj(Clock reloj) {
+        if (reloj == null) {
+            throw new IllegalArgumentException("El reloj no puede ser nulo.");
+        }
+        this.reloj = reloj;
+    }
+
+    RegistroBanco getRegistro() {
+        return registro;
+    }
+
+    // Diario donde se registran los cambios; lo asigna PersistenciaBanco
+    void setDiario(DiarioBanco diario) {
+        this.diario = diario;
+    }
+
+    public FlujoEventos getFlujoEventos() {
+        return flujoEventos;
+    }
+
+    /**
+     * Método que permite publicar los eventos de dominio del banco en un flujo: los cambios de usuario, las
+     * billeteras creadas, el resultado de cada transacción, individual o de un lote, y los dos movimientos
+     * (-E y -R) de cada transferencia aceptada, sola o en un lote; las transferencias rechazadas no se publican.
+     * Los eventos de una billetera se publican con su cerrojo tomado, en el orden en que se aplicaron.
+     *
+     * Ese orden exige publicar antes de esperar al diario, que se espera después de soltar el cerrojo: con un
+     * banco persistente, un evento aceptado puede llegar a los consumidores antes de que su registro sea
+     * durable. Si el diario falla en esa espera, cada transacción o movimiento ya publicado como ACEPTADA se
+     * vuelve a publicar con el mismo ID y resultado NO_REGISTRADA antes de propagar el error, y el consumidor
+     * debe deshacer lo que hizo con el evento aceptado. Si el proceso se detiene antes de que el registro sea
+     * durable no hay tiempo de corregirlo: la recuperación puede no incluir una transacción que ya se
+     * publicó, así que un consumidor que necesite solo cambios durables debe confirmarlos contra el banco
+     * recuperado.
+     * @param flujoEventos Flujo de eventos, o null para dejar de publicar
+     */
+    public void setFlujoEventos(FlujoEventos flujoEventos) {
+        this.flujoEventos = flujoEventos;
+    }
+
+    public TablaSaldos getTablaSaldos() {
+        return tablaSaldos;
+    }
+
+    // Archivo de billeteras cerradas; PersistenciaBanco asigna uno en su directorio
+    public ArchivoBilleteras getArchivo() {
+        return archivo;
+    }
+
+    void setArchivo(ArchivoBilleteras archivo) {
+        this.archivo = archivo;
+    }
+
+    // Métricas del banco, por ejemplo para cambiar cada cuántas llamadas se mide la latencia
+    public MetricasBanco getMetricas() {
+        return metricas;
+    }
+
+    public GeneradorNumeros getGeneradorNumeros() {
+        return generadorNumeros;
+    }
+
+    public void setGeneradorNumeros(GeneradorNumeros generadorNumeros) {
+        if (generadorNumeros == null) {
+            throw new IllegalArgumentException("El generador de números no puede ser nulo.");
+        }
+        this.generadorNumeros = generadorNumeros;
+    }
+
+    // Copia de solo lectura: los cambios pasan por el banco, que mantiene los índices
+    public List<Usuario> getListaUsuarios() {
+        return Collections.unmodifiableList(registro.copiarUsuarios());
     }
 
-    public void setListaUsuarios(ArrayList<Usuario> listaUsuarios) {
-        this.listaUsuarios = listaUsuarios;
+    public void setListaUsuarios(List<Usuario> listaUsuarios) {
+        registro.reemplazarUsuarios(listaUsuarios);
     }
 
-    public ArrayList<BilleteraVirtual> getBilleterasVirtuales() {
-        return billeterasVirtuales;
+    // Copia de solo lectura: los cambios pasan por el banco, que mantiene los índices
+    public List<BilleteraVirtual> getBilleterasVirtuales() {
+        return Collections.unmodifiableList(registro.copiarBilleteras());
     }
 
-    public void setBilleterasVirtuales(ArrayList<BilleteraVirtual> billeterasVirtuales) {
-        this.billeterasVirtuales = billeterasVirtuales;
+    public void setBilleterasVirtuales(List<BilleteraVirtual> billeterasVirtuales) {
+        registro.reemplazarBilleteras(billeterasVirtuales);
     }
 }
\ No newline at end of file
@@ -0,0 +1,478 @@
+import java.io.IOException;
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Banco repartido en varias particiones independientes, cada una un {@link Banco} con sus propios
+ * usuarios, billeteras, cerrojos y diario.
+ *
+ * Los usuarios se ubican por un hash de su ID y sus billeteras se crean en la misma partición. Cada
+ * partición numera sus billeteras con su propio tramo de un {@link GeneradorNumerosPermutado}, así la
+ * partición de una billetera se calcula a partir del número, sin ningún directorio compartido.
+ *
+ * Lo único que comparten las particiones es el índice de IDs de transacción, para que un ID siga siendo
+ * único en todo el banco. Las transferencias entre particiones bloquean las dos billeteras en orden de
+ * número, igual que dentro de un banco, y registran cada movimiento en el diario de su partición cuando
+ * el banco se abre con {@link PersistenciaBancoParticionado}.
+ */
+public class BancoParticionado {
+    private final String nombre;
+    private final Banco[] particiones;
+    private final GeneradorNumerosPermutado ubicador; // Solo se usa para calcular la partición de un número
+
+    // Constructor
+    public BancoParticionado(String nombre, int cantidadParticiones) {
+        this(nombre, cantidadParticiones, BilleteraVirtual.CLAVE_POR_DEFECTO);
+    }
+
+    /**
+     * Constructor con la clave de numeración de las billeteras.
+     * @param nombre Nombre del banco
+     * @param cantidadParticiones Cantidad de particiones
+     * @param clave Clave de la permutación de números de billetera
+     */
+    public BancoParticionado(String nombre, int cantidadParticiones, long clave) {
+        if (cantidadParticiones <= 0) {
+            throw new IllegalArgumentException("La cantidad de particiones debe ser positiva.");
+        }
+        this.nombre = nombre;
+        this.particiones = new Banco[cantidadParticiones];
+        this.ubicador = new GeneradorNumerosPermutado(clave, 0, cantidadParticiones);
+        Map<String, BilleteraVirtual> billeterasPorTransaccion = new ConcurrentHashMap<>();
+        IdsArchivados idsArchivados = new IdsArchivados();
+        for (int i = 0; i < cantidadParticiones; i++) {
+            particiones[i] = crearParticion(nombre, billeterasPorTransaccion, idsArchivados, i, cantidadParticiones, clave);
+        }
+    }
+
+    // Constructor con las particiones ya creadas con crearParticion, por ejemplo al recuperarlas de sus diarios
+    BancoParticionado(String nombre, Banco[] particiones, long clave) {
+        this.nombre = nombre;
+        this.particiones = particiones;
+        this.ubicador = new GeneradorNumerosPermutado(clave, 0, particiones.length);
+    }
+
+    /**
+     * Método auxiliar que crea una partición vacía.
+     * @param nombre Nombre del banco
+     * @param billeterasPorTransaccion Índice de IDs de transacción, el mismo para todas las particiones
+     * @param idsArchivados IDs de las billeteras archivadas, los mismos para todas las particiones
+     * @param indice Posición de la partición
+     * @param cantidadParticiones Cantidad de particiones
+     * @param clave Clave de la permutación de números de billetera
+     * @return Partición sin usuarios ni billeteras
+     */
+    static Banco crearParticion(String nombre, Map<String, BilleteraVirtual> billeterasPorTransaccion,
+                                IdsArchivados idsArchivados, int indice, int cantidadParticiones, long clave) {
+        return new Banco(nombre, billeterasPorTransaccion, idsArchivados,
+                new GeneradorNumerosPermutado(clave, indice, cantidadParticiones));
+    }
+
+    /**
+     * Método que permite agregar un usuario en su partición.
+     * @param usuario Usuario a agregar
+     * @throws Exception Si el usuario ya existe o es nulo
+     */
+    public void agregarUsuario(Usuario usuario) throws Exception {
+        if (usuario == null) {
+            throw new IllegalArgumentException("El usuario no puede ser nulo.");
+        }
+        particionDeUsuario(usuario.getId()).agregarUsuario(usuario);
+    }
+
+    /**
+     * Método que permite eliminar un usuario.
+     * @param id ID del usuario a eliminar
+     * @throws Exception Si no se encuentra un usuario con el ID dado
+     */
+    public void eliminarUsuario(String id) throws Exception {
+        particionDeUsuario(id).eliminarUsuario(id);
+    }
+
+    /**
+     * Método que permite desactivar un usuario y congelar sus billeteras.
+     * @see Banco#desactivarUsuario(String)
+     */
+    public void desactivarUsuario(String id) throws Exception {
+        particionDeUsuario(id).desactivarUsuario(id);
+    }
+
+    /**
+     * Método que permite actualizar un usuario.
+     * @param usuarioActualizado Usuario con los datos actualizados
+     * @throws Exception Si no se encuentra un usuario con el ID dado
+     */
+    public void actualizarUsuario(Usuario usuarioActualizado) throws Exception {
+        particionDeUsuario(usuarioActualizado.getId()).actualizarUsuario(usuarioActualizado);
+    }
+
+    /**
+     * Método que permite obtener un usuario.
+     * @param id ID del usuario a buscar
+     * @return Usuario encontrado o null si no se encuentra
+     */
+    public Usuario obtenerUsuario(String id) {
+        return particionDeUsuario(id).obtenerUsuario(id);
+    }
+
+    /**
+     * Método que permite crear una billetera virtual para un usuario, en la partición del usuario.
+     * @param usuario Usuario al que se le creará la billetera
+     * @param saldoInicial Saldo inicial de la billetera
+     * @return Billetera creada
+     * @throws Exception Si el usuario no está registrado o es nulo
+     */
+    public BilleteraVirtual crearBilleteraVirtual(Usuario usuario, double saldoInicial) throws Exception {
+        if (usuario == null) {
+            throw new IllegalArgumentException("El usuario no puede ser nulo.");
+        }
+        return particionDeUsuario(usuario.getId()).crearBilleteraVirtual(usuario, saldoInicial);
+    }
+
+    /**
+     * Método que permite consultar el saldo de una billetera.
+     * @param numeroBilletera Número de la billetera
+     * @return Saldo actual de la billetera
+     * @throws Exception Si no se encuentra la billetera
+     */
+    public double consultarSaldo(String numeroBilletera) throws Exception {
+        return particionDeBilleteraExistente(numeroBilletera).consultarSaldo(numeroBilletera);
+    }
+
+    /**
+     * Método que permite consultar el saldo total de un usuario; sus billeteras están todas en su partición.
+     * @see Banco#consultarSaldoTotal(String)
+     */
+    public double consultarSaldoTotal(String idUsuario) throws Exception {
+        return particionDeUsuario(idUsuario).consultarSaldoTotal(idUsuario);
+    }
+
+    /**
+     * Método que permite obtener las billeteras de un usuario.
+     * @see Banco#obtenerBilleterasDeUsuario(String)
+     */
+    public List<BilleteraVirtual> obtenerBilleterasDeUsuario(String idUsuario) throws Exception {
+        return particionDeUsuario(idUsuario).obtenerBilleterasDeUsuario(idUsuario);
+    }
+
+    /**
+     * Método que permite obtener el resumen de todas las billeteras de un usuario.
+     * @see Banco#obtenerPortafolio(String)
+     */
+    public PortafolioUsuario obtenerPortafolio(String idUsuario) throws Exception {
+        return particionDeUsuario(idUsuario).obtenerPortafolio(idUsuario);
+    }
+
+    /**
+     * Método que permite consultar gastos de todas las particiones juntas.
+     * @see Banco#analizar()
+     */
+    public AnalisisBanco analizar() {
+        return analizar(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Método que permite consultar gastos de todas las particiones juntas en un pool de fork-join dado.
+     * @see Banco#analizar(ForkJoinPool)
+     */
+    public AnalisisBanco analizar(ForkJoinPool pool) {
+        List<BilleteraVirtual> billeteras = new ArrayList<>();
+        for (Banco particion : particiones) {
+            billeteras.addAll(particion.copiarBilleteras());
+        }
+        return new AnalisisBanco(billeteras, pool);
+    }
+
+    /**
+     * Método que permite fijar los límites de gasto de una billetera.
+     * @see Banco#establecerLimites(String, List)
+     */
+    public void establecerLimites(String numeroBilletera, List<LimiteGasto> limites) throws Exception {
+        particionDeBilleteraExistente(numeroBilletera).establecerLimites(numeroBilletera, limites);
+    }
+
+    /**
+     * Método que permite fijar los límites de gasto de todas las billeteras de un usuario.
+     * @see Banco#establecerLimitesUsuario(String, List)
+     */
+    public void establecerLimitesUsuario(String idUsuario, List<LimiteGasto> limites) throws Exception {
+        particionDeUsuario(idUsuario).establecerLimitesUsuario(idUsuario, limites);
+    }
+
+    /**
+     * Método que permite consultar los límites de gasto de una billetera.
+     * @see Banco#consultarLimites(String)
+     */
+    public List<LimiteGasto> consultarLimites(String numeroBilletera) throws Exception {
+        return particionDeBilleteraExistente(numeroBilletera).consultarLimites(numeroBilletera);
+    }
+
+    /**
+     * Método que permite cambiar el reloj de los límites de gasto de todas las particiones.
+     * @see Banco#setReloj(Clock)
+     */
+    public void setReloj(Clock reloj) {
+        for (Banco particion : particiones) {
+            particion.setReloj(reloj);
+        }
+    }
+
+    /**
+     * Método que permite publicar los eventos de todas las particiones en un mismo flujo.
+     * @see Banco#setFlujoEventos(FlujoEventos)
+     */
+    public void setFlujoEventos(FlujoEventos flujoEventos) {
+        for (Banco particion : particiones) {
+            particion.setFlujoEventos(flujoEventos);
+        }
+    }
+
+    public FlujoEventos getFlujoEventos() {
+        return particiones[0].getFlujoEventos();
+    }
+
+    /**
+     * Método que permite congelar una billetera.
+     * @see Banco#congelarBilletera(String)
+     */
+    public void congelarBilletera(String numeroBilletera) throws Exception {
+        particionDeBilleteraExistente(numeroBilletera).congelarBilletera(numeroBilletera);
+    }
+
+    /**
+     * Método que permite reactivar una billetera congelada.
+     * @see Banco#reactivarBilletera(String)
+     */
+    public void reactivarBilletera(String numeroBilletera) throws Exception {
+        particionDeBilleteraExistente(numeroBilletera).reactivarBilletera(numeroBilletera);
+    }
+
+    /**
+     * Método que permite cerrar una billetera sin saldo y archivarla en su partición.
+     * @see Banco#cerrarBilletera(String)
+     */
+    public void cerrarBilletera(String numeroBilletera) throws Exception {
+        particionDeBilleteraExistente(numeroBilletera).cerrarBilletera(numeroBilletera);
+    }
+
+    /**
+     * Método que permite consultar una billetera cerrada desde el archivo de su partición.
+     * @see Banco#consultarBilleteraArchivada(String)
+     */
+    public BilleteraVirtual consultarBilleteraArchivada(String numeroBilletera) throws IOException {
+        int indice = indiceDeBilletera(numeroBilletera);
+        return indice < 0 ? null : particiones[indice].consultarBilleteraArchivada(numeroBilletera);
+    }
+
+    /**
+     * Método que permite realizar una transacción en una billetera.
+     * @param numeroBilletera Número de la billetera
+     * @param transaccion Transacción a realizar
+     * @throws Exception Si no se encuentra la billetera, el ID de la transacción ya existe en el banco
+     *                   o la transacción no es válida
+     */
+    public void realizarTransaccion(String numeroBilletera, RegistroTransaccion transaccion) throws Exception {
+        particionDeBilleteraExistente(numeroBilletera).realizarTransaccion(numeroBilletera, transaccion);
+    }
+
+    /**
+     * Método que permite intentar una transacción sin lanzar excepciones por los rechazos esperables.
+     * @see Banco#intentarTransaccion(String, RegistroTransaccion)
+     */
+    public ResultadoTransaccion intentarTransaccion(String numeroBilletera, RegistroTransaccion transaccion) {
+        int indice = indiceDeBilletera(numeroBilletera);
+        return indice < 0
+                ? ResultadoTransaccion.BILLETERA_DESCONOCIDA
+                : particiones[indice].intentarTransaccion(numeroBilletera, transaccion);
+    }
+
+    /**
+     * Método que permite realizar un lote de transacciones, repartiéndolo entre las particiones.
+     * Cada partición aplica su parte como {@link Banco#realizarTransacciones}.
+     * @param numerosBilletera Número de billetera de cada transacción
+     * @param transacciones Transacciones a realizar
+     * @return Resultado de cada transacción, en el orden del lote
+     */
+    public ResultadoLote realizarTransacciones(String[] numerosBilletera, RegistroTransaccion[] transacciones) {
+        if (numerosBilletera == null || transacciones == null) {
+            throw new IllegalArgumentException("Los números de billetera y las transacciones no pueden ser nulos.");
+        }
+        if (numerosBilletera.length != transacciones.length) {
+            throw new IllegalArgumentException("Debe haber un número de billetera por transacción.");
+        }
+
+        // Separar el lote por partición; los números inválidos van a la primera, que los rechaza
+        int[] particionDe = new int[transacciones.length];
+        int[] cantidades = new int[particiones.length];
+        for (int i = 0; i < transacciones.length; i++) {
+            particionDe[i] = Math.max(0, indiceDeBilletera(numerosBilletera[i]));
+            cantidades[particionDe[i]]++;
+        }
+        int[][] posiciones = new int[particiones.length][];
+        for (int p = 0; p < particiones.length; p++) {
+            posiciones[p] = new int[cantidades[p]];
+            cantidades[p] = 0;
+        }
+        for (int i = 0; i < transacciones.length; i++) {
+            posiciones[particionDe[i]][cantidades[particionDe[i]]++] = i;
+        }
+
+        ResultadoLote resultado = new ResultadoLote(transacciones.length);
+        IntStream.range(0, particiones.length).parallel().forEach(p -> {
+            int[] parte = posiciones[p];
+            if (parte.length == 0) {
+                return;
+            }
+            String[] numeros = new String[parte.length];
+            RegistroTransaccion[] transaccionesParte = new RegistroTransaccion[parte.length];
+            for (int k = 0; k < parte.length; k++) {
+                numeros[k] = numerosBilletera[parte[k]];
+                transaccionesParte[k] = transacciones[parte[k]];
+            }
+            ResultadoLote resultadoParte = particiones[p].realizarTransacciones(numeros, transaccionesParte);
+            for (int k = 0; k < parte.length; k++) {
+                resultado.marcar(parte[k], resultadoParte.get(k));
+            }
+        });
+        return resultado;
+    }
+
+    /**
+     * Método que permite consultar una transacción sin conocer su billetera.
+     * @param id ID de la transacción
+     * @return Transacción encontrada
+     * @throws Exception Si no se encuentra una transacción con el ID dado
+     */
+    public RegistroTransaccion consultarTransaccion(String id) throws Exception {
+        // El índice de IDs es compartido, así que cualquier partición la encuentra
+        return particiones[0].consultarTransaccion(id);
+    }
+
+    /**
+     * Método que permite consultar las transacciones de una billetera en un rango de fechas.
+     * @see Banco#consultarTransacciones(String, LocalDateTime, LocalDateTime, Categoria)
+     */
+    public Stream<RegistroTransaccion> consultarTransacciones(String numeroBilletera, LocalDateTime desde,
+                                                              LocalDateTime hasta, Categoria categoria) throws Exception {
+        return particionDeBilleteraExistente(numeroBilletera).consultarTransacciones(numeroBilletera, desde, hasta, categoria);
+    }
+
+    /**
+     * Método que permite transferir dinero entre dos billeteras, estén o no en la misma partición.
+     * @param transferencia Transferencia a realizar
+     * @throws Exception Si alguna billetera no existe, el monto no es válido o no hay saldo suficiente
+     */
+    public void transferir(Transferencia transferencia) throws Exception {
+        if (transferencia == null) {
+            throw new IllegalArgumentException("La transferencia no puede ser nula.");
+        }
+        Banco particionOrigen = particionDeBilleteraExistente(transferencia.getNumeroOrigen());
+        Banco particionDestino = particionDeBilleteraExistente(transferencia.getNumeroDestino());
+        if (particionOrigen == particionDestino) {
+            particionOrigen.transferir(transferencia);
+            return;
+        }
+        if (transferencia.getMontoCentavos() <= 0) {
+            throw new IllegalArgumentException("El monto de la transferencia debe ser positivo.");
+        }
+        ResultadoTransaccion resultado = particionOrigen.intentarTransferencia(transferencia,
+                billeteraExistente(particionOrigen, transferencia.getNumeroOrigen()),
+                particionDestino, billeteraExistente(particionDestino, transferencia.getNumeroDestino()));
+        if (resultado != ResultadoTransaccion.ACEPTADA) {
+            particionOrigen.lanzarRechazo(resultado, transferencia);
+        }
+    }
+
+    /**
+     * Método que permite intentar una transferencia sin lanzar excepciones por los rechazos esperables.
+     * @see Banco#intentarTransferencia(Transferencia)
+     */
+    public ResultadoTransaccion intentarTransferencia(Transferencia transferencia) {
+        if (transferencia == null || transferencia.getMontoCentavos() <= 0) {
+            return ResultadoTransaccion.INVALIDA;
+        }
+        int indiceOrigen = indiceDeBilletera(transferencia.getNumeroOrigen());
+        int indiceDestino = indiceDeBilletera(transferencia.getNumeroDestino());
+        if (indiceOrigen < 0 || indiceDestino < 0) {
+            return ResultadoTransaccion.BILLETERA_DESCONOCIDA;
+        }
+        if (indiceOrigen == indiceDestino) {
+            return particiones[indiceOrigen].intentarTransferencia(transferencia);
+        }
+        BilleteraVirtual origen = particiones[indiceOrigen].getRegistro().buscarBilletera(transferencia.getNumeroOrigen());
+        BilleteraVirtual destino = particiones[indiceDestino].getRegistro().buscarBilletera(transferencia.getNumeroDestino());
+        if (origen == null || destino == null) {
+            return ResultadoTransaccion.BILLETERA_DESCONOCIDA;
+        }
+        return particiones[indiceOrigen].intentarTransferencia(transferencia, origen, particiones[indiceDestino], destino);
+    }
+
+    /**
+     * Método que permite consultar las métricas de todas las particiones juntas.
+     * Las transacciones se cuentan en la partición de su billetera, así ninguna se cuenta dos veces aunque
+     * el índice de IDs sea compartido.
+     * @return Suma de las métricas de cada partición en este momento
+     */
+    public MetricasBanco.Instantanea obtenerMetricas() {
+        MetricasBanco.Instantanea metricas = particiones[0].obtenerMetricas();
+        for (int i = 1; i < particiones.length; i++) {
+            metricas = metricas.sumar(particiones[i].obtenerMetricas());
+        }
+        return metricas;
+    }
+
+    // Método auxiliar que devuelve la partición de un usuario según el hash de su ID
+    private Banco particionDeUsuario(String id) {
+        if (id == null) {
+            return particiones[0];
+        }
+        int h = id.hashCode() * 0x9E3779B9;
+        return particiones[Math.floorMod(h ^ (h >>> 16), particiones.length)];
+    }
+
+    // Método auxiliar que devuelve la posición de la partición de un número de billetera, o -1 si el número no es válido
+    private int indiceDeBilletera(String numeroBilletera) {
+        if (numeroBilletera == null || !GeneradorNumerosPermutado.esValido(numeroBilletera)) {
+            return -1;
+        }
+        return ubicador.nodoDe(numeroBilletera);
+    }
+
+    // Método auxiliar que devuelve la partición de una billetera o lanza una excepción si el número no es válido
+    private Banco particionDeBilleteraExistente(String numeroBilletera) throws Exception {
+        int indice = indiceDeBilletera(numeroBilletera);
+        if (indice < 0) {
+            throw new Exception("No se encontró una billetera con el número: " + numeroBilletera);
+        }
+        return particiones[indice];
+    }
+
+    private static BilleteraVirtual billeteraExistente(Banco particion, String numeroBilletera) throws Exception {
+        BilleteraVirtual billetera = particion.getRegistro().buscarBilletera(numeroBilletera);
+        if (billetera == null) {
+            throw new Exception("No se encontró una billetera con el número: " + numeroBilletera);
+        }
+        return billetera;
+    }
+
+    // Getters
+    public String getNombre() {
+        return nombre;
+    }
+
+    public int getCantidadParticiones() {
+        return particiones.length;
+    }
+
+    // Partición de una posición, por ejemplo para exportarla por separado
+    public Banco getParticion(int indice) {
+        return particiones[indice];
+    }
+}
@@ -1,46 +1,72 @@
-import java.util.ArrayList;
-import java.util.HashSet;
+import java.time.LocalDateTime;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
-import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 public class BilleteraVirtual {
     private String numero; // Número de 10 dígitos
-    private double saldo; // Saldo actual
-    private final double COSTO_ENVIO = 200; // Costo de envío fijo
-    private List<RegistroTransaccion> registroTransacciones; // Lista de transacciones
+    // Saldo en centavos si tabla es null, o la posición del registro de la billetera en la tabla; solo se modifica
+    // con el cerrojo tomado. Un solo campo para los dos usos, así una billetera de la tabla no guarda su saldo en el heap
+    private volatile long celda;
+    private volatile TablaSaldos tabla; // Tabla fuera del heap donde vive el saldo, o null si vive en la celda
+    private volatile long versionSaldo; // Par con el saldo confirmado; impar mientras un cambio está en curso
+    private static final long COSTO_ENVIO = 200 * Dinero.CENTAVOS_POR_UNIDAD; // Costo de envío fijo en centavos
+    private static final long SOLTANDO = Long.MIN_VALUE; // Celda mientras el saldo pasa de la tabla al heap
+    static final long CLAVE_POR_DEFECTO = 0x5EB1_BA4C_0FF1_CE01L; // Clave estable para la permutación de números
+    private volatile HistorialTransacciones historial; // Registro de transacciones por columnas, o null hasta la primera
+    private static final HistorialTransacciones SIN_TRANSACCIONES = new HistorialTransacciones(); // Compartido, nunca se modifica
     private Usuario usuario; // Usuario asociado a la billetera
+    private volatile boolean registrada; // Está en el registro de un banco, que la indexa por número y usuario
+    private volatile EstadoBilletera estado = EstadoBilletera.ACTIVA; // Solo cambia con el cerrojo tomado
+    private volatile ControlLimites limites; // Límites de gasto propios, o null; solo cambia con el cerrojo tomado
+    private volatile ControlLimites limitesUsuario; // Límites compartidos con las billeteras del usuario, o null
+    private static final long[] SIN_LIMITES = new long[0]; // Reserva de una billetera sin límites
 
-    // Conjunto para almacenar números de billetera ya utilizados
-    private static Set<String> numerosUtilizados = new HashSet<>();
+    // Cerrojo propio de la billetera: billeteras distintas operan en paralelo
+    private final ReentrantLock cerrojo = new ReentrantLock();
+
+    // Generador de números usado cuando no se indica otro
+    private static volatile GeneradorNumeros generadorPorDefecto = new GeneradorNumerosPermutado(CLAVE_POR_DEFECTO);
 
     // Constructor
     public BilleteraVirtual(double saldo, Usuario usuario) {
-        this.numero = generarNumeroUnico(); // Generar un número único de 10 dígitos
-        this.saldo = saldo;
-        this.usuario = usuario;
-        this.registroTransacciones = new ArrayList<>();
+        this(generadorPorDefecto.siguiente(), Dinero.desdeDouble(saldo), usuario); // Generar un número único de 10 dígitos
     }
 
-    // Método para generar un número de billetera único de 10 dígitos
-    private String generarNumeroUnico() {
-        String numeroGenerado;
-        do {
-            // Generar un número aleatorio de 10 dígitos
-            long numeroAleatorio = (long) (Math.random() * 9_000_000_000L) + 1_000_000_000L;
-            numeroGenerado = String.valueOf(numeroAleatorio);
-        } while (numerosUtilizados.contains(numeroGenerado)); // Verificar si el número ya está en uso
+    // Constructor con un número ya asignado y el saldo en centavos
+    BilleteraVirtual(String numero, long saldoCentavos, Usuario usuario) {
+        this.numero = numero;
+        this.celda = saldoCentavos;
+        this.usuario = usuario;
+    }
 
-        numerosUtilizados.add(numeroGenerado); // Registrar el número como utilizado
-        return numeroGenerado;
+    // Constructor de una billetera cuyo saldo vive en un registro de una tabla de saldos
+    BilleteraVirtual(String numero, Usuario usuario, TablaSaldos tabla, int ranura) {
+        this.numero = numero;
+        this.celda = ranura;
+        this.tabla = tabla;
+        this.usuario = usuario;
     }
 
     /**
      * Método para consultar el saldo de la billetera.
+     * Es una lectura volátil: no toma el cerrojo, no demora a quienes escriben y siempre ve un saldo confirmado.
      * @return Saldo actual de la billetera
      */
     public double consultarSaldo() {
-        return saldo;
+        return Dinero.aDouble(leerSaldo());
+    }
+
+    /**
+     * Método para consultar el saldo exacto de la billetera.
+     * @return Saldo actual en centavos
+     */
+    public long consultarSaldoCentavos() {
+        return leerSaldo();
     }
 
     /**
@@ -50,33 +76,311 @@ public class BilleteraVirtual {
      * @throws Exception Si no se encuentra una transacción con el ID dado
      */
     public RegistroTransaccion consultarTransaccion(String id) throws Exception {
-        return registroTransacciones
-                .stream()
-                .filter(t -> t.getId().equals(id))
-                .findFirst()
-                .orElseThrow(() -> new Exception("No se encontró una transacción con el ID: " + id));
+        HistorialTransacciones historial = getHistorial();
+        int posicion = historial.buscar(id);
+        if (posicion < 0) {
+            throw new Exception("No se encontró una transacción con el ID: " + id);
+        }
+        return historial.obtener(posicion);
+    }
+
+    /**
+     * Método para consultar las transacciones de un rango de fechas, por ejemplo para un extracto mensual.
+     * Las transacciones se entregan de la más antigua a la más reciente y se construyen a medida que se consumen.
+     * @param desde Inicio del rango, incluido, o null para no acotarlo
+     * @param hasta Fin del rango, excluido, o null para no acotarlo
+     * @return Transacciones del rango
+     */
+    public Stream<RegistroTransaccion> consultarTransacciones(LocalDateTime desde, LocalDateTime hasta) {
+        return getHistorial().enRango(desde, hasta, null);
+    }
+
+    /**
+     * Método para consultar las transacciones de una categoría en un rango de fechas.
+     * @param desde Inicio del rango, incluido, o null para no acotarlo
+     * @param hasta Fin del rango, excluido, o null para no acotarlo
+     * @param categoria Categoría de las transacciones
+     * @return Transacciones del rango con esa categoría
+     */
+    public Stream<RegistroTransaccion> consultarTransacciones(LocalDateTime desde, LocalDateTime hasta, Categoria categoria) {
+        if (categoria == null) {
+            throw new IllegalArgumentException("La categoría no puede ser nula.");
+        }
+        return getHistorial().enRango(desde, hasta, categoria);
     }
 
     /**
      * Método para realizar una transacción.
+     * La verificación de saldo y la actualización se hacen con el cerrojo de la billetera tomado,
+     * por lo que es seguro llamarlo desde varios hilos a la vez.
      * @param transaccion Transacción a realizar
-     * @throws Exception Si la transacción es nula o no hay saldo suficiente
+     * @throws Exception Si la transacción es nula, su ID ya está registrado o no hay saldo suficiente
      */
     public void realizarTransaccion(RegistroTransaccion transaccion) throws Exception {
+        ResultadoTransaccion resultado = intentarTransaccion(transaccion);
+        switch (resultado) {
+            case ACEPTADA -> { }
+            case BILLETERA_INACTIVA -> throw new Exception("La billetera no está activa: " + numero);
+            case ID_DUPLICADO -> throw new Exception("Ya existe una transacción con el ID: " + transaccion.getId());
+            case SALDO_INSUFICIENTE -> throw new Exception("Saldo insuficiente para realizar la transacción.");
+            case LIMITE_EXCEDIDO -> throw new Exception("Se excedió un límite de gasto de la billetera: " + numero);
+            default -> lanzarInvalida(transaccion);
+        }
+    }
+
+    /**
+     * Método para intentar una transacción sin lanzar excepciones por los rechazos esperables.
+     * Un rechazo no construye mensajes ni captura la pila: solo devuelve una constante del enum.
+     * @param transaccion Transacción a realizar
+     * @return ACEPTADA si se aplicó; BILLETERA_INACTIVA, SALDO_INSUFICIENTE, LIMITE_EXCEDIDO, ID_DUPLICADO o
+     *         INVALIDA si no, sin cambiar la billetera
+     */
+    public ResultadoTransaccion intentarTransaccion(RegistroTransaccion transaccion) {
+        if (transaccion == null || transaccion.getId() == null) {
+            return ResultadoTransaccion.INVALIDA;
+        }
+        cerrojo.lock();
+        try {
+            return intentarConCerrojo(transaccion, null);
+        } finally {
+            cerrojo.unlock();
+        }
+    }
+
+    // Método auxiliar que valida y aplica una transacción con ID; requiere el cerrojo tomado. Si se acepta, antes
+    // de modificar la billetera se llama a antesDeAplicar (por ejemplo, para registrarla en el diario); si esa
+    // llamada lanza, la billetera no cambia y la excepción se propaga
+    ResultadoTransaccion intentarConCerrojo(RegistroTransaccion transaccion,
+                                            Consumer<RegistroTransaccion> antesDeAplicar) {
+        // Una billetera congelada o cerrada no admite movimientos
+        if (estado != EstadoBilletera.ACTIVA) {
+            return ResultadoTransaccion.BILLETERA_INACTIVA;
+        }
+
+        // Verificar que el ID no se haya registrado antes, para que reenviar una transacción no la duplique
+        if (getHistorial().buscar(transaccion.getId()) >= 0) {
+            return ResultadoTransaccion.ID_DUPLICADO;
+        }
+
+        // Verificar si es un gasto y si hay saldo suficiente
+        long monto = transaccion.getMontoCentavos();
+        long saldo = leerSaldo();
+        if (monto < 0 && (monto == Long.MIN_VALUE || saldo < -monto)) {
+            return ResultadoTransaccion.SALDO_INSUFICIENTE;
+        }
+
+        // Verificar los límites de gasto; la reserva se devuelve si al final la transacción no se agrega
+        Categoria categoria = transaccion.getCategoria();
+        long[] reserva = reservarLimites(monto, categoria);
+        if (reserva == null) {
+            return ResultadoTransaccion.LIMITE_EXCEDIDO;
+        }
+
+        // Validar la fecha y los totales antes de modificar nada
+        long nuevoSaldo;
+        try {
+            nuevoSaldo = Dinero.sumar(saldo, monto);
+            getHistorial().verificar(transaccion);
+        } catch (ArithmeticException | IllegalArgumentException e) {
+            devolverLimites(reserva, monto, categoria);
+            return ResultadoTransaccion.INVALIDA;
+        }
+        if (antesDeAplicar != null) {
+            try {
+                antesDeAplicar.accept(transaccion);
+            } catch (RuntimeException e) {
+                devolverLimites(reserva, monto, categoria);
+                throw e;
+            }
+        }
+
+        // El cambio abierto cubre el registro y el saldo, para que una lectura consistente los vea juntos
+        abrirCambio();
+        try {
+            historialParaAnotar().agregar(transaccion);
+            escribirSaldo(nuevoSaldo);
+            return ResultadoTransaccion.ACEPTADA;
+        } finally {
+            cerrarCambio();
+        }
+    }
+
+    /**
+     * Método auxiliar que lanza la excepción de una transacción inválida, como la lanzaba la validación original.
+     * Solo se usa en los rechazos, fuera del camino rápido.
+     */
+    static void lanzarInvalida(RegistroTransaccion transaccion) {
         if (transaccion == null) {
             throw new IllegalArgumentException("La transacción no puede ser nula.");
         }
+        if (transaccion.getId() == null) {
+            throw new IllegalArgumentException("El ID de la transacción no puede ser nulo.");
+        }
+        HistorialTransacciones.aNanos(transaccion.getFecha()); // Lanza si la fecha está fuera de rango
+        throw new ArithmeticException("Desbordamiento al sumar montos.");
+    }
 
-        // Verificar si es un gasto y si hay saldo suficiente
-        if (transaccion.getMonto() < 0 && saldo < Math.abs(transaccion.getMonto())) {
-            throw new Exception("Saldo insuficiente para realizar la transacción.");
+    // Método auxiliar que reserva un gasto en los límites de la billetera y de su usuario, o en ninguno si alguno
+    // se excedería. Devuelve los instantes de la reserva, para devolverla, o null si se excedería; requiere el
+    // cerrojo tomado
+    long[] reservarLimites(long monto, Categoria categoria) {
+        ControlLimites propios = limites;
+        ControlLimites deUsuario = limitesUsuario;
+        if (monto >= 0 || (propios == null && deUsuario == null)) {
+            return SIN_LIMITES;
+        }
+        long[] instantes = new long[2];
+        if (propios != null) {
+            instantes[0] = propios.ahora();
+            if (!propios.reservar(instantes[0], monto, categoria)) {
+                return null;
+            }
         }
+        if (deUsuario != null) {
+            instantes[1] = deUsuario.ahora();
+            if (!deUsuario.reservar(instantes[1], monto, categoria)) {
+                if (propios != null) {
+                    propios.devolver(instantes[0], monto, categoria);
+                }
+                return null;
+            }
+        }
+        return instantes;
+    }
+
+    // Método auxiliar que devuelve una reserva de reservarLimites que no se aplicó; requiere el cerrojo tomado
+    void devolverLimites(long[] reserva, long monto, Categoria categoria) {
+        if (reserva.length == 0) {
+            return;
+        }
+        if (limites != null) {
+            limites.devolver(reserva[0], monto, categoria);
+        }
+        if (limitesUsuario != null) {
+            limitesUsuario.devolver(reserva[1], monto, categoria);
+        }
+    }
+
+    // Método auxiliar que aplica una transacción ya validada; requiere el cerrojo tomado. Si el saldo o los totales
+    // desbordarían, lanza sin cambiar nada
+    void aplicar(RegistroTransaccion transaccion) {
+        // Calcular el saldo y agregar la transacción al registro, que valida antes de modificarse
+        long nuevoSaldo = Dinero.sumar(leerSaldo(), transaccion.getMontoCentavos());
+        anotar(transaccion);
 
         // Actualizar el saldo
-        saldo += transaccion.getMonto();
+        escribirSaldo(nuevoSaldo);
+    }
+
+    // Método auxiliar que indica, sin modificar nada, si aplicar una transacción no desbordaría el saldo ni los
+    // totales y su fecha está en rango; requiere el cerrojo tomado
+    boolean puedeAplicar(RegistroTransaccion transaccion) {
+        try {
+            Dinero.sumar(leerSaldo(), transaccion.getMontoCentavos());
+            getHistorial().verificar(transaccion);
+            return true;
+        } catch (ArithmeticException | IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    // Método auxiliar que comprueba, sin modificar nada, que varias transacciones se pueden anotar juntas;
+    // requiere el cerrojo tomado
+    void verificarAnotaciones(RegistroTransaccion[] transacciones, int cantidad) {
+        getHistorial().verificarTodos(transacciones, cantidad);
+    }
+
+    // Método auxiliar que suma un monto en centavos al saldo; requiere el cerrojo tomado
+    void ajustarSaldo(long monto) {
+        escribirSaldo(Dinero.sumar(leerSaldo(), monto));
+    }
+
+    // Método auxiliar que lee el saldo de la celda o de la tabla de saldos. Si soltarTabla está en curso la celda
+    // puede tener ya el saldo y no la posición: el registro leído vale solo si la tabla sigue siendo la misma después
+    private long leerSaldo() {
+        while (true) {
+            TablaSaldos tablaActual = tabla;
+            long valor = celda;
+            if (valor == SOLTANDO) {
+                // Otro hilo está soltando la tabla con el cerrojo tomado; termina enseguida
+                cerrojo.lock();
+                try {
+                    tablaActual = tabla;
+                    return tablaActual == null ? celda : tablaActual.saldoEn((int) celda);
+                } finally {
+                    cerrojo.unlock();
+                }
+            }
+            if (tablaActual == null) {
+                return valor;
+            }
+            if (valor >= 0 && valor < tablaActual.getCapacidad()) {
+                long saldo = tablaActual.saldoEn((int) valor);
+                if (tabla == tablaActual) {
+                    return saldo;
+                }
+            }
+        }
+    }
+
+    // Método auxiliar que escribe el saldo entre dos incrementos de versión, como un seqlock; requiere el cerrojo tomado.
+    // Dentro de un cambio abierto la versión ya es impar y no se toca: incrementarla la dejaría par durante la
+    // escritura y una lectura consistente podría ver el cambio a medias
+    private void escribirSaldo(long nuevoSaldo) {
+        boolean ventanaPropia = (versionSaldo & 1) == 0;
+        if (ventanaPropia) {
+            versionSaldo++;
+        }
+        TablaSaldos tablaActual = tabla;
+        if (tablaActual == null) {
+            celda = nuevoSaldo;
+        } else {
+            tablaActual.escribirSaldo((int) celda, nuevoSaldo);
+        }
+        if (ventanaPropia) {
+            versionSaldo++;
+        }
+    }
+
+    // Método auxiliar que pasa el saldo de la tabla a la celda y libera el registro, por ejemplo al archivar la
+    // billetera; requiere el cerrojo tomado. La marca SOLTANDO evita que una lectura sin cerrojo tome la tabla
+    // como vigente con la celda ya cambiada, y el registro se libera recién cuando nadie puede tomarla
+    void soltarTabla() {
+        TablaSaldos tablaActual = tabla;
+        if (tablaActual != null) {
+            int ranura = (int) celda;
+            long saldo = tablaActual.saldoEn(ranura);
+            celda = SOLTANDO;
+            tabla = null;
+            celda = saldo;
+            tablaActual.quitar(ranura);
+        }
+    }
+
+    // Método auxiliar que marca el inicio de un cambio que abarca varias billeteras, como una transferencia,
+    // para que una lectura de varios saldos no vea el cambio a medias; requiere el cerrojo tomado
+    void abrirCambio() {
+        versionSaldo++;
+    }
+
+    // Método auxiliar que marca el fin de un cambio abierto con abrirCambio; requiere el cerrojo tomado
+    void cerrarCambio() {
+        versionSaldo++;
+    }
+
+    // Versión del saldo y de los totales; no cambia mientras no cambien y es impar durante un cambio
+    long getVersionSaldo() {
+        return versionSaldo;
+    }
+
+    // Método auxiliar que agrega una transacción al registro sin tocar el saldo; requiere el cerrojo tomado
+    void anotar(RegistroTransaccion transaccion) {
+        historialParaAnotar().agregar(transaccion);
+    }
 
-        // Agregar la transacción al registro
-        registroTransacciones.add(transaccion);
+    // Método auxiliar que agrega varias transacciones al registro de una vez sin tocar el saldo; requiere el cerrojo tomado
+    void anotarTodas(RegistroTransaccion[] transacciones, int cantidad) {
+        historialParaAnotar().agregarTodos(transacciones, cantidad);
     }
 
     /**
@@ -85,22 +389,57 @@ public class BilleteraVirtual {
      * @throws Exception Si no hay ingresos registrados
      */
     public double obtenerPorcentajeGastosIngresos() throws Exception {
-        double totalIngresos = 0;
-        double totalGastos = 0;
+        // Los totales se mantienen al registrar cada transacción, así que la consulta es O(1)
+        double porcentaje = getHistorial().porcentajeGastosIngresos();
 
-        for (RegistroTransaccion transaccion : registroTransacciones) {
-            if (transaccion.getMonto() > 0) {
-                totalIngresos += transaccion.getMonto();
-            } else {
-                totalGastos += Math.abs(transaccion.getMonto());
-            }
-        }
-
-        if (totalIngresos == 0) {
+        if (Double.isNaN(porcentaje)) {
             throw new Exception("No hay ingresos registrados para calcular el porcentaje.");
         }
 
-        return (totalGastos / totalIngresos) * 100;
+        return porcentaje;
+    }
+
+    /**
+     * Método para obtener el total de ingresos registrados.
+     * @return Suma de los montos positivos
+     */
+    public double obtenerTotalIngresos() {
+        return Dinero.aDouble(getHistorial().totales()[0]);
+    }
+
+    /**
+     * Método para obtener el total de gastos registrados.
+     * @return Suma de los valores absolutos de los montos negativos
+     */
+    public double obtenerTotalGastos() {
+        return Dinero.aDouble(getHistorial().totales()[1]);
+    }
+
+    /**
+     * Método para obtener el total de ingresos por categoría.
+     * @return Ingresos de cada categoría que tenga movimientos
+     */
+    public Map<Categoria, Double> obtenerIngresosPorCategoria() {
+        return porCategoria(getHistorial().totalesPorCategoria(true));
+    }
+
+    /**
+     * Método para obtener el total de gastos por categoría.
+     * @return Gastos de cada categoría que tenga movimientos
+     */
+    public Map<Categoria, Double> obtenerGastosPorCategoria() {
+        return porCategoria(getHistorial().totalesPorCategoria(false));
+    }
+
+    // Método auxiliar que convierte totales en centavos indexados por ordinal a un mapa por categoría
+    static Map<Categoria, Double> porCategoria(long[] totales) {
+        Map<Categoria, Double> resultado = new EnumMap<>(Categoria.class);
+        for (Categoria categoria : Categoria.values()) {
+            if (totales[categoria.ordinal()] != 0) {
+                resultado.put(categoria, Dinero.aDouble(totales[categoria.ordinal()]));
+            }
+        }
+        return resultado;
     }
 
     // Getters y Setters
@@ -108,38 +447,151 @@ public class BilleteraVirtual {
         return numero;
     }
 
-    public void setNumero(String numero) throws Exception {
+    // Cambia el número; solo antes de registrar la billetera, porque el registro la indexa por número
+    void setNumero(String numero) throws Exception {
         if (numero == null || numero.length() != 10 || !numero.matches("\\d{10}")) {
             throw new Exception("El número de billetera debe tener 10 dígitos.");
         }
+        if (tabla != null) {
+            throw new Exception("El número de una billetera de una tabla de saldos no se puede cambiar.");
+        }
+        if (registrada) {
+            throw new Exception("El número de una billetera registrada no se puede cambiar.");
+        }
         this.numero = numero;
     }
 
     public double getSaldo() {
-        return saldo;
+        return Dinero.aDouble(leerSaldo());
     }
 
     public void setSaldo(double saldo) {
-        this.saldo = saldo;
+        long centavos = Dinero.desdeDouble(saldo);
+        cerrojo.lock();
+        try {
+            escribirSaldo(centavos);
+        } finally {
+            cerrojo.unlock();
+        }
     }
 
     public double getCostoEnvio() {
+        return Dinero.aDouble(COSTO_ENVIO);
+    }
+
+    public long getCostoEnvioCentavos() {
         return COSTO_ENVIO;
     }
 
+    // Vista de solo lectura; las transacciones se agregan con realizarTransaccion
     public List<RegistroTransaccion> getRegistroTransacciones() {
-        return registroTransacciones;
+        return getHistorial().vista();
     }
 
     public void setRegistroTransacciones(List<RegistroTransaccion> registroTransacciones) {
-        this.registroTransacciones = registroTransacciones;
+        HistorialTransacciones nuevo = new HistorialTransacciones();
+        for (RegistroTransaccion transaccion : registroTransacciones) {
+            nuevo.agregar(transaccion);
+        }
+        cerrojo.lock();
+        try {
+            abrirCambio();
+            this.historial = nuevo;
+            cerrarCambio();
+        } finally {
+            cerrojo.unlock();
+        }
+    }
+
+    // Historial de la billetera; una billetera sin transacciones comparte uno vacío, para no reservar sus columnas
+    HistorialTransacciones getHistorial() {
+        HistorialTransacciones actual = historial;
+        return actual == null ? SIN_TRANSACCIONES : actual;
+    }
+
+    // Método auxiliar que crea el historial la primera vez que se le agrega una transacción; requiere el cerrojo tomado
+    private HistorialTransacciones historialParaAnotar() {
+        HistorialTransacciones actual = historial;
+        if (actual == null) {
+            actual = new HistorialTransacciones();
+            historial = actual;
+        }
+        return actual;
+    }
+
+    // Cerrojo de la billetera, para operaciones del banco que involucran varias billeteras
+    ReentrantLock getCerrojo() {
+        return cerrojo;
+    }
+
+    public static GeneradorNumeros getGeneradorPorDefecto() {
+        return generadorPorDefecto;
+    }
+
+    public static void setGeneradorPorDefecto(GeneradorNumeros generador) {
+        if (generador == null) {
+            throw new IllegalArgumentException("El generador de números no puede ser nulo.");
+        }
+        generadorPorDefecto = generador;
     }
 
     public Usuario getUsuario() {
         return usuario;
     }
 
-    public void setUsuario(Usuario usuario) {
+    public EstadoBilletera getEstado() {
+        return estado;
+    }
+
+    // Cambia el estado de la billetera; requiere el cerrojo tomado
+    void setEstado(EstadoBilletera estado) {
+        this.estado = estado;
+    }
+
+    public boolean estaActiva() {
+        return estado == EstadoBilletera.ACTIVA;
+    }
+
+    // Límites de gasto propios de la billetera, o null si no tiene
+    ControlLimites getLimites() {
+        return limites;
+    }
+
+    // Cambia los límites propios; toma el cerrojo para no cambiarlos en medio de una transacción
+    void setLimites(ControlLimites limites) {
+        cerrojo.lock();
+        try {
+            this.limites = limites;
+        } finally {
+            cerrojo.unlock();
+        }
+    }
+
+    // Límites de gasto del usuario, compartidos con sus otras billeteras, o null si no tiene
+    ControlLimites getLimitesUsuario() {
+        return limitesUsuario;
+    }
+
+    // Cambia los límites del usuario; toma el cerrojo para no cambiarlos en medio de una transacción
+    void setLimitesUsuario(ControlLimites limitesUsuario) {
+        cerrojo.lock();
+        try {
+            this.limitesUsuario = limitesUsuario;
+        } finally {
+            cerrojo.unlock();
+        }
+    }
+
+    // Cambia el usuario; solo antes de registrar la billetera, porque el registro la indexa por usuario
+    void setUsuario(Usuario usuario) {
+        if (registrada) {
+            throw new IllegalStateException("No se puede cambiar el usuario de una billetera registrada.");
+        }
         this.usuario = usuario;
     }
+
+    // Lo marca el registro al agregar o quitar la billetera
+    void setRegistrada(boolean registrada) {
+        this.registrada = registrada;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,157 @@
+import java.time.Clock;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Estado de los límites de gasto de una billetera, o de todas las billeteras de un usuario.
+ *
+ * Cada límite lleva un contador de ventana deslizante por cubetas: la ventana se divide en {@code CUBETAS}
+ * tramos iguales, un arreglo circular guarda lo sumado en cada tramo y un total corrido guarda la suma de
+ * todos. Cuando el reloj pasa a un tramo nuevo, las cubetas que salen de la ventana se restan del total y se
+ * reutilizan. Así verificar y sumar cuestan O(1), sin recorrer el registro de transacciones, y la memoria de
+ * cada límite es fija. El precio es la resolución: un movimiento deja de contar entre una ventana menos un
+ * tramo y una ventana después de hecho.
+ *
+ * Reservar verifica todos los límites y suma a todos, o a ninguno, con el cerrojo del control tomado; así
+ * el control de un usuario es correcto aunque sus billeteras operen en paralelo, cada una con su cerrojo.
+ * El cerrojo del control se toma siempre después del de la billetera y nunca al revés.
+ */
+class ControlLimites {
+    static final int CUBETAS = 60;
+
+    private final LimiteGasto[] limites;
+    private final Ventana[] ventanas;
+    private final Clock reloj;
+    private final ReentrantLock cerrojo = new ReentrantLock();
+
+    /**
+     * Constructor con los límites a controlar.
+     * @param limites Límites; no puede estar vacío
+     * @param reloj Reloj con el que avanzan las ventanas
+     */
+    ControlLimites(List<LimiteGasto> limites, Clock reloj) {
+        if (limites == null || limites.isEmpty() || reloj == null) {
+            throw new IllegalArgumentException("Los límites y el reloj no pueden ser nulos ni estar vacíos.");
+        }
+        this.limites = limites.toArray(new LimiteGasto[0]);
+        for (LimiteGasto limite : this.limites) {
+            if (limite == null) {
+                throw new IllegalArgumentException("Los límites no pueden ser nulos.");
+            }
+        }
+        this.ventanas = new Ventana[this.limites.length];
+        for (int i = 0; i < ventanas.length; i++) {
+            ventanas[i] = new Ventana(Math.max(1, this.limites[i].getVentana().toMillis() / CUBETAS));
+        }
+        this.reloj = reloj;
+    }
+
+    // Instante actual en milisegundos, para reservar y devolver con el mismo
+    long ahora() {
+        return reloj.millis();
+    }
+
+    /**
+     * Método que permite reservar un movimiento en todos los límites, si ninguno se excede.
+     * @param ahora Instante del movimiento, de {@link #ahora()}
+     * @param monto Monto en centavos; negativo si es un gasto
+     * @param categoria Categoría del movimiento
+     * @return true si se reservó en todos; false si algún límite se excedería, sin reservar en ninguno
+     */
+    boolean reservar(long ahora, long monto, Categoria categoria) {
+        cerrojo.lock();
+        try {
+            for (int i = 0; i < limites.length; i++) {
+                long valor = limites[i].valorDe(monto, categoria);
+                if (valor != 0) {
+                    ventanas[i].avanzar(ahora);
+                    if (valor > limites[i].getMaximo() - ventanas[i].total) {
+                        return false;
+                    }
+                }
+            }
+            for (int i = 0; i < limites.length; i++) {
+                long valor = limites[i].valorDe(monto, categoria);
+                if (valor != 0) {
+                    ventanas[i].sumar(valor);
+                }
+            }
+            return true;
+        } finally {
+            cerrojo.unlock();
+        }
+    }
+
+    /**
+     * Método que permite devolver un movimiento reservado que al final no se aplicó.
+     * @param ahora Instante con el que se reservó
+     * @param monto Monto en centavos con el que se reservó
+     * @param categoria Categoría con la que se reservó
+     */
+    void devolver(long ahora, long monto, Categoria categoria) {
+        cerrojo.lock();
+        try {
+            for (int i = 0; i < limites.length; i++) {
+                long valor = limites[i].valorDe(monto, categoria);
+                if (valor != 0) {
+                    ventanas[i].restar(ahora, valor);
+                }
+            }
+        } finally {
+            cerrojo.unlock();
+        }
+    }
+
+    // Límites controlados
+    List<LimiteGasto> getLimites() {
+        return List.of(limites);
+    }
+
+    /**
+     * Contador de una ventana deslizante, dividida en cubetas de un tramo fijo.
+     */
+    private static final class Ventana {
+        final long tramo; // Milisegundos de cada cubeta
+        final long[] sumas = new long[CUBETAS];
+        long total; // Suma de las cubetas dentro de la ventana
+        long cubetaActual = Long.MIN_VALUE; // Tramo de la cubeta más reciente, contado desde la época
+
+        Ventana(long tramo) {
+            this.tramo = tramo;
+        }
+
+        // Descarta las cubetas que salieron de la ventana; un reloj que retrocede no mueve la ventana
+        void avanzar(long ahora) {
+            long cubeta = Math.floorDiv(ahora, tramo);
+            if (cubeta <= cubetaActual) {
+                return;
+            }
+            if (cubetaActual == Long.MIN_VALUE || cubeta - cubetaActual >= CUBETAS) {
+                Arrays.fill(sumas, 0);
+                total = 0;
+            } else {
+                for (long salida = cubetaActual + 1; salida <= cubeta; salida++) {
+                    int indice = Math.floorMod(salida, CUBETAS);
+                    total -= sumas[indice];
+                    sumas[indice] = 0;
+                }
+            }
+            cubetaActual = cubeta;
+        }
+
+        void sumar(long valor) {
+            sumas[Math.floorMod(cubetaActual, CUBETAS)] += valor;
+            total += valor;
+        }
+
+        // Resta de la cubeta del instante dado, si sigue dentro de la ventana
+        void restar(long instante, long valor) {
+            long cubeta = Math.min(Math.floorDiv(instante, tramo), cubetaActual);
+            if (cubeta > cubetaActual - CUBETAS) {
+                sumas[Math.floorMod(cubeta, CUBETAS)] -= valor;
+                total -= valor;
+            }
+        }
+    }
+}
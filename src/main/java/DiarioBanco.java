@@ -0,0 +1,435 @@
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.zip.CRC32;
+
+/**
+ * Diario de escritura anticipada del banco: un archivo binario al que solo se agregan eventos.
+ * Cada registro tiene la forma [longitud][tipo][datos][crc32], así la recuperación detecta un final cortado.
+ * Un cambio que abarca varias transacciones, como una transferencia, va en un solo registro TRANSACCIONES:
+ * un final cortado lo descarta entero y nunca deja aplicado solo uno de sus movimientos.
+ *
+ * Los eventos se copian a un búfer en memoria y un hilo de fondo los escribe con {@link FileChannel}.
+ * Mientras ese hilo espera a que termine un fsync, los eventos nuevos se acumulan en el otro búfer y se
+ * sincronizan juntos en la siguiente vuelta (commit en grupo), por lo que un fsync cubre muchos eventos.
+ *
+ * Un registro que no cabe en el búfer, como un lote con decenas de miles de transacciones, se escribe
+ * directamente en el archivo cuando el hilo de fondo terminó con lo anterior.
+ *
+ * Las posiciones que devuelve {@link #registrar} son lógicas y siguen creciendo al rotar de archivo.
+ *
+ * Las esperas usan un {@link ReentrantLock} y no un monitor, así un hilo virtual que espera al disco
+ * libera su hilo de plataforma.
+ */
+public class DiarioBanco implements AutoCloseable {
+    // Tipos de evento
+    static final byte USUARIO_AGREGADO = 1;
+    static final byte USUARIO_ACTUALIZADO = 2;
+    static final byte USUARIO_ELIMINADO = 3;
+    static final byte BILLETERA_CREADA = 4;
+    static final byte TRANSACCION = 5;
+    static final byte BILLETERA_ESTADO = 6;
+    static final byte TRAMO_TRANSFERENCIA = 7; // Un lado de una transferencia con otra partición
+    static final byte TRANSACCIONES = 8; // Varias transacciones que se aplican todas o ninguna, como una transferencia
+
+    static final int TAMANO_BUFER = 1 << 20; // Los registros más largos se escriben directamente, sin pasar por el búfer
+
+    private FileChannel canal;
+    private final boolean sincronizar; // Si es false se escribe sin fsync
+    private ByteBuffer activo = ByteBuffer.allocateDirect(TAMANO_BUFER); // Recibe los eventos nuevos
+    private ByteBuffer respaldo = ByteBuffer.allocateDirect(TAMANO_BUFER); // Lo escribe el hilo de fondo
+    private long posicionBase; // Posición lógica del inicio del búfer activo
+    private volatile long posicionDurable; // Todo lo anterior ya está en disco
+    private boolean rotando;
+    private boolean cerrado;
+    private IOException error;
+
+    private final ReentrantLock cerrojo = new ReentrantLock();
+    private final Condition cambio = cerrojo.newCondition(); // Se avisa ante cualquier cambio de estado
+
+    // Codificación reutilizable; solo se usa con el cerrojo tomado
+    private final BytesEvento bytesEvento = new BytesEvento();
+    private final DataOutputStream salidaEvento = new DataOutputStream(bytesEvento);
+    private final CRC32 crc = new CRC32();
+
+    private final Thread escritor;
+
+    // Constructor: abre el archivo para agregar al final
+    public DiarioBanco(Path archivo, boolean sincronizar) throws IOException {
+        this.canal = abrirCanal(archivo);
+        this.sincronizar = sincronizar;
+        this.escritor = new Thread(this::escribirEnFondo, "diario-banco");
+        this.escritor.setDaemon(true);
+        this.escritor.start();
+    }
+
+    /**
+     * Interfaz para escribir los datos de un evento.
+     */
+    interface Datos {
+        void escribir(DataOutput salida) throws IOException;
+    }
+
+    /**
+     * Método que permite agregar un evento al diario.
+     * El evento queda en memoria; para esperar a que esté en disco se usa {@link #esperarDurable(long)}.
+     * @param tipo Tipo de evento
+     * @param datos Escritor de los datos del evento
+     * @return Posición lógica del final del evento
+     */
+    public long registrar(byte tipo, Datos datos) {
+        cerrojo.lock();
+        try {
+            verificarError();
+            int longitud = codificar(tipo, datos);
+            int tamano = Integer.BYTES + longitud + Integer.BYTES;
+            if (tamano > TAMANO_BUFER) {
+                return escribirDirecto(longitud);
+            }
+            esperarEspacio(tamano);
+            escribirRegistro(activo, bytesEvento.contenido(), longitud);
+            cambio.signalAll(); // Despertar al hilo de fondo
+            return posicionBase + activo.position();
+        } finally {
+            cerrojo.unlock();
+        }
+    }
+
+    // Codifica el tipo y los datos de un evento en bytesEvento; requiere el cerrojo tomado.
+    // Devuelve la longitud codificada
+    private int codificar(byte tipo, Datos datos) {
+        try {
+            bytesEvento.reset();
+            salidaEvento.writeByte(tipo);
+            datos.escribir(salidaEvento);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytesEvento.size();
+    }
+
+    // Escribe en el archivo un registro que no cabe en el búfer, como un lote muy grande, con los datos que quedaron
+    // en bytesEvento; requiere el cerrojo tomado. Espera a que el hilo de fondo haya escrito todo lo anterior, así el
+    // registro queda en orden, y lo deja durable antes de devolver su posición. Mientras tanto los demás eventos esperan
+    private long escribirDirecto(int longitud) {
+        while (rotando || activo.position() > 0 || posicionDurable < posicionBase) {
+            cambio.signalAll();
+            esperar();
+            verificarError();
+        }
+        ByteBuffer registro = ByteBuffer.allocate(Integer.BYTES + longitud + Integer.BYTES);
+        escribirRegistro(registro, bytesEvento.contenido(), longitud);
+        registro.flip();
+        try {
+            while (registro.hasRemaining()) {
+                canal.write(registro);
+            }
+            if (sincronizar) {
+                canal.force(false);
+            }
+        } catch (IOException e) {
+            error = e;
+            cambio.signalAll();
+            throw new UncheckedIOException("El diario no pudo escribir en disco.", e);
+        }
+        posicionBase += registro.limit();
+        posicionDurable = posicionBase;
+        cambio.signalAll();
+        return posicionBase;
+    }
+
+    // Espera a que el búfer activo tenga lugar para un tamaño y no se esté rotando el archivo; requiere el cerrojo
+    private void esperarEspacio(int tamano) {
+        while (rotando || activo.remaining() < tamano) {
+            cambio.signalAll();
+            esperar();
+            verificarError();
+        }
+    }
+
+    // Escribe un registro [longitud][contenido][crc32] en un búfer; requiere el cerrojo tomado
+    private void escribirRegistro(ByteBuffer destino, byte[] contenido, int longitud) {
+        crc.reset();
+        crc.update(contenido, 0, longitud);
+        destino.putInt(longitud);
+        destino.put(contenido, 0, longitud);
+        destino.putInt((int) crc.getValue());
+    }
+
+    /**
+     * Método que permite esperar a que una posición del diario esté escrita (y sincronizada, si corresponde).
+     * @param posicion Posición devuelta por registrar
+     */
+    public void esperarDurable(long posicion) {
+        if (posicionDurable >= posicion) {
+            return;
+        }
+        cerrojo.lock();
+        try {
+            while (posicionDurable < posicion) {
+                verificarError();
+                cambio.signalAll(); // Despertar al hilo de fondo
+                esperar();
+            }
+        } finally {
+            cerrojo.unlock();
+        }
+    }
+
+    /**
+     * Método que permite pasar a escribir en otro archivo.
+     * Todo lo registrado antes queda escrito y sincronizado en el archivo anterior.
+     * @param nuevoArchivo Archivo nuevo del diario
+     * @throws IOException Si no se puede cerrar el anterior o abrir el nuevo
+     */
+    public void rotar(Path nuevoArchivo) throws IOException {
+        cerrojo.lock();
+        try {
+            while (rotando) {
+                esperar();
+            }
+            rotando = true;
+            try {
+                long objetivo = posicionBase + activo.position();
+                while (posicionDurable < objetivo) {
+                    verificarError();
+                    cambio.signalAll();
+                    esperar();
+                }
+                canal.force(true);
+                canal.close();
+                canal = abrirCanal(nuevoArchivo);
+            } finally {
+                rotando = false;
+                cambio.signalAll();
+            }
+        } finally {
+            cerrojo.unlock();
+        }
+    }
+
+    // Posición lógica del final del último evento registrado
+    public long posicion() {
+        cerrojo.lock();
+        try {
+            return posicionBase + activo.position();
+        } finally {
+            cerrojo.unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        cerrojo.lock();
+        try {
+            if (cerrado) {
+                return;
+            }
+            cerrado = true;
+            cambio.signalAll();
+        } finally {
+            cerrojo.unlock();
+        }
+        try {
+            escritor.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        canal.close();
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    // Ciclo del hilo de fondo: intercambia los búferes y escribe el que se llenó
+    private void escribirEnFondo() {
+        while (true) {
+            ByteBuffer lote;
+            long fin;
+            FileChannel destino;
+            cerrojo.lock();
+            try {
+                while (activo.position() == 0 && !cerrado) {
+                    esperar();
+                }
+                if (activo.position() == 0) {
+                    return; // Cerrado y sin pendientes
+                }
+                lote = activo;
+                activo = respaldo;
+                respaldo = lote;
+                fin = posicionBase + lote.position();
+                posicionBase = fin;
+                destino = canal;
+                cambio.signalAll(); // Hay espacio para los que esperaban
+            } finally {
+                cerrojo.unlock();
+            }
+            try {
+                lote.flip();
+                while (lote.hasRemaining()) {
+                    destino.write(lote);
+                }
+                if (sincronizar) {
+                    destino.force(false);
+                }
+                lote.clear();
+            } catch (IOException e) {
+                cerrojo.lock();
+                try {
+                    error = e;
+                    cambio.signalAll();
+                } finally {
+                    cerrojo.unlock();
+                }
+                return;
+            }
+            cerrojo.lock();
+            try {
+                posicionDurable = fin;
+                cambio.signalAll();
+            } finally {
+                cerrojo.unlock();
+            }
+        }
+    }
+
+    // Búfer de codificación que expone su arreglo interno para no copiarlo en cada evento
+    private static final class BytesEvento extends ByteArrayOutputStream {
+        BytesEvento() {
+            super(256);
+        }
+
+        byte[] contenido() {
+            return buf;
+        }
+    }
+
+    // Espera un aviso o, como mucho, 10 ms; requiere el cerrojo tomado
+    private void esperar() {
+        try {
+            cambio.await(10, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Se interrumpió la espera del diario.", e);
+        }
+    }
+
+    private void verificarError() {
+        if (error != null) {
+            throw new UncheckedIOException("El diario no pudo escribir en disco.", error);
+        }
+        if (cerrado) {
+            throw new IllegalStateException("El diario está cerrado.");
+        }
+    }
+
+    private static FileChannel abrirCanal(Path archivo) throws IOException {
+        return FileChannel.open(archivo, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    // Escribe un texto que puede ser nulo
+    static void escribirTexto(DataOutput salida, String texto) throws IOException {
+        salida.writeBoolean(texto != null);
+        if (texto != null) {
+            salida.writeUTF(texto);
+        }
+    }
+
+    // Lee un texto escrito con escribirTexto
+    static String leerTexto(DataInput entrada) throws IOException {
+        return entrada.readBoolean() ? entrada.readUTF() : null;
+    }
+
+    // Escribe los datos de un usuario
+    static void escribirUsuario(DataOutput salida, Usuario usuario) throws IOException {
+        escribirTexto(salida, usuario.getId());
+        escribirTexto(salida, usuario.getNombre());
+        escribirTexto(salida, usuario.getDireccion());
+        escribirTexto(salida, usuario.getCorreo());
+        escribirTexto(salida, usuario.getContraseña());
+        salida.writeBoolean(usuario.isEstado());
+    }
+
+    // Lee un usuario escrito con escribirUsuario
+    static Usuario leerUsuario(DataInput entrada) throws IOException {
+        String id = leerTexto(entrada);
+        String nombre = leerTexto(entrada);
+        String direccion = leerTexto(entrada);
+        String correo = leerTexto(entrada);
+        String contraseña = leerTexto(entrada);
+        boolean estado = entrada.readBoolean();
+        return new Usuario(nombre, direccion, id, correo, contraseña, estado);
+    }
+
+    // Escribe una transacción; la fecha se guarda en nanosegundos y la categoría como ordinal
+    static void escribirTransaccion(DataOutput salida, RegistroTransaccion transaccion) throws IOException {
+        escribirTexto(salida, transaccion.getId());
+        salida.writeLong(HistorialTransacciones.aNanos(transaccion.getFecha()));
+        salida.writeLong(transaccion.getMontoCentavos());
+        escribirTexto(salida, transaccion.getTitular());
+        salida.writeByte(transaccion.getCategoria() == null ? -1 : transaccion.getCategoria().ordinal());
+    }
+
+    // Escribe varias transacciones, cada una con el número de su billetera, como datos de un solo evento
+    static void escribirTransacciones(DataOutput salida, String[] numeros, RegistroTransaccion[] transacciones,
+                                      int cantidad) throws IOException {
+        salida.writeInt(cantidad);
+        for (int i = 0; i < cantidad; i++) {
+            escribirTexto(salida, numeros[i]);
+            escribirTransaccion(salida, transacciones[i]);
+        }
+    }
+
+    // Lee una transacción escrita con escribirTransaccion
+    static RegistroTransaccion leerTransaccion(DataInput entrada) throws IOException {
+        String id = leerTexto(entrada);
+        long fecha = entrada.readLong();
+        long monto = entrada.readLong();
+        String titular = leerTexto(entrada);
+        byte categoria = entrada.readByte();
+        return RegistroTransaccion.conCentavos(id, HistorialTransacciones.aFecha(fecha), monto, titular,
+                categoria < 0 ? null : Categoria.values()[categoria]);
+    }
+
+    // Escribe una billetera con su historial; requiere el cerrojo de la billetera tomado
+    static void escribirBilletera(DataOutput salida, BilleteraVirtual billetera) throws IOException {
+        HistorialTransacciones historial = billetera.getHistorial();
+        escribirTexto(salida, billetera.getNumero());
+        escribirTexto(salida, billetera.getUsuario() == null ? null : billetera.getUsuario().getId());
+        salida.writeLong(billetera.consultarSaldoCentavos());
+        salida.writeInt(historial.tamano());
+        for (int i = 0; i < historial.tamano(); i++) {
+            escribirTexto(salida, historial.idEn(i));
+            salida.writeLong(historial.fechaEn(i));
+            salida.writeLong(historial.montoEn(i));
+            escribirTexto(salida, historial.titularEn(i));
+            Categoria categoria = historial.categoriaEn(i);
+            salida.writeByte(categoria == null ? -1 : categoria.ordinal());
+        }
+    }
+
+    // Lee una billetera escrita con escribirBilletera; su usuario se busca por ID
+    static BilleteraVirtual leerBilletera(DataInput entrada, Function<String, Usuario> buscarUsuario) throws IOException {
+        String numero = leerTexto(entrada);
+        String idUsuario = leerTexto(entrada);
+        BilleteraVirtual billetera = new BilleteraVirtual(numero, entrada.readLong(),
+                idUsuario == null ? null : buscarUsuario.apply(idUsuario));
+        int transacciones = entrada.readInt();
+        for (int i = 0; i < transacciones; i++) {
+            billetera.anotar(leerTransaccion(entrada));
+        }
+        return billetera;
+    }
+}
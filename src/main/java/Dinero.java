@@ -0,0 +1,84 @@
+/**
+ * Operaciones sobre montos de dinero representados como centavos en un long.
+ * Usar enteros en lugar de double hace que los saldos sean exactos sin importar cuántas
+ * transacciones se sumen, y las operaciones no crean objetos.
+ */
+public final class Dinero {
+    public static final long CENTAVOS_POR_UNIDAD = 100;
+
+    // Mayor monto en unidades que se puede convertir a centavos sin desbordar
+    private static final double MAXIMO_UNIDADES = Long.MAX_VALUE / (double) CENTAVOS_POR_UNIDAD;
+
+    private Dinero() {
+    }
+
+    /**
+     * Método que permite convertir un monto expresado en unidades a centavos.
+     * @param monto Monto en unidades, por ejemplo 12.34
+     * @return Monto en centavos, redondeado al centavo más cercano
+     * @throws IllegalArgumentException Si el monto no es un número finito o no cabe en un long
+     */
+    public static long desdeDouble(double monto) {
+        if (Double.isNaN(monto) || Math.abs(monto) >= MAXIMO_UNIDADES) {
+            throw new IllegalArgumentException("El monto no es válido: " + monto);
+        }
+        return Math.round(monto * CENTAVOS_POR_UNIDAD);
+    }
+
+    /**
+     * Método que permite convertir centavos a un monto en unidades.
+     * @param centavos Monto en centavos
+     * @return Monto en unidades
+     */
+    public static double aDouble(long centavos) {
+        return (double) centavos / CENTAVOS_POR_UNIDAD;
+    }
+
+    /**
+     * Método que permite sumar dos montos comprobando el desbordamiento.
+     * @throws ArithmeticException Si el resultado no cabe en un long
+     */
+    public static long sumar(long a, long b) {
+        long resultado = a + b;
+        if (((a ^ resultado) & (b ^ resultado)) < 0) {
+            throw new ArithmeticException("Desbordamiento al sumar montos.");
+        }
+        return resultado;
+    }
+
+    /**
+     * Método que permite restar dos montos comprobando el desbordamiento.
+     * @throws ArithmeticException Si el resultado no cabe en un long
+     */
+    public static long restar(long a, long b) {
+        long resultado = a - b;
+        if (((a ^ b) & (a ^ resultado)) < 0) {
+            throw new ArithmeticException("Desbordamiento al restar montos.");
+        }
+        return resultado;
+    }
+
+    /**
+     * Método que permite obtener el valor absoluto de un monto comprobando el desbordamiento.
+     * @throws ArithmeticException Si el monto es Long.MIN_VALUE
+     */
+    public static long absoluto(long centavos) {
+        if (centavos == Long.MIN_VALUE) {
+            throw new ArithmeticException("Desbordamiento al obtener el valor absoluto de un monto.");
+        }
+        return Math.abs(centavos);
+    }
+
+    /**
+     * Método que permite mostrar un monto con dos decimales.
+     * @param centavos Monto en centavos
+     * @return Texto como "-12.05"
+     */
+    public static String formatear(long centavos) {
+        String signo = centavos < 0 ? "-" : "";
+        long valor = Math.abs(centavos);
+        long unidades = Long.divideUnsigned(valor, CENTAVOS_POR_UNIDAD);
+        long resto = Long.remainderUnsigned(valor, CENTAVOS_POR_UNIDAD);
+        return signo + Long.toUnsignedString(unidades) + (resto < 10 ? ".0" : ".") + resto;
+    }
+}
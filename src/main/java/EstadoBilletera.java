@@ -0,0 +1,10 @@
+/**
+ * Estados del ciclo de vida de una billetera.
+ * Una billetera activa admite movimientos; una congelada los rechaza hasta que se reactiva; una cerrada
+ * no vuelve a usarse y se archiva fuera de la memoria del banco.
+ */
+public enum EstadoBilletera {
+    ACTIVA,
+    CONGELADA,
+    CERRADA
+}
@@ -0,0 +1,117 @@
+import java.time.LocalDateTime;
+
+/**
+ * Evento de dominio del banco publicado en un {@link FlujoEventos}: un cambio de usuario, la creación de una
+ * billetera o el resultado de una transacción.
+ *
+ * Los eventos son las ranuras del anillo del flujo y se reutilizan: publicar copia los datos en una ranura
+ * sin crear objetos. Un consumidor recibe una copia propia que solo es válida durante la llamada a su
+ * manejador; si necesita guardarla, debe copiar los datos que use.
+ */
+public class EventoBanco {
+
+    /**
+     * Tipos de evento.
+     */
+    public enum Tipo {
+        USUARIO_AGREGADO, USUARIO_ACTUALIZADO, USUARIO_ELIMINADO, BILLETERA_CREADA, TRANSACCION
+    }
+
+    private long secuencia;
+    private Tipo tipo;
+    private String idUsuario; // null en las transacciones
+    private String numeroBilletera; // null en los eventos de usuario
+    private String idTransaccion;
+    private LocalDateTime fecha;
+    private long montoCentavos;
+    private Categoria categoria;
+    private ResultadoTransaccion resultado; // null si no es una transacción
+    private long saldoCentavos; // Saldo después del evento, en las billeteras creadas y las transacciones aceptadas
+
+    // Constructor de una ranura vacía
+    EventoBanco() {
+    }
+
+    // Método auxiliar que llena el evento; lo usa el flujo al publicar
+    void llenar(long secuencia, Tipo tipo, String idUsuario, String numeroBilletera, RegistroTransaccion transaccion,
+                ResultadoTransaccion resultado, long saldoCentavos) {
+        this.secuencia = secuencia;
+        this.tipo = tipo;
+        this.idUsuario = idUsuario;
+        this.numeroBilletera = numeroBilletera;
+        this.idTransaccion = transaccion == null ? null : transaccion.getId();
+        this.fecha = transaccion == null ? null : transaccion.getFecha();
+        this.montoCentavos = transaccion == null ? 0 : transaccion.getMontoCentavos();
+        this.categoria = transaccion == null ? null : transaccion.getCategoria();
+        this.resultado = resultado;
+        this.saldoCentavos = saldoCentavos;
+    }
+
+    // Método auxiliar que copia otro evento en este; lo usa un consumidor al leer una ranura
+    void copiar(EventoBanco otro) {
+        this.secuencia = otro.secuencia;
+        this.tipo = otro.tipo;
+        this.idUsuario = otro.idUsuario;
+        this.numeroBilletera = otro.numeroBilletera;
+        this.idTransaccion = otro.idTransaccion;
+        this.fecha = otro.fecha;
+        this.montoCentavos = otro.montoCentavos;
+        this.categoria = otro.categoria;
+        this.resultado = otro.resultado;
+        this.saldoCentavos = otro.saldoCentavos;
+    }
+
+    // Getters
+    public long getSecuencia() {
+        return secuencia;
+    }
+
+    public Tipo getTipo() {
+        return tipo;
+    }
+
+    public String getIdUsuario() {
+        return idUsuario;
+    }
+
+    public String getNumeroBilletera() {
+        return numeroBilletera;
+    }
+
+    public String getIdTransaccion() {
+        return idTransaccion;
+    }
+
+    public LocalDateTime getFecha() {
+        return fecha;
+    }
+
+    public long getMontoCentavos() {
+        return montoCentavos;
+    }
+
+    public Categoria getCategoria() {
+        return categoria;
+    }
+
+    public ResultadoTransaccion getResultado() {
+        return resultado;
+    }
+
+    public long getSaldoCentavos() {
+        return saldoCentavos;
+    }
+
+    @Override
+    public String toString() {
+        return "EventoBanco{" +
+                "secuencia=" + secuencia +
+                ", tipo=" + tipo +
+                (idUsuario != null ? ", idUsuario='" + idUsuario + '\'' : "") +
+                (numeroBilletera != null ? ", numeroBilletera='" + numeroBilletera + '\'' : "") +
+                (tipo == Tipo.TRANSACCION ? ", idTransaccion='" + idTransaccion + '\'' +
+                        ", monto=" + Dinero.formatear(montoCentavos) + ", categoria=" + categoria +
+                        ", resultado=" + resultado : "") +
+                '}';
+    }
+}
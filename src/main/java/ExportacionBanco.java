@@ -0,0 +1,491 @@
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Exportación de un banco tal como estaba en un momento dado.
+ * Al crearla se guarda, para cada billetera, su saldo y cuántas transacciones tenía; como los registros
+ * solo crecen, después se pueden recorrer esas transacciones sin bloquear a nadie mientras el banco sigue
+ * operando, y lo que se agregue más tarde no aparece en la exportación.
+ * El corte es el mismo instante para todas las billeteras: se lee con {@link Banco#leerConsistente}, así una
+ * transferencia entre dos billeteras aparece completa o no aparece. Los datos de los usuarios y el titular de
+ * cada billetera también se copian al crearla.
+ *
+ * Las filas se recorren con un cursor, que es simplemente su número dentro de la exportación, así se pueden
+ * pedir por páginas o escribir por tramos. La escritura va directo al destino con un búfer de tamaño fijo,
+ * por lo que la memoria no depende de la cantidad de transacciones.
+ */
+public class ExportacionBanco {
+    private static final int MAGICO = 0x42455850; // "BEXP"
+    private static final int VERSION = 1;
+    private static final int TAMANO_BUFER = 1 << 16;
+
+    /**
+     * Formatos de exportación.
+     * En CSV los montos van con dos decimales y las fechas en ISO-8601; en binario los montos van en centavos,
+     * las fechas en nanosegundos desde la época y los textos como en el diario del banco.
+     */
+    public enum Formato {
+        CSV,
+        BINARIO
+    }
+
+    private final Usuario[] usuarios;
+    private final BilleteraVirtual[] billeteras;
+    private final String[] idsUsuario;
+    private final HistorialTransacciones[] historiales;
+    private final long[] saldos;
+    private final long[] primeraTransaccion; // Cursor de la primera transacción de cada billetera; el último es el total
+
+    // Constructor: toma el corte del banco
+    ExportacionBanco(RegistroBanco registro) {
+        this.usuarios = registro.copiarUsuarios().stream().map(ExportacionBanco::copiar).toArray(Usuario[]::new);
+        List<BilleteraVirtual> lista = registro.copiarBilleteras();
+        this.billeteras = lista.toArray(new BilleteraVirtual[0]);
+        this.idsUsuario = new String[billeteras.length];
+        this.historiales = new HistorialTransacciones[billeteras.length];
+        this.saldos = new long[billeteras.length];
+        this.primeraTransaccion = new long[billeteras.length + 1];
+        int[] cantidades = new int[billeteras.length];
+        Banco.leerConsistente(lista, (i, billetera) -> {
+            historiales[i] = billetera.getHistorial();
+            saldos[i] = billetera.consultarSaldoCentavos();
+            cantidades[i] = historiales[i].tamano();
+        });
+        for (int i = 0; i < billeteras.length; i++) {
+            idsUsuario[i] = billeteras[i].getUsuario() == null ? null : billeteras[i].getUsuario().getId();
+            primeraTransaccion[i + 1] = primeraTransaccion[i] + cantidades[i];
+        }
+    }
+
+    // Método auxiliar que copia los datos de un usuario, sin la contraseña
+    private static Usuario copiar(Usuario usuario) {
+        return new Usuario(usuario.getNombre(), usuario.getDireccion(), usuario.getId(), usuario.getCorreo(), null,
+                usuario.isEstado());
+    }
+
+    /**
+     * Página de filas y cursor para pedir la siguiente.
+     */
+    public static final class Pagina<T> {
+        private final List<T> elementos;
+        private final long siguienteCursor;
+
+        Pagina(List<T> elementos, long siguienteCursor) {
+            this.elementos = elementos;
+            this.siguienteCursor = siguienteCursor;
+        }
+
+        public List<T> getElementos() {
+            return elementos;
+        }
+
+        // Cursor de la página siguiente, o -1 si esta es la última
+        public long getSiguienteCursor() {
+            return siguienteCursor;
+        }
+    }
+
+    /**
+     * Billetera tal como estaba al crear la exportación.
+     */
+    public static final class FilaBilletera {
+        private final String numero;
+        private final String idUsuario;
+        private final long saldoCentavos;
+
+        FilaBilletera(String numero, String idUsuario, long saldoCentavos) {
+            this.numero = numero;
+            this.idUsuario = idUsuario;
+            this.saldoCentavos = saldoCentavos;
+        }
+
+        public String getNumero() {
+            return numero;
+        }
+
+        public String getIdUsuario() {
+            return idUsuario;
+        }
+
+        public long getSaldoCentavos() {
+            return saldoCentavos;
+        }
+    }
+
+    /**
+     * Transacción junto con la billetera que la contiene.
+     */
+    public static final class FilaTransaccion {
+        private final String numeroBilletera;
+        private final RegistroTransaccion transaccion;
+
+        FilaTransaccion(String numeroBilletera, RegistroTransaccion transaccion) {
+            this.numeroBilletera = numeroBilletera;
+            this.transaccion = transaccion;
+        }
+
+        public String getNumeroBilletera() {
+            return numeroBilletera;
+        }
+
+        public RegistroTransaccion getTransaccion() {
+            return transaccion;
+        }
+    }
+
+    // Cantidades de filas de la exportación
+    public int cantidadUsuarios() {
+        return usuarios.length;
+    }
+
+    public int cantidadBilleteras() {
+        return billeteras.length;
+    }
+
+    public long cantidadTransacciones() {
+        return primeraTransaccion[billeteras.length];
+    }
+
+    /**
+     * Método que permite obtener una página de usuarios, copiados al crear la exportación y sin contraseña.
+     * @param cursor Cursor de la primera fila (0 para empezar)
+     * @param limite Cantidad máxima de filas
+     * @return Página de usuarios
+     */
+    public Pagina<Usuario> paginaUsuarios(long cursor, int limite) {
+        int fin = (int) finDePagina(cursor, limite, usuarios.length);
+        return new Pagina<>(List.of(Arrays.copyOfRange(usuarios, (int) cursor, fin)), siguiente(fin, usuarios.length));
+    }
+
+    /**
+     * Método que permite obtener una página de billeteras.
+     * @param cursor Cursor de la primera fila (0 para empezar)
+     * @param limite Cantidad máxima de filas
+     * @return Página de billeteras
+     */
+    public Pagina<FilaBilletera> paginaBilleteras(long cursor, int limite) {
+        int fin = (int) finDePagina(cursor, limite, billeteras.length);
+        List<FilaBilletera> filas = new ArrayList<>(fin - (int) cursor);
+        for (int i = (int) cursor; i < fin; i++) {
+            filas.add(new FilaBilletera(billeteras[i].getNumero(), idsUsuario[i], saldos[i]));
+        }
+        return new Pagina<>(filas, siguiente(fin, billeteras.length));
+    }
+
+    /**
+     * Método que permite obtener una página de transacciones de todas las billeteras.
+     * Las transacciones van agrupadas por billetera y, dentro de cada una, en el orden en que se registraron.
+     * @param cursor Cursor de la primera fila (0 para empezar)
+     * @param limite Cantidad máxima de filas
+     * @return Página de transacciones
+     */
+    public Pagina<FilaTransaccion> paginaTransacciones(long cursor, int limite) {
+        long total = cantidadTransacciones();
+        long fin = finDePagina(cursor, limite, total);
+        List<FilaTransaccion> filas = new ArrayList<>((int) (fin - cursor));
+        recorrerTransacciones(cursor, fin, (billetera, posicion) -> filas.add(
+                new FilaTransaccion(billeteras[billetera].getNumero(), historiales[billetera].obtener(posicion))));
+        return new Pagina<>(filas, siguiente(fin, total));
+    }
+
+    /**
+     * Método que permite escribir todos los usuarios. La contraseña no se exporta.
+     * @param salida Destino; se vacía el búfer pero no se cierra
+     * @param formato Formato de exportación
+     */
+    public void exportarUsuarios(OutputStream salida, Formato formato) throws IOException {
+        EscritorFilas escritor = crearEscritor(salida, formato, 'U', usuarios.length,
+                "id", "nombre", "direccion", "correo", "estado");
+        for (Usuario usuario : usuarios) {
+            escritor.texto(usuario.getId());
+            escritor.texto(usuario.getNombre());
+            escritor.texto(usuario.getDireccion());
+            escritor.texto(usuario.getCorreo());
+            escritor.logico(usuario.isEstado());
+            escritor.finFila();
+        }
+        escritor.terminar();
+    }
+
+    /**
+     * Método que permite escribir todas las billeteras con su saldo al crear la exportación.
+     * @param salida Destino; se vacía el búfer pero no se cierra
+     * @param formato Formato de exportación
+     */
+    public void exportarBilleteras(OutputStream salida, Formato formato) throws IOException {
+        EscritorFilas escritor = crearEscritor(salida, formato, 'B', billeteras.length,
+                "numero", "idUsuario", "saldo");
+        for (int i = 0; i < billeteras.length; i++) {
+            escritor.texto(billeteras[i].getNumero());
+            escritor.texto(idsUsuario[i]);
+            escritor.monto(saldos[i]);
+            escritor.finFila();
+        }
+        escritor.terminar();
+    }
+
+    /**
+     * Método que permite escribir todas las transacciones.
+     * @param salida Destino; se vacía el búfer pero no se cierra
+     * @param formato Formato de exportación
+     */
+    public void exportarTransacciones(OutputStream salida, Formato formato) throws IOException {
+        exportarTransacciones(salida, formato, 0, cantidadTransacciones());
+    }
+
+    /**
+     * Método que permite escribir un tramo de las transacciones, por ejemplo para repartir una exportación
+     * grande en varios archivos.
+     * @param salida Destino; se vacía el búfer pero no se cierra
+     * @param formato Formato de exportación
+     * @param cursor Cursor de la primera fila
+     * @param limite Cantidad máxima de filas
+     * @return Cursor de la fila siguiente, o -1 si se escribió hasta el final
+     */
+    public long exportarTransacciones(OutputStream salida, Formato formato, long cursor, long limite) throws IOException {
+        long total = cantidadTransacciones();
+        long fin = finDePagina(cursor, limite, total);
+        EscritorFilas escritor = crearEscritor(salida, formato, 'T', fin - cursor,
+                "numeroBilletera", "id", "fecha", "monto", "titular", "categoria");
+        try {
+            recorrerTransacciones(cursor, fin, (billetera, posicion) -> {
+                HistorialTransacciones historial = historiales[billetera];
+                Categoria categoria = historial.categoriaEn(posicion);
+                escritor.texto(billeteras[billetera].getNumero());
+                escritor.texto(historial.idEn(posicion));
+                escritor.fecha(historial.fechaEn(posicion));
+                escritor.monto(historial.montoEn(posicion));
+                escritor.texto(historial.titularEn(posicion));
+                escritor.texto(categoria == null ? null : categoria.name());
+                escritor.finFila();
+            });
+        } catch (EscrituraFallida e) {
+            throw e.causa;
+        }
+        escritor.terminar();
+        return siguiente(fin, total);
+    }
+
+    /**
+     * Método que permite escribir las transacciones en un canal, por ejemplo un archivo o un socket.
+     * @param canal Destino; no se cierra
+     * @param formato Formato de exportación
+     */
+    public void exportarTransacciones(WritableByteChannel canal, Formato formato) throws IOException {
+        exportarTransacciones(Channels.newOutputStream(canal), formato);
+    }
+
+    // Acción sobre una transacción, dada por la posición de su billetera y su posición en el registro
+    private interface AccionTransaccion {
+        void aplicar(int billetera, int posicion) throws IOException;
+    }
+
+    // Método auxiliar que recorre las transacciones entre dos cursores
+    private void recorrerTransacciones(long desde, long hasta, AccionTransaccion accion) {
+        if (desde >= hasta) {
+            return;
+        }
+        // Billetera de la primera fila: la última cuyo primer cursor no pasa de "desde"
+        int billetera = Arrays.binarySearch(primeraTransaccion, desde);
+        if (billetera < 0) {
+            billetera = -billetera - 2;
+        }
+        while (primeraTransaccion[billetera + 1] <= desde) {
+            billetera++; // Saltar billeteras sin transacciones
+        }
+        long cursor = desde;
+        while (cursor < hasta) {
+            int posicion = (int) (cursor - primeraTransaccion[billetera]);
+            int fin = (int) (Math.min(hasta, primeraTransaccion[billetera + 1]) - primeraTransaccion[billetera]);
+            for (; posicion < fin; posicion++) {
+                try {
+                    accion.aplicar(billetera, posicion);
+                } catch (IOException e) {
+                    throw new EscrituraFallida(e);
+                }
+            }
+            cursor = primeraTransaccion[billetera] + fin;
+            billetera++;
+        }
+    }
+
+    // Lleva un error de escritura a través de recorrerTransacciones
+    private static final class EscrituraFallida extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        final IOException causa;
+
+        EscrituraFallida(IOException causa) {
+            super(causa);
+            this.causa = causa;
+        }
+    }
+
+    private static long finDePagina(long cursor, long limite, long total) {
+        if (cursor < 0 || cursor > total) {
+            throw new IllegalArgumentException("El cursor no es válido: " + cursor);
+        }
+        if (limite < 0) {
+            throw new IllegalArgumentException("El límite no puede ser negativo.");
+        }
+        return cursor + Math.min(limite, total - cursor);
+    }
+
+    private static long siguiente(long fin, long total) {
+        return fin == total ? -1 : fin;
+    }
+
+    // Escribe las filas de una exportación en un formato
+    private interface EscritorFilas {
+        void texto(String texto) throws IOException;
+
+        void monto(long centavos) throws IOException;
+
+        void fecha(long nanos) throws IOException;
+
+        void logico(boolean valor) throws IOException;
+
+        void finFila() throws IOException;
+
+        void terminar() throws IOException;
+    }
+
+    private static EscritorFilas crearEscritor(OutputStream salida, Formato formato, char tipo, long filas,
+                                              String... columnas) throws IOException {
+        if (salida == null || formato == null) {
+            throw new IllegalArgumentException("La salida y el formato no pueden ser nulos.");
+        }
+        return formato == Formato.CSV ? new EscritorCsv(salida, columnas) : new EscritorBinario(salida, tipo, filas);
+    }
+
+    // Texto separado por comas con una fila de encabezado; los campos con comas, comillas o saltos van entre comillas
+    private static final class EscritorCsv implements EscritorFilas {
+        private final Writer salida;
+        private boolean primeraColumna = true;
+
+        EscritorCsv(OutputStream destino, String[] columnas) throws IOException {
+            this.salida = new BufferedWriter(new OutputStreamWriter(destino, StandardCharsets.UTF_8), TAMANO_BUFER);
+            for (String columna : columnas) {
+                texto(columna);
+            }
+            finFila();
+        }
+
+        @Override
+        public void texto(String texto) throws IOException {
+            separar();
+            if (texto == null) {
+                return;
+            }
+            boolean comillas = false;
+            for (int i = 0; i < texto.length() && !comillas; i++) {
+                char c = texto.charAt(i);
+                comillas = c == ',' || c == '"' || c == '\n' || c == '\r';
+            }
+            if (!comillas) {
+                salida.write(texto);
+                return;
+            }
+            salida.write('"');
+            for (int i = 0; i < texto.length(); i++) {
+                char c = texto.charAt(i);
+                if (c == '"') {
+                    salida.write('"');
+                }
+                salida.write(c);
+            }
+            salida.write('"');
+        }
+
+        @Override
+        public void monto(long centavos) throws IOException {
+            separar();
+            salida.write(Dinero.formatear(centavos));
+        }
+
+        @Override
+        public void fecha(long nanos) throws IOException {
+            separar();
+            if (nanos != Long.MIN_VALUE) {
+                salida.write(HistorialTransacciones.aFecha(nanos).toString());
+            }
+        }
+
+        @Override
+        public void logico(boolean valor) throws IOException {
+            separar();
+            salida.write(valor ? "true" : "false");
+        }
+
+        @Override
+        public void finFila() throws IOException {
+            salida.write('\n');
+            primeraColumna = true;
+        }
+
+        @Override
+        public void terminar() throws IOException {
+            salida.flush();
+        }
+
+        private void separar() throws IOException {
+            if (!primeraColumna) {
+                salida.write(',');
+            }
+            primeraColumna = false;
+        }
+    }
+
+    // Encabezado [mágico][versión][tipo][cantidad de filas] seguido de las filas
+    private static final class EscritorBinario implements EscritorFilas {
+        private final DataOutputStream salida;
+
+        EscritorBinario(OutputStream destino, char tipo, long filas) throws IOException {
+            this.salida = new DataOutputStream(new BufferedOutputStream(destino, TAMANO_BUFER));
+            salida.writeInt(MAGICO);
+            salida.writeInt(VERSION);
+            salida.writeByte(tipo);
+            salida.writeLong(filas);
+        }
+
+        @Override
+        public void texto(String texto) throws IOException {
+            DiarioBanco.escribirTexto(salida, texto);
+        }
+
+        @Override
+        public void monto(long centavos) throws IOException {
+            salida.writeLong(centavos);
+        }
+
+        @Override
+        public void fecha(long nanos) throws IOException {
+            salida.writeLong(nanos);
+        }
+
+        @Override
+        public void logico(boolean valor) throws IOException {
+            salida.writeBoolean(valor);
+        }
+
+        @Override
+        public void finFila() {
+        }
+
+        @Override
+        public void terminar() throws IOException {
+            salida.flush();
+        }
+    }
+}
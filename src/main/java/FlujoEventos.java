@@ -0,0 +1,332 @@
+import java.lang.invoke.VarHandle;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Flujo de eventos de dominio de un banco, para sistemas que necesitan enterarse de cada cambio, como una
+ * contabilidad, las notificaciones o la detección de fraude, sin comparar registros de transacciones.
+ *
+ * Los eventos viven en un anillo de ranuras creadas de antemano. Publicar reclama la siguiente secuencia
+ * con una operación atómica, copia los datos en su ranura y marca la ranura como publicada con esa
+ * secuencia; no toma cerrojos ni crea objetos, así activar el flujo no frena las transacciones. Varios
+ * hilos pueden publicar a la vez.
+ *
+ * Cada consumidor lleva su propia secuencia y lee a su ritmo, por lotes: un consumidor lento no afecta a
+ * los demás salvo por la política de saturación, que decide qué pasa cuando el anillo está lleno porque el
+ * consumidor más atrasado no leyó:
+ * <ul>
+ *     <li>BLOQUEAR: quien publica espera a que haya lugar. No se pierden eventos, pero las operaciones del
+ *     banco avanzan al ritmo del consumidor más lento, y un manejador no debe hacer operaciones en el banco.</li>
+ *     <li>DESCARTAR: el evento nuevo se descarta y se cuenta en {@link #getDescartados}.</li>
+ *     <li>SOBRESCRIBIR: se escribe sobre el evento más viejo; el consumidor atrasado salta al evento más
+ *     viejo que sigue en el anillo y cuenta los que perdió.</li>
+ * </ul>
+ */
+public class FlujoEventos {
+    private static final int CAPACIDAD_MAXIMA = 1 << 30;
+    private static final long ESCRIBIENDO = -1; // Marca de una ranura que se está sobrescribiendo
+    private static final int GIROS = 100; // Vueltas de espera activa antes de dormir
+    private static final long SIESTA_MAXIMA = 1_000_000; // Nanosegundos máximos que duerme un consumidor sin eventos
+
+    /**
+     * Qué hacer al publicar con el anillo lleno.
+     */
+    public enum PoliticaSaturacion {
+        BLOQUEAR, DESCARTAR, SOBRESCRIBIR
+    }
+
+    /**
+     * Manejador de los eventos que lee un consumidor.
+     */
+    public interface ManejadorEventos {
+        /**
+         * @param evento Evento leído; solo es válido durante la llamada
+         * @param finDeLote true si es el último evento del lote, por ejemplo para confirmar todo el lote junto
+         */
+        void procesar(EventoBanco evento, boolean finDeLote);
+    }
+
+    private final EventoBanco[] ranuras;
+    private final AtomicLongArray publicadas; // Secuencia publicada en cada ranura
+    private final int mascara;
+    private final PoliticaSaturacion politica;
+    private final AtomicLong cursor = new AtomicLong(); // Próxima secuencia por reclamar
+    private volatile long minimoCache; // Secuencia del consumidor más atrasado, la última vez que se calculó
+    private volatile Consumidor[] consumidores = new Consumidor[0];
+    private final LongAdder descartados = new LongAdder();
+
+    /**
+     * Constructor del flujo.
+     * @param capacidad Cantidad mínima de eventos del anillo; se redondea a una potencia de dos
+     * @param politica Qué hacer al publicar con el anillo lleno
+     */
+    public FlujoEventos(int capacidad, PoliticaSaturacion politica) {
+        if (capacidad <= 0 || capacidad > CAPACIDAD_MAXIMA || politica == null) {
+            throw new IllegalArgumentException("La capacidad debe ser positiva y la política no puede ser nula.");
+        }
+        int tamano = Integer.highestOneBit(capacidad);
+        if (tamano < capacidad) {
+            tamano <<= 1;
+        }
+        this.ranuras = new EventoBanco[tamano];
+        for (int i = 0; i < tamano; i++) {
+            ranuras[i] = new EventoBanco();
+        }
+        this.publicadas = new AtomicLongArray(tamano);
+        for (int i = 0; i < tamano; i++) {
+            publicadas.set(i, ESCRIBIENDO);
+        }
+        this.mascara = tamano - 1;
+        this.politica = politica;
+    }
+
+    /**
+     * Método que permite suscribir un consumidor. Lee los eventos que se publiquen desde ahora.
+     * @return Consumidor nuevo; se cierra para dejar de frenar a quien publica
+     */
+    public synchronized Consumidor suscribir() {
+        Consumidor consumidor = new Consumidor(cursor.get());
+        Consumidor[] nuevos = Arrays.copyOf(consumidores, consumidores.length + 1);
+        nuevos[nuevos.length - 1] = consumidor;
+        consumidores = nuevos;
+        // Quien publicaba sin ver al consumidor nuevo pudo haber avanzado: empezar desde la secuencia actual
+        consumidor.secuencia.set(cursor.get());
+        return consumidor;
+    }
+
+    // Método auxiliar que quita un consumidor cerrado
+    private synchronized void desuscribir(Consumidor consumidor) {
+        Consumidor[] actuales = consumidores;
+        for (int i = 0; i < actuales.length; i++) {
+            if (actuales[i] == consumidor) {
+                Consumidor[] nuevos = new Consumidor[actuales.length - 1];
+                System.arraycopy(actuales, 0, nuevos, 0, i);
+                System.arraycopy(actuales, i + 1, nuevos, i, actuales.length - i - 1);
+                consumidores = nuevos;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Método que permite publicar un evento. No crea objetos: los datos se copian en una ranura del anillo.
+     * @param tipo Tipo de evento
+     * @param idUsuario ID del usuario, o null
+     * @param numeroBilletera Número de la billetera, o null
+     * @param transaccion Transacción del evento, o null
+     * @param resultado Resultado de la transacción, o null
+     * @param saldoCentavos Saldo de la billetera después del evento, o 0
+     * @return false si el anillo estaba lleno y el evento se descartó
+     */
+    boolean publicar(EventoBanco.Tipo tipo, String idUsuario, String numeroBilletera, RegistroTransaccion transaccion,
+                     ResultadoTransaccion resultado, long saldoCentavos) {
+        long secuencia;
+        if (politica == PoliticaSaturacion.SOBRESCRIBIR) {
+            secuencia = cursor.getAndIncrement();
+        } else {
+            secuencia = reclamar();
+            if (secuencia < 0) {
+                descartados.increment();
+                return false;
+            }
+        }
+        int ranura = (int) secuencia & mascara;
+        if (politica == PoliticaSaturacion.SOBRESCRIBIR) {
+            // Un consumidor que está copiando la ranura vieja ve la marca y la descarta
+            publicadas.set(ranura, ESCRIBIENDO);
+            VarHandle.storeStoreFence();
+        }
+        ranuras[ranura].llenar(secuencia, tipo, idUsuario, numeroBilletera, transaccion, resultado, saldoCentavos);
+        publicadas.setRelease(ranura, secuencia);
+        return true;
+    }
+
+    // Método auxiliar que reclama una secuencia con lugar en el anillo; devuelve -1 si está lleno y la política
+    // es descartar
+    private long reclamar() {
+        int intentos = 0;
+        while (true) {
+            long actual = cursor.get();
+            long ocupada = actual - ranuras.length; // Secuencia que estaba en la ranura de la actual
+            if (ocupada >= minimoCache) {
+                long minimo = minimo(actual);
+                minimoCache = minimo;
+                if (ocupada >= minimo) {
+                    if (politica == PoliticaSaturacion.DESCARTAR) {
+                        return -1;
+                    }
+                    esperar(intentos++);
+                    continue;
+                }
+            }
+            if (cursor.compareAndSet(actual, actual + 1)) {
+                return actual;
+            }
+        }
+    }
+
+    // Método auxiliar que calcula la secuencia del consumidor más atrasado, o la dada si no hay consumidores
+    private long minimo(long porDefecto) {
+        long minimo = porDefecto;
+        for (Consumidor consumidor : consumidores) {
+            minimo = Math.min(minimo, consumidor.secuencia.get());
+        }
+        return minimo;
+    }
+
+    // Método auxiliar que espera activamente las primeras vueltas y después duerme un momento
+    private static void esperar(int intentos) {
+        if (intentos < GIROS) {
+            Thread.onSpinWait();
+        } else {
+            LockSupport.parkNanos(1_000);
+        }
+    }
+
+    // Getters
+    public int getCapacidad() {
+        return ranuras.length;
+    }
+
+    public PoliticaSaturacion getPolitica() {
+        return politica;
+    }
+
+    // Secuencias reclamadas hasta ahora, sin contar los eventos descartados
+    public long getPublicados() {
+        return cursor.get();
+    }
+
+    public long getDescartados() {
+        return descartados.sum();
+    }
+
+    /**
+     * Consumidor del flujo con su propia secuencia. Cada consumidor se lee desde un solo hilo; para leer en
+     * paralelo se suscriben varios.
+     */
+    public final class Consumidor implements AutoCloseable {
+        private final AtomicLong secuencia; // Próxima secuencia por leer
+        private final EventoBanco copia = new EventoBanco(); // Copia que recibe el manejador, reutilizada
+        private volatile long perdidos;
+        private volatile boolean cerrado;
+
+        // Constructor
+        private Consumidor(long secuencia) {
+            this.secuencia = new AtomicLong(secuencia);
+        }
+
+        /**
+         * Método que permite leer un lote de eventos publicados, sin esperar.
+         * Si el manejador lanza una excepción, el evento que la lanzó no cuenta como leído y se vuelve a
+         * entregar en la próxima lectura.
+         * @param manejador Manejador de cada evento
+         * @param maximo Cantidad máxima de eventos del lote
+         * @return Cantidad de eventos leídos
+         */
+        public int leer(ManejadorEventos manejador, int maximo) {
+            if (manejador == null || maximo <= 0) {
+                throw new IllegalArgumentException("El manejador no puede ser nulo y el máximo debe ser positivo.");
+            }
+            if (cerrado) {
+                throw new IllegalStateException("El consumidor está cerrado.");
+            }
+            long siguiente = secuencia.get();
+            siguiente = saltarPerdidos(siguiente);
+
+            // Buscar el fin del lote: la primera secuencia todavía no publicada
+            long fin = siguiente;
+            while (fin - siguiente < maximo && publicadas.getAcquire((int) fin & mascara) == fin) {
+                fin++;
+            }
+
+            long leida = siguiente;
+            try {
+                while (leida < fin) {
+                    int ranura = (int) leida & mascara;
+                    copia.copiar(ranuras[ranura]);
+                    VarHandle.loadLoadFence();
+                    if (publicadas.get(ranura) != leida) {
+                        // Se sobrescribió mientras se copiaba: el lote termina acá
+                        break;
+                    }
+                    manejador.procesar(copia, leida == fin - 1);
+                    leida++;
+                }
+            } finally {
+                secuencia.set(leida);
+            }
+            return (int) (leida - siguiente);
+        }
+
+        /**
+         * Método que permite leer un lote de eventos, esperando hasta que haya alguno o pase el tiempo dado.
+         * @param manejador Manejador de cada evento
+         * @param maximo Cantidad máxima de eventos del lote
+         * @param espera Tiempo máximo de espera
+         * @return Cantidad de eventos leídos; 0 si no llegó ninguno a tiempo
+         * @throws InterruptedException Si se interrumpe el hilo mientras espera
+         */
+        public int leer(ManejadorEventos manejador, int maximo, Duration espera) throws InterruptedException {
+            if (espera == null) {
+                throw new IllegalArgumentException("La espera no puede ser nula.");
+            }
+            long limite = System.nanoTime() + espera.toNanos();
+            int intentos = 0;
+            while (true) {
+                int leidos = leer(manejador, maximo);
+                if (leidos > 0 || System.nanoTime() - limite >= 0) {
+                    return leidos;
+                }
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+                // Sin eventos, cada vez duerme más, así un consumidor ocioso casi no usa CPU
+                if (intentos < GIROS) {
+                    Thread.onSpinWait();
+                } else {
+                    LockSupport.parkNanos(Math.min(SIESTA_MAXIMA, 1_000L << Math.min(intentos - GIROS, 10)));
+                }
+                intentos++;
+            }
+        }
+
+        // Método auxiliar que salta los eventos que ya se sobrescribieron y los cuenta como perdidos
+        private long saltarPerdidos(long siguiente) {
+            long masViejo = cursor.get() - ranuras.length; // Secuencia más vieja que puede seguir en el anillo
+            if (siguiente < masViejo) {
+                perdidos += masViejo - siguiente;
+                secuencia.set(masViejo);
+                return masViejo;
+            }
+            return siguiente;
+        }
+
+        // Getters
+        public long getSecuencia() {
+            return secuencia.get();
+        }
+
+        // Eventos publicados que este consumidor todavía no leyó
+        public long getPendientes() {
+            return Math.max(0, cursor.get() - secuencia.get());
+        }
+
+        // Eventos sobrescritos antes de que este consumidor los leyera
+        public long getPerdidos() {
+            return perdidos;
+        }
+
+        @Override
+        public void close() {
+            if (!cerrado) {
+                cerrado = true;
+                desuscribir(this);
+            }
+        }
+    }
+}
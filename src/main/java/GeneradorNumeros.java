@@ -0,0 +1,20 @@
+/**
+ * Estrategia para asignar números de billetera de 10 dígitos.
+ * Las implementaciones deben ser seguras para llamarse desde varios hilos a la vez.
+ */
+public interface GeneradorNumeros {
+
+    /**
+     * Método que permite obtener un número de billetera que no se ha asignado antes.
+     * @return Número de 10 dígitos
+     * @throws IllegalStateException Si ya no quedan números disponibles
+     */
+    String siguiente();
+
+    /**
+     * Método que permite marcar como utilizado un número asignado previamente,
+     * por ejemplo al recuperar billeteras después de un reinicio.
+     * @param numero Número de billetera ya asignado
+     */
+    void marcarUtilizado(String numero);
+}
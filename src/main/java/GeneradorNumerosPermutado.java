@@ -0,0 +1,175 @@
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Generador de números de billetera basado en una secuencia permutada.
+ * Cada número se obtiene de un contador: el valor se baraja con una red de Feistel sobre el rango
+ * de 9 dígitos (por eso no hay colisiones ni reintentos) y se le agrega un dígito verificador de Luhn.
+ * Solo guarda el contador, así que la memoria es constante sin importar cuántas billeteras se creen.
+ *
+ * Para repartir la asignación entre varios nodos, cada nodo usa la misma clave y su propio índice:
+ * el nodo i solo asigna las posiciones i, i + n, i + 2n, ... de la secuencia, y {@link #nodoDe(String)}
+ * permite saber qué nodo asignó un número.
+ */
+public class GeneradorNumerosPermutado implements GeneradorNumeros {
+    private static final long BASE = 100_000_000L; // Menor cuerpo de 9 dígitos
+    private static final long CAPACIDAD = 900_000_000L; // Cantidad de cuerpos de 9 dígitos
+    private static final int BITS_MITAD = 15; // 2^30 > CAPACIDAD
+    private static final int MASCARA_MITAD = (1 << BITS_MITAD) - 1;
+    private static final int RONDAS = 4;
+
+    private final int[] clavesRonda;
+    private final int nodo;
+    private final int totalNodos;
+    private final AtomicLong contador = new AtomicLong();
+
+    // Constructor para un único nodo
+    public GeneradorNumerosPermutado(long clave) {
+        this(clave, 0, 1);
+    }
+
+    // Constructor para un nodo de una asignación repartida
+    public GeneradorNumerosPermutado(long clave, int nodo, int totalNodos) {
+        if (totalNodos <= 0 || nodo < 0 || nodo >= totalNodos) {
+            throw new IllegalArgumentException("El nodo debe estar entre 0 y el total de nodos.");
+        }
+        this.nodo = nodo;
+        this.totalNodos = totalNodos;
+        this.clavesRonda = new int[RONDAS];
+        long estado = clave;
+        for (int i = 0; i < RONDAS; i++) {
+            estado += 0x9E3779B97F4A7C15L;
+            clavesRonda[i] = (int) mezclar(estado);
+        }
+    }
+
+    @Override
+    public String siguiente() {
+        long posicion = contador.getAndIncrement() * totalNodos + nodo;
+        if (posicion >= CAPACIDAD || posicion < 0) {
+            throw new IllegalStateException("Se agotaron los números de billetera disponibles.");
+        }
+        long cuerpo = BASE + permutar(posicion);
+        return String.valueOf(cuerpo * 10 + digitoVerificador(cuerpo));
+    }
+
+    // Los números que este generador no pudo asignar, como los que no pasan el dígito verificador, se ignoran:
+    // nunca los va a generar, y una billetera restaurada con un número así no debe impedir abrir el banco
+    @Override
+    public void marcarUtilizado(String numero) {
+        if (!esValido(numero)) {
+            return;
+        }
+        long posicion = posicionDe(numero);
+        if (posicion % totalNodos != nodo) {
+            return; // Lo asignó otro nodo
+        }
+        long siguienteContador = posicion / totalNodos + 1;
+        contador.accumulateAndGet(siguienteContador, Math::max);
+    }
+
+    /**
+     * Método que permite saber qué nodo asignó un número de billetera.
+     * @param numero Número de billetera generado con la misma clave
+     * @return Índice del nodo que lo asignó
+     */
+    public int nodoDe(String numero) {
+        return (int) (posicionDe(numero) % totalNodos);
+    }
+
+    /**
+     * Método que permite verificar el dígito de control de un número de billetera.
+     * @param numero Número de billetera
+     * @return true si tiene 10 dígitos y su dígito verificador es correcto
+     */
+    public static boolean esValido(String numero) {
+        if (numero == null || numero.length() != 10 || numero.charAt(0) == '0') {
+            return false;
+        }
+        for (int i = 0; i < numero.length(); i++) {
+            if (numero.charAt(i) < '0' || numero.charAt(i) > '9') {
+                return false;
+            }
+        }
+        long valor = Long.parseLong(numero);
+        return digitoVerificador(valor / 10) == valor % 10;
+    }
+
+    // Método auxiliar que recupera la posición en la secuencia de un número generado
+    private long posicionDe(String numero) {
+        if (!esValido(numero)) {
+            throw new IllegalArgumentException("El número de billetera no es válido: " + numero);
+        }
+        return invertir(Long.parseLong(numero) / 10 - BASE);
+    }
+
+    // Permutación del rango [0, CAPACIDAD): red de Feistel de 30 bits con recorrido de ciclo
+    private long permutar(long valor) {
+        do {
+            valor = feistel(valor);
+        } while (valor >= CAPACIDAD);
+        return valor;
+    }
+
+    // Inversa de permutar
+    private long invertir(long valor) {
+        do {
+            valor = feistelInversa(valor);
+        } while (valor >= CAPACIDAD);
+        return valor;
+    }
+
+    private long feistel(long valor) {
+        int izquierda = (int) (valor >>> BITS_MITAD) & MASCARA_MITAD;
+        int derecha = (int) valor & MASCARA_MITAD;
+        for (int i = 0; i < RONDAS; i++) {
+            int nueva = izquierda ^ ronda(derecha, clavesRonda[i]);
+            izquierda = derecha;
+            derecha = nueva;
+        }
+        return ((long) izquierda << BITS_MITAD) | derecha;
+    }
+
+    private long feistelInversa(long valor) {
+        int izquierda = (int) (valor >>> BITS_MITAD) & MASCARA_MITAD;
+        int derecha = (int) valor & MASCARA_MITAD;
+        for (int i = RONDAS - 1; i >= 0; i--) {
+            int anterior = derecha ^ ronda(izquierda, clavesRonda[i]);
+            derecha = izquierda;
+            izquierda = anterior;
+        }
+        return ((long) izquierda << BITS_MITAD) | derecha;
+    }
+
+    private static int ronda(int mitad, int clave) {
+        int x = (mitad ^ clave) * 0x45D9F3B;
+        x ^= x >>> 16;
+        x *= 0x45D9F3B;
+        x ^= x >>> 13;
+        return x & MASCARA_MITAD;
+    }
+
+    private static long mezclar(long x) {
+        x = (x ^ (x >>> 30)) * 0xBF58476D1CE4E5B9L;
+        x = (x ^ (x >>> 27)) * 0x94D049BB133111EBL;
+        return x ^ (x >>> 31);
+    }
+
+    // Dígito verificador de Luhn para el cuerpo de 9 dígitos
+    private static long digitoVerificador(long cuerpo) {
+        int suma = 0;
+        boolean doblar = true;
+        while (cuerpo > 0) {
+            int digito = (int) (cuerpo % 10);
+            if (doblar) {
+                digito *= 2;
+                if (digito > 9) {
+                    digito -= 9;
+                }
+            }
+            suma += digito;
+            doblar = !doblar;
+            cuerpo /= 10;
+        }
+        return (10 - suma % 10) % 10;
+    }
+}
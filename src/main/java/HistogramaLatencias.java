@@ -0,0 +1,142 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histograma de latencias en nanosegundos, con cubetas log-lineales como las de HdrHistogram:
+ * cada potencia de dos se divide en 16 cubetas, así un valor se redondea con un error menor al 7%
+ * sin importar su magnitud. Registrar una muestra no toma cerrojos y varios hilos pueden hacerlo a la vez.
+ */
+public class HistogramaLatencias {
+    private static final int BITS_SUBCUBETA = 4;
+    private static final int SUBCUBETAS = 1 << BITS_SUBCUBETA;
+    private static final int EXPONENTE_MAXIMO = 45; // Unas 9 horas; los valores mayores van a la última cubeta
+
+    private final LongAdder[] cubetas = new LongAdder[(EXPONENTE_MAXIMO - BITS_SUBCUBETA + 2) * SUBCUBETAS];
+    private final LongAdder suma = new LongAdder();
+    private final AtomicLong maximo = new AtomicLong();
+
+    // Constructor
+    public HistogramaLatencias() {
+        for (int i = 0; i < cubetas.length; i++) {
+            cubetas[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Método que permite registrar una muestra.
+     * @param nanos Latencia en nanosegundos; los valores negativos cuentan como 0
+     */
+    public void registrar(long nanos) {
+        long valor = Math.max(0, nanos);
+        cubetas[indice(valor)].increment();
+        suma.add(valor);
+        if (valor > maximo.get()) {
+            maximo.accumulateAndGet(valor, Math::max);
+        }
+    }
+
+    /**
+     * Método que permite copiar el estado del histograma para consultarlo sin que cambie.
+     * Las muestras que se registran durante la copia pueden quedar o no incluidas.
+     * @return Copia del histograma
+     */
+    public Instantanea instantanea() {
+        long[] conteos = new long[cubetas.length];
+        long cantidad = 0;
+        for (int i = 0; i < cubetas.length; i++) {
+            conteos[i] = cubetas[i].sum();
+            cantidad += conteos[i];
+        }
+        return new Instantanea(conteos, cantidad, suma.sum(), maximo.get());
+    }
+
+    // Método auxiliar que devuelve la cubeta de un valor no negativo
+    private static int indice(long valor) {
+        if (valor < SUBCUBETAS) {
+            return (int) valor;
+        }
+        int exponente = Math.min(63 - Long.numberOfLeadingZeros(valor), EXPONENTE_MAXIMO);
+        int sub = (int) (valor >>> (exponente - BITS_SUBCUBETA)) & (SUBCUBETAS - 1);
+        return (exponente - BITS_SUBCUBETA + 1) * SUBCUBETAS + sub;
+    }
+
+    // Método auxiliar que devuelve el mayor valor que cae en una cubeta
+    private static long limiteSuperior(int indice) {
+        if (indice < SUBCUBETAS) {
+            return indice;
+        }
+        int exponente = indice / SUBCUBETAS + BITS_SUBCUBETA - 1;
+        long sub = indice % SUBCUBETAS;
+        return ((SUBCUBETAS + sub + 1) << (exponente - BITS_SUBCUBETA)) - 1;
+    }
+
+    /**
+     * Copia inmutable de un histograma.
+     */
+    public static final class Instantanea {
+        private final long[] conteos;
+        private final long cantidad;
+        private final long suma;
+        private final long maximo;
+
+        private Instantanea(long[] conteos, long cantidad, long suma, long maximo) {
+            this.conteos = conteos;
+            this.cantidad = cantidad;
+            this.suma = suma;
+            this.maximo = maximo;
+        }
+
+        /**
+         * Método que permite obtener un percentil de las latencias.
+         * @param porcentaje Porcentaje entre 0 y 100, por ejemplo 99 o 99.9
+         * @return Latencia en nanosegundos por debajo de la cual queda ese porcentaje de muestras, o 0 si no hay muestras
+         */
+        public long percentil(double porcentaje) {
+            if (porcentaje < 0 || porcentaje > 100) {
+                throw new IllegalArgumentException("El porcentaje debe estar entre 0 y 100.");
+            }
+            if (cantidad == 0) {
+                return 0;
+            }
+            long objetivo = Math.max(1, (long) Math.ceil(cantidad * porcentaje / 100));
+            long acumulado = 0;
+            for (int i = 0; i < conteos.length; i++) {
+                acumulado += conteos[i];
+                if (acumulado >= objetivo) {
+                    return Math.min(limiteSuperior(i), maximo);
+                }
+            }
+            return maximo;
+        }
+
+        /**
+         * Método que permite juntar dos copias, por ejemplo las de varias particiones de un banco.
+         * @param otra Copia a sumar
+         * @return Copia con las muestras de las dos
+         */
+        public Instantanea sumar(Instantanea otra) {
+            long[] suma = new long[conteos.length];
+            for (int i = 0; i < conteos.length; i++) {
+                suma[i] = conteos[i] + otra.conteos[i];
+            }
+            return new Instantanea(suma, cantidad + otra.cantidad, this.suma + otra.suma, Math.max(maximo, otra.maximo));
+        }
+
+        // Getters
+        public long getCantidad() {
+            return cantidad;
+        }
+
+        public long getSuma() {
+            return suma;
+        }
+
+        public long getMaximo() {
+            return maximo;
+        }
+
+        public double getPromedio() {
+            return cantidad == 0 ? 0 : (double) suma / cantidad;
+        }
+    }
+}
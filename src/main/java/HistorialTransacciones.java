@@ -0,0 +1,689 @@
+import java.lang.invoke.VarHandle;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.RandomAccess;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Registro de transacciones de una billetera guardado por columnas en arreglos primitivos.
+ * En lugar de un objeto {@link RegistroTransaccion} por entrada se guardan la fecha como nanosegundos
+ * desde la época, el monto en centavos, la categoría como byte y el titular como índice a un diccionario,
+ * y los objetos se reconstruyen solo cuando se piden.
+ *
+ * Un índice hash de direccionamiento abierto (un int por celda) permite buscar una transacción por su ID
+ * en tiempo constante.
+ *
+ * Las consultas por rango de fechas usan búsqueda binaria: sobre la columna de fechas mientras las
+ * transacciones llegan en orden, o sobre una permutación ordenada por fecha desde que llega alguna fuera de orden.
+ *
+ * Además mantiene totales de ingresos y gastos, generales y por categoría, que se actualizan al agregar
+ * cada transacción para que consultarlos sea O(1).
+ *
+ * Solo un hilo a la vez puede agregar (la billetera lo hace con su cerrojo tomado); la lectura puede
+ * hacerse en paralelo y ve siempre un prefijo completo del registro. Los totales se leen con un
+ * contador de versión (seqlock), así una lectura nunca mezcla valores de antes y después de un agregado.
+ */
+public class HistorialTransacciones {
+    private static final int CAPACIDAD_INICIAL = 8;
+    private static final long SIN_FECHA = Long.MIN_VALUE;
+    private static final byte SIN_CATEGORIA = -1;
+    private static final Categoria[] CATEGORIAS = Categoria.values();
+
+    private String[] ids;
+    private long[] fechas; // Nanosegundos desde la época (UTC)
+    private long[] montos; // Centavos
+    private byte[] categorias; // Ordinal de la categoría
+    private int[] titulares; // Índice en el diccionario de titulares
+    private volatile int tamano; // Se publica después de escribir las columnas
+
+    private String[] diccionarioTitulares = new String[CAPACIDAD_INICIAL];
+    private final Map<String, Integer> indiceTitulares = new HashMap<>();
+    private int cantidadTitulares;
+
+    // Índice por ID: cada celda guarda la posición más uno (0 es una celda vacía)
+    private volatile int[] indiceIds = new int[CAPACIDAD_INICIAL * 2];
+
+    // Orden por fecha; es null mientras las fechas llegan en orden y basta buscar sobre la columna de fechas
+    private volatile OrdenFechas orden;
+
+    // Totales en centavos; la última posición de cada arreglo corresponde a transacciones sin categoría
+    private long totalIngresos;
+    private long totalGastos;
+    private final long[] ingresosPorCategoria = new long[CATEGORIAS.length + 1];
+    private final long[] gastosPorCategoria = new long[CATEGORIAS.length + 1];
+    private volatile long version; // Impar mientras se actualizan los totales
+
+    private final List<RegistroTransaccion> vista = new Vista();
+
+    // Constructor
+    public HistorialTransacciones() {
+        this.ids = new String[CAPACIDAD_INICIAL];
+        this.fechas = new long[CAPACIDAD_INICIAL];
+        this.montos = new long[CAPACIDAD_INICIAL];
+        this.categorias = new byte[CAPACIDAD_INICIAL];
+        this.titulares = new int[CAPACIDAD_INICIAL];
+    }
+
+    /**
+     * Método que permite agregar una transacción al final del registro.
+     * @param transaccion Transacción a agregar
+     */
+    public void agregar(RegistroTransaccion transaccion) {
+        verificar(transaccion);
+        int posicion = tamano;
+        asegurarCapacidad(posicion + 1);
+        ids[posicion] = transaccion.getId();
+        fechas[posicion] = aNanos(transaccion.getFecha());
+        montos[posicion] = transaccion.getMontoCentavos();
+        categorias[posicion] = transaccion.getCategoria() == null
+                ? SIN_CATEGORIA : (byte) transaccion.getCategoria().ordinal();
+        titulares[posicion] = indiceDeTitular(transaccion.getTitular());
+        indexarId(posicion);
+        ordenarPorFecha(posicion);
+        tamano = posicion + 1;
+        acumular(montos[posicion], categorias[posicion]);
+    }
+
+    /**
+     * Método que permite agregar varias transacciones al final del registro de una sola vez.
+     * Las columnas y el índice por ID crecen una sola vez, el tamaño se publica al final y los totales
+     * se actualizan en una sola ventana de versión.
+     * @param transacciones Transacciones a agregar
+     * @param cantidad Cantidad de transacciones a agregar, desde el inicio del arreglo
+     * @throws ArithmeticException Si los totales desbordarían; en ese caso no se agrega ninguna
+     */
+    public void agregarTodos(RegistroTransaccion[] transacciones, int cantidad) {
+        // Validar todo antes de modificar nada
+        verificarTodos(transacciones, cantidad);
+
+        int inicio = tamano;
+        int fin = inicio + cantidad;
+        asegurarCapacidad(fin);
+        int[] tabla = indiceIds;
+        if (fin * 2 > tabla.length) {
+            int longitud = tabla.length;
+            while (fin * 2 > longitud) {
+                longitud *= 2;
+            }
+            tabla = new int[longitud];
+            for (int i = 0; i < inicio; i++) {
+                insertarEnTabla(tabla, i);
+            }
+        }
+        for (int i = 0; i < cantidad; i++) {
+            RegistroTransaccion transaccion = transacciones[i];
+            int posicion = inicio + i;
+            ids[posicion] = transaccion.getId();
+            fechas[posicion] = aNanos(transaccion.getFecha());
+            montos[posicion] = transaccion.getMontoCentavos();
+            categorias[posicion] = transaccion.getCategoria() == null
+                    ? SIN_CATEGORIA : (byte) transaccion.getCategoria().ordinal();
+            titulares[posicion] = indiceDeTitular(transaccion.getTitular());
+            insertarEnTabla(tabla, posicion);
+            ordenarPorFecha(posicion);
+        }
+        indiceIds = tabla;
+        tamano = fin;
+
+        long actual = version;
+        version = actual + 1;
+        VarHandle.storeStoreFence();
+        for (int posicion = inicio; posicion < fin; posicion++) {
+            sumarATotales(montos[posicion], categorias[posicion]);
+        }
+        version = actual + 2;
+    }
+
+    /**
+     * Método que permite obtener el porcentaje de gastos sobre ingresos a partir de los totales.
+     * @return Porcentaje de gastos sobre ingresos, o NaN si no hay ingresos
+     */
+    public double porcentajeGastosIngresos() {
+        long ingresos;
+        long gastos;
+        long inicio;
+        do {
+            inicio = esperarVersionPar();
+            ingresos = totalIngresos;
+            gastos = totalGastos;
+            VarHandle.loadLoadFence();
+        } while (version != inicio);
+        return ingresos == 0 ? Double.NaN : ((double) gastos / ingresos) * 100;
+    }
+
+    /**
+     * Método que permite obtener los totales en centavos de forma consistente.
+     * @return Arreglo con el total de ingresos y el total de gastos
+     */
+    public long[] totales() {
+        long[] totales = new long[2];
+        long inicio;
+        do {
+            inicio = esperarVersionPar();
+            totales[0] = totalIngresos;
+            totales[1] = totalGastos;
+            VarHandle.loadLoadFence();
+        } while (version != inicio);
+        return totales;
+    }
+
+    /**
+     * Método que permite obtener los totales por categoría en centavos de forma consistente.
+     * @param ingresos true para los ingresos, false para los gastos
+     * @return Arreglo indexado por el ordinal de la categoría; la última posición es para transacciones sin categoría
+     */
+    public long[] totalesPorCategoria(boolean ingresos) {
+        long[] origen = ingresos ? ingresosPorCategoria : gastosPorCategoria;
+        long[] copia = new long[origen.length];
+        long inicio;
+        do {
+            inicio = esperarVersionPar();
+            System.arraycopy(origen, 0, copia, 0, origen.length);
+            VarHandle.loadLoadFence();
+        } while (version != inicio);
+        return copia;
+    }
+
+    // Método auxiliar que comprueba, sin modificar nada, que una transacción se puede agregar: ID no nulo,
+    // fecha en rango y totales sin desbordar
+    void verificar(RegistroTransaccion transaccion) {
+        if (transaccion.getId() == null) {
+            throw new IllegalArgumentException("El ID de la transacción no puede ser nulo.");
+        }
+        verificarTotales(transaccion.getMontoCentavos());
+        aNanos(transaccion.getFecha());
+    }
+
+    // Método auxiliar que comprueba, sin modificar nada, que varias transacciones se pueden agregar juntas
+    void verificarTodos(RegistroTransaccion[] transacciones, int cantidad) {
+        long ingresos = totalIngresos;
+        long gastos = totalGastos;
+        for (int i = 0; i < cantidad; i++) {
+            RegistroTransaccion transaccion = transacciones[i];
+            if (transaccion.getId() == null) {
+                throw new IllegalArgumentException("El ID de la transacción no puede ser nulo.");
+            }
+            aNanos(transaccion.getFecha());
+            long monto = transaccion.getMontoCentavos();
+            if (monto > 0) {
+                ingresos = Dinero.sumar(ingresos, monto);
+            } else {
+                gastos = Dinero.sumar(gastos, Dinero.absoluto(monto));
+            }
+        }
+    }
+
+    // Método auxiliar que comprueba, antes de modificar nada, que los totales no desbordarán
+    private void verificarTotales(long monto) {
+        if (monto > 0) {
+            Dinero.sumar(totalIngresos, monto);
+        } else {
+            Dinero.sumar(totalGastos, Dinero.absoluto(monto));
+        }
+    }
+
+    // Método auxiliar que actualiza los totales dentro de una ventana de versión impar
+    private void acumular(long monto, byte categoria) {
+        long actual = version;
+        version = actual + 1;
+        VarHandle.storeStoreFence();
+        sumarATotales(monto, categoria);
+        version = actual + 2;
+    }
+
+    // Método auxiliar que suma un monto a los totales; se llama con la versión impar
+    private void sumarATotales(long monto, byte categoria) {
+        int indice = categoria == SIN_CATEGORIA ? CATEGORIAS.length : categoria;
+        if (monto > 0) {
+            totalIngresos += monto;
+            ingresosPorCategoria[indice] += monto;
+        } else {
+            totalGastos -= monto;
+            gastosPorCategoria[indice] -= monto;
+        }
+    }
+
+    // Método auxiliar que espera a que no haya una actualización de totales en curso
+    private long esperarVersionPar() {
+        long actual = version;
+        while ((actual & 1) != 0) {
+            Thread.onSpinWait();
+            actual = version;
+        }
+        return actual;
+    }
+
+    /**
+     * Método que permite recorrer las transacciones de un rango de fechas, de la más antigua a la más reciente.
+     * Los extremos se ubican con búsqueda binaria y las transacciones se reconstruyen a medida que se consumen,
+     * así el costo es O(log n + k). Se recorre el registro tal como estaba al llamar al método.
+     * Las transacciones sin fecha no pertenecen a ningún rango.
+     * @param desde Inicio del rango, incluido, o null para no acotarlo
+     * @param hasta Fin del rango, excluido, o null para no acotarlo
+     * @param categoria Categoría de las transacciones, o null para todas
+     * @return Transacciones del rango
+     */
+    public Stream<RegistroTransaccion> enRango(LocalDateTime desde, LocalDateTime hasta, Categoria categoria) {
+        long inicio = desde == null ? SIN_FECHA + 1 : aNanosAcotado(desde);
+        long fin = hasta == null ? Long.MAX_VALUE : aNanosAcotado(hasta);
+
+        // Leer el tamaño antes que el orden y las columnas, que siempre cubren al menos ese prefijo
+        int cantidad = tamano;
+        OrdenFechas ordenActual = orden;
+        long[] columnaFechas = fechas;
+        byte[] columnaCategorias = categorias;
+
+        IntStream posiciones;
+        if (ordenActual == null) {
+            posiciones = IntStream.range(primeraDesde(columnaFechas, cantidad, inicio),
+                    primeraDesde(columnaFechas, cantidad, fin));
+        } else {
+            posiciones = StreamSupport.intStream(Spliterators.spliteratorUnknownSize(
+                    ordenActual.mezclar(columnaFechas, inicio, fin), Spliterator.ORDERED | Spliterator.NONNULL), false)
+                    .filter(posicion -> posicion < cantidad);
+        }
+        if (categoria != null) {
+            byte ordinal = (byte) categoria.ordinal();
+            posiciones = posiciones.filter(posicion -> columnaCategorias[posicion] == ordinal);
+        }
+        return posiciones.mapToObj(this::obtener);
+    }
+
+    /**
+     * Método que permite recorrer los gastos de un rango de fechas directamente sobre las columnas, sin
+     * reconstruir transacciones ni tomar cerrojos. Se recorre el registro tal como estaba al llamar al método,
+     * en el orden en que se agregaron las transacciones. Las transacciones sin fecha no pertenecen a ningún rango.
+     * @param desde Inicio del rango, incluido, o null para no acotarlo
+     * @param hasta Fin del rango, excluido, o null para no acotarlo
+     * @param consumidor Recibe la fecha, el monto y la categoría de cada gasto
+     */
+    void recorrerGastos(LocalDateTime desde, LocalDateTime hasta, ConsumidorGasto consumidor) {
+        long inicio = desde == null ? SIN_FECHA + 1 : aNanosAcotado(desde);
+        long fin = hasta == null ? Long.MAX_VALUE : aNanosAcotado(hasta);
+
+        // Leer el tamaño antes que el orden y las columnas, que siempre cubren al menos ese prefijo
+        int cantidad = tamano;
+        OrdenFechas ordenActual = orden;
+        long[] columnaFechas = fechas;
+        long[] columnaMontos = montos;
+        byte[] columnaCategorias = categorias;
+
+        // Con las fechas en orden se acota el tramo; si no, se filtra cada posición
+        int primera = 0;
+        int ultima = cantidad;
+        if (ordenActual == null) {
+            primera = primeraDesde(columnaFechas, cantidad, inicio);
+            ultima = primeraDesde(columnaFechas, cantidad, fin);
+        }
+        for (int posicion = primera; posicion < ultima; posicion++) {
+            long monto = columnaMontos[posicion];
+            long fecha = columnaFechas[posicion];
+            if (monto < 0 && fecha >= inicio && fecha < fin) {
+                byte categoria = columnaCategorias[posicion];
+                consumidor.aceptar(fecha, -monto, categoria == SIN_CATEGORIA ? CATEGORIAS.length : categoria);
+            }
+        }
+    }
+
+    /**
+     * Método que permite obtener la transacción de una posición.
+     * @param posicion Posición en el registro
+     * @return Transacción reconstruida a partir de las columnas
+     */
+    public RegistroTransaccion obtener(int posicion) {
+        if (posicion < 0 || posicion >= tamano) {
+            throw new IndexOutOfBoundsException("Posición fuera del registro: " + posicion);
+        }
+        return RegistroTransaccion.conCentavos(
+                ids[posicion],
+                aFecha(fechas[posicion]),
+                montos[posicion],
+                diccionarioTitulares[titulares[posicion]],
+                categoriaEn(posicion)
+        );
+    }
+
+    /**
+     * Método que permite buscar la posición de una transacción por su ID.
+     * @param id ID de la transacción
+     * @return Posición de la transacción o -1 si no se encuentra
+     */
+    public int buscar(String id) {
+        if (id == null) {
+            return -1;
+        }
+        // Se lee el tamaño antes que el índice para ignorar celdas de un agregado aún no publicado
+        int cantidad = tamano;
+        String[] columnaIds = ids;
+        int[] tabla = indiceIds;
+        int mascara = tabla.length - 1;
+        for (int celda = dispersar(id) & mascara; tabla[celda] != 0; celda = (celda + 1) & mascara) {
+            int posicion = tabla[celda] - 1;
+            if (posicion < cantidad && columnaIds[posicion].equals(id)) {
+                return posicion;
+            }
+        }
+        return -1;
+    }
+
+    // Cantidad de transacciones registradas
+    public int tamano() {
+        return tamano;
+    }
+
+    // ID de la transacción de una posición
+    public String idEn(int posicion) {
+        return ids[posicion];
+    }
+
+    // Titular de la transacción de una posición
+    public String titularEn(int posicion) {
+        return diccionarioTitulares[titulares[posicion]];
+    }
+
+    // Monto en centavos de una posición
+    public long montoEn(int posicion) {
+        return montos[posicion];
+    }
+
+    // Fecha en nanosegundos desde la época de una posición
+    public long fechaEn(int posicion) {
+        return fechas[posicion];
+    }
+
+    // Categoría de una posición, o null si no tiene
+    public Categoria categoriaEn(int posicion) {
+        byte ordinal = categorias[posicion];
+        return ordinal == SIN_CATEGORIA ? null : CATEGORIAS[ordinal];
+    }
+
+    /**
+     * Método que permite obtener una vista de solo lectura del registro.
+     * Los elementos se reconstruyen al pedirlos y la vista refleja las transacciones que se agreguen después.
+     * @return Lista de solo lectura
+     */
+    public List<RegistroTransaccion> vista() {
+        return vista;
+    }
+
+    // Convierte una fecha a nanosegundos desde la época
+    static long aNanos(LocalDateTime fecha) {
+        if (fecha == null) {
+            return SIN_FECHA;
+        }
+        try {
+            return Math.addExact(Math.multiplyExact(fecha.toEpochSecond(ZoneOffset.UTC), 1_000_000_000L), fecha.getNano());
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("La fecha de la transacción está fuera de rango: " + fecha);
+        }
+    }
+
+    // Convierte nanosegundos desde la época a fecha
+    static LocalDateTime aFecha(long nanos) {
+        if (nanos == SIN_FECHA) {
+            return null;
+        }
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(nanos, 1_000_000_000L),
+                (int) Math.floorMod(nanos, 1_000_000_000L), ZoneOffset.UTC);
+    }
+
+    // Método auxiliar que agrega una posición al índice por ID, duplicando la tabla si pasa de la mitad
+    private void indexarId(int posicion) {
+        int[] tabla = indiceIds;
+        if ((posicion + 1) * 2 > tabla.length) {
+            int[] nueva = new int[tabla.length * 2];
+            for (int i = 0; i < posicion; i++) {
+                insertarEnTabla(nueva, i);
+            }
+            insertarEnTabla(nueva, posicion);
+            indiceIds = nueva;
+        } else {
+            insertarEnTabla(tabla, posicion);
+        }
+    }
+
+    private void insertarEnTabla(int[] tabla, int posicion) {
+        int mascara = tabla.length - 1;
+        int celda = dispersar(ids[posicion]) & mascara;
+        while (tabla[celda] != 0) {
+            celda = (celda + 1) & mascara;
+        }
+        tabla[celda] = posicion + 1;
+    }
+
+    private static int dispersar(String id) {
+        int h = id.hashCode() * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    // Método auxiliar que devuelve el índice de un titular, agregándolo al diccionario si es nuevo
+    private int indiceDeTitular(String titular) {
+        Integer indice = indiceTitulares.get(titular);
+        if (indice != null) {
+            return indice;
+        }
+        if (cantidadTitulares == diccionarioTitulares.length) {
+            diccionarioTitulares = Arrays.copyOf(diccionarioTitulares, cantidadTitulares * 2);
+        }
+        diccionarioTitulares[cantidadTitulares] = titular;
+        indiceTitulares.put(titular, cantidadTitulares);
+        return cantidadTitulares++;
+    }
+
+    // Método auxiliar que ubica una posición recién escrita en el orden por fecha
+    private void ordenarPorFecha(int posicion) {
+        long fecha = fechas[posicion];
+        OrdenFechas actual = orden;
+        if (actual == null) {
+            if (posicion == 0 || fechas[posicion - 1] <= fecha) {
+                return; // Sigue en orden
+            }
+            // Primera transacción fuera de orden: las anteriores ya estaban ordenadas
+            int[] principal = new int[Math.max(CAPACIDAD_INICIAL, posicion * 2)];
+            for (int i = 0; i < posicion; i++) {
+                principal[i] = i;
+            }
+            orden = new OrdenFechas(principal, posicion, new int[][]{{posicion}}, 1);
+            return;
+        }
+
+        int[] principal = actual.principal;
+        int cantidad = actual.cantidad;
+        if (fechas[principal[cantidad - 1]] <= fecha) {
+            // Va al final: se agrega después de lo que ven los lectores, sin copiar
+            if (cantidad == principal.length) {
+                principal = Arrays.copyOf(principal, cantidad * 2);
+            }
+            principal[cantidad] = posicion;
+            orden = new OrdenFechas(principal, cantidad + 1, actual.tramos, actual.enTramos);
+            return;
+        }
+
+        // Entra como un tramo de uno y se junta con los tramos recientes que no son más largos, como al sumar
+        // uno a un contador binario: cada posición pasa por O(log n) mezclas
+        int[][] tramos = actual.tramos;
+        int cuenta = tramos.length;
+        int[] tramo = {posicion};
+        while (cuenta > 0 && tramos[cuenta - 1].length <= tramo.length) {
+            tramo = mezclar(tramos[--cuenta], tramo, 0);
+        }
+        int enTramos = actual.enTramos + 1;
+        if (enTramos < cantidad) {
+            int[][] nuevos = Arrays.copyOf(tramos, cuenta + 1);
+            nuevos[cuenta] = tramo;
+            orden = new OrdenFechas(principal, cantidad, nuevos, enTramos);
+            return;
+        }
+        // Los tramos ya suman tanto como el principal: se juntan todos con él, así el principal al menos se
+        // duplica entre una copia y la siguiente
+        while (cuenta > 0) {
+            tramo = mezclar(tramos[--cuenta], tramo, 0);
+        }
+        int[] mezcla = mezclar(Arrays.copyOf(principal, cantidad), tramo, Math.max(principal.length,
+                (cantidad + enTramos) * 2));
+        orden = new OrdenFechas(mezcla, cantidad + enTramos, new int[0][], 0);
+    }
+
+    // Método auxiliar que mezcla por fecha dos arreglos ordenados en uno nuevo de al menos la capacidad dada;
+    // en fechas iguales va primero el anterior, que guarda posiciones más antiguas
+    private int[] mezclar(int[] anterior, int[] posterior, int capacidad) {
+        int[] mezcla = new int[Math.max(capacidad, anterior.length + posterior.length)];
+        int i = 0;
+        int j = 0;
+        for (int k = 0; i < anterior.length || j < posterior.length; k++) {
+            if (j == posterior.length || (i < anterior.length && fechas[anterior[i]] <= fechas[posterior[j]])) {
+                mezcla[k] = anterior[i++];
+            } else {
+                mezcla[k] = posterior[j++];
+            }
+        }
+        return mezcla;
+    }
+
+    // Primera posición entre 0 y cantidad cuya fecha es mayor o igual a la dada; la columna debe estar ordenada
+    private static int primeraDesde(long[] columnaFechas, int cantidad, long fecha) {
+        int bajo = 0;
+        int alto = cantidad;
+        while (bajo < alto) {
+            int medio = (bajo + alto) >>> 1;
+            if (columnaFechas[medio] < fecha) {
+                bajo = medio + 1;
+            } else {
+                alto = medio;
+            }
+        }
+        return bajo;
+    }
+
+    // Primer índice de una permutación cuya fecha es mayor o igual a la dada
+    private static int primeraDesde(int[] permutacion, int cantidad, long[] columnaFechas, long fecha) {
+        int bajo = 0;
+        int alto = cantidad;
+        while (bajo < alto) {
+            int medio = (bajo + alto) >>> 1;
+            if (columnaFechas[permutacion[medio]] < fecha) {
+                bajo = medio + 1;
+            } else {
+                alto = medio;
+            }
+        }
+        return bajo;
+    }
+
+    // Convierte un extremo de un rango a nanosegundos, acotando las fechas que no caben en un long
+    static long aNanosAcotado(LocalDateTime fecha) {
+        try {
+            return aNanos(fecha);
+        } catch (IllegalArgumentException e) {
+            return fecha.getYear() < 1970 ? SIN_FECHA + 1 : Long.MAX_VALUE;
+        }
+    }
+
+    // Receptor de los gastos de recorrerGastos: fecha en nanosegundos, monto positivo en centavos y ordinal de
+    // la categoría, o la cantidad de categorías si no tiene
+    interface ConsumidorGasto {
+        void aceptar(long fecha, long monto, int categoria);
+    }
+
+    /**
+     * Posiciones ordenadas por fecha, para cuando alguna transacción llegó fuera de orden.
+     * Las que llegan fuera de orden se guardan aparte en tramos ordenados de tamaños decrecientes (del más
+     * antiguo al más reciente), que se juntan entre sí al estilo de un contador binario, y con el principal
+     * recién cuando suman tanto como él; así cada una se copia O(log n) veces en lugar de copiar todo el orden.
+     * Los arreglos no cambian en el tramo que ve un lector: el principal solo crece al final y los tramos
+     * no se modifican después de creados.
+     */
+    private static final class OrdenFechas {
+        final int[] principal;
+        final int cantidad;
+        final int[][] tramos;
+        final int enTramos;
+
+        OrdenFechas(int[] principal, int cantidad, int[][] tramos, int enTramos) {
+            this.principal = principal;
+            this.cantidad = cantidad;
+            this.tramos = tramos;
+            this.enTramos = enTramos;
+        }
+
+        // Recorre las posiciones del rango del principal y los tramos, mezclándolas por fecha; en fechas iguales
+        // va primero la fuente anterior, que guarda las posiciones más antiguas
+        PrimitiveIterator.OfInt mezclar(long[] columnaFechas, long inicio, long fin) {
+            int fuentes = tramos.length + 1;
+            int[][] arreglos = new int[fuentes][];
+            int[] desde = new int[fuentes];
+            int[] hasta = new int[fuentes];
+            int enRango = 0;
+            for (int f = 0; f < fuentes; f++) {
+                arreglos[f] = f == 0 ? principal : tramos[f - 1];
+                int largo = f == 0 ? cantidad : arreglos[f].length;
+                desde[f] = primeraDesde(arreglos[f], largo, columnaFechas, inicio);
+                hasta[f] = primeraDesde(arreglos[f], largo, columnaFechas, fin);
+                enRango += hasta[f] - desde[f];
+            }
+            int total = enRango;
+            return new PrimitiveIterator.OfInt() {
+                int entregadas;
+
+                @Override
+                public boolean hasNext() {
+                    return entregadas < total;
+                }
+
+                @Override
+                public int nextInt() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    int elegida = -1;
+                    long menor = Long.MAX_VALUE;
+                    for (int f = 0; f < fuentes; f++) {
+                        if (desde[f] < hasta[f] && (elegida < 0 || columnaFechas[arreglos[f][desde[f]]] < menor)) {
+                            elegida = f;
+                            menor = columnaFechas[arreglos[f][desde[f]]];
+                        }
+                    }
+                    entregadas++;
+                    return arreglos[elegida][desde[elegida]++];
+                }
+            };
+        }
+    }
+
+    // Método auxiliar que agranda las columnas; las nuevas quedan visibles al publicar el tamaño
+    private void asegurarCapacidad(int minima) {
+        if (minima <= ids.length) {
+            return;
+        }
+        int nueva = Math.max(minima, ids.length + (ids.length >> 1));
+        ids = Arrays.copyOf(ids, nueva);
+        fechas = Arrays.copyOf(fechas, nueva);
+        montos = Arrays.copyOf(montos, nueva);
+        categorias = Arrays.copyOf(categorias, nueva);
+        titulares = Arrays.copyOf(titulares, nueva);
+    }
+
+    // Vista de solo lectura que reconstruye cada transacción al pedirla
+    private class Vista extends AbstractList<RegistroTransaccion> implements RandomAccess {
+        @Override
+        public RegistroTransaccion get(int index) {
+            return obtener(index);
+        }
+
+        @Override
+        public int size() {
+            return tamano;
+        }
+    }
+}
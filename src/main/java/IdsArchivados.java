@@ -0,0 +1,157 @@
+import java.lang.invoke.VarHandle;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * IDs de transacción de las billeteras archivadas, que siguen reservados aunque sus billeteras ya no estén
+ * en memoria. En lugar de un String y una entrada de mapa por ID, los IDs se guardan codificados uno detrás
+ * de otro en un solo arreglo de bytes, y una tabla hash de direccionamiento abierto guarda en cada celda
+ * (un long) el hash del ID y su posición, así casi ninguna comparación llega a leer los bytes.
+ * Los IDs solo se agregan: el número de una billetera archivada no se reutiliza y sus IDs tampoco.
+ *
+ * Un solo hilo a la vez puede agregar y la búsqueda no bloquea: cada ID se escribe antes que su celda, con
+ * una barrera entre los dos, y al crecer los arreglos nuevos se publican juntos en un campo volátil.
+ */
+class IdsArchivados {
+    private static final int CAPACIDAD_INICIAL = 16;
+
+    // Arreglos en uso; se reemplazan juntos al crecer
+    private static final class Tablas {
+        final long[] celdas; // Hash en la parte alta y posición del ID más uno en la baja; 0 es una celda vacía
+        final byte[] datos; // Cada ID como [longitud][UTF-8]
+
+        Tablas(long[] celdas, byte[] datos) {
+            this.celdas = celdas;
+            this.datos = datos;
+        }
+    }
+
+    private volatile Tablas tablas = new Tablas(new long[CAPACIDAD_INICIAL * 2], new byte[CAPACIDAD_INICIAL * 16]);
+    private volatile int cantidad;
+    private int fin; // Próxima posición libre en datos; solo la usa quien agrega
+
+    /**
+     * Método que permite reservar los IDs de las transacciones de un historial.
+     * Los que ya estaban se ignoran.
+     * @param historial Historial de la billetera archivada
+     */
+    synchronized void agregar(HistorialTransacciones historial) {
+        for (int i = 0; i < historial.tamano(); i++) {
+            agregar(historial.idEn(i));
+        }
+    }
+
+    // Método auxiliar que agrega un ID si no estaba; requiere el monitor tomado
+    private void agregar(String id) {
+        byte[] bytes = id.getBytes(StandardCharsets.UTF_8);
+        int hash = dispersar(bytes);
+        if (buscar(tablas, bytes, hash)) {
+            return;
+        }
+        Tablas actual = asegurarCapacidad(Integer.BYTES + bytes.length);
+        int posicion = fin;
+        escribirLongitud(actual.datos, posicion, bytes.length);
+        System.arraycopy(bytes, 0, actual.datos, posicion + Integer.BYTES, bytes.length);
+        fin = posicion + Integer.BYTES + bytes.length;
+        VarHandle.releaseFence(); // Los bytes del ID quedan visibles antes que su celda
+        insertar(actual.celdas, (long) hash << Integer.SIZE | (posicion + 1L));
+        cantidad++;
+    }
+
+    /**
+     * Método que permite saber si un ID pertenece a una billetera archivada.
+     * @param id ID de la transacción
+     * @return true si el ID está reservado por una billetera archivada
+     */
+    boolean contiene(String id) {
+        if (cantidad == 0) {
+            return false;
+        }
+        byte[] bytes = id.getBytes(StandardCharsets.UTF_8);
+        return buscar(tablas, bytes, dispersar(bytes));
+    }
+
+    // Cantidad de IDs reservados
+    int cantidad() {
+        return cantidad;
+    }
+
+    // Método auxiliar que busca un ID codificado en unas tablas
+    private static boolean buscar(Tablas actual, byte[] bytes, int hash) {
+        long[] celdas = actual.celdas;
+        int mascara = celdas.length - 1;
+        for (int i = hash & mascara; ; i = (i + 1) & mascara) {
+            long celda = celdas[i];
+            if (celda == 0) {
+                return false;
+            }
+            VarHandle.acquireFence(); // Los bytes del ID se leen después de ver su celda
+            if ((int) (celda >>> Integer.SIZE) == hash && iguales(actual.datos, (int) celda - 1, bytes)) {
+                return true;
+            }
+        }
+    }
+
+    // Método auxiliar que compara el ID guardado en una posición con uno codificado
+    private static boolean iguales(byte[] datos, int posicion, byte[] bytes) {
+        int desde = posicion + Integer.BYTES;
+        return leerLongitud(datos, posicion) == bytes.length
+                && Arrays.equals(datos, desde, desde + bytes.length, bytes, 0, bytes.length);
+    }
+
+    // Método auxiliar que agranda la tabla o los datos si hace falta y devuelve las tablas en uso; requiere el
+    // monitor tomado
+    private Tablas asegurarCapacidad(int bytesNuevos) {
+        Tablas actual = tablas;
+        long[] celdas = actual.celdas;
+        byte[] datos = actual.datos;
+        if (bytesNuevos > datos.length - fin) {
+            long longitud = Math.max(2L * datos.length, (long) fin + bytesNuevos);
+            if (longitud > Integer.MAX_VALUE - 8) {
+                throw new IllegalStateException("No entran más IDs archivados.");
+            }
+            datos = Arrays.copyOf(datos, (int) longitud);
+        }
+        if ((cantidad + 1) * 2 > celdas.length) {
+            celdas = new long[celdas.length * 2];
+            for (long celda : actual.celdas) {
+                if (celda != 0) {
+                    insertar(celdas, celda);
+                }
+            }
+        }
+        if (celdas != actual.celdas || datos != actual.datos) {
+            actual = new Tablas(celdas, datos);
+            tablas = actual;
+        }
+        return actual;
+    }
+
+    // Método auxiliar que pone una celda en el primer lugar libre desde su hash
+    private static void insertar(long[] celdas, long celda) {
+        int mascara = celdas.length - 1;
+        int i = (int) (celda >>> Integer.SIZE) & mascara;
+        while (celdas[i] != 0) {
+            i = (i + 1) & mascara;
+        }
+        celdas[i] = celda;
+    }
+
+    // Método auxiliar que mezcla los bytes de un ID
+    private static int dispersar(byte[] bytes) {
+        int h = Arrays.hashCode(bytes) * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private static void escribirLongitud(byte[] datos, int posicion, int longitud) {
+        datos[posicion] = (byte) (longitud >>> 24);
+        datos[posicion + 1] = (byte) (longitud >>> 16);
+        datos[posicion + 2] = (byte) (longitud >>> 8);
+        datos[posicion + 3] = (byte) longitud;
+    }
+
+    private static int leerLongitud(byte[] datos, int posicion) {
+        return (datos[posicion] & 0xFF) << 24 | (datos[posicion + 1] & 0xFF) << 16
+                | (datos[posicion + 2] & 0xFF) << 8 | (datos[posicion + 3] & 0xFF);
+    }
+}
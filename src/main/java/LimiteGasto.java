@@ -0,0 +1,101 @@
+import java.time.Duration;
+
+/**
+ * Límite de velocidad sobre una ventana deslizante de tiempo: un monto máximo de gastos, o una cantidad
+ * máxima de gastos, de todas las categorías o de una sola. Por ejemplo, no gastar más de 500 por hora o no
+ * hacer más de 3 gastos de VIAJES por minuto. Los ingresos no cuentan y nunca se rechazan por un límite.
+ * Los límites se asignan a una billetera o a un usuario desde el {@link Banco}.
+ */
+public class LimiteGasto {
+    private static final Duration VENTANA_MINIMA = Duration.ofSeconds(1);
+
+    private final boolean porMonto; // true si limita el monto gastado, false si limita la cantidad de gastos
+    private final long maximo; // Centavos o cantidad de gastos
+    private final Duration ventana;
+    private final Categoria categoria; // null si aplica a todas las categorías
+
+    // Constructor
+    private LimiteGasto(boolean porMonto, long maximo, Duration ventana, Categoria categoria) {
+        if (ventana == null || ventana.compareTo(VENTANA_MINIMA) < 0) {
+            throw new IllegalArgumentException("La ventana del límite debe ser de al menos un segundo.");
+        }
+        this.porMonto = porMonto;
+        this.maximo = maximo;
+        this.ventana = ventana;
+        this.categoria = categoria;
+    }
+
+    /**
+     * Método que permite crear un límite al monto gastado en una ventana, en todas las categorías.
+     * @param monto Monto máximo de gastos
+     * @param ventana Duración de la ventana
+     * @return Límite creado
+     */
+    public static LimiteGasto montoMaximo(double monto, Duration ventana) {
+        return montoMaximo(monto, ventana, null);
+    }
+
+    /**
+     * Método que permite crear un límite al monto gastado en una ventana.
+     * @param monto Monto máximo de gastos
+     * @param ventana Duración de la ventana
+     * @param categoria Categoría de los gastos, o null para todas
+     * @return Límite creado
+     */
+    public static LimiteGasto montoMaximo(double monto, Duration ventana, Categoria categoria) {
+        long centavos = Dinero.desdeDouble(monto);
+        if (centavos <= 0) {
+            throw new IllegalArgumentException("El monto máximo debe ser positivo.");
+        }
+        return new LimiteGasto(true, centavos, ventana, categoria);
+    }
+
+    /**
+     * Método que permite crear un límite a la cantidad de gastos de una ventana.
+     * @param cantidad Cantidad máxima de gastos
+     * @param ventana Duración de la ventana
+     * @param categoria Categoría de los gastos, o null para todas
+     * @return Límite creado
+     */
+    public static LimiteGasto cantidadMaxima(int cantidad, Duration ventana, Categoria categoria) {
+        if (cantidad <= 0) {
+            throw new IllegalArgumentException("La cantidad máxima debe ser positiva.");
+        }
+        return new LimiteGasto(false, cantidad, ventana, categoria);
+    }
+
+    // Lo que una transacción suma al límite: el monto del gasto, uno por gasto o 0 si no le aplica
+    long valorDe(long monto, Categoria categoriaTransaccion) {
+        if (monto >= 0 || (categoria != null && categoria != categoriaTransaccion)) {
+            return 0;
+        }
+        return porMonto ? Dinero.absoluto(monto) : 1;
+    }
+
+    // Getters
+    public boolean isPorMonto() {
+        return porMonto;
+    }
+
+    // Máximo en centavos para un límite de monto, o en gastos para uno de cantidad
+    public long getMaximo() {
+        return maximo;
+    }
+
+    public Duration getVentana() {
+        return ventana;
+    }
+
+    public Categoria getCategoria() {
+        return categoria;
+    }
+
+    @Override
+    public String toString() {
+        return "LimiteGasto{" +
+                (porMonto ? "monto=" + Dinero.formatear(maximo) : "cantidad=" + maximo) +
+                ", ventana=" + ventana +
+                ", categoria=" + categoria +
+                '}';
+    }
+}
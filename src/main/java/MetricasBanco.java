@@ -0,0 +1,263 @@
+import java.io.IOException;
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Métricas de las operaciones de un banco: un contador por operación y resultado, y un histograma
+ * de latencias por operación.
+ *
+ * Los contadores son {@link LongAdder}, así que hilos que cuentan a la vez no compiten por la misma
+ * línea de caché. Medir una latencia cuesta dos lecturas del reloj, más que la operación en las consultas
+ * más rápidas, por eso solo se mide una de cada {@link #setMuestreoLatencias muestreo} llamadas, elegida
+ * al azar; los contadores cuentan todas.
+ */
+public class MetricasBanco {
+    public static final long NO_MEDIDA = Long.MIN_VALUE; // Marca de una llamada cuya latencia no se mide
+
+    /**
+     * Operaciones del banco que se miden.
+     */
+    public enum Operacion {
+        AGREGAR_USUARIO, ELIMINAR_USUARIO, ACTUALIZAR_USUARIO, OBTENER_USUARIO, CREAR_BILLETERA,
+        REALIZAR_TRANSACCION, CONSULTAR_SALDO, CONSULTAR_TRANSACCION, TRANSFERIR
+    }
+
+    /**
+     * Resultados posibles de una operación.
+     */
+    public enum Resultado {
+        EXITO, SALDO_INSUFICIENTE, LIMITE_EXCEDIDO, BILLETERA_DESCONOCIDA, BILLETERA_INACTIVA, USUARIO_DESCONOCIDO, USUARIO_DUPLICADO,
+        TRANSACCION_DESCONOCIDA, ID_DUPLICADO, INVALIDA, NO_REGISTRADA;
+
+        // Resultado equivalente de una transacción
+        static Resultado de(ResultadoTransaccion resultado) {
+            return switch (resultado) {
+                case ACEPTADA -> EXITO;
+                case SALDO_INSUFICIENTE -> SALDO_INSUFICIENTE;
+                case LIMITE_EXCEDIDO -> LIMITE_EXCEDIDO;
+                case BILLETERA_DESCONOCIDA -> BILLETERA_DESCONOCIDA;
+                case BILLETERA_INACTIVA -> BILLETERA_INACTIVA;
+                case ID_DUPLICADO -> ID_DUPLICADO;
+                case INVALIDA -> INVALIDA;
+                case NO_REGISTRADA -> NO_REGISTRADA;
+            };
+        }
+    }
+
+    private static final Operacion[] OPERACIONES = Operacion.values();
+    private static final Resultado[] RESULTADOS = Resultado.values();
+
+    private final LongAdder[] contadores = new LongAdder[OPERACIONES.length * RESULTADOS.length];
+    private final HistogramaLatencias[] latencias = new HistogramaLatencias[OPERACIONES.length];
+    private volatile int mascaraMuestreo = 63; // Se mide una de cada 64 llamadas
+
+    // Constructor
+    public MetricasBanco() {
+        for (int i = 0; i < contadores.length; i++) {
+            contadores[i] = new LongAdder();
+        }
+        for (int i = 0; i < latencias.length; i++) {
+            latencias[i] = new HistogramaLatencias();
+        }
+    }
+
+    /**
+     * Método que permite marcar el inicio de una operación.
+     * @return Instante de inicio en nanosegundos, o {@link #NO_MEDIDA} si esta llamada no se mide
+     */
+    public long iniciar() {
+        int mascara = mascaraMuestreo;
+        if (mascara < 0 || (ThreadLocalRandom.current().nextInt() & mascara) != 0) {
+            return NO_MEDIDA;
+        }
+        return System.nanoTime();
+    }
+
+    /**
+     * Método que permite registrar el fin de una operación.
+     * @param operacion Operación realizada
+     * @param resultado Resultado de la operación
+     * @param inicio Valor devuelto por {@link #iniciar}
+     */
+    public void registrar(Operacion operacion, Resultado resultado, long inicio) {
+        contadores[operacion.ordinal() * RESULTADOS.length + resultado.ordinal()].increment();
+        if (inicio != NO_MEDIDA) {
+            latencias[operacion.ordinal()].registrar(System.nanoTime() - inicio);
+        }
+    }
+
+    /**
+     * Método que permite contar varias operaciones de una vez, sin medir su latencia.
+     * @param operacion Operación realizada
+     * @param resultado Resultado de las operaciones
+     * @param cantidad Cantidad de operaciones
+     */
+    public void contar(Operacion operacion, Resultado resultado, long cantidad) {
+        if (cantidad > 0) {
+            contadores[operacion.ordinal() * RESULTADOS.length + resultado.ordinal()].add(cantidad);
+        }
+    }
+
+    /**
+     * Método que permite elegir cada cuántas llamadas se mide la latencia.
+     * @param cada Potencia de dos: 1 mide todas las llamadas; 0 no mide ninguna
+     */
+    public void setMuestreoLatencias(int cada) {
+        if (cada < 0 || Integer.bitCount(cada) > 1) {
+            throw new IllegalArgumentException("El muestreo debe ser 0 o una potencia de dos.");
+        }
+        mascaraMuestreo = cada - 1;
+    }
+
+    /**
+     * Método que permite copiar los contadores y los histogramas, junto con los tamaños del banco.
+     * @param usuarios Cantidad de usuarios
+     * @param billeteras Cantidad de billeteras
+     * @param transacciones Cantidad de transacciones registradas
+     * @param bytesDiario Bytes escritos en el diario, o 0 si no hay persistencia
+     * @return Copia de las métricas
+     */
+    Instantanea instantanea(long usuarios, long billeteras, long transacciones, long bytesDiario) {
+        long[] conteos = new long[contadores.length];
+        for (int i = 0; i < contadores.length; i++) {
+            conteos[i] = contadores[i].sum();
+        }
+        HistogramaLatencias.Instantanea[] copias = new HistogramaLatencias.Instantanea[latencias.length];
+        for (int i = 0; i < latencias.length; i++) {
+            copias[i] = latencias[i].instantanea();
+        }
+        return new Instantanea(conteos, copias, usuarios, billeteras, transacciones, bytesDiario);
+    }
+
+    /**
+     * Copia inmutable de las métricas de un banco en un momento dado.
+     */
+    public static final class Instantanea {
+        private final long[] conteos;
+        private final HistogramaLatencias.Instantanea[] latencias;
+        private final long usuarios;
+        private final long billeteras;
+        private final long transacciones;
+        private final long bytesDiario;
+
+        private Instantanea(long[] conteos, HistogramaLatencias.Instantanea[] latencias, long usuarios,
+                            long billeteras, long transacciones, long bytesDiario) {
+            this.conteos = conteos;
+            this.latencias = latencias;
+            this.usuarios = usuarios;
+            this.billeteras = billeteras;
+            this.transacciones = transacciones;
+            this.bytesDiario = bytesDiario;
+        }
+
+        /**
+         * Método que permite obtener cuántas veces una operación terminó con un resultado.
+         */
+        public long contar(Operacion operacion, Resultado resultado) {
+            return conteos[operacion.ordinal() * RESULTADOS.length + resultado.ordinal()];
+        }
+
+        /**
+         * Método que permite obtener cuántas veces se llamó una operación, con cualquier resultado.
+         */
+        public long contar(Operacion operacion) {
+            long total = 0;
+            for (Resultado resultado : RESULTADOS) {
+                total += contar(operacion, resultado);
+            }
+            return total;
+        }
+
+        /**
+         * Método que permite escribir las métricas en el formato de texto de Prometheus, para exponerlas
+         * a un recolector. Las latencias se escriben en segundos, como percentiles 50, 90, 99 y 99.9.
+         * @param salida Destino del texto
+         * @throws IOException Si falla la escritura
+         */
+        public void escribirTexto(Appendable salida) throws IOException {
+            salida.append("# TYPE banco_operaciones_total counter\n");
+            for (Operacion operacion : OPERACIONES) {
+                for (Resultado resultado : RESULTADOS) {
+                    long valor = contar(operacion, resultado);
+                    if (valor > 0) {
+                        salida.append("banco_operaciones_total{operacion=\"").append(nombre(operacion))
+                                .append("\",resultado=\"").append(nombre(resultado)).append("\"} ")
+                                .append(Long.toString(valor)).append('\n');
+                    }
+                }
+            }
+
+            salida.append("# TYPE banco_latencia_segundos summary\n");
+            for (Operacion operacion : OPERACIONES) {
+                HistogramaLatencias.Instantanea latencia = latencias[operacion.ordinal()];
+                if (latencia.getCantidad() == 0) {
+                    continue;
+                }
+                String etiqueta = "{operacion=\"" + nombre(operacion) + "\"";
+                for (String cuantil : new String[]{"0.5", "0.9", "0.99", "0.999"}) {
+                    salida.append("banco_latencia_segundos").append(etiqueta).append(",quantile=\"").append(cuantil)
+                            .append("\"} ").append(segundos(latencia.percentil(Double.parseDouble(cuantil) * 100)))
+                            .append('\n');
+                }
+                salida.append("banco_latencia_segundos_sum").append(etiqueta).append("} ")
+                        .append(segundos(latencia.getSuma())).append('\n');
+                salida.append("banco_latencia_segundos_count").append(etiqueta).append("} ")
+                        .append(Long.toString(latencia.getCantidad())).append('\n');
+            }
+
+            salida.append("# TYPE banco_usuarios gauge\nbanco_usuarios ").append(Long.toString(usuarios)).append('\n');
+            salida.append("# TYPE banco_billeteras gauge\nbanco_billeteras ").append(Long.toString(billeteras)).append('\n');
+            salida.append("# TYPE banco_transacciones gauge\nbanco_transacciones ").append(Long.toString(transacciones)).append('\n');
+            salida.append("# TYPE banco_diario_bytes gauge\nbanco_diario_bytes ").append(Long.toString(bytesDiario)).append('\n');
+        }
+
+        /**
+         * Método que permite juntar las métricas de dos bancos, por ejemplo las de las particiones de un
+         * {@link BancoParticionado}: suma los contadores, los histogramas y los tamaños.
+         * @param otra Métricas a sumar
+         * @return Métricas de los dos bancos
+         */
+        public Instantanea sumar(Instantanea otra) {
+            long[] suma = new long[conteos.length];
+            for (int i = 0; i < conteos.length; i++) {
+                suma[i] = conteos[i] + otra.conteos[i];
+            }
+            HistogramaLatencias.Instantanea[] juntas = new HistogramaLatencias.Instantanea[latencias.length];
+            for (int i = 0; i < latencias.length; i++) {
+                juntas[i] = latencias[i].sumar(otra.latencias[i]);
+            }
+            return new Instantanea(suma, juntas, usuarios + otra.usuarios, billeteras + otra.billeteras,
+                    transacciones + otra.transacciones, bytesDiario + otra.bytesDiario);
+        }
+
+        private static String nombre(Enum<?> valor) {
+            return valor.name().toLowerCase(Locale.ROOT);
+        }
+
+        private static String segundos(long nanos) {
+            return String.format(Locale.ROOT, "%.9f", nanos / 1e9);
+        }
+
+        // Getters
+        public HistogramaLatencias.Instantanea getLatencia(Operacion operacion) {
+            return latencias[operacion.ordinal()];
+        }
+
+        public long getUsuarios() {
+            return usuarios;
+        }
+
+        public long getBilleteras() {
+            return billeteras;
+        }
+
+        public long getTransacciones() {
+            return transacciones;
+        }
+
+        public long getBytesDiario() {
+            return bytesDiario;
+        }
+    }
+}
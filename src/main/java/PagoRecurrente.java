@@ -0,0 +1,115 @@
+import java.time.Duration;
+
+/**
+ * Pago programado que se repite con un período fijo, como una factura mensual o una orden permanente.
+ * Cada vez que vence se genera una transacción a partir de la plantilla, con el ID del pago seguido del
+ * instante nominal del vencimiento en milisegundos, así una ejecución repetida se rechaza como ID duplicado y no
+ * se cobra dos veces, aunque el pago se vuelva a programar después de reiniciar o de cancelarlo.
+ * Lo crea y lo administra un {@link ProgramadorPagos}.
+ */
+public class PagoRecurrente {
+    private final String id;
+    private final String numeroBilletera;
+    private final long montoCentavos;
+    private final String titular;
+    private final Categoria categoria;
+    private final long periodo; // Milisegundos entre ejecuciones
+    private final long desplazamiento; // Milisegundos que se corre cada ejecución dentro de la ventana de dispersión
+    private volatile long proximaEjecucion; // Milisegundos desde la época de la próxima ejecución nominal
+    private volatile long ejecuciones;
+    private volatile boolean cancelado;
+
+    // Enlaces y vencimiento dentro de la rueda del programador; solo se usan con su cerrojo tomado
+    PagoRecurrente anterior;
+    PagoRecurrente siguiente;
+    long tickVencimiento;
+    int nivel = -1; // Nivel de la rueda donde está, o -1 si no está en la rueda
+    int ranura;
+
+    // Constructor
+    PagoRecurrente(String numeroBilletera, RegistroTransaccion plantilla, long primeraEjecucion, long periodo,
+                   long desplazamiento) {
+        this.id = plantilla.getId();
+        this.numeroBilletera = numeroBilletera;
+        this.montoCentavos = plantilla.getMontoCentavos();
+        this.titular = plantilla.getTitular();
+        this.categoria = plantilla.getCategoria();
+        this.periodo = periodo;
+        this.desplazamiento = desplazamiento;
+        this.proximaEjecucion = primeraEjecucion;
+    }
+
+    // Instante en que corre la próxima ejecución: la nominal más el desplazamiento
+    long proximoDisparo() {
+        return proximaEjecucion + desplazamiento;
+    }
+
+    // ID de la transacción de la ejecución que vence ahora; depende del vencimiento y no de cuántas van,
+    // que vuelve a cero si el pago se programa de nuevo
+    String idEjecucion() {
+        return id + "-" + proximaEjecucion;
+    }
+
+    // Pasa a la ejecución siguiente; se llama cuando el banco ya respondió por la que vencía
+    void avanzar() {
+        ejecuciones++;
+        proximaEjecucion += periodo;
+    }
+
+    void cancelar() {
+        cancelado = true;
+    }
+
+    // Getters
+    public String getId() {
+        return id;
+    }
+
+    public String getNumeroBilletera() {
+        return numeroBilletera;
+    }
+
+    public double getMonto() {
+        return Dinero.aDouble(montoCentavos);
+    }
+
+    public long getMontoCentavos() {
+        return montoCentavos;
+    }
+
+    public String getTitular() {
+        return titular;
+    }
+
+    public Categoria getCategoria() {
+        return categoria;
+    }
+
+    public Duration getPeriodo() {
+        return Duration.ofMillis(periodo);
+    }
+
+    // Milisegundos desde la época de la próxima ejecución, sin el desplazamiento
+    public long getProximaEjecucion() {
+        return proximaEjecucion;
+    }
+
+    public long getEjecuciones() {
+        return ejecuciones;
+    }
+
+    public boolean isCancelado() {
+        return cancelado;
+    }
+
+    @Override
+    public String toString() {
+        return "PagoRecurrente{" +
+                "id='" + id + '\'' +
+                ", numeroBilletera='" + numeroBilletera + '\'' +
+                ", monto=" + Dinero.formatear(montoCentavos) +
+                ", periodo=" + getPeriodo() +
+                ", ejecuciones=" + ejecuciones +
+                '}';
+    }
+}
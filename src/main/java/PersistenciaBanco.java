@@ -0,0 +1,410 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.zip.CRC32;
+
+/**
+ * Persistencia de un banco en un directorio, con un diario de eventos e instantáneas periódicas.
+ *
+ * El directorio contiene archivos diario-N.log e instantanea-N.bin. La instantánea N refleja todo lo
+ * registrado en los diarios anteriores a N, así que al recuperar solo se vuelven a aplicar los diarios
+ * desde N. Las instantáneas se toman sin detener el banco: cada billetera se copia con su cerrojo tomado
+ * y los eventos del diario se aplican de forma idempotente (una transacción cuyo ID ya está en la billetera
+ * se omite), por lo que no importa si un evento posterior ya quedó incluido en la instantánea.
+ *
+ * Las billeteras cerradas se guardan en archivadas.bin, un {@link ArchivoBilleteras}, y no aparecen en las
+ * instantáneas. Si el proceso se detuvo entre el cierre de una billetera y su archivo, la billetera vuelve
+ * cerrada desde el diario y se archiva al abrir.
+ *
+ * Las particiones de un banco particionado usan cada una su propio directorio; ver
+ * {@link PersistenciaBancoParticionado}, que decide qué tramos de transferencias entre particiones se aplican.
+ */
+public class PersistenciaBanco implements AutoCloseable {
+    private static final int MAGICO_INSTANTANEA = 0x42414E43; // "BANC"
+    private static final int VERSION_INSTANTANEA = 2; // La versión 2 agrega el estado de cada billetera
+
+    private final Path directorio;
+    private final Banco banco;
+    private final DiarioBanco diario;
+    private final ArchivoBilleteras archivo;
+    private long generacion; // Número del diario en uso
+
+    private PersistenciaBanco(Path directorio, Banco banco, ArchivoBilleteras archivo, boolean sincronizar,
+                              long generacion) throws IOException {
+        this.directorio = directorio;
+        this.banco = banco;
+        this.archivo = archivo;
+        this.generacion = generacion;
+        this.diario = new DiarioBanco(archivoDiario(generacion), sincronizar);
+        banco.setDiario(diario);
+    }
+
+    /**
+     * Método que permite abrir (o crear) un banco persistente en un directorio.
+     * Carga la instantánea más reciente, vuelve a aplicar los diarios posteriores y deja el banco
+     * registrando sus cambios en el diario.
+     * @param directorio Directorio de los archivos
+     * @param nombre Nombre del banco si se crea uno nuevo
+     * @param sincronizar true para hacer fsync antes de confirmar cada operación
+     * @return Persistencia abierta
+     * @throws IOException Si no se pueden leer o crear los archivos
+     */
+    public static PersistenciaBanco abrir(Path directorio, String nombre, boolean sincronizar) throws IOException {
+        Recuperacion recuperacion = cargar(directorio, nombre, Banco::new);
+        recuperacion.reproducir(tramo -> true); // Un banco solo no registra tramos
+        return recuperacion.abrirDiario(sincronizar);
+    }
+
+    /**
+     * Método que permite empezar a recuperar un banco por pasos: carga la instantánea más reciente y deja
+     * los diarios posteriores listos para aplicar.
+     * @param directorio Directorio de los archivos
+     * @param nombre Nombre del banco si se crea uno nuevo
+     * @param crearBanco Crea el banco vacío con su nombre, por ejemplo como partición de un banco particionado
+     * @return Recuperación con los diarios todavía sin aplicar
+     * @throws IOException Si no se pueden leer o crear los archivos
+     */
+    static Recuperacion cargar(Path directorio, String nombre, Function<String, Banco> crearBanco) throws IOException {
+        Files.createDirectories(directorio);
+        TreeMap<Long, Path> instantaneas = listar(directorio, "instantanea-", ".bin");
+        TreeMap<Long, Path> diarios = listar(directorio, "diario-", ".log");
+
+        Banco banco;
+        long desde;
+        if (instantaneas.isEmpty()) {
+            banco = crearBanco.apply(nombre);
+            desde = diarios.isEmpty() ? 0 : diarios.firstKey();
+        } else {
+            desde = instantaneas.lastKey();
+            banco = cargarInstantanea(instantaneas.lastEntry().getValue(), crearBanco);
+        }
+
+        // Los números de las billeteras archivadas y los IDs de sus transacciones siguen usados aunque no estén en
+        // la instantánea
+        ArchivoBilleteras archivo = new ArchivoBilleteras(directorio.resolve("archivadas.bin"));
+        for (String numero : archivo.numeros()) {
+            banco.getGeneradorNumeros().marcarUtilizado(numero);
+            banco.getRegistro().reservarTransaccionesArchivadas(archivo.buscar(numero, id -> null));
+        }
+        banco.setArchivo(archivo);
+        return new Recuperacion(directorio, banco, archivo, diarios.tailMap(desde, true), desde);
+    }
+
+    /**
+     * Banco cargado de su instantánea con los diarios posteriores todavía sin aplicar.
+     * Un banco particionado recupera así todas sus particiones a la vez: primero las carga, después lee los
+     * tramos de transferencias de todos los diarios y recién entonces aplica cada diario, sabiendo qué
+     * tramos tienen su par.
+     */
+    static final class Recuperacion {
+        private final Path directorio;
+        private final Banco banco;
+        private final ArchivoBilleteras archivo;
+        private final TreeMap<Long, Path> diarios;
+        private long generacion;
+
+        // Constructor
+        private Recuperacion(Path directorio, Banco banco, ArchivoBilleteras archivo, SortedMap<Long, Path> diarios,
+                             long generacion) {
+            this.directorio = directorio;
+            this.banco = banco;
+            this.archivo = archivo;
+            this.diarios = new TreeMap<>(diarios);
+            this.generacion = generacion;
+        }
+
+        // Entrega cada tramo de transferencia de los diarios pendientes, sin aplicar nada
+        void recolectarTramos(Consumer<RegistroTransaccion> receptor) throws IOException {
+            for (Path diario : diarios.values()) {
+                recorrerDiario(diario, entrada -> {
+                    if (entrada.readByte() == DiarioBanco.TRAMO_TRANSFERENCIA) {
+                        DiarioBanco.leerTexto(entrada);
+                        receptor.accept(DiarioBanco.leerTransaccion(entrada));
+                    }
+                });
+            }
+        }
+
+        // Aplica los diarios pendientes; un tramo de transferencia se aplica solo si el predicado lo acepta
+        void reproducir(Predicate<RegistroTransaccion> aplicarTramo) throws IOException {
+            for (var entrada : diarios.entrySet()) {
+                recorrerDiario(entrada.getValue(), evento -> aplicarEvento(banco, evento, aplicarTramo));
+                generacion = entrada.getKey();
+            }
+            banco.archivarCerradas();
+        }
+
+        // Deja el banco registrando sus cambios en el diario de la última generación
+        PersistenciaBanco abrirDiario(boolean sincronizar) throws IOException {
+            return new PersistenciaBanco(directorio, banco, archivo, sincronizar, generacion);
+        }
+
+        Banco getBanco() {
+            return banco;
+        }
+    }
+
+    /**
+     * Método que permite guardar una instantánea del banco y descartar los diarios que ya no hacen falta.
+     * El banco puede seguir recibiendo operaciones mientras tanto.
+     * @throws IOException Si no se puede escribir la instantánea
+     */
+    public void tomarInstantanea() throws IOException {
+        tomarInstantanea(() -> { });
+    }
+
+    // Toma la instantánea y ejecuta antesDePublicar con ella ya escrita, antes de que pase a ser la que se usa al
+    // recuperar; si antesDePublicar falla, la instantánea se descarta
+    synchronized void tomarInstantanea(Runnable antesDePublicar) throws IOException {
+        long nueva = generacion + 1;
+        diario.rotar(archivoDiario(nueva));
+        generacion = nueva;
+
+        Path temporal = directorio.resolve("instantanea-" + nueva + ".tmp");
+        try (FileChannel canal = FileChannel.open(temporal, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            OutputStream salida = new BufferedOutputStream(Channels.newOutputStream(canal), 1 << 16);
+            escribirInstantanea(banco, new DataOutputStream(salida));
+            salida.flush();
+            canal.force(true);
+        }
+        try {
+            antesDePublicar.run();
+        } catch (RuntimeException e) {
+            Files.deleteIfExists(temporal);
+            throw e;
+        }
+        Files.move(temporal, archivoInstantanea(nueva), StandardCopyOption.ATOMIC_MOVE);
+
+        // Lo anterior a la nueva generación ya está en la instantánea
+        for (var entrada : listar(directorio, "instantanea-", ".bin").headMap(nueva).values()) {
+            Files.deleteIfExists(entrada);
+        }
+        for (var entrada : listar(directorio, "diario-", ".log").headMap(nueva).values()) {
+            Files.deleteIfExists(entrada);
+        }
+    }
+
+    // Espera a que todo lo registrado hasta ahora en el diario esté escrito (y sincronizado, si corresponde)
+    void esperarDiario() {
+        diario.esperarDurable(diario.posicion());
+    }
+
+    public Banco getBanco() {
+        return banco;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        banco.setDiario(null);
+        diario.close();
+        archivo.close();
+    }
+
+    // Método auxiliar que escribe el estado completo del banco
+    private static void escribirInstantanea(Banco banco, DataOutputStream salida) throws IOException {
+        RegistroBanco registro = banco.getRegistro();
+        List<Usuario> usuarios = registro.copiarUsuarios();
+        List<BilleteraVirtual> billeteras = registro.copiarBilleteras();
+
+        salida.writeInt(MAGICO_INSTANTANEA);
+        salida.writeInt(VERSION_INSTANTANEA);
+        DiarioBanco.escribirTexto(salida, banco.getNombre());
+        salida.writeInt(usuarios.size());
+        for (Usuario usuario : usuarios) {
+            DiarioBanco.escribirUsuario(salida, usuario);
+        }
+        salida.writeInt(billeteras.size());
+        for (BilleteraVirtual billetera : billeteras) {
+            ReentrantLock cerrojo = billetera.getCerrojo();
+            cerrojo.lock();
+            try {
+                DiarioBanco.escribirBilletera(salida, billetera);
+                salida.writeByte(billetera.getEstado().ordinal());
+            } finally {
+                cerrojo.unlock();
+            }
+        }
+    }
+
+    // Método auxiliar que crea un banco a partir de una instantánea
+    private static Banco cargarInstantanea(Path archivo, Function<String, Banco> crearBanco) throws IOException {
+        try (DataInputStream entrada = new DataInputStream(new BufferedInputStream(Files.newInputStream(archivo), 1 << 16))) {
+            int version = entrada.readInt() == MAGICO_INSTANTANEA ? entrada.readInt() : -1;
+            if (version < 1 || version > VERSION_INSTANTANEA) {
+                throw new IOException("El archivo no es una instantánea válida: " + archivo);
+            }
+            Banco banco = crearBanco.apply(DiarioBanco.leerTexto(entrada));
+            RegistroBanco registro = banco.getRegistro();
+            int usuarios = entrada.readInt();
+            for (int i = 0; i < usuarios; i++) {
+                registro.agregarUsuario(DiarioBanco.leerUsuario(entrada));
+            }
+            int billeteras = entrada.readInt();
+            for (int i = 0; i < billeteras; i++) {
+                BilleteraVirtual billetera = DiarioBanco.leerBilletera(entrada, registro::buscarUsuario);
+                if (version >= 2) {
+                    billetera.setEstado(EstadoBilletera.values()[entrada.readByte()]);
+                }
+                banco.getGeneradorNumeros().marcarUtilizado(billetera.getNumero());
+                registro.agregarBilletera(billetera);
+            }
+            return banco;
+        }
+    }
+
+    // Lector del contenido de un evento del diario, empezando por su tipo
+    private interface LectorEvento {
+        void leer(DataInputStream entrada) throws IOException;
+    }
+
+    // Método auxiliar que recorre los eventos de un diario; si el final está cortado lo recorta
+    private static void recorrerDiario(Path archivo, LectorEvento lector) throws IOException {
+        long posicionValida = 0;
+        long tamanoArchivo = Files.size(archivo);
+        try (InputStream flujo = new BufferedInputStream(Files.newInputStream(archivo), 1 << 16)) {
+            DataInputStream entrada = new DataInputStream(flujo);
+            CRC32 crc = new CRC32();
+            byte[] contenido = new byte[256];
+            while (true) {
+                int longitud;
+                try {
+                    longitud = entrada.readInt();
+                    // Una longitud que no cabe en lo que queda del archivo es basura de un final cortado, igual que
+                    // un CRC que no coincide
+                    if (longitud <= 0 || longitud > tamanoArchivo - posicionValida - 2 * Integer.BYTES) {
+                        break;
+                    }
+                    if (longitud > contenido.length) {
+                        contenido = new byte[Math.max(longitud, contenido.length * 2)];
+                    }
+                    entrada.readFully(contenido, 0, longitud);
+                    int esperado = entrada.readInt();
+                    crc.reset();
+                    crc.update(contenido, 0, longitud);
+                    if ((int) crc.getValue() != esperado) {
+                        break;
+                    }
+                } catch (EOFException e) {
+                    break;
+                }
+                lector.leer(new DataInputStream(new ByteArrayInputStream(contenido, 0, longitud)));
+                posicionValida += Integer.BYTES + longitud + Integer.BYTES;
+            }
+        }
+        if (posicionValida < tamanoArchivo) {
+            try (FileChannel canal = FileChannel.open(archivo, StandardOpenOption.WRITE)) {
+                canal.truncate(posicionValida);
+            }
+        }
+    }
+
+    // Método auxiliar que aplica un evento del diario de forma idempotente
+    private static void aplicarEvento(Banco banco, DataInputStream entrada, Predicate<RegistroTransaccion> aplicarTramo)
+            throws IOException {
+        RegistroBanco registro = banco.getRegistro();
+        byte tipo = entrada.readByte();
+        switch (tipo) {
+            case DiarioBanco.USUARIO_AGREGADO, DiarioBanco.USUARIO_ACTUALIZADO -> {
+                Usuario datos = DiarioBanco.leerUsuario(entrada);
+                Usuario existente = registro.buscarUsuario(datos.getId());
+                if (existente == null) {
+                    registro.agregarUsuario(datos);
+                } else {
+                    existente.setNombre(datos.getNombre());
+                    existente.setDireccion(datos.getDireccion());
+                    existente.setCorreo(datos.getCorreo());
+                    existente.setContraseña(datos.getContraseña());
+                    existente.setEstado(datos.isEstado());
+                }
+            }
+            case DiarioBanco.USUARIO_ELIMINADO -> registro.eliminarUsuario(DiarioBanco.leerTexto(entrada));
+            case DiarioBanco.BILLETERA_CREADA -> {
+                String numero = DiarioBanco.leerTexto(entrada);
+                Usuario usuario = registro.buscarUsuario(DiarioBanco.leerTexto(entrada));
+                long saldo = entrada.readLong();
+                if (registro.buscarBilletera(numero) == null) {
+                    banco.getGeneradorNumeros().marcarUtilizado(numero);
+                    registro.agregarBilletera(new BilleteraVirtual(numero, saldo, usuario));
+                }
+            }
+            case DiarioBanco.TRANSACCION, DiarioBanco.TRAMO_TRANSFERENCIA -> {
+                BilleteraVirtual billetera = registro.buscarBilletera(DiarioBanco.leerTexto(entrada));
+                RegistroTransaccion transaccion = DiarioBanco.leerTransaccion(entrada);
+                if (tipo == DiarioBanco.TRANSACCION || aplicarTramo.test(transaccion)) {
+                    aplicarTransaccion(registro, billetera, transaccion);
+                }
+            }
+            case DiarioBanco.TRANSACCIONES -> {
+                // El registro llegó entero, así que se aplican todas sus transacciones
+                int cantidad = entrada.readInt();
+                for (int i = 0; i < cantidad; i++) {
+                    BilleteraVirtual billetera = registro.buscarBilletera(DiarioBanco.leerTexto(entrada));
+                    aplicarTransaccion(registro, billetera, DiarioBanco.leerTransaccion(entrada));
+                }
+            }
+            case DiarioBanco.BILLETERA_ESTADO -> {
+                BilleteraVirtual billetera = registro.buscarBilletera(DiarioBanco.leerTexto(entrada));
+                EstadoBilletera estado = EstadoBilletera.values()[entrada.readByte()];
+                if (billetera != null) {
+                    billetera.setEstado(estado); // Si ya se archivó no hace falta
+                }
+            }
+            default -> throw new IOException("Tipo de evento desconocido en el diario: " + tipo);
+        }
+    }
+
+    // Método auxiliar que aplica una transacción del diario si su billetera existe y todavía no la tiene
+    private static void aplicarTransaccion(RegistroBanco registro, BilleteraVirtual billetera,
+                                           RegistroTransaccion transaccion) {
+        if (billetera != null && billetera.getHistorial().buscar(transaccion.getId()) < 0) {
+            billetera.aplicar(transaccion);
+            registro.reclamarTransaccion(transaccion.getId(), billetera);
+        }
+    }
+
+    private Path archivoDiario(long numero) {
+        return directorio.resolve("diario-" + numero + ".log");
+    }
+
+    private Path archivoInstantanea(long numero) {
+        return directorio.resolve("instantanea-" + numero + ".bin");
+    }
+
+    // Método auxiliar que lista los archivos de un tipo ordenados por su número
+    private static TreeMap<Long, Path> listar(Path directorio, String prefijo, String sufijo) throws IOException {
+        TreeMap<Long, Path> archivos = new TreeMap<>();
+        try (DirectoryStream<Path> contenido = Files.newDirectoryStream(directorio, prefijo + "*" + sufijo)) {
+            for (Path archivo : contenido) {
+                String nombre = archivo.getFileName().toString();
+                String numero = nombre.substring(prefijo.length(), nombre.length() - sufijo.length());
+                try {
+                    archivos.put(Long.parseLong(numero), archivo);
+                } catch (NumberFormatException e) {
+                    // No es un archivo de la persistencia
+                }
+            }
+        }
+        return archivos;
+    }
+}
@@ -0,0 +1,163 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Persistencia de un {@link BancoParticionado} en un directorio: cada partición tiene su propia
+ * {@link PersistenciaBanco} en un subdirectorio particion-N, con su diario, sus instantáneas y su archivo
+ * de billeteras cerradas. Todas las particiones se cargan sobre el mismo índice de IDs de transacción, así
+ * que el índice compartido se reconstruye al recuperar sin guardarlo aparte.
+ *
+ * Una transferencia entre particiones registra un tramo en el diario de cada partición, uno después del
+ * otro. Si el proceso se detiene o el segundo diario falla entre los dos, queda un tramo sin su par y la
+ * transferencia nunca se confirmó, así que al recuperar ese tramo se descarta: antes de aplicar los diarios
+ * se leen los tramos de todas las particiones, y un tramo se aplica solo si su par está en otro diario o ya
+ * estaba en una instantánea. El par se reconoce por el ID (-E y -R) y la fecha, que es la misma en los dos.
+ * Un tramo que ya está en una instantánea se aplica sin buscar su par, así que la instantánea de una partición
+ * no se publica hasta que los diarios de las demás están escritos: los pares de sus tramos ya estaban
+ * registrados cuando se aplicaron, y así no pueden perderse con un búfer sin escribir.
+ */
+public class PersistenciaBancoParticionado implements AutoCloseable {
+    private final BancoParticionado banco;
+    private final PersistenciaBanco[] particiones;
+
+    // Constructor
+    private PersistenciaBancoParticionado(BancoParticionado banco, PersistenciaBanco[] particiones) {
+        this.banco = banco;
+        this.particiones = particiones;
+    }
+
+    /**
+     * Método que permite abrir (o crear) un banco particionado persistente en un directorio.
+     * @param directorio Directorio de los archivos
+     * @param nombre Nombre del banco si se crea uno nuevo
+     * @param cantidadParticiones Cantidad de particiones; debe ser la misma con la que se creó el directorio
+     * @param sincronizar true para hacer fsync antes de confirmar cada operación
+     * @return Persistencia abierta
+     * @throws IOException Si no se pueden leer o crear los archivos o el directorio tiene otra cantidad de particiones
+     */
+    public static PersistenciaBancoParticionado abrir(Path directorio, String nombre, int cantidadParticiones,
+                                                      boolean sincronizar) throws IOException {
+        if (cantidadParticiones <= 0) {
+            throw new IllegalArgumentException("La cantidad de particiones debe ser positiva.");
+        }
+        int existentes = 0;
+        while (Files.isDirectory(directorioParticion(directorio, existentes))) {
+            existentes++;
+        }
+        if (existentes != 0 && existentes != cantidadParticiones) {
+            throw new IOException("El directorio tiene " + existentes + " particiones y no " + cantidadParticiones
+                    + ": " + directorio);
+        }
+
+        long clave = BilleteraVirtual.CLAVE_POR_DEFECTO;
+        Map<String, BilleteraVirtual> billeterasPorTransaccion = new ConcurrentHashMap<>();
+        IdsArchivados idsArchivados = new IdsArchivados();
+        PersistenciaBanco.Recuperacion[] recuperaciones = new PersistenciaBanco.Recuperacion[cantidadParticiones];
+        for (int i = 0; i < cantidadParticiones; i++) {
+            int indice = i;
+            recuperaciones[i] = PersistenciaBanco.cargar(directorioParticion(directorio, i), nombre,
+                    nombreBanco -> BancoParticionado.crearParticion(nombreBanco, billeterasPorTransaccion, idsArchivados, indice,
+                            cantidadParticiones, clave));
+        }
+
+        // Leer los tramos de todos los diarios antes de aplicar alguno
+        Set<String> tramos = new HashSet<>();
+        for (PersistenciaBanco.Recuperacion recuperacion : recuperaciones) {
+            recuperacion.recolectarTramos(tramo -> tramos.add(claveTramo(tramo.getId(), tramo.getFecha())));
+        }
+        for (PersistenciaBanco.Recuperacion recuperacion : recuperaciones) {
+            recuperacion.reproducir(tramo -> tramos.contains(claveTramo(par(tramo.getId()), tramo.getFecha()))
+                    || estaAplicado(billeterasPorTransaccion, idsArchivados, par(tramo.getId()), tramo.getFecha()));
+        }
+
+        Banco[] bancos = new Banco[cantidadParticiones];
+        PersistenciaBanco[] abiertas = new PersistenciaBanco[cantidadParticiones];
+        for (int i = 0; i < cantidadParticiones; i++) {
+            bancos[i] = recuperaciones[i].getBanco();
+            abiertas[i] = recuperaciones[i].abrirDiario(sincronizar);
+        }
+        return new PersistenciaBancoParticionado(new BancoParticionado(bancos[0].getNombre(), bancos, clave), abiertas);
+    }
+
+    /**
+     * Método que permite guardar una instantánea de cada partición y descartar los diarios que ya no hacen falta.
+     * Cada partición puede tomarla en un momento distinto. Antes de publicar cada instantánea se espera a que
+     * los diarios de todas las particiones estén escritos, porque los tramos que contiene no se validan contra
+     * su par al recuperar.
+     * @throws IOException Si no se puede escribir alguna instantánea o algún diario falló
+     */
+    public void tomarInstantanea() throws IOException {
+        try {
+            for (PersistenciaBanco particion : particiones) {
+                particion.tomarInstantanea(this::esperarDiarios);
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    // Método auxiliar que espera a que todo lo registrado en los diarios de las particiones esté escrito
+    private void esperarDiarios() {
+        for (PersistenciaBanco particion : particiones) {
+            particion.esperarDiario();
+        }
+    }
+
+    public BancoParticionado getBanco() {
+        return banco;
+    }
+
+    @Override
+    public void close() throws IOException {
+        IOException error = null;
+        for (PersistenciaBanco particion : particiones) {
+            try {
+                particion.close();
+            } catch (IOException e) {
+                if (error == null) {
+                    error = e;
+                } else {
+                    error.addSuppressed(e);
+                }
+            }
+        }
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    private static Path directorioParticion(Path directorio, int indice) {
+        return directorio.resolve("particion-" + indice);
+    }
+
+    // Método auxiliar que identifica un tramo por su ID y su fecha, así un tramo huérfano no se confunde con otra
+    // transferencia que después reutilizó el mismo ID
+    private static String claveTramo(String id, LocalDateTime fecha) {
+        return id + "@" + fecha;
+    }
+
+    // ID del otro tramo de una transferencia
+    private static String par(String id) {
+        String base = id.substring(0, id.length() - 2);
+        return id.endsWith("-E") ? base + "-R" : base + "-E";
+    }
+
+    // Método auxiliar que indica si un tramo con ese ID y esa fecha ya está en alguna billetera, por ejemplo desde
+    // una instantánea
+    private static boolean estaAplicado(Map<String, BilleteraVirtual> billeterasPorTransaccion,
+                                        IdsArchivados idsArchivados, String id, LocalDateTime fecha) {
+        BilleteraVirtual billetera = billeterasPorTransaccion.get(id);
+        if (billetera == null) {
+            return idsArchivados.contiene(id); // Su billetera se archivó, así que el tramo ya se había aplicado
+        }
+        int posicion = billetera.getHistorial().buscar(id);
+        return posicion >= 0 && fecha.equals(billetera.getHistorial().obtener(posicion).getFecha());
+    }
+}
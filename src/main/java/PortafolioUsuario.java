@@ -0,0 +1,97 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Resumen inmutable de todas las billeteras de un usuario en un mismo instante: saldo total, ingresos,
+ * gastos y gastos por categoría. Los montos se guardan en centavos, como en las billeteras.
+ */
+public class PortafolioUsuario {
+    private final String idUsuario;
+    private final List<String> numerosBilleteras;
+    private final long saldoTotal;
+    private final long totalIngresos;
+    private final long totalGastos;
+    private final long[] gastosPorCategoria; // Indexado por ordinal; la última posición es para gastos sin categoría
+
+    /**
+     * Constructor que suma los datos leídos de cada billetera.
+     * @param idUsuario ID del usuario
+     * @param billeteras Billeteras del usuario
+     * @param saldos Saldo en centavos de cada billetera
+     * @param totales Total de ingresos y de gastos de cada billetera
+     * @param gastosPorCategoria Gastos por categoría de cada billetera
+     */
+    PortafolioUsuario(String idUsuario, List<BilleteraVirtual> billeteras, long[] saldos, long[][] totales,
+                      long[][] gastosPorCategoria) {
+        this.idUsuario = idUsuario;
+        List<String> numeros = new ArrayList<>(billeteras.size());
+        long saldo = 0;
+        long ingresos = 0;
+        long gastos = 0;
+        long[] categorias = new long[Categoria.values().length + 1];
+        for (int i = 0; i < billeteras.size(); i++) {
+            numeros.add(billeteras.get(i).getNumero());
+            saldo = Dinero.sumar(saldo, saldos[i]);
+            ingresos = Dinero.sumar(ingresos, totales[i][0]);
+            gastos = Dinero.sumar(gastos, totales[i][1]);
+            for (int c = 0; c < categorias.length; c++) {
+                categorias[c] = Dinero.sumar(categorias[c], gastosPorCategoria[i][c]);
+            }
+        }
+        this.numerosBilleteras = Collections.unmodifiableList(numeros);
+        this.saldoTotal = saldo;
+        this.totalIngresos = ingresos;
+        this.totalGastos = gastos;
+        this.gastosPorCategoria = categorias;
+    }
+
+    /**
+     * Método para obtener el total de gastos por categoría de todas las billeteras.
+     * @return Gastos de cada categoría que tenga movimientos
+     */
+    public Map<Categoria, Double> obtenerGastosPorCategoria() {
+        return Collections.unmodifiableMap(BilleteraVirtual.porCategoria(gastosPorCategoria));
+    }
+
+    /**
+     * Método para obtener el porcentaje de gastos respecto a los ingresos de todas las billeteras.
+     * @return Porcentaje de gastos sobre ingresos, o NaN si no hay ingresos
+     */
+    public double obtenerPorcentajeGastosIngresos() {
+        return totalIngresos == 0 ? Double.NaN : ((double) totalGastos / totalIngresos) * 100;
+    }
+
+    // Getters
+    public String getIdUsuario() {
+        return idUsuario;
+    }
+
+    public List<String> getNumerosBilleteras() {
+        return numerosBilleteras;
+    }
+
+    public double getSaldoTotal() {
+        return Dinero.aDouble(saldoTotal);
+    }
+
+    public double getTotalIngresos() {
+        return Dinero.aDouble(totalIngresos);
+    }
+
+    public double getTotalGastos() {
+        return Dinero.aDouble(totalGastos);
+    }
+
+    @Override
+    public String toString() {
+        return "PortafolioUsuario{" +
+                "idUsuario='" + idUsuario + '\'' +
+                ", billeteras=" + numerosBilleteras.size() +
+                ", saldoTotal=" + Dinero.formatear(saldoTotal) +
+                ", totalIngresos=" + Dinero.formatear(totalIngresos) +
+                ", totalGastos=" + Dinero.formatear(totalGastos) +
+                '}';
+    }
+}
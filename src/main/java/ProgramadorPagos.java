@@ -0,0 +1,449 @@
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiFunction;
+
+/**
+ * Programador de pagos recurrentes, como facturas u órdenes permanentes, que los cobra desde el banco
+ * cuando vencen.
+ *
+ * Los pagos se guardan en una rueda de tiempo jerárquica: {@code NIVELES} ruedas de {@code RANURAS} ranuras,
+ * donde cada ranura del nivel n abarca {@code RANURAS^n} ticks. Cada pago es un nodo de una lista doblemente
+ * enlazada en la ranura de su vencimiento, así programar y cancelar son O(1). Al avanzar el reloj, cada tick
+ * procesa una ranura del nivel 0 y, cuando un nivel da la vuelta, reparte la ranura siguiente del nivel de
+ * arriba en los niveles de abajo.
+ *
+ * Para no cobrar todo a medianoche, cada pago se corre un desplazamiento fijo, calculado a partir de su ID,
+ * dentro de una ventana de dispersión; los pagos vencidos se cobran en lotes con
+ * {@link Banco#realizarTransacciones}. La rueda solo se bloquea para sacar los vencidos y volver a
+ * ponerlos: los lotes corren sin el cerrojo, así programar y cancelar no esperan al banco. Los rechazos,
+ * como la falta de saldo, se avisan y el pago sigue programado para su próximo período.
+ *
+ * El reloj se recibe en el constructor: con un reloj simulado y {@link #ejecutarPendientes} se puede
+ * probar sin esperar; {@link #iniciar} lo ejecuta solo en un hilo, una vez por tick.
+ */
+public class ProgramadorPagos implements AutoCloseable {
+    private static final int BITS = 6;
+    private static final int RANURAS = 1 << BITS;
+    private static final int MASCARA = RANURAS - 1;
+    private static final int NIVELES = 6; // Con ticks de un segundo, la rueda abarca más de 2000 años
+
+    /**
+     * Aviso de un pago que vencía y fue rechazado por el banco.
+     */
+    public interface AvisoFallo {
+        void avisar(PagoRecurrente pago, ResultadoTransaccion resultado);
+    }
+
+    private final BiFunction<String[], RegistroTransaccion[], ResultadoLote> cobrador; // Cobra un lote en el banco
+    private final Clock reloj;
+    private final long tick; // Milisegundos de cada tick
+    private final long ventanaDispersion; // Milisegundos en los que se reparten los pagos de un mismo instante
+    private final int tamanoLote;
+    private final PagoRecurrente[][] ruedas = new PagoRecurrente[NIVELES][RANURAS];
+    private final Map<String, PagoRecurrente> pagos = new HashMap<>(); // ID -> pago programado
+    private final ReentrantLock cerrojo = new ReentrantLock(); // Protege la rueda y el mapa de pagos
+    private final ReentrantLock cerrojoEjecucion = new ReentrantLock(); // Una sola ejecución de pendientes a la vez
+    private long tickActual; // Próximo tick por procesar
+    private int enRueda; // Pagos que están en alguna ranura
+    private final LongAdder ejecutados = new LongAdder();
+    private final LongAdder fallidos = new LongAdder();
+    private volatile AvisoFallo avisoFallo = (pago, resultado) -> { };
+    private ScheduledExecutorService hilo; // null si no se ejecuta solo
+
+    // Constructor con ticks de un segundo, sin dispersión y lotes de 1000 pagos
+    public ProgramadorPagos(Banco banco, Clock reloj) {
+        this(banco, reloj, Duration.ofSeconds(1), Duration.ZERO, 1000);
+    }
+
+    /**
+     * Constructor del programador de un banco.
+     * @param banco Banco donde se cobran los pagos
+     * @param reloj Reloj con el que vencen los pagos
+     * @param tick Resolución de la rueda
+     * @param ventanaDispersion Ventana en la que se reparten los pagos que vencen en un mismo instante
+     * @param tamanoLote Cantidad máxima de pagos por lote
+     */
+    public ProgramadorPagos(Banco banco, Clock reloj, Duration tick, Duration ventanaDispersion, int tamanoLote) {
+        this(banco == null ? null : banco::realizarTransacciones, reloj, tick, ventanaDispersion, tamanoLote);
+    }
+
+    /**
+     * Constructor del programador de un banco particionado.
+     * @see #ProgramadorPagos(Banco, Clock, Duration, Duration, int)
+     */
+    public ProgramadorPagos(BancoParticionado banco, Clock reloj, Duration tick, Duration ventanaDispersion,
+                            int tamanoLote) {
+        this(banco == null ? null : banco::realizarTransacciones, reloj, tick, ventanaDispersion, tamanoLote);
+    }
+
+    // Constructor con la función que cobra los lotes; lo usan los constructores públicos y las pruebas
+    ProgramadorPagos(BiFunction<String[], RegistroTransaccion[], ResultadoLote> cobrador, Clock reloj,
+                     Duration tick, Duration ventanaDispersion, int tamanoLote) {
+        if (cobrador == null || reloj == null || tick == null || ventanaDispersion == null) {
+            throw new IllegalArgumentException("El banco, el reloj, el tick y la ventana no pueden ser nulos.");
+        }
+        if (tick.toMillis() <= 0 || ventanaDispersion.isNegative() || tamanoLote <= 0) {
+            throw new IllegalArgumentException("El tick y el tamaño de lote deben ser positivos y la ventana no negativa.");
+        }
+        this.cobrador = cobrador;
+        this.reloj = reloj;
+        this.tick = tick.toMillis();
+        this.ventanaDispersion = ventanaDispersion.toMillis();
+        this.tamanoLote = tamanoLote;
+        this.tickActual = Math.floorDiv(reloj.millis(), this.tick);
+    }
+
+    /**
+     * Método que permite programar un pago recurrente a partir de una plantilla de transacción.
+     * La plantilla da el ID del pago, el monto, el titular y la categoría; su fecha no se usa.
+     * @param numeroBilletera Número de la billetera del pago
+     * @param plantilla Transacción que se repite
+     * @param primeraEjecucion Fecha de la primera ejecución, en la zona del reloj
+     * @param periodo Tiempo entre ejecuciones; al menos un tick
+     * @return Pago programado
+     * @throws Exception Si ya hay un pago programado con el mismo ID
+     */
+    public PagoRecurrente programar(String numeroBilletera, RegistroTransaccion plantilla, LocalDateTime primeraEjecucion,
+                                    Duration periodo) throws Exception {
+        if (numeroBilletera == null || plantilla == null || plantilla.getId() == null || primeraEjecucion == null
+                || periodo == null) {
+            throw new IllegalArgumentException("La billetera, la plantilla, su ID, la fecha y el período no pueden ser nulos.");
+        }
+        if (periodo.toMillis() < tick) {
+            throw new IllegalArgumentException("El período debe ser de al menos un tick.");
+        }
+        if (plantilla.getMontoCentavos() == 0) {
+            throw new IllegalArgumentException("El monto del pago no puede ser cero.");
+        }
+        long primera = primeraEjecucion.atZone(reloj.getZone()).toInstant().toEpochMilli();
+        long desplazamiento = ventanaDispersion == 0 ? 0 : Math.floorMod(dispersar(plantilla.getId()), ventanaDispersion);
+        PagoRecurrente pago = new PagoRecurrente(numeroBilletera, plantilla, primera, periodo.toMillis(), desplazamiento);
+
+        cerrojo.lock();
+        try {
+            if (pagos.putIfAbsent(pago.getId(), pago) != null) {
+                throw new Exception("Ya existe un pago programado con el ID: " + pago.getId());
+            }
+            insertar(pago);
+        } finally {
+            cerrojo.unlock();
+        }
+        return pago;
+    }
+
+    /**
+     * Método que permite cancelar un pago programado. Si está cobrándose en este momento, ese cobro termina
+     * pero no se vuelve a programar.
+     * @param idPago ID del pago
+     * @return true si el pago estaba programado
+     */
+    public boolean cancelar(String idPago) {
+        cerrojo.lock();
+        try {
+            PagoRecurrente pago = idPago == null ? null : pagos.remove(idPago);
+            if (pago == null) {
+                return false;
+            }
+            pago.cancelar();
+            if (pago.nivel >= 0) {
+                quitar(pago);
+            }
+            return true;
+        } finally {
+            cerrojo.unlock();
+        }
+    }
+
+    /**
+     * Método que permite cobrar los pagos vencidos hasta la hora del reloj.
+     * Un pago atrasado varios períodos se cobra una vez por período, en orden.
+     * @return Cantidad de pagos cobrados o rechazados
+     */
+    public int ejecutarPendientes() {
+        cerrojoEjecucion.lock();
+        try {
+            long objetivo = Math.floorDiv(reloj.millis(), tick);
+            int total = 0;
+            List<PagoRecurrente> vencidos = new ArrayList<>();
+            List<PagoRecurrente> atrasados = new ArrayList<>(); // Cobrados que vuelven a vencer antes del objetivo
+            while (true) {
+                cerrojo.lock();
+                try {
+                    recolectar(objetivo, vencidos);
+                    for (PagoRecurrente pago : atrasados) {
+                        if (!pago.isCancelado()) {
+                            vencidos.add(pago);
+                        }
+                    }
+                    atrasados.clear();
+                } finally {
+                    cerrojo.unlock();
+                }
+                if (vencidos.isEmpty()) {
+                    return total;
+                }
+                int cobrados = 0;
+                boolean completo = false;
+                try {
+                    while (cobrados < vencidos.size()) {
+                        List<PagoRecurrente> lote = vencidos.subList(cobrados, Math.min(vencidos.size(), cobrados + tamanoLote));
+                        cobrados += lote.size();
+                        cobrar(lote, objetivo, atrasados);
+                    }
+                    completo = true;
+                } finally {
+                    if (!completo) {
+                        // El banco falló: los pagos sin cobrar y los atrasados vuelven a la rueda; el lote que
+                        // falló ya lo devolvió cobrar
+                        volverAProgramar(vencidos.subList(cobrados, vencidos.size()));
+                        volverAProgramar(atrasados);
+                    }
+                }
+                total += vencidos.size();
+                vencidos.clear();
+            }
+        } finally {
+            cerrojoEjecucion.unlock();
+        }
+    }
+
+    /**
+     * Método que permite ejecutar el programador solo, en un hilo propio, una vez por tick.
+     */
+    public synchronized void iniciar() {
+        if (hilo != null) {
+            return;
+        }
+        hilo = Executors.newSingleThreadScheduledExecutor(tarea -> {
+            Thread thread = new Thread(tarea, "programador-pagos");
+            thread.setDaemon(true);
+            return thread;
+        });
+        hilo.scheduleWithFixedDelay(() -> {
+            try {
+                ejecutarPendientes();
+            } catch (RuntimeException e) {
+                // Una falla del banco no detiene el programador: los pagos siguen en la rueda
+            }
+        }, tick, tick, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public synchronized void close() {
+        if (hilo != null) {
+            hilo.shutdown();
+            hilo = null;
+        }
+    }
+
+    /**
+     * Método que permite buscar un pago programado.
+     * @param idPago ID del pago
+     * @return Pago, o null si no está programado
+     */
+    public PagoRecurrente buscar(String idPago) {
+        cerrojo.lock();
+        try {
+            return pagos.get(idPago);
+        } finally {
+            cerrojo.unlock();
+        }
+    }
+
+    // Getters
+    public int getCantidadProgramados() {
+        cerrojo.lock();
+        try {
+            return pagos.size();
+        } finally {
+            cerrojo.unlock();
+        }
+    }
+
+    public long getEjecutados() {
+        return ejecutados.sum();
+    }
+
+    public long getFallidos() {
+        return fallidos.sum();
+    }
+
+    public void setAvisoFallo(AvisoFallo avisoFallo) {
+        if (avisoFallo == null) {
+            throw new IllegalArgumentException("El aviso no puede ser nulo.");
+        }
+        this.avisoFallo = avisoFallo;
+    }
+
+    // Método auxiliar que cobra un lote de pagos vencidos y los vuelve a programar, o los deja en atrasados si su
+    // próxima ejecución también vence antes del objetivo; se llama sin el cerrojo de la rueda
+    private void cobrar(List<PagoRecurrente> lote, long objetivo, List<PagoRecurrente> atrasados) {
+        String[] numeros = new String[lote.size()];
+        RegistroTransaccion[] transacciones = new RegistroTransaccion[lote.size()];
+        for (int i = 0; i < lote.size(); i++) {
+            PagoRecurrente pago = lote.get(i);
+            LocalDateTime fecha = LocalDateTime.ofInstant(Instant.ofEpochMilli(pago.getProximaEjecucion()), reloj.getZone());
+            numeros[i] = pago.getNumeroBilletera();
+            transacciones[i] = RegistroTransaccion.conCentavos(pago.idEjecucion(), fecha, pago.getMontoCentavos(),
+                    pago.getTitular(), pago.getCategoria());
+        }
+        ResultadoLote resultado;
+        try {
+            resultado = cobrador.apply(numeros, transacciones);
+        } catch (RuntimeException e) {
+            // Los pagos del lote no avanzan: vuelven a la rueda con el mismo período, que se cobra en el tick
+            // siguiente. Si el banco alcanzó a aplicar alguno, el reintento lo rechaza como ID duplicado
+            volverAProgramar(lote);
+            throw e;
+        }
+
+        // Solo con la respuesta del banco los pagos pasan al período siguiente
+        cerrojo.lock();
+        try {
+            for (PagoRecurrente pago : lote) {
+                pago.avanzar();
+                if (pago.isCancelado()) {
+                    continue;
+                }
+                if (Math.floorDiv(pago.proximoDisparo(), tick) <= objetivo) {
+                    atrasados.add(pago);
+                } else {
+                    insertar(pago);
+                }
+            }
+        } finally {
+            cerrojo.unlock();
+        }
+
+        // Los avisos van después de reprogramar, así un aviso que falla no saca pagos de la rueda
+        for (int i = 0; i < lote.size(); i++) {
+            if (resultado.get(i) == ResultadoTransaccion.ACEPTADA) {
+                ejecutados.increment();
+            } else {
+                fallidos.increment();
+                try {
+                    avisoFallo.avisar(lote.get(i), resultado.get(i));
+                } catch (RuntimeException e) {
+                    // Un aviso que falla no detiene los demás
+                }
+            }
+        }
+    }
+
+    // Método auxiliar que vuelve a poner en la rueda pagos que no están en ella, salvo los cancelados
+    private void volverAProgramar(List<PagoRecurrente> lista) {
+        cerrojo.lock();
+        try {
+            for (PagoRecurrente pago : lista) {
+                if (!pago.isCancelado()) {
+                    insertar(pago);
+                }
+            }
+        } finally {
+            cerrojo.unlock();
+        }
+    }
+
+    // Método auxiliar que procesa los ticks hasta el objetivo y junta los pagos vencidos; requiere el cerrojo tomado
+    private void recolectar(long objetivo, List<PagoRecurrente> vencidos) {
+        while (tickActual <= objetivo) {
+            if (enRueda == 0) {
+                tickActual = objetivo + 1;
+                return;
+            }
+
+            // Cuando un nivel da la vuelta se reparte la ranura siguiente del nivel de arriba, empezando por el más alto
+            int hasta = 0;
+            while (hasta + 1 < NIVELES && (tickActual & ((1L << (BITS * (hasta + 1))) - 1)) == 0) {
+                hasta++;
+            }
+            for (int nivel = hasta; nivel >= 1; nivel--) {
+                PagoRecurrente pago = vaciar(nivel, (int) ((tickActual >> (BITS * nivel)) & MASCARA));
+                while (pago != null) {
+                    PagoRecurrente siguiente = pago.siguiente;
+                    pago.siguiente = null;
+                    insertar(pago);
+                    pago = siguiente;
+                }
+            }
+
+            PagoRecurrente pago = vaciar(0, (int) (tickActual & MASCARA));
+            while (pago != null) {
+                PagoRecurrente siguiente = pago.siguiente;
+                pago.siguiente = null;
+                if (pago.tickVencimiento <= tickActual) {
+                    vencidos.add(pago);
+                } else {
+                    insertar(pago);
+                }
+                pago = siguiente;
+            }
+            tickActual++;
+        }
+    }
+
+    // Método auxiliar que pone un pago en la ranura de su próximo disparo; requiere el cerrojo tomado
+    private void insertar(PagoRecurrente pago) {
+        long vence = Math.floorDiv(pago.proximoDisparo(), tick);
+        long referencia = Math.max(vence, tickActual); // Un pago atrasado va al próximo tick
+        long delta = referencia - tickActual;
+        int nivel = delta == 0 ? 0 : Math.min(NIVELES - 1, (63 - Long.numberOfLeadingZeros(delta)) / BITS);
+        int ranura = (int) ((referencia >> (BITS * nivel)) & MASCARA);
+
+        pago.tickVencimiento = vence;
+        pago.nivel = nivel;
+        pago.ranura = ranura;
+        pago.anterior = null;
+        pago.siguiente = ruedas[nivel][ranura];
+        if (pago.siguiente != null) {
+            pago.siguiente.anterior = pago;
+        }
+        ruedas[nivel][ranura] = pago;
+        enRueda++;
+    }
+
+    // Método auxiliar que saca un pago de su ranura; requiere el cerrojo tomado
+    private void quitar(PagoRecurrente pago) {
+        if (pago.anterior != null) {
+            pago.anterior.siguiente = pago.siguiente;
+        } else {
+            ruedas[pago.nivel][pago.ranura] = pago.siguiente;
+        }
+        if (pago.siguiente != null) {
+            pago.siguiente.anterior = pago.anterior;
+        }
+        pago.anterior = null;
+        pago.siguiente = null;
+        pago.nivel = -1;
+        enRueda--;
+    }
+
+    // Método auxiliar que vacía una ranura y devuelve su lista, con los pagos ya fuera de la rueda; requiere el cerrojo tomado
+    private PagoRecurrente vaciar(int nivel, int ranura) {
+        PagoRecurrente primero = ruedas[nivel][ranura];
+        ruedas[nivel][ranura] = null;
+        for (PagoRecurrente pago = primero; pago != null; pago = pago.siguiente) {
+            pago.anterior = null;
+            pago.nivel = -1;
+            enRueda--;
+        }
+        return primero;
+    }
+
+    // Método auxiliar que mezcla los bits del hash de un ID, para repartir los desplazamientos
+    private static long dispersar(String id) {
+        long h = id.hashCode() * 0x9E3779B97F4A7C15L;
+        return h ^ (h >>> 29);
+    }
+}
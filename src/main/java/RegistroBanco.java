@@ -0,0 +1,356 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Registro de usuarios y billeteras de un banco.
+ * Mantiene las listas de usuarios y billeteras, de las que el banco solo entrega copias, y sobre ellas índices
+ * hash por ID de usuario, por número de billetera y de usuario a sus billeteras, para que las búsquedas sean O(1).
+ * Mientras un usuario o una billetera están registrados no se puede cambiar la clave con la que se indexan.
+ * También indexa el ID de cada transacción realizada a través del banco con la billetera que la contiene.
+ * Los IDs de las billeteras archivadas salen de ese índice y pasan a {@link IdsArchivados}, mucho más compacto,
+ * que se consulta cuando un ID no está en el índice, así no se pueden volver a usar.
+ *
+ * Cada usuario y cada billetera recuerda su posición en la lista, así quitarlos es O(1): el último
+ * elemento pasa a ocupar el lugar del quitado. Por eso las listas no conservan el orden de alta.
+ */
+public class RegistroBanco {
+    private ArrayList<Usuario> usuarios;
+    private ArrayList<BilleteraVirtual> billeteras;
+
+    private final Map<String, Usuario> usuariosPorId = new ConcurrentHashMap<>();
+    private final Map<String, BilleteraVirtual> billeterasPorNumero = new ConcurrentHashMap<>();
+    private final Map<String, List<BilleteraVirtual>> billeterasPorUsuario = new ConcurrentHashMap<>();
+    private final Map<String, BilleteraVirtual> billeterasPorTransaccion; // Puede compartirse entre particiones
+    private final IdsArchivados idsArchivados; // IDs de las billeteras archivadas; se comparte con el índice
+    private final Map<Usuario, Integer> posicionesUsuarios = new IdentityHashMap<>(); // Posición en la lista
+    private final Map<BilleteraVirtual, Integer> posicionesBilleteras = new IdentityHashMap<>(); // Posición en la lista
+    private final LongAdder transacciones = new LongAdder(); // IDs de este registro en el índice, aunque se comparta
+
+    // Constructor
+    public RegistroBanco() {
+        this(new ConcurrentHashMap<>(), new IdsArchivados());
+    }
+
+    // Constructor con un índice de IDs de transacción, y los IDs archivados, compartidos con otros registros
+    RegistroBanco(Map<String, BilleteraVirtual> billeterasPorTransaccion, IdsArchivados idsArchivados) {
+        this.usuarios = new ArrayList<>();
+        this.billeteras = new ArrayList<>();
+        this.billeterasPorTransaccion = billeterasPorTransaccion;
+        this.idsArchivados = idsArchivados;
+    }
+
+    /**
+     * Método que permite buscar un usuario por su ID.
+     * @param id ID del usuario
+     * @return Usuario encontrado o null si no se encuentra
+     */
+    public Usuario buscarUsuario(String id) {
+        return id == null ? null : usuariosPorId.get(id);
+    }
+
+    /**
+     * Método que permite buscar una billetera por su número.
+     * @param numero Número de la billetera
+     * @return Billetera encontrada o null si no se encuentra
+     */
+    public BilleteraVirtual buscarBilletera(String numero) {
+        return numero == null ? null : billeterasPorNumero.get(numero);
+    }
+
+    /**
+     * Método que permite obtener las billeteras de un usuario.
+     * @param idUsuario ID del usuario
+     * @return Lista de solo lectura con las billeteras del usuario (vacía si no tiene)
+     */
+    public List<BilleteraVirtual> buscarBilleterasDeUsuario(String idUsuario) {
+        List<BilleteraVirtual> lista = idUsuario == null ? null : billeterasPorUsuario.get(idUsuario);
+        return lista == null ? Collections.emptyList() : Collections.unmodifiableList(lista);
+    }
+
+    /**
+     * Método que permite buscar la billetera que contiene una transacción.
+     * @param idTransaccion ID de la transacción
+     * @return Billetera encontrada o null si no se encuentra
+     */
+    public BilleteraVirtual buscarBilleteraDeTransaccion(String idTransaccion) {
+        return idTransaccion == null ? null : billeterasPorTransaccion.get(idTransaccion);
+    }
+
+    /**
+     * Método que permite saber si un ID de transacción pertenece a una billetera archivada.
+     * @param idTransaccion ID de la transacción
+     * @return true si el ID está reservado por una billetera archivada
+     */
+    public boolean esTransaccionArchivada(String idTransaccion) {
+        return idTransaccion != null && idsArchivados.contiene(idTransaccion);
+    }
+
+    /**
+     * Método que permite reservar el ID de una transacción para una billetera antes de aplicarla.
+     * @param idTransaccion ID de la transacción
+     * @param billetera Billetera donde se aplicará
+     * @return true si se reservó, false si el ID ya estaba en uso en el banco
+     */
+    public boolean reclamarTransaccion(String idTransaccion, BilleteraVirtual billetera) {
+        if (billeterasPorTransaccion.putIfAbsent(idTransaccion, billetera) != null) {
+            return false;
+        }
+        // Se consulta después de reservarlo: al archivar, los IDs pasan a los archivados antes de salir del índice
+        if (idsArchivados.contiene(idTransaccion)) {
+            billeterasPorTransaccion.remove(idTransaccion, billetera);
+            return false;
+        }
+        transacciones.increment();
+        return true;
+    }
+
+    /**
+     * Método que permite liberar el ID de una transacción que no llegó a aplicarse.
+     * @param idTransaccion ID de la transacción
+     * @param billetera Billetera para la que se había reservado
+     */
+    public void liberarTransaccion(String idTransaccion, BilleteraVirtual billetera) {
+        if (billeterasPorTransaccion.remove(idTransaccion, billetera)) {
+            transacciones.decrement();
+        }
+    }
+
+    /**
+     * Método que permite registrar un usuario si su ID no está en uso.
+     * @param usuario Usuario a registrar
+     * @return true si se registró, false si ya existía un usuario con el mismo ID
+     */
+    public synchronized boolean agregarUsuario(Usuario usuario) {
+        if (usuariosPorId.putIfAbsent(usuario.getId(), usuario) != null) {
+            return false;
+        }
+        posicionesUsuarios.put(usuario, usuarios.size());
+        usuarios.add(usuario);
+        usuario.setRegistrado(true);
+        return true;
+    }
+
+    /**
+     * Método que permite eliminar un usuario del registro en tiempo constante.
+     * Sus billeteras deben haberse quitado antes con {@link #quitarBilletera}.
+     * @param id ID del usuario a eliminar
+     * @return Usuario eliminado o null si no existía
+     */
+    public synchronized Usuario eliminarUsuario(String id) {
+        Usuario eliminado = id == null ? null : usuariosPorId.remove(id);
+        if (eliminado != null) {
+            quitarDeLista(usuarios, posicionesUsuarios, eliminado);
+            eliminado.setRegistrado(false);
+            billeterasPorUsuario.computeIfPresent(id, (clave, lista) -> lista.isEmpty() ? null : lista);
+        }
+        return eliminado;
+    }
+
+    /**
+     * Método que permite eliminar un usuario solo si ya no le queda ninguna billetera, verificándolo con el
+     * registro bloqueado. Junto con {@link #agregarBilleteraDeUsuario} impide que se le cree una billetera
+     * mientras se elimina: o la billetera llega antes y se devuelve aquí, o no se agrega.
+     * @param id ID del usuario a eliminar
+     * @return Billeteras que le quedan (vacía si se eliminó), o null si el usuario no existía
+     */
+    public synchronized List<BilleteraVirtual> eliminarUsuarioSinBilleteras(String id) {
+        List<BilleteraVirtual> restantes = List.copyOf(buscarBilleterasDeUsuario(id));
+        if (!restantes.isEmpty()) {
+            return restantes;
+        }
+        return eliminarUsuario(id) == null ? null : restantes;
+    }
+
+    /**
+     * Método que permite registrar una billetera y asociarla a su usuario.
+     * @param billetera Billetera a registrar
+     */
+    public synchronized void agregarBilletera(BilleteraVirtual billetera) {
+        billeterasPorNumero.put(billetera.getNumero(), billetera);
+        posicionesBilleteras.put(billetera, billeteras.size());
+        billeteras.add(billetera);
+        billetera.setRegistrada(true);
+        indexarPorUsuario(billetera);
+        indexarTransacciones(billetera);
+    }
+
+    /**
+     * Método que permite registrar una billetera solo si su usuario sigue registrado, verificándolo con el
+     * registro bloqueado; ver {@link #eliminarUsuarioSinBilleteras}.
+     * @param billetera Billetera a registrar
+     * @return true si se registró, false si el usuario ya no está registrado
+     */
+    public synchronized boolean agregarBilleteraDeUsuario(BilleteraVirtual billetera) {
+        if (billetera.getUsuario() == null || buscarUsuario(billetera.getUsuario().getId()) == null) {
+            return false;
+        }
+        agregarBilletera(billetera);
+        return true;
+    }
+
+    /**
+     * Método que permite quitar una billetera de la lista y de todos los índices, por ejemplo al archivarla.
+     * Los IDs de sus transacciones siguen reservados en el banco, como IDs archivados; ese traspaso se hace
+     * sin bloquear el registro.
+     * @param billetera Billetera a quitar
+     * @return true si se quitó, false si no estaba registrada
+     */
+    public boolean quitarBilletera(BilleteraVirtual billetera) {
+        if (!quitarDeIndices(billetera)) {
+            return false;
+        }
+        HistorialTransacciones historial = billetera.getHistorial();
+        idsArchivados.agregar(historial);
+        for (int i = 0; i < historial.tamano(); i++) {
+            liberarTransaccion(historial.idEn(i), billetera);
+        }
+        return true;
+    }
+
+    // Método auxiliar que quita una billetera de la lista y de los índices por número y por usuario
+    private synchronized boolean quitarDeIndices(BilleteraVirtual billetera) {
+        if (!quitarDeLista(billeteras, posicionesBilleteras, billetera)) {
+            return false;
+        }
+        billeterasPorNumero.remove(billetera.getNumero(), billetera);
+        billetera.setRegistrada(false);
+        if (billetera.getUsuario() != null) {
+            String idUsuario = billetera.getUsuario().getId();
+            List<BilleteraVirtual> lista = billeterasPorUsuario.get(idUsuario);
+            if (lista != null) {
+                lista.remove(billetera);
+                if (lista.isEmpty() && usuariosPorId.get(idUsuario) == null) {
+                    billeterasPorUsuario.remove(idUsuario);
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Método que permite reservar los IDs de las transacciones de una billetera archivada, por ejemplo al
+     * recuperar el banco con su archivo, para que no se vuelvan a usar.
+     * @param archivada Billetera leída del archivo
+     */
+    public void reservarTransaccionesArchivadas(BilleteraVirtual archivada) {
+        idsArchivados.agregar(archivada.getHistorial());
+    }
+
+    // Método auxiliar que quita un elemento de una lista en O(1), moviendo el último a su posición
+    private static <T> boolean quitarDeLista(ArrayList<T> lista, Map<T, Integer> posiciones, T elemento) {
+        Integer posicion = posiciones.remove(elemento);
+        if (posicion == null) {
+            return false;
+        }
+        T ultimo = lista.remove(lista.size() - 1);
+        if (ultimo != elemento) {
+            lista.set(posicion, ultimo);
+            posiciones.put(ultimo, posicion);
+        }
+        return true;
+    }
+
+    // Método auxiliar que vuelve a calcular las posiciones de una lista reemplazada
+    private static <T> void indexarPosiciones(List<T> lista, Map<T, Integer> posiciones) {
+        posiciones.clear();
+        for (int i = 0; i < lista.size(); i++) {
+            posiciones.put(lista.get(i), i);
+        }
+    }
+
+    /**
+     * Método que permite reemplazar la lista de usuarios, reconstruyendo su índice.
+     * @param nuevosUsuarios Nueva lista de usuarios
+     */
+    public synchronized void reemplazarUsuarios(List<Usuario> nuevosUsuarios) {
+        for (Usuario usuario : usuarios) {
+            usuario.setRegistrado(false);
+        }
+        usuariosPorId.clear();
+        for (Usuario usuario : nuevosUsuarios) {
+            usuariosPorId.putIfAbsent(usuario.getId(), usuario);
+            usuario.setRegistrado(true);
+        }
+        usuarios = new ArrayList<>(nuevosUsuarios);
+        indexarPosiciones(usuarios, posicionesUsuarios);
+    }
+
+    /**
+     * Método que permite reemplazar la lista de billeteras, reconstruyendo sus índices.
+     * @param nuevasBilleteras Nueva lista de billeteras
+     */
+    public synchronized void reemplazarBilleteras(List<BilleteraVirtual> nuevasBilleteras) {
+        // Quitar del índice de transacciones solo las de estas billeteras, que puede ser compartido
+        Set<BilleteraVirtual> anteriores = Collections.newSetFromMap(new IdentityHashMap<>());
+        anteriores.addAll(billeteras);
+        for (Iterator<BilleteraVirtual> it = billeterasPorTransaccion.values().iterator(); it.hasNext(); ) {
+            if (anteriores.contains(it.next())) {
+                it.remove();
+                transacciones.decrement();
+            }
+        }
+        for (BilleteraVirtual billetera : billeteras) {
+            billetera.setRegistrada(false);
+        }
+        billeterasPorNumero.clear();
+        billeterasPorUsuario.clear();
+        for (BilleteraVirtual billetera : nuevasBilleteras) {
+            billeterasPorNumero.put(billetera.getNumero(), billetera);
+            billetera.setRegistrada(true);
+            indexarPorUsuario(billetera);
+            indexarTransacciones(billetera);
+        }
+        billeteras = new ArrayList<>(nuevasBilleteras);
+        indexarPosiciones(billeteras, posicionesBilleteras);
+    }
+
+    // Método auxiliar para agregar una billetera al índice de usuario a billeteras
+    private void indexarPorUsuario(BilleteraVirtual billetera) {
+        if (billetera.getUsuario() != null) {
+            billeterasPorUsuario
+                    .computeIfAbsent(billetera.getUsuario().getId(), id -> new CopyOnWriteArrayList<>())
+                    .add(billetera);
+        }
+    }
+
+    // Método auxiliar que indexa las transacciones que ya tiene una billetera
+    private void indexarTransacciones(BilleteraVirtual billetera) {
+        HistorialTransacciones historial = billetera.getHistorial();
+        for (int i = 0; i < historial.tamano(); i++) {
+            reclamarTransaccion(historial.idEn(i), billetera);
+        }
+    }
+
+    // Cantidad de usuarios registrados
+    long cantidadUsuarios() {
+        return usuariosPorId.size();
+    }
+
+    // Cantidad de billeteras registradas
+    long cantidadBilleteras() {
+        return billeterasPorNumero.size();
+    }
+
+    // Cantidad de IDs de transacción indexados para las billeteras de este registro, aunque el índice se comparta
+    long cantidadTransacciones() {
+        return transacciones.sum();
+    }
+
+    // Copia de la lista de usuarios, para recorrerla sin bloquear el registro
+    public synchronized List<Usuario> copiarUsuarios() {
+        return new ArrayList<>(usuarios);
+    }
+
+    // Copia de la lista de billeteras, para recorrerla sin bloquear el registro
+    public synchronized List<BilleteraVirtual> copiarBilleteras() {
+        return new ArrayList<>(billeteras);
+    }
+}
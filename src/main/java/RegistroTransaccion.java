@@ -1,20 +1,37 @@
 import java.time.LocalDateTime;
+import java.util.Objects;
 
 public class RegistroTransaccion {
     public String id;
     public LocalDateTime fecha;
-    public double monto;
+    public long montoCentavos; // Monto en centavos; positivo para ingresos y negativo para gastos
     public String titular;
     public Categoria categoria;
 
     public RegistroTransaccion(String id, LocalDateTime fecha, double monto, String titular, Categoria categoria) {
+        this(id, fecha, Dinero.desdeDouble(monto), titular, categoria);
+    }
+
+    // Constructor con el monto ya en centavos; es privado para que un monto entero no se tome por centavos
+    private RegistroTransaccion(String id, LocalDateTime fecha, long montoCentavos, String titular, Categoria categoria) {
         this.id = id;
         this.fecha = fecha;
-        this.monto = monto;
+        this.montoCentavos = montoCentavos;
         this.titular = titular;
         this.categoria = categoria;
     }
 
+    /**
+     * Método que permite crear una transacción con el monto en centavos.
+     * Se usa un método con nombre para no confundirlo con el constructor que recibe el monto en unidades.
+     * @param montoCentavos Monto en centavos
+     * @return Transacción creada
+     */
+    public static RegistroTransaccion conCentavos(String id, LocalDateTime fecha, long montoCentavos, String titular,
+                                                  Categoria categoria) {
+        return new RegistroTransaccion(id, fecha, montoCentavos, titular, categoria);
+    }
+
     public String getId() {
         return id;
     }
@@ -32,11 +49,19 @@ public class RegistroTransaccion {
     }
 
     public double getMonto() {
-        return monto;
+        return Dinero.aDouble(montoCentavos);
     }
 
     public void setMonto(double monto) {
-        this.monto = monto;
+        this.montoCentavos = Dinero.desdeDouble(monto);
+    }
+
+    public long getMontoCentavos() {
+        return montoCentavos;
+    }
+
+    public void setMontoCentavos(long montoCentavos) {
+        this.montoCentavos = montoCentavos;
     }
 
     public String getTitular() {
@@ -54,4 +79,25 @@ public class RegistroTransaccion {
     public void setCategoria(Categoria categoria) {
         this.categoria = categoria;
     }
+
+    // Dos registros son iguales si tienen los mismos datos; el historial los reconstruye al consultarlos
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof RegistroTransaccion otro)) {
+            return false;
+        }
+        return montoCentavos == otro.montoCentavos
+                && Objects.equals(id, otro.id)
+                && Objects.equals(fecha, otro.fecha)
+                && Objects.equals(titular, otro.titular)
+                && categoria == otro.categoria;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(id, fecha, montoCentavos, titular, categoria);
+    }
 }
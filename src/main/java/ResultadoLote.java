@@ -0,0 +1,49 @@
+/**
+ * Resultados de un lote de transacciones, uno por elemento y en el mismo orden del lote.
+ * Cada resultado se guarda como un byte (el ordinal de {@link ResultadoTransaccion}),
+ * así un lote de millones de transacciones ocupa un byte por transacción.
+ */
+public class ResultadoLote {
+    private static final ResultadoTransaccion[] RESULTADOS = ResultadoTransaccion.values();
+
+    private final byte[] codigos;
+
+    // Constructor; todos los elementos empiezan como aceptados
+    ResultadoLote(int tamano) {
+        this.codigos = new byte[tamano];
+    }
+
+    /**
+     * Método que permite obtener el resultado de un elemento del lote.
+     * @param posicion Posición en el lote
+     * @return Resultado de la transacción de esa posición
+     */
+    public ResultadoTransaccion get(int posicion) {
+        return RESULTADOS[codigos[posicion]];
+    }
+
+    // Método auxiliar que fija el resultado de una posición
+    void marcar(int posicion, ResultadoTransaccion resultado) {
+        codigos[posicion] = (byte) resultado.ordinal();
+    }
+
+    /**
+     * Método que permite contar cuántos elementos tuvieron un resultado.
+     * @param resultado Resultado a contar
+     * @return Cantidad de elementos con ese resultado
+     */
+    public int contar(ResultadoTransaccion resultado) {
+        int cantidad = 0;
+        for (byte codigo : codigos) {
+            if (codigo == resultado.ordinal()) {
+                cantidad++;
+            }
+        }
+        return cantidad;
+    }
+
+    // Cantidad de elementos del lote
+    public int tamano() {
+        return codigos.length;
+    }
+}
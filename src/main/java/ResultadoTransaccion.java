@@ -0,0 +1,13 @@
+/**
+ * Resultado de aplicar una transacción de un lote.
+ */
+public enum ResultadoTransaccion {
+    ACEPTADA,
+    SALDO_INSUFICIENTE,
+    LIMITE_EXCEDIDO, // El gasto excede un límite de la billetera o de su usuario
+    BILLETERA_DESCONOCIDA,
+    BILLETERA_INACTIVA, // La billetera está congelada o cerrada
+    ID_DUPLICADO, // El ID ya estaba en el banco o se repite dentro del lote
+    INVALIDA, // Transacción nula, sin ID, con fecha fuera de rango o que desbordaría los montos
+    NO_REGISTRADA // El diario no pudo registrarla; no se aplicó
+}
@@ -0,0 +1,293 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Servidor que atiende operaciones del banco por un socket local, con un hilo virtual por conexión.
+ * Un hilo virtual bloqueado en el socket, en el cerrojo de una billetera o esperando al diario no ocupa
+ * un hilo de plataforma, así que el servidor sostiene muchas conexiones con el código bloqueante del banco.
+ *
+ * El protocolo es de texto: una solicitud por línea, con los campos separados por tabuladores.
+ * <pre>
+ * USUARIO     id nombre direccion correo contraseña  -> OK
+ * BILLETERA   idUsuario saldoInicial                 -> OK numero
+ * TRANSACCION numero id monto titular categoria      -> OK
+ * SALDO       numero                                 -> OK saldo
+ * </pre>
+ * Si la operación falla se responde "ERROR" y el mensaje. La admisión está acotada: si hay demasiadas
+ * conexiones abiertas o demasiadas solicitudes en curso se responde "OCUPADO", y el cliente puede reintentar.
+ * Las respuestas se envían en orden, así que un cliente puede mandar varias solicitudes sin esperar.
+ */
+public class ServidorBanco implements AutoCloseable {
+    public static final String OCUPADO = "OCUPADO";
+    private static final int LONGITUD_MAXIMA = 4096; // Bytes de una línea de solicitud
+    private static final long ESPERA_ADMISION_MS = 50; // Tiempo que una solicitud espera un lugar antes de rechazarse
+    private static final long ESPERA_CIERRE_MS = 5000; // Tiempo que close espera a que terminen las solicitudes en curso
+
+    private final Banco banco;
+    private final ServerSocket servidor;
+    private final Semaphore conexionesLibres;
+    private final Semaphore solicitudesLibres;
+    private final ExecutorService hilos = Executors.newVirtualThreadPerTaskExecutor();
+    private final Set<Socket> abiertas = ConcurrentHashMap.newKeySet(); // Para cerrarlas al detener el servidor
+    private volatile boolean cerrado;
+
+    /**
+     * Constructor que abre el socket en la dirección local.
+     * @param banco Banco sobre el que se operan las solicitudes
+     * @param puerto Puerto, o 0 para uno libre
+     * @param maximoConexiones Cantidad máxima de conexiones abiertas a la vez
+     * @param maximoEnCurso Cantidad máxima de solicitudes procesándose a la vez
+     * @throws IOException Si no se puede abrir el socket
+     */
+    public ServidorBanco(Banco banco, int puerto, int maximoConexiones, int maximoEnCurso) throws IOException {
+        if (banco == null) {
+            throw new IllegalArgumentException("El banco no puede ser nulo.");
+        }
+        if (maximoConexiones <= 0 || maximoEnCurso <= 0) {
+            throw new IllegalArgumentException("Los límites de admisión deben ser positivos.");
+        }
+        this.banco = banco;
+        this.conexionesLibres = new Semaphore(maximoConexiones);
+        this.solicitudesLibres = new Semaphore(maximoEnCurso);
+        this.servidor = new ServerSocket(puerto, 4096, InetAddress.getLoopbackAddress());
+    }
+
+    /**
+     * Método que permite empezar a aceptar conexiones en un hilo virtual.
+     */
+    public void iniciar() {
+        hilos.submit(this::aceptar);
+    }
+
+    /**
+     * Método que permite procesar una línea del protocolo sin pasar por el socket.
+     * @param linea Solicitud sin el salto de línea
+     * @return Respuesta sin el salto de línea
+     */
+    String procesar(String linea) {
+        String[] campos = linea.split("\t", -1);
+        try {
+            switch (campos[0]) {
+                case "USUARIO" -> {
+                    exigirCampos(campos, 6);
+                    banco.agregarUsuario(new Usuario(campos[2], campos[3], campos[1], campos[4], campos[5], true));
+                    return "OK";
+                }
+                case "BILLETERA" -> {
+                    exigirCampos(campos, 3);
+                    Usuario usuario = banco.obtenerUsuario(campos[1]);
+                    if (usuario == null) {
+                        throw new Exception("El usuario no está registrado en el banco.");
+                    }
+                    return "OK\t" + banco.crearBilleteraVirtual(usuario, leerMonto(campos[2])).getNumero();
+                }
+                case "TRANSACCION" -> {
+                    exigirCampos(campos, 6);
+                    banco.realizarTransaccion(campos[1], new RegistroTransaccion(campos[2], LocalDateTime.now(),
+                            leerMonto(campos[3]), campos[4], leerCategoria(campos[5])));
+                    return "OK";
+                }
+                case "SALDO" -> {
+                    exigirCampos(campos, 2);
+                    return "OK\t" + Dinero.formatear(Dinero.desdeDouble(banco.consultarSaldo(campos[1])));
+                }
+                default -> throw new Exception("Operación desconocida: " + campos[0]);
+            }
+        } catch (Exception e) {
+            String mensaje = e.getMessage() == null ? e.getClass().getSimpleName() : e.getMessage();
+            return "ERROR\t" + mensaje.replace('\t', ' ').replace('\n', ' ').replace('\r', ' ');
+        }
+    }
+
+    // Bucle de aceptación; cada conexión admitida se atiende en su propio hilo virtual
+    private void aceptar() {
+        while (!cerrado) {
+            Socket socket;
+            try {
+                socket = servidor.accept();
+            } catch (IOException e) {
+                if (cerrado) {
+                    return;
+                }
+                // Error de una conexión puntual, por ejemplo sin descriptores libres: dar tiempo a que se liberen
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+                continue;
+            }
+            if (!conexionesLibres.tryAcquire()) {
+                rechazar(socket);
+                continue;
+            }
+            abiertas.add(socket);
+            hilos.submit(() -> atender(socket));
+        }
+    }
+
+    // Atiende las solicitudes de una conexión hasta que el cliente la cierra
+    private void atender(Socket socket) {
+        try (socket) {
+            socket.setTcpNoDelay(true);
+            InputStream entrada = new BufferedInputStream(socket.getInputStream());
+            OutputStream salida = new BufferedOutputStream(socket.getOutputStream());
+            byte[] bufer = new byte[LONGITUD_MAXIMA];
+            String linea;
+            while ((linea = leerLinea(entrada, bufer)) != null) {
+                String respuesta;
+                if (solicitudesLibres.tryAcquire(ESPERA_ADMISION_MS, TimeUnit.MILLISECONDS)) {
+                    try {
+                        respuesta = procesar(linea);
+                    } finally {
+                        solicitudesLibres.release();
+                    }
+                } else {
+                    respuesta = OCUPADO;
+                }
+                salida.write(respuesta.getBytes(StandardCharsets.UTF_8));
+                salida.write('\n');
+                // Juntar las respuestas de solicitudes encadenadas en una sola escritura
+                if (entrada.available() == 0) {
+                    salida.flush();
+                }
+            }
+            salida.flush();
+        } catch (IOException | InterruptedException e) {
+            // La conexión se cortó o el servidor se está cerrando
+        } finally {
+            abiertas.remove(socket);
+            conexionesLibres.release();
+        }
+    }
+
+    private static void rechazar(Socket socket) {
+        try (socket) {
+            socket.getOutputStream().write((OCUPADO + "\n").getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            // El cliente ya no espera la respuesta
+        }
+    }
+
+    /**
+     * Método auxiliar que lee una línea terminada en '\n', sin '\r' final.
+     * @return Línea leída o null si la conexión se cerró
+     * @throws IOException Si la línea supera la longitud máxima o falla la lectura
+     */
+    private static String leerLinea(InputStream entrada, byte[] bufer) throws IOException {
+        int longitud = 0;
+        int b;
+        while ((b = entrada.read()) != '\n') {
+            if (b < 0) {
+                return longitud == 0 ? null : new String(bufer, 0, longitud, StandardCharsets.UTF_8);
+            }
+            if (longitud == bufer.length) {
+                throw new IOException("La solicitud supera la longitud máxima.");
+            }
+            bufer[longitud++] = (byte) b;
+        }
+        if (longitud > 0 && bufer[longitud - 1] == '\r') {
+            longitud--;
+        }
+        return new String(bufer, 0, longitud, StandardCharsets.UTF_8);
+    }
+
+    private static void exigirCampos(String[] campos, int cantidad) throws Exception {
+        if (campos.length != cantidad) {
+            throw new Exception("La operación " + campos[0] + " espera " + (cantidad - 1) + " campos.");
+        }
+    }
+
+    private static double leerMonto(String texto) throws Exception {
+        try {
+            return Double.parseDouble(texto);
+        } catch (NumberFormatException e) {
+            throw new Exception("El monto no es válido: " + texto);
+        }
+    }
+
+    private static Categoria leerCategoria(String texto) throws Exception {
+        try {
+            return Categoria.valueOf(texto);
+        } catch (IllegalArgumentException e) {
+            throw new Exception("La categoría no es válida: " + texto);
+        }
+    }
+
+    /**
+     * Método que permite detener el servidor: deja de aceptar conexiones, cierra las abiertas y espera a que
+     * terminen las solicitudes en curso, así el banco se puede cerrar después sin que ninguna siga operando.
+     * Si no terminan a tiempo se interrumpen sus hilos.
+     * @throws IOException Si no se puede cerrar el socket
+     */
+    @Override
+    public void close() throws IOException {
+        cerrado = true;
+        servidor.close();
+        for (Socket socket : abiertas) {
+            socket.close();
+        }
+        hilos.shutdown();
+        try {
+            if (!hilos.awaitTermination(ESPERA_CIERRE_MS, TimeUnit.MILLISECONDS)) {
+                hilos.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            hilos.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Getters
+    public int getPuerto() {
+        return servidor.getLocalPort();
+    }
+
+    /**
+     * Método que permite levantar el servidor desde la línea de comandos.
+     * Argumentos: puerto, máximo de conexiones, máximo de solicitudes en curso y, opcionalmente, el
+     * directorio de persistencia; sin directorio el banco vive solo en memoria.
+     *
+     * Con directorio, el quinto argumento indica si se hace fsync antes de responder cada operación, y por
+     * omisión es true: un OK nunca se pierde, ni siquiera con un corte de luz, y el diario junta en un solo
+     * fsync las operaciones que llegan a la vez. Con false la respuesta sale cuando el registro llegó al
+     * sistema operativo: sobrevive a que el proceso se detenga, pero un corte de luz o una caída del sistema
+     * puede perder operaciones ya confirmadas, a cambio de no esperar al disco en cada respuesta.
+     */
+    public static void main(String[] args) throws Exception {
+        int puerto = args.length > 0 ? Integer.parseInt(args[0]) : 7070;
+        int maximoConexiones = args.length > 1 ? Integer.parseInt(args[1]) : 200_000;
+        int maximoEnCurso = args.length > 2 ? Integer.parseInt(args[2]) : 4 * Runtime.getRuntime().availableProcessors();
+        boolean sincronizar = args.length <= 4 || Boolean.parseBoolean(args[4]);
+        PersistenciaBanco persistencia = args.length > 3
+                ? PersistenciaBanco.abrir(Path.of(args[3]), "Banco", sincronizar) : null;
+        Banco banco = persistencia != null ? persistencia.getBanco() : new Banco("Banco");
+
+        ServidorBanco servidor = new ServidorBanco(banco, puerto, maximoConexiones, maximoEnCurso);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                servidor.close();
+                if (persistencia != null) {
+                    persistencia.close();
+                }
+            } catch (IOException e) {
+                System.err.println("Error al cerrar el servidor: " + e.getMessage());
+            }
+        }));
+        servidor.iniciar();
+        System.out.println("Servidor del banco escuchando en el puerto " + servidor.getPuerto());
+        Thread.currentThread().join();
+    }
+}
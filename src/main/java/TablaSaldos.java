@@ -0,0 +1,260 @@
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+
+/**
+ * Tabla de saldos fuera del heap, en un archivo mapeado en memoria.
+ *
+ * Cada billetera ocupa un registro fijo de 16 bytes: su número de 10 dígitos como long y su saldo en
+ * centavos. La tabla es a la vez el índice: el registro de un número se ubica por direccionamiento abierto
+ * con sondeo lineal a partir de un hash del número, así buscar no toma cerrojos ni crea objetos. Como los
+ * saldos viven en el mapeo, el sistema operativo los escribe al archivo y sobreviven a un reinicio del
+ * proceso sin serializar nada; {@link #sincronizar} los fuerza a disco ante una caída del equipo.
+ *
+ * La capacidad se fija al crear el archivo, porque las billeteras guardan la posición de su registro y
+ * la tabla no puede reubicarlos; admite hasta tres cuartos de la capacidad. Con la capacidad máxima el
+ * archivo ocupa 1 GB, pero es disperso: solo ocupan disco y memoria las páginas que se usan.
+ */
+public class TablaSaldos implements AutoCloseable {
+    private static final int MAGICO = 0x53414C44; // "SALD"
+    private static final int VERSION = 1;
+    private static final int ENCABEZADO = 64; // Bytes antes del primer registro; mantiene alineados los registros
+    private static final int TAMANO_REGISTRO = 16;
+    private static final int CAPACIDAD_MINIMA = 16;
+    private static final int CAPACIDAD_MAXIMA = 1 << 26; // Registros; el mapeo no puede superar 2 GB
+    private static final long VACIO = 0; // Número de un registro nunca usado
+    private static final long BORRADO = -1; // Número de un registro liberado, que no corta el sondeo
+
+    // Posiciones del encabezado
+    private static final int POSICION_CAPACIDAD = 8;
+    private static final int POSICION_CANTIDAD = 12;
+    private static final int POSICION_USADOS = 16;
+
+    private static final VarHandle LARGOS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private final FileChannel canal;
+    private final MappedByteBuffer mapa;
+    private final int mascara;
+    private final ReentrantLock cerrojo = new ReentrantLock(); // Ordena las altas y las bajas
+    private int cantidad; // Registros con una billetera
+    private int usados; // Registros que alguna vez tuvieron una billetera, incluidos los liberados
+
+    private TablaSaldos(FileChannel canal, MappedByteBuffer mapa, int capacidad, int cantidad, int usados) {
+        this.canal = canal;
+        this.mapa = mapa;
+        this.mascara = capacidad - 1;
+        this.cantidad = cantidad;
+        this.usados = usados;
+    }
+
+    /**
+     * Método que permite abrir una tabla existente o crear una nueva.
+     * @param archivo Ruta del archivo
+     * @param capacidad Capacidad si se crea la tabla; se redondea a la potencia de dos siguiente.
+     *                  Si la tabla ya existe se usa la suya
+     * @return Tabla abierta
+     * @throws IOException Si no se puede abrir o mapear el archivo, o no es una tabla de saldos
+     */
+    public static TablaSaldos abrir(Path archivo, int capacidad) throws IOException {
+        if (capacidad <= 0 || capacidad > CAPACIDAD_MAXIMA) {
+            throw new IllegalArgumentException("La capacidad debe estar entre 1 y " + CAPACIDAD_MAXIMA + ".");
+        }
+        FileChannel canal = FileChannel.open(archivo, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        try {
+            boolean nueva = canal.size() == 0;
+            if (nueva) {
+                capacidad = Math.max(CAPACIDAD_MINIMA, Integer.highestOneBit(capacidad - 1) << 1);
+            } else {
+                if (canal.size() < ENCABEZADO) {
+                    throw new IOException("El archivo no es una tabla de saldos: " + archivo);
+                }
+                MappedByteBuffer encabezado = canal.map(FileChannel.MapMode.READ_ONLY, 0, ENCABEZADO);
+                encabezado.order(ByteOrder.LITTLE_ENDIAN);
+                capacidad = encabezado.getInt(POSICION_CAPACIDAD);
+                if (encabezado.getInt(0) != MAGICO || encabezado.getInt(4) != VERSION
+                        || Integer.bitCount(capacidad) != 1 || capacidad > CAPACIDAD_MAXIMA) {
+                    throw new IOException("El archivo no es una tabla de saldos: " + archivo);
+                }
+            }
+            MappedByteBuffer mapa = canal.map(FileChannel.MapMode.READ_WRITE, 0,
+                    ENCABEZADO + (long) capacidad * TAMANO_REGISTRO);
+            mapa.order(ByteOrder.LITTLE_ENDIAN);
+            if (nueva) {
+                mapa.putInt(0, MAGICO);
+                mapa.putInt(4, VERSION);
+                mapa.putInt(POSICION_CAPACIDAD, capacidad);
+            }
+            return new TablaSaldos(canal, mapa, capacidad, mapa.getInt(POSICION_CANTIDAD), mapa.getInt(POSICION_USADOS));
+        } catch (IOException | RuntimeException e) {
+            canal.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Método que permite agregar una billetera a la tabla.
+     * @param numero Número de la billetera
+     * @param saldo Saldo inicial en centavos
+     * @return Posición del registro de la billetera
+     * @throws IllegalArgumentException Si el número no es válido o ya está en la tabla
+     * @throws IllegalStateException Si la tabla está llena
+     */
+    public int agregar(long numero, long saldo) {
+        if (numero <= 0) {
+            throw new IllegalArgumentException("El número de billetera no es válido: " + numero);
+        }
+        cerrojo.lock();
+        try {
+            int libre = -1;
+            int ranura = indice(numero);
+            for (int sondeos = 0; sondeos <= mascara; sondeos++, ranura = (ranura + 1) & mascara) {
+                long actual = numeroEn(ranura);
+                if (actual == VACIO) {
+                    break;
+                }
+                if (actual == numero) {
+                    throw new IllegalArgumentException("El número ya está en la tabla de saldos: " + numero);
+                }
+                if (actual == BORRADO && libre < 0) {
+                    libre = ranura;
+                }
+            }
+            if (libre < 0) {
+                if ((usados + 1) > (mascara + 1) / 4 * 3) {
+                    throw new IllegalStateException("La tabla de saldos está llena.");
+                }
+                libre = ranura;
+                usados++;
+            }
+
+            // El saldo se escribe antes que el número, así quien encuentra el número ya ve el saldo
+            LARGOS.setVolatile(mapa, posicion(libre) + Long.BYTES, saldo);
+            LARGOS.setVolatile(mapa, posicion(libre), numero);
+            cantidad++;
+            escribirContadores();
+            return libre;
+        } finally {
+            cerrojo.unlock();
+        }
+    }
+
+    /**
+     * Método que permite buscar el registro de una billetera, sin tomar cerrojos.
+     * @param numero Número de la billetera
+     * @return Posición del registro, o -1 si el número no está en la tabla
+     */
+    public int buscar(long numero) {
+        if (numero <= 0) {
+            return -1;
+        }
+        int ranura = indice(numero);
+        for (int sondeos = 0; sondeos <= mascara; sondeos++, ranura = (ranura + 1) & mascara) {
+            long actual = numeroEn(ranura);
+            if (actual == numero) {
+                return ranura;
+            }
+            if (actual == VACIO) {
+                return -1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Método que permite liberar el registro de una billetera, por ejemplo al archivarla.
+     * @param ranura Posición del registro
+     */
+    public void quitar(int ranura) {
+        cerrojo.lock();
+        try {
+            if (numeroEn(ranura) > 0) {
+                LARGOS.setVolatile(mapa, posicion(ranura), BORRADO);
+                cantidad--;
+                escribirContadores();
+            }
+        } finally {
+            cerrojo.unlock();
+        }
+    }
+
+    // Saldo en centavos de un registro; es una lectura volátil
+    public long saldoEn(int ranura) {
+        return (long) LARGOS.getVolatile(mapa, posicion(ranura) + Long.BYTES);
+    }
+
+    // Escribe el saldo de un registro; quien escribe debe tener el cerrojo de la billetera
+    void escribirSaldo(int ranura, long saldo) {
+        LARGOS.setVolatile(mapa, posicion(ranura) + Long.BYTES, saldo);
+    }
+
+    // Número de la billetera de un registro, o un valor no positivo si el registro está libre
+    public long numeroEn(int ranura) {
+        return (long) LARGOS.getVolatile(mapa, posicion(ranura));
+    }
+
+    /**
+     * Método que permite recorrer las posiciones de los registros con billetera, por ejemplo para volver a
+     * asociar las billeteras a sus usuarios después de un reinicio.
+     * @return Posiciones de los registros ocupados
+     */
+    public IntStream ranuras() {
+        return IntStream.rangeClosed(0, mascara).filter(ranura -> numeroEn(ranura) > 0);
+    }
+
+    // Números de las billeteras de la tabla
+    public LongStream numeros() {
+        return ranuras().mapToLong(this::numeroEn);
+    }
+
+    /**
+     * Método que permite forzar a disco las páginas modificadas del mapeo.
+     */
+    public void sincronizar() {
+        mapa.force();
+    }
+
+    @Override
+    public void close() throws IOException {
+        sincronizar();
+        canal.close();
+    }
+
+    // Getters
+    public int getCantidad() {
+        cerrojo.lock();
+        try {
+            return cantidad;
+        } finally {
+            cerrojo.unlock();
+        }
+    }
+
+    public int getCapacidad() {
+        return mascara + 1;
+    }
+
+    // Método auxiliar que guarda los contadores en el encabezado; requiere el cerrojo tomado
+    private void escribirContadores() {
+        mapa.putInt(POSICION_CANTIDAD, cantidad);
+        mapa.putInt(POSICION_USADOS, usados);
+    }
+
+    // Método auxiliar que ubica la primera posición de sondeo de un número
+    private int indice(long numero) {
+        long h = numero * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mascara;
+    }
+
+    private static int posicion(int ranura) {
+        return ENCABEZADO + ranura * TAMANO_REGISTRO;
+    }
+}
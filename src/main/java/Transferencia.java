@@ -0,0 +1,54 @@
+/**
+ * Solicitud de transferencia entre dos billeteras del banco.
+ * El origen paga el monto más el costo de envío y el destino recibe el monto.
+ * El monto se guarda en centavos.
+ */
+public class Transferencia {
+    private final String id;
+    private final String numeroOrigen;
+    private final String numeroDestino;
+    private final long montoCentavos;
+
+    // Constructor
+    public Transferencia(String id, String numeroOrigen, String numeroDestino, double monto) {
+        this(id, numeroOrigen, numeroDestino, Dinero.desdeDouble(monto));
+    }
+
+    // Constructor con el monto en centavos; es privado para que un monto entero no se tome por centavos
+    private Transferencia(String id, String numeroOrigen, String numeroDestino, long montoCentavos) {
+        this.id = id;
+        this.numeroOrigen = numeroOrigen;
+        this.numeroDestino = numeroDestino;
+        this.montoCentavos = montoCentavos;
+    }
+
+    /**
+     * Método que permite crear una transferencia con el monto en centavos.
+     * @param montoCentavos Monto en centavos
+     * @return Transferencia creada
+     */
+    public static Transferencia conCentavos(String id, String numeroOrigen, String numeroDestino, long montoCentavos) {
+        return new Transferencia(id, numeroOrigen, numeroDestino, montoCentavos);
+    }
+
+    // Getters
+    public String getId() {
+        return id;
+    }
+
+    public String getNumeroOrigen() {
+        return numeroOrigen;
+    }
+
+    public String getNumeroDestino() {
+        return numeroDestino;
+    }
+
+    public double getMonto() {
+        return Dinero.aDouble(montoCentavos);
+    }
+
+    public long getMontoCentavos() {
+        return montoCentavos;
+    }
+}
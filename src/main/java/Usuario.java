@@ -2,10 +2,11 @@ public class Usuario {
     // Atributos
     public String nombre;
     public String direccion;
-    public String id;
+    private String id; // Clave del registro del banco; no cambia mientras el usuario está registrado
     public String correo;
     public String contraseña;
     public boolean estado; // Atributo estado como boolean
+    private volatile boolean registrado; // Está en el registro de un banco
 
     // Constructor
     public Usuario(String nombre, String direccion, String id, String correo, String contraseña, boolean estado) {
@@ -38,7 +39,11 @@ public class Usuario {
         return id;
     }
 
-    public void setId(String id) {
+    // Cambia el ID; solo antes de registrar el usuario, porque el registro lo indexa por ID
+    void setId(String id) {
+        if (registrado) {
+            throw new IllegalStateException("No se puede cambiar el ID de un usuario registrado.");
+        }
         this.id = id;
     }
 
@@ -65,4 +70,9 @@ public class Usuario {
     public void setEstado(boolean estado) { // Setter para el estado (boolean)
         this.estado = estado;
     }
+
+    // Lo marca el registro al agregar o eliminar el usuario
+    void setRegistrado(boolean registrado) {
+        this.registrado = registrado;
+    }
 }
@@ -0,0 +1,153 @@
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import static org.junit.jupiter.api.Assertions.*;
+
+class BancoParticionadoTest {
+
+    private BancoParticionado banco;
+    private final List<String> numeros = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        banco = new BancoParticionado("Mi Banco", 4);
+        for (int i = 0; i < 40; i++) {
+            Usuario usuario = new Usuario("usuario" + i, "Calle " + i, "id" + i, "u" + i + "@gmail.com", "123", true);
+            banco.agregarUsuario(usuario);
+            banco.crearBilleteraVirtual(usuario, 1000.0);
+        }
+        for (int p = 0; p < banco.getCantidadParticiones(); p++) {
+            for (BilleteraVirtual billetera : banco.getParticion(p).getBilleterasVirtuales()) {
+                numeros.add(billetera.getNumero());
+            }
+        }
+    }
+
+    @Test
+    void testUsuariosYBilleterasRepartidos() throws Exception {
+        assertEquals(40, numeros.size());
+        for (int p = 0; p < banco.getCantidadParticiones(); p++) {
+            Banco particion = banco.getParticion(p);
+            assertFalse(particion.getListaUsuarios().isEmpty());
+            // Cada billetera está en la partición de su usuario
+            for (BilleteraVirtual billetera : particion.getBilleterasVirtuales()) {
+                assertSame(billetera.getUsuario(), particion.obtenerUsuario(billetera.getUsuario().getId()));
+            }
+        }
+        assertEquals("usuario7", banco.obtenerUsuario("id7").getNombre());
+        assertNull(banco.obtenerUsuario("otro"));
+
+        Exception exception = assertThrows(Exception.class, () -> banco.agregarUsuario(
+                new Usuario("repetido", "Calle", "id7", "r@gmail.com", "123", true)));
+        assertEquals("Ya existe un usuario con el mismo ID.", exception.getMessage());
+    }
+
+    @Test
+    void testTransaccionesEnCualquierParticion() throws Exception {
+        for (int i = 0; i < numeros.size(); i++) {
+            banco.realizarTransaccion(numeros.get(i), new RegistroTransaccion(
+                    "T" + i, LocalDateTime.now(), -100.0, "miguel", Categoria.GASTO));
+        }
+        assertEquals(-100.0, banco.consultarTransaccion("T17").getMonto());
+
+        // El ID es único en todo el banco, aunque la otra billetera esté en otra partición
+        Exception exception = assertThrows(Exception.class, () -> banco.realizarTransaccion(numeros.get(0),
+                new RegistroTransaccion("T39", LocalDateTime.now(), 1.0, "miguel", Categoria.INGRESO)));
+        assertEquals("Ya existe una transacción con el ID: T39", exception.getMessage());
+
+        exception = assertThrows(Exception.class, () -> banco.realizarTransaccion("123",
+                new RegistroTransaccion("X", LocalDateTime.now(), 1.0, "miguel", Categoria.INGRESO)));
+        assertEquals("No se encontró una billetera con el número: 123", exception.getMessage());
+    }
+
+    @Test
+    void testMetricasSumanLasParticiones() throws Exception {
+        for (int i = 0; i < numeros.size(); i++) {
+            banco.realizarTransaccion(numeros.get(i), new RegistroTransaccion(
+                    "T" + i, LocalDateTime.now(), -100.0, "miguel", Categoria.GASTO));
+        }
+        banco.transferir(new Transferencia("X", numeros.get(0), numeros.get(39), 1.0));
+
+        // Cada partición cuenta solo sus transacciones, aunque el índice de IDs sea compartido
+        long transacciones = 0;
+        for (int p = 0; p < banco.getCantidadParticiones(); p++) {
+            MetricasBanco.Instantanea parte = banco.getParticion(p).obtenerMetricas();
+            assertTrue(parte.getTransacciones() < 42);
+            transacciones += parte.getTransacciones();
+        }
+        assertEquals(42, transacciones);
+
+        MetricasBanco.Instantanea metricas = banco.obtenerMetricas();
+        assertEquals(40, metricas.getUsuarios());
+        assertEquals(40, metricas.getBilleteras());
+        assertEquals(42, metricas.getTransacciones());
+        assertEquals(40, metricas.contar(MetricasBanco.Operacion.CREAR_BILLETERA, MetricasBanco.Resultado.EXITO));
+        assertEquals(40, metricas.contar(MetricasBanco.Operacion.REALIZAR_TRANSACCION, MetricasBanco.Resultado.EXITO));
+    }
+
+    @Test
+    void testLoteRepartidoEntreParticiones() {
+        String[] lote = new String[numeros.size() + 1];
+        RegistroTransaccion[] transacciones = new RegistroTransaccion[lote.length];
+        for (int i = 0; i < numeros.size(); i++) {
+            lote[i] = numeros.get(i);
+            transacciones[i] = new RegistroTransaccion("L" + i, LocalDateTime.now(), i % 2 == 0 ? 5.0 : -5000.0,
+                    "miguel", Categoria.GASTO);
+        }
+        lote[numeros.size()] = "0000000000";
+        transacciones[numeros.size()] = new RegistroTransaccion("L-X", LocalDateTime.now(), 5.0, "miguel", Categoria.INGRESO);
+
+        ResultadoLote resultado = banco.realizarTransacciones(lote, transacciones);
+        assertEquals(20, resultado.contar(ResultadoTransaccion.ACEPTADA));
+        assertEquals(20, resultado.contar(ResultadoTransaccion.SALDO_INSUFICIENTE));
+        assertEquals(ResultadoTransaccion.BILLETERA_DESCONOCIDA, resultado.get(numeros.size()));
+    }
+
+    @Test
+    void testTransferenciasEntreParticionesConservanElDinero() throws Exception {
+        int hilos = 8;
+        int porHilo = 500;
+        ExecutorService ejecutor = Executors.newFixedThreadPool(hilos);
+        List<Future<?>> tareas = new ArrayList<>();
+        for (int h = 0; h < hilos; h++) {
+            int hilo = h;
+            tareas.add(ejecutor.submit(() -> {
+                for (int i = 0; i < porHilo; i++) {
+                    String origen = numeros.get((hilo * 7 + i) % numeros.size());
+                    String destino = numeros.get((hilo * 7 + i * 3 + 1) % numeros.size());
+                    try {
+                        banco.transferir(new Transferencia("H" + hilo + "-" + i, origen, destino, 1.0));
+                    } catch (Exception e) {
+                        // Origen y destino iguales o sin saldo: la transferencia se rechaza entera
+                    }
+                }
+                return null;
+            }));
+        }
+        for (Future<?> tarea : tareas) {
+            tarea.get();
+        }
+        ejecutor.shutdown();
+
+        // El dinero total solo bajó en los costos de envío cobrados
+        long total = 0;
+        long envios = 0;
+        for (int p = 0; p < banco.getCantidadParticiones(); p++) {
+            for (BilleteraVirtual billetera : banco.getParticion(p).getBilleterasVirtuales()) {
+                total += billetera.consultarSaldoCentavos();
+                for (RegistroTransaccion transaccion : billetera.getRegistroTransacciones()) {
+                    if (transaccion.getId().endsWith("-E")) {
+                        envios++;
+                    }
+                }
+            }
+        }
+        assertEquals(40 * 100000L - envios * 20000L, total);
+        assertTrue(envios > 0);
+    }
+}
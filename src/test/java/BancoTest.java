@@ -1,6 +1,20 @@
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import static org.junit.jupiter.api.Assertions.*;
 
 class BancoTest {
@@ -43,6 +57,25 @@ class BancoTest {
         assertEquals("Ya existe un usuario con el mismo ID.", exception.getMessage());
     }
 
+    @Test
+    void testListasYClavesNoSePuedenCambiarPorFuera() throws Exception {
+        banco.agregarUsuario(usuario);
+        BilleteraVirtual billetera = banco.crearBilleteraVirtual(usuario, 100.0);
+        String numero = billetera.getNumero();
+
+        // Las listas son copias de solo lectura
+        assertThrows(UnsupportedOperationException.class, () -> banco.getListaUsuarios().clear());
+        assertThrows(UnsupportedOperationException.class, () -> banco.getBilleterasVirtuales().remove(0));
+
+        // Las claves de los índices no cambian mientras están registrados
+        assertThrows(IllegalStateException.class, () -> usuario.setId("999"));
+        assertThrows(Exception.class, () -> billetera.setNumero("1234567890"));
+        assertThrows(IllegalStateException.class, () -> billetera.setUsuario(null));
+        assertEquals(usuario, banco.obtenerUsuario("12345"));
+        assertEquals(100.0, banco.consultarSaldo(numero));
+        assertEquals(List.of(billetera), banco.obtenerBilleterasDeUsuario("12345"));
+    }
+
     @Test
     void testActualizarUsuario() throws Exception {
         // Crear un usuario en el banco
@@ -95,6 +128,94 @@ class BancoTest {
         assertEquals("No existe un usuario con el ID dado.", exception.getMessage());
     }
 
+    @Test
+    void testEliminarUsuarioConservaLosDemas() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            banco.agregarUsuario(new Usuario("u" + i, "Calle " + i, "U" + i, "u" + i + "@gmail.com", "123", true));
+        }
+
+        // Quitar uno del medio y el último: el resto sigue en la lista y se puede buscar
+        banco.eliminarUsuario("U1");
+        banco.eliminarUsuario("U4");
+        assertEquals(3, banco.getListaUsuarios().size());
+        for (String id : List.of("U0", "U2", "U3")) {
+            assertTrue(banco.getListaUsuarios().contains(banco.obtenerUsuario(id)));
+        }
+        banco.eliminarUsuario("U0");
+        banco.agregarUsuario(usuario);
+        assertEquals(3, banco.getListaUsuarios().size());
+    }
+
+    @Test
+    void testEliminarUsuarioArchivaSusBilleteras() throws Exception {
+        banco.agregarUsuario(usuario);
+        String a = banco.crearBilleteraVirtual(usuario, 0.0).getNumero();
+        String b = banco.crearBilleteraVirtual(usuario, 10.0).getNumero();
+
+        // Con saldo en alguna billetera no se elimina ni se cierra ninguna
+        Exception exception = assertThrows(Exception.class, () -> banco.eliminarUsuario("12345"));
+        assertEquals("La billetera debe tener saldo cero para cerrarse: " + b, exception.getMessage());
+        assertEquals(usuario, banco.obtenerUsuario("12345"));
+        assertEquals(EstadoBilletera.ACTIVA, banco.getBilleterasVirtuales().get(0).getEstado());
+
+        banco.realizarTransaccion(b, new RegistroTransaccion("R1", LocalDateTime.now(), -10.0, "miguel", Categoria.GASTO));
+        banco.eliminarUsuario("12345");
+        assertNull(banco.obtenerUsuario("12345"));
+        assertTrue(banco.getBilleterasVirtuales().isEmpty());
+        assertEquals(2, banco.getArchivo().cantidad());
+        assertEquals(EstadoBilletera.CERRADA, banco.consultarBilleteraArchivada(a).getEstado());
+        assertEquals(1, banco.consultarBilleteraArchivada(b).getRegistroTransacciones().size());
+        assertNull(banco.getRegistro().buscarBilleteraDeTransaccion("R1"));
+        assertTrue(banco.getRegistro().esTransaccionArchivada("R1"));
+        assertEquals(0, banco.getRegistro().cantidadTransacciones()); // Ya no ocupa el índice de transacciones
+
+        // Los IDs de las billeteras archivadas siguen reservados y el usuario eliminado no recibe billeteras nuevas
+        banco.agregarUsuario(new Usuario("ana", "Calle 456", "678", "ana@gmail.com", "456", true));
+        String c = banco.crearBilleteraVirtual(banco.obtenerUsuario("678"), 0.0).getNumero();
+        exception = assertThrows(Exception.class, () -> banco.realizarTransaccion(c,
+                new RegistroTransaccion("R1", LocalDateTime.now(), 5.0, "ana", Categoria.INGRESO)));
+        assertEquals("Ya existe una transacción con el ID: R1", exception.getMessage());
+        exception = assertThrows(Exception.class, () -> banco.crearBilleteraVirtual(usuario, 0.0));
+        assertEquals("El usuario no está registrado en el banco.", exception.getMessage());
+        assertEquals(1, banco.getBilleterasVirtuales().size());
+    }
+
+    @Test
+    void testCicloDeVidaBilletera() throws Exception {
+        banco.agregarUsuario(usuario);
+        String a = banco.crearBilleteraVirtual(usuario, 500.0).getNumero();
+        String b = banco.crearBilleteraVirtual(usuario, 0.0).getNumero();
+
+        // Una billetera congelada rechaza movimientos en todos los caminos
+        banco.congelarBilletera(a);
+        assertThrows(Exception.class, () -> banco.congelarBilletera(a));
+        assertEquals(ResultadoTransaccion.BILLETERA_INACTIVA, banco.intentarTransaccion(a,
+                new RegistroTransaccion("C1", LocalDateTime.now(), 1.0, "miguel", Categoria.INGRESO)));
+        assertEquals(ResultadoTransaccion.BILLETERA_INACTIVA, banco.intentarTransferencia(new Transferencia("C2", b, a, 1.0)));
+        ResultadoLote lote = banco.realizarTransacciones(new String[]{a},
+                new RegistroTransaccion[]{new RegistroTransaccion("C3", LocalDateTime.now(), 1.0, "miguel", Categoria.INGRESO)});
+        assertEquals(ResultadoTransaccion.BILLETERA_INACTIVA, lote.get(0));
+        assertThrows(Exception.class, () -> banco.transferirLote(List.of(new Transferencia("C4", a, b, 1.0))));
+        assertEquals(500.0, banco.consultarSaldo(a));
+
+        // Reactivada vuelve a operar; con saldo no se puede cerrar
+        banco.reactivarBilletera(a);
+        assertThrows(Exception.class, () -> banco.reactivarBilletera(a));
+        banco.transferir(new Transferencia("C5", a, b, 300.0));
+        assertThrows(Exception.class, () -> banco.cerrarBilletera(b));
+
+        // Cerrada, sale del banco y queda en el archivo
+        assertEquals(0.0, banco.consultarSaldo(a));
+        banco.cerrarBilletera(a);
+        assertThrows(Exception.class, () -> banco.consultarSaldo(a));
+        assertEquals(List.of(b), banco.obtenerBilleterasDeUsuario("12345").stream().map(BilleteraVirtual::getNumero).toList());
+        assertEquals(1, banco.getBilleterasVirtuales().size());
+        BilleteraVirtual archivada = banco.consultarBilleteraArchivada(a);
+        assertEquals(usuario, archivada.getUsuario());
+        assertEquals(-500.0, archivada.consultarTransaccion("C5-E").getMonto());
+        assertNull(banco.consultarBilleteraArchivada(b));
+    }
+
     @Test
     void testCrearBilleteraVirtual() throws Exception {
         // Crear un usuario en el banco
@@ -158,4 +279,522 @@ class BancoTest {
         });
         assertEquals("No se encontró una billetera con el número: 99999", exception.getMessage());
     }
-}
\ No newline at end of file
+
+    @Test
+    void testSetListaUsuariosReindexa() throws Exception {
+        // Reemplazar la lista de usuarios del banco
+        ArrayList<Usuario> usuarios = new ArrayList<>();
+        usuarios.add(usuario);
+        banco.setListaUsuarios(usuarios);
+
+        // Verificar que el usuario se puede buscar y que no se admite duplicado
+        assertEquals(usuario, banco.obtenerUsuario("12345"));
+        assertThrows(Exception.class, () -> banco.agregarUsuario(usuario));
+
+        // Crear una billetera y realizar una transacción por su número
+        banco.crearBilleteraVirtual(usuario, 1000.0);
+        String numeroBilletera = banco.getBilleterasVirtuales().get(0).getNumero();
+        banco.realizarTransaccion(numeroBilletera, new RegistroTransaccion(
+                "1", LocalDateTime.now(), -300.0, "miguel", Categoria.GASTO
+        ));
+        assertEquals(700.0, banco.getBilleterasVirtuales().get(0).consultarSaldo());
+    }
+
+    @Test
+    void testTransferir() throws Exception {
+        // Crear dos billeteras para el usuario
+        banco.agregarUsuario(usuario);
+        banco.crearBilleteraVirtual(usuario, 1000.0);
+        banco.crearBilleteraVirtual(usuario, 0.0);
+        BilleteraVirtual origen = banco.getBilleterasVirtuales().get(0);
+        BilleteraVirtual destino = banco.getBilleterasVirtuales().get(1);
+
+        // Transferir 500 del origen al destino
+        banco.transferir(new Transferencia("T1", origen.getNumero(), destino.getNumero(), 500.0));
+
+        // Verificar que el origen pagó el monto más el costo de envío
+        assertEquals(300.0, origen.consultarSaldo());
+        assertEquals(500.0, destino.consultarSaldo());
+        assertEquals(-700.0, origen.consultarTransaccion("T1-E").getMonto());
+        assertEquals(500.0, destino.consultarTransaccion("T1-R").getMonto());
+    }
+
+    @Test
+    void testTransferirSaldoInsuficiente() throws Exception {
+        banco.agregarUsuario(usuario);
+        banco.crearBilleteraVirtual(usuario, 1000.0);
+        banco.crearBilleteraVirtual(usuario, 0.0);
+        BilleteraVirtual origen = banco.getBilleterasVirtuales().get(0);
+        BilleteraVirtual destino = banco.getBilleterasVirtuales().get(1);
+
+        // El monto alcanza pero el costo de envío no
+        Exception exception = assertThrows(Exception.class, () -> {
+            banco.transferir(new Transferencia("T1", origen.getNumero(), destino.getNumero(), 900.0));
+        });
+        assertEquals("Saldo insuficiente para realizar la transacción.", exception.getMessage());
+
+        // Verificar que ninguna billetera cambió
+        assertEquals(1000.0, origen.consultarSaldo());
+        assertEquals(0.0, destino.consultarSaldo());
+        assertEquals(0, destino.getRegistroTransacciones().size());
+    }
+
+    @Test
+    void testTransferenciaQueDesbordaNoMueveDinero() throws Exception {
+        banco.agregarUsuario(usuario);
+        BilleteraVirtual origen = banco.crearBilleteraVirtual(usuario, 1000.0);
+        BilleteraVirtual destino = banco.crearBilleteraVirtual(usuario, 0.0);
+        banco.establecerLimites(origen.getNumero(), List.of(LimiteGasto.montoMaximo(202.0, Duration.ofDays(1))));
+        banco.realizarTransaccion(destino.getNumero(), RegistroTransaccion.conCentavos(
+                "D", LocalDateTime.now(), Long.MAX_VALUE - 100, "miguel", Categoria.INGRESO));
+
+        // El saldo del destino desbordaría: ninguna billetera cambia y el ID queda libre
+        assertEquals(ResultadoTransaccion.INVALIDA,
+                banco.intentarTransferencia(new Transferencia("T1", origen.getNumero(), destino.getNumero(), 2.0)));
+        assertThrows(ArithmeticException.class,
+                () -> banco.transferir(new Transferencia("T1", origen.getNumero(), destino.getNumero(), 2.0)));
+        assertThrows(ArithmeticException.class, () -> banco.transferirLote(List.of(
+                new Transferencia("T1", origen.getNumero(), destino.getNumero(), 2.0))));
+        assertEquals(1000.0, origen.consultarSaldo());
+        assertEquals(0, origen.getRegistroTransacciones().size());
+        assertEquals(1, destino.getRegistroTransacciones().size());
+
+        // El límite no guardó nada de los intentos: la transferencia que sí cabe entra en él
+        assertEquals(ResultadoTransaccion.ACEPTADA,
+                banco.intentarTransferencia(new Transferencia("T1", origen.getNumero(), destino.getNumero(), 1.0)));
+        assertEquals(1000.0 - 201.0, origen.consultarSaldo());
+        assertEquals(Long.MAX_VALUE, destino.consultarSaldoCentavos());
+    }
+
+    @Test
+    void testIntentarSinExcepciones() throws Exception {
+        banco.agregarUsuario(usuario);
+        String origen = banco.crearBilleteraVirtual(usuario, 1000.0).getNumero();
+        String destino = banco.crearBilleteraVirtual(usuario, 0.0).getNumero();
+
+        assertEquals(ResultadoTransaccion.BILLETERA_DESCONOCIDA, banco.intentarTransaccion("0000000000",
+                new RegistroTransaccion("T1", LocalDateTime.now(), 1.0, "miguel", Categoria.INGRESO)));
+        assertEquals(ResultadoTransaccion.SALDO_INSUFICIENTE, banco.intentarTransaccion(origen,
+                new RegistroTransaccion("T1", LocalDateTime.now(), -2000.0, "miguel", Categoria.GASTO)));
+        // El ID del rechazo quedó libre
+        assertEquals(ResultadoTransaccion.ACEPTADA, banco.intentarTransaccion(origen,
+                new RegistroTransaccion("T1", LocalDateTime.now(), -100.0, "miguel", Categoria.GASTO)));
+        assertEquals(ResultadoTransaccion.ID_DUPLICADO, banco.intentarTransaccion(destino,
+                new RegistroTransaccion("T1", LocalDateTime.now(), 1.0, "miguel", Categoria.INGRESO)));
+        assertEquals(ResultadoTransaccion.INVALIDA, banco.intentarTransaccion(destino, null));
+
+        assertEquals(ResultadoTransaccion.SALDO_INSUFICIENTE,
+                banco.intentarTransferencia(new Transferencia("X1", origen, destino, 800.0)));
+        assertEquals(ResultadoTransaccion.INVALIDA,
+                banco.intentarTransferencia(new Transferencia("X1", origen, origen, 10.0)));
+        assertEquals(ResultadoTransaccion.INVALIDA,
+                banco.intentarTransferencia(new Transferencia("X1", origen, destino, -10.0)));
+        assertEquals(ResultadoTransaccion.BILLETERA_DESCONOCIDA,
+                banco.intentarTransferencia(new Transferencia("X1", origen, "0000000000", 10.0)));
+        assertEquals(ResultadoTransaccion.ACEPTADA,
+                banco.intentarTransferencia(new Transferencia("X1", origen, destino, 100.0)));
+        assertEquals(ResultadoTransaccion.ID_DUPLICADO,
+                banco.intentarTransferencia(new Transferencia("X1", destino, origen, 10.0)));
+        assertEquals(600.0, banco.consultarSaldo(origen));
+        assertEquals(100.0, banco.consultarSaldo(destino));
+
+        Exception exception = assertThrows(Exception.class,
+                () -> banco.transferir(new Transferencia("X1", destino, origen, 10.0)));
+        assertEquals("Ya existe una transacción con el ID: X1-E", exception.getMessage());
+        exception = assertThrows(Exception.class,
+                () -> banco.transferir(new Transferencia("X2", origen, "0000000000", 10.0)));
+        assertEquals("No se encontró una billetera con el número: 0000000000", exception.getMessage());
+    }
+
+    @Test
+    void testSaldoTotalNuncaVeUnaTransferenciaAMedias() throws Exception {
+        banco.agregarUsuario(usuario);
+        String a = banco.crearBilleteraVirtual(usuario, 1_000_000.0).getNumero();
+        String b = banco.crearBilleteraVirtual(usuario, 1_000_000.0).getNumero();
+        assertThrows(Exception.class, () -> banco.consultarSaldoTotal("otro"));
+
+        // Cada transferencia mueve 1 y cobra 200 de envío: un total confirmado siempre es múltiplo de 200
+        ExecutorService ejecutor = Executors.newSingleThreadExecutor();
+        Future<?> escritor = ejecutor.submit(() -> {
+            for (int i = 0; i < 2000; i++) {
+                banco.intentarTransferencia(new Transferencia("S" + i, i % 2 == 0 ? a : b, i % 2 == 0 ? b : a, 1.0));
+            }
+            return null;
+        });
+        while (!escritor.isDone()) {
+            long total = Dinero.desdeDouble(banco.consultarSaldoTotal("12345"));
+            assertEquals(0, (200_000_000L - total) % 20_000, "Total a medias: " + total);
+        }
+        escritor.get();
+        ejecutor.shutdown();
+        assertEquals(2_000_000.0 - 2000 * 200.0, banco.consultarSaldoTotal("12345"));
+    }
+
+    @Test
+    void testPortafolioUsuario() throws Exception {
+        banco.agregarUsuario(usuario);
+        assertTrue(banco.obtenerBilleterasDeUsuario("12345").isEmpty());
+        assertThrows(Exception.class, () -> banco.obtenerPortafolio("otro"));
+
+        String a = banco.crearBilleteraVirtual(usuario, 1000.0).getNumero();
+        String b = banco.crearBilleteraVirtual(usuario, 500.0).getNumero();
+        banco.realizarTransaccion(a, new RegistroTransaccion("P1", LocalDateTime.now(), 300.0, "miguel", Categoria.INGRESO));
+        banco.realizarTransaccion(a, new RegistroTransaccion("P2", LocalDateTime.now(), -100.0, "miguel", Categoria.VIAJES));
+        banco.realizarTransaccion(b, new RegistroTransaccion("P3", LocalDateTime.now(), -50.0, "miguel", Categoria.VIAJES));
+        banco.realizarTransaccion(b, new RegistroTransaccion("P4", LocalDateTime.now(), -25.0, "miguel", Categoria.FACTURAS));
+
+        assertEquals(List.of(a, b), banco.obtenerBilleterasDeUsuario("12345").stream().map(BilleteraVirtual::getNumero).toList());
+        PortafolioUsuario portafolio = banco.obtenerPortafolio("12345");
+        assertEquals(List.of(a, b), portafolio.getNumerosBilleteras());
+        assertEquals(1625.0, portafolio.getSaldoTotal());
+        assertEquals(300.0, portafolio.getTotalIngresos());
+        assertEquals(175.0, portafolio.getTotalGastos());
+        assertEquals(Map.of(Categoria.VIAJES, 150.0, Categoria.FACTURAS, 25.0), portafolio.obtenerGastosPorCategoria());
+    }
+
+    @Test
+    void testAnalisisDeGastos() throws Exception {
+        Usuario otro = new Usuario("ana", "Calle 456", "67890", "ana@gmail.com", "456", true);
+        banco.agregarUsuario(usuario);
+        banco.agregarUsuario(otro);
+        String a = banco.crearBilleteraVirtual(usuario, 1000.0).getNumero();
+        String b = banco.crearBilleteraVirtual(usuario, 1000.0).getNumero();
+        String c = banco.crearBilleteraVirtual(otro, 1000.0).getNumero();
+        LocalDateTime enero = LocalDateTime.of(2024, 1, 15, 10, 0);
+        LocalDateTime febrero = LocalDateTime.of(2024, 2, 3, 10, 0);
+        banco.realizarTransaccion(a, new RegistroTransaccion("A1", enero, -100.0, "miguel", Categoria.GASOLINA));
+        banco.realizarTransaccion(a, new RegistroTransaccion("A2", febrero, -40.0, "miguel", Categoria.VIAJES));
+        banco.realizarTransaccion(b, new RegistroTransaccion("B1", febrero, -30.0, "miguel", Categoria.GASOLINA));
+        banco.realizarTransaccion(b, new RegistroTransaccion("B2", febrero, 500.0, "miguel", Categoria.INGRESO));
+        banco.realizarTransaccion(c, new RegistroTransaccion("C1", enero, -120.0, "ana", Categoria.GASOLINA));
+        // Fuera de orden, para recorrer sin búsqueda binaria
+        banco.realizarTransaccion(c, new RegistroTransaccion("C2", enero.minusDays(10), -10.0, "ana", Categoria.VIAJES));
+
+        AnalisisBanco analisis = banco.analizar();
+        assertEquals(Map.of(Categoria.GASOLINA, 250.0, Categoria.VIAJES, 50.0), analisis.gastosPorCategoria(null, null));
+        assertEquals(Map.of(Categoria.GASOLINA, 30.0, Categoria.VIAJES, 40.0),
+                analisis.gastosPorCategoria(LocalDateTime.of(2024, 2, 1, 0, 0), null));
+
+        Map<YearMonth, Map<Categoria, Double>> porMes = analisis.gastosPorMes(null, null);
+        assertEquals(List.of(YearMonth.of(2024, 1), YearMonth.of(2024, 2)), List.copyOf(porMes.keySet()));
+        assertEquals(Map.of(Categoria.GASOLINA, 220.0, Categoria.VIAJES, 10.0), porMes.get(YearMonth.of(2024, 1)));
+        assertEquals(Map.of(Categoria.GASOLINA, 30.0, Categoria.VIAJES, 40.0), porMes.get(YearMonth.of(2024, 2)));
+
+        // Miguel suma sus dos billeteras y supera a Ana; en enero solo cuenta una y queda segundo
+        List<AnalisisBanco.GastoUsuario> mayores = analisis.mayoresGastos(Categoria.GASOLINA, 5, null, null);
+        assertEquals(List.of("12345", "67890"), mayores.stream().map(AnalisisBanco.GastoUsuario::getIdUsuario).toList());
+        assertEquals(130.0, mayores.get(0).getTotal());
+        mayores = analisis.mayoresGastos(Categoria.GASOLINA, 5, null, febrero.withDayOfMonth(1));
+        assertEquals(List.of("67890", "12345"), mayores.stream().map(AnalisisBanco.GastoUsuario::getIdUsuario).toList());
+        assertEquals(100.0, mayores.get(1).getTotal());
+        assertEquals(1, analisis.mayoresGastos(Categoria.VIAJES, 1, null, null).size());
+        assertTrue(analisis.mayoresGastos(Categoria.FACTURAS, 3, null, null).isEmpty());
+        assertThrows(IllegalArgumentException.class, () -> analisis.mayoresGastos(Categoria.GASOLINA, 0, null, null));
+    }
+
+    @Test
+    void testLimitesDeGastoDeBilletera() throws Exception {
+        RelojManual reloj = new RelojManual();
+        banco.setReloj(reloj);
+        banco.agregarUsuario(usuario);
+        String a = banco.crearBilleteraVirtual(usuario, 10_000.0).getNumero();
+        String b = banco.crearBilleteraVirtual(usuario, 0.0).getNumero();
+        banco.establecerLimites(a, List.of(
+                LimiteGasto.montoMaximo(500.0, Duration.ofHours(1)),
+                LimiteGasto.cantidadMaxima(2, Duration.ofMinutes(1), Categoria.VIAJES)));
+        assertEquals(2, banco.consultarLimites(a).size());
+
+        // El monto por hora
+        banco.realizarTransaccion(a, new RegistroTransaccion("L1", LocalDateTime.now(), -300.0, "miguel", Categoria.GASOLINA));
+        assertEquals(ResultadoTransaccion.LIMITE_EXCEDIDO, banco.intentarTransaccion(a,
+                new RegistroTransaccion("L2", LocalDateTime.now(), -250.0, "miguel", Categoria.GASOLINA)));
+        Exception e = assertThrows(Exception.class, () -> banco.realizarTransaccion(a,
+                new RegistroTransaccion("L2", LocalDateTime.now(), -250.0, "miguel", Categoria.GASOLINA)));
+        assertEquals("Se excedió un límite de gasto de la billetera: " + a, e.getMessage());
+        banco.realizarTransaccion(a, new RegistroTransaccion("L3", LocalDateTime.now(), 1000.0, "miguel", Categoria.INGRESO));
+
+        // La cantidad de gastos por minuto en una categoría
+        banco.realizarTransaccion(a, new RegistroTransaccion("V1", LocalDateTime.now(), -10.0, "miguel", Categoria.VIAJES));
+        banco.realizarTransaccion(a, new RegistroTransaccion("V2", LocalDateTime.now(), -10.0, "miguel", Categoria.VIAJES));
+        assertEquals(ResultadoTransaccion.LIMITE_EXCEDIDO, banco.intentarTransaccion(a,
+                new RegistroTransaccion("V3", LocalDateTime.now(), -10.0, "miguel", Categoria.VIAJES)));
+        reloj.avanzar(Duration.ofSeconds(61));
+        banco.realizarTransaccion(a, new RegistroTransaccion("V3", LocalDateTime.now(), -10.0, "miguel", Categoria.VIAJES));
+
+        // Las transferencias y los lotes también cuentan; pasada la hora se libera el monto
+        assertEquals(ResultadoTransaccion.LIMITE_EXCEDIDO, banco.intentarTransferencia(new Transferencia("T1", a, b, 100.0)));
+        ResultadoLote lote = banco.realizarTransacciones(new String[]{a, a}, new RegistroTransaccion[]{
+                new RegistroTransaccion("B1", LocalDateTime.now(), -100.0, "miguel", Categoria.FACTURAS),
+                new RegistroTransaccion("B2", LocalDateTime.now(), -100.0, "miguel", Categoria.FACTURAS)});
+        assertEquals(ResultadoTransaccion.ACEPTADA, lote.get(0));
+        assertEquals(ResultadoTransaccion.LIMITE_EXCEDIDO, lote.get(1));
+        reloj.avanzar(Duration.ofHours(1));
+        assertEquals(ResultadoTransaccion.ACEPTADA, banco.intentarTransferencia(new Transferencia("T1", a, b, 100.0)));
+        assertEquals(4, banco.obtenerMetricas().contar(MetricasBanco.Operacion.REALIZAR_TRANSACCION,
+                MetricasBanco.Resultado.LIMITE_EXCEDIDO));
+
+        banco.establecerLimites(a, null);
+        assertTrue(banco.consultarLimites(a).isEmpty());
+        banco.realizarTransaccion(a, new RegistroTransaccion("L4", LocalDateTime.now(), -5000.0, "miguel", Categoria.VIAJES));
+    }
+
+    @Test
+    void testLimitesDeUsuarioConcurrentes() throws Exception {
+        banco.setReloj(new RelojManual());
+        banco.agregarUsuario(usuario);
+        banco.crearBilleteraVirtual(usuario, 10_000.0);
+        banco.establecerLimitesUsuario("12345", List.of(LimiteGasto.montoMaximo(1000.0, Duration.ofDays(1))));
+        banco.crearBilleteraVirtual(usuario, 10_000.0); // Creada después, comparte el límite
+        List<BilleteraVirtual> billeteras = banco.obtenerBilleterasDeUsuario("12345");
+
+        // Muchos gastos de 10 en paralelo en las dos billeteras: solo caben 100 en total
+        int hilos = 8;
+        AtomicInteger aceptadas = new AtomicInteger();
+        ExecutorService ejecutor = Executors.newFixedThreadPool(hilos);
+        List<Future<?>> tareas = new ArrayList<>();
+        for (int h = 0; h < hilos; h++) {
+            int hilo = h;
+            tareas.add(ejecutor.submit(() -> {
+                for (int i = 0; i < 50; i++) {
+                    String numero = billeteras.get((hilo + i) % 2).getNumero();
+                    if (banco.intentarTransaccion(numero, new RegistroTransaccion(hilo + "-" + i, LocalDateTime.now(),
+                            -10.0, "miguel", Categoria.GASTO)) == ResultadoTransaccion.ACEPTADA) {
+                        aceptadas.incrementAndGet();
+                    }
+                }
+                return null;
+            }));
+        }
+        for (Future<?> tarea : tareas) {
+            tarea.get(30, TimeUnit.SECONDS);
+        }
+        ejecutor.shutdown();
+
+        assertEquals(100, aceptadas.get());
+        assertEquals(19_000.0, banco.consultarSaldoTotal("12345"));
+        banco.establecerLimitesUsuario("12345", List.of());
+        banco.realizarTransaccion(billeteras.get(0).getNumero(),
+                new RegistroTransaccion("Z1", LocalDateTime.now(), -10.0, "miguel", Categoria.GASTO));
+        assertThrows(Exception.class, () -> banco.establecerLimitesUsuario("otro", null));
+    }
+
+    // Reloj que solo avanza cuando la prueba lo pide
+    private static final class RelojManual extends Clock {
+        private volatile Instant instante = Instant.parse("2024-01-01T00:00:00Z");
+
+        void avanzar(Duration duracion) {
+            instante = instante.plus(duracion);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return instante;
+        }
+    }
+
+    @Test
+    void testTransferenciasCruzadasConcurrentes() throws Exception {
+        banco.agregarUsuario(usuario);
+        banco.crearBilleteraVirtual(usuario, 1_000_000.0);
+        banco.crearBilleteraVirtual(usuario, 1_000_000.0);
+        String a = banco.getBilleterasVirtuales().get(0).getNumero();
+        String b = banco.getBilleterasVirtuales().get(1).getNumero();
+
+        // La mitad de los hilos transfiere de A a B y la otra mitad de B a A
+        int hilos = 8;
+        int transferenciasPorHilo = 500;
+        ExecutorService ejecutor = Executors.newFixedThreadPool(hilos);
+        List<Future<?>> tareas = new ArrayList<>();
+        for (int h = 0; h < hilos; h++) {
+            int hilo = h;
+            tareas.add(ejecutor.submit(() -> {
+                for (int i = 0; i < transferenciasPorHilo; i++) {
+                    String origen = hilo % 2 == 0 ? a : b;
+                    String destino = hilo % 2 == 0 ? b : a;
+                    banco.transferir(new Transferencia(hilo + "-" + i, origen, destino, 10.0));
+                }
+                return null;
+            }));
+        }
+        for (Future<?> tarea : tareas) {
+            tarea.get(30, TimeUnit.SECONDS);
+        }
+        ejecutor.shutdown();
+
+        // Verificar que el dinero total solo disminuyó en los costos de envío
+        double total = banco.getBilleterasVirtuales().get(0).consultarSaldo()
+                + banco.getBilleterasVirtuales().get(1).consultarSaldo();
+        assertEquals(2_000_000.0 - hilos * transferenciasPorHilo * 200.0, total);
+    }
+
+    @Test
+    void testTransferirLoteCompensado() throws Exception {
+        banco.agregarUsuario(usuario);
+        banco.crearBilleteraVirtual(usuario, 200.0);
+        banco.crearBilleteraVirtual(usuario, 1000.0);
+        String a = banco.getBilleterasVirtuales().get(0).getNumero();
+        String b = banco.getBilleterasVirtuales().get(1).getNumero();
+
+        // A no podría pagar la primera transferencia sola, pero el neto del lote sí alcanza
+        banco.transferirLote(List.of(
+                new Transferencia("L1", a, b, 300.0),
+                new Transferencia("L2", b, a, 600.0)
+        ));
+
+        assertEquals(200.0 - 500.0 + 600.0, banco.getBilleterasVirtuales().get(0).consultarSaldo());
+        assertEquals(1000.0 + 300.0 - 800.0, banco.getBilleterasVirtuales().get(1).consultarSaldo());
+        assertEquals(2, banco.getBilleterasVirtuales().get(0).getRegistroTransacciones().size());
+    }
+
+    @Test
+    void testTransferirLoteSaldoInsuficienteNoAplicaNada() throws Exception {
+        banco.agregarUsuario(usuario);
+        banco.crearBilleteraVirtual(usuario, 200.0);
+        banco.crearBilleteraVirtual(usuario, 1000.0);
+        String a = banco.getBilleterasVirtuales().get(0).getNumero();
+        String b = banco.getBilleterasVirtuales().get(1).getNumero();
+
+        assertThrows(Exception.class, () -> banco.transferirLote(List.of(
+                new Transferencia("L1", b, a, 100.0),
+                new Transferencia("L2", a, b, 300.0)
+        )));
+
+        // Verificar que ningún movimiento del lote se aplicó
+        assertEquals(200.0, banco.getBilleterasVirtuales().get(0).consultarSaldo());
+        assertEquals(1000.0, banco.getBilleterasVirtuales().get(1).consultarSaldo());
+        assertEquals(0, banco.getBilleterasVirtuales().get(1).getRegistroTransacciones().size());
+    }
+
+    @Test
+    void testConsultarTransaccionEnElBanco() throws Exception {
+        banco.agregarUsuario(usuario);
+        banco.crearBilleteraVirtual(usuario, 1000.0);
+        banco.crearBilleteraVirtual(usuario, 1000.0);
+        String segunda = banco.getBilleterasVirtuales().get(1).getNumero();
+        RegistroTransaccion transaccion = new RegistroTransaccion(
+                "X1", LocalDateTime.now(), -300.0, "miguel", Categoria.FACTURAS
+        );
+        banco.realizarTransaccion(segunda, transaccion);
+
+        // Buscar la transacción sin indicar la billetera
+        assertEquals(transaccion, banco.consultarTransaccion("X1"));
+        Exception exception = assertThrows(Exception.class, () -> banco.consultarTransaccion("X2"));
+        assertEquals("No se encontró una transacción con el ID: X2", exception.getMessage());
+    }
+
+    @Test
+    void testTransaccionRepetidaEnOtraBilletera() throws Exception {
+        banco.agregarUsuario(usuario);
+        banco.crearBilleteraVirtual(usuario, 1000.0);
+        banco.crearBilleteraVirtual(usuario, 1000.0);
+        String primera = banco.getBilleterasVirtuales().get(0).getNumero();
+        String segunda = banco.getBilleterasVirtuales().get(1).getNumero();
+        banco.realizarTransaccion(primera, new RegistroTransaccion(
+                "X1", LocalDateTime.now(), 100.0, "miguel", Categoria.INGRESO
+        ));
+
+        // Reenviar el mismo ID, aunque sea a otra billetera, no vuelve a aplicarse
+        Exception exception = assertThrows(Exception.class, () -> banco.realizarTransaccion(segunda,
+                new RegistroTransaccion("X1", LocalDateTime.now(), 100.0, "miguel", Categoria.INGRESO)));
+        assertEquals("Ya existe una transacción con el ID: X1", exception.getMessage());
+        assertEquals(1000.0, banco.getBilleterasVirtuales().get(1).consultarSaldo());
+    }
+
+    @Test
+    void testTransaccionRechazadaLiberaElId() throws Exception {
+        banco.agregarUsuario(usuario);
+        banco.crearBilleteraVirtual(usuario, 100.0);
+        String numero = banco.getBilleterasVirtuales().get(0).getNumero();
+
+        // Una transacción rechazada por saldo puede reintentarse con el mismo ID
+        assertThrows(Exception.class, () -> banco.realizarTransaccion(numero,
+                new RegistroTransaccion("X1", LocalDateTime.now(), -500.0, "miguel", Categoria.GASTO)));
+        banco.realizarTransaccion(numero, new RegistroTransaccion(
+                "X1", LocalDateTime.now(), -50.0, "miguel", Categoria.GASTO
+        ));
+        assertEquals(50.0, banco.getBilleterasVirtuales().get(0).consultarSaldo());
+    }
+
+    @Test
+    void testRealizarTransaccionesLote() throws Exception {
+        banco.agregarUsuario(usuario);
+        banco.crearBilleteraVirtual(usuario, 100.0);
+        banco.crearBilleteraVirtual(usuario, 1000.0);
+        String a = banco.getBilleterasVirtuales().get(0).getNumero();
+        String b = banco.getBilleterasVirtuales().get(1).getNumero();
+        LocalDateTime fecha = LocalDateTime.now();
+
+        ResultadoLote resultado = banco.realizarTransacciones(
+                new String[]{a, a, b, "0000000000", a, b, a},
+                new RegistroTransaccion[]{
+                        new RegistroTransaccion("L1", fecha, -150.0, "miguel", Categoria.GASTO),
+                        new RegistroTransaccion("L2", fecha, 100.0, "miguel", Categoria.INGRESO),
+                        new RegistroTransaccion("L3", fecha, -200.0, "miguel", Categoria.FACTURAS),
+                        new RegistroTransaccion("L4", fecha, 10.0, "miguel", Categoria.INGRESO),
+                        new RegistroTransaccion("L5", fecha, -150.0, "miguel", Categoria.GASTO),
+                        new RegistroTransaccion("L3", fecha, 5.0, "miguel", Categoria.INGRESO),
+                        null
+                });
+
+        // Cada transacción tiene su resultado y un rechazo no detiene el resto del lote
+        assertEquals(ResultadoTransaccion.SALDO_INSUFICIENTE, resultado.get(0));
+        assertEquals(ResultadoTransaccion.ACEPTADA, resultado.get(1));
+        assertEquals(ResultadoTransaccion.ACEPTADA, resultado.get(2));
+        assertEquals(ResultadoTransaccion.BILLETERA_DESCONOCIDA, resultado.get(3));
+        assertEquals(ResultadoTransaccion.ACEPTADA, resultado.get(4)); // Ya cuenta el ingreso L2
+        assertEquals(ResultadoTransaccion.ID_DUPLICADO, resultado.get(5));
+        assertEquals(ResultadoTransaccion.INVALIDA, resultado.get(6));
+        assertEquals(3, resultado.contar(ResultadoTransaccion.ACEPTADA));
+
+        BilleteraVirtual billeteraA = banco.getBilleterasVirtuales().get(0);
+        assertEquals(50.0, billeteraA.consultarSaldo());
+        assertEquals(800.0, banco.getBilleterasVirtuales().get(1).consultarSaldo());
+        assertEquals(List.of("L2", "L5"), billeteraA.getRegistroTransacciones().stream()
+                .map(RegistroTransaccion::getId).toList());
+        assertEquals(150.0, billeteraA.obtenerTotalGastos());
+        assertEquals(-200.0, banco.consultarTransaccion("L3").getMonto());
+
+        // El ID rechazado por saldo quedó libre
+        banco.realizarTransaccion(a, new RegistroTransaccion("L1", fecha, -50.0, "miguel", Categoria.GASTO));
+        assertEquals(0.0, billeteraA.consultarSaldo());
+    }
+
+    @Test
+    void testRealizarTransaccionesLoteEnParalelo() throws Exception {
+        banco.agregarUsuario(usuario);
+        int billeteras = 16;
+        for (int i = 0; i < billeteras; i++) {
+            banco.crearBilleteraVirtual(usuario, 0.0);
+        }
+        int porBilletera = 5000;
+        String[] numeros = new String[billeteras * porBilletera];
+        RegistroTransaccion[] transacciones = new RegistroTransaccion[numeros.length];
+        LocalDateTime fecha = LocalDateTime.now();
+        for (int i = 0; i < numeros.length; i++) {
+            numeros[i] = banco.getBilleterasVirtuales().get(i % billeteras).getNumero();
+            // Ingresos y gastos alternados: cada gasto se cubre con el ingreso anterior de la misma billetera
+            boolean ingreso = (i / billeteras) % 2 == 0;
+            transacciones[i] = new RegistroTransaccion("P" + i, fecha, ingreso ? 2.0 : -1.0, "miguel",
+                    ingreso ? Categoria.INGRESO : Categoria.GASTO);
+        }
+
+        ResultadoLote resultado = banco.realizarTransacciones(numeros, transacciones);
+
+        assertEquals(numeros.length, resultado.contar(ResultadoTransaccion.ACEPTADA));
+        for (BilleteraVirtual billetera : banco.getBilleterasVirtuales()) {
+            assertEquals(porBilletera / 2.0, billetera.consultarSaldo());
+            assertEquals(porBilletera, billetera.getRegistroTransacciones().size());
+        }
+        assertEquals(-1.0, banco.consultarTransaccion("P" + (numeros.length - 1)).getMonto());
+    }
+}
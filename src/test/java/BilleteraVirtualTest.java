@@ -1,6 +1,15 @@
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import static org.junit.jupiter.api.Assertions.*;
 
 class BilleteraVirtualTest {
@@ -74,6 +83,32 @@ class BilleteraVirtualTest {
         assertEquals("Saldo insuficiente para realizar la transacción.", exception.getMessage());
     }
 
+    @Test
+    void testIntentarTransaccion() {
+        // Los rechazos se devuelven como resultado y no cambian la billetera
+        assertEquals(ResultadoTransaccion.SALDO_INSUFICIENTE, billetera.intentarTransaccion(new RegistroTransaccion(
+                "1", LocalDateTime.now(), -1500.0, "miguel", Categoria.GASTO)));
+        assertEquals(ResultadoTransaccion.INVALIDA, billetera.intentarTransaccion(null));
+        assertEquals(ResultadoTransaccion.INVALIDA, billetera.intentarTransaccion(new RegistroTransaccion(
+                "2", LocalDateTime.MAX, 1.0, "miguel", Categoria.INGRESO)));
+        assertEquals(1000.0, billetera.consultarSaldo());
+        assertEquals(0, billetera.getRegistroTransacciones().size());
+
+        assertEquals(ResultadoTransaccion.ACEPTADA, billetera.intentarTransaccion(new RegistroTransaccion(
+                "1", LocalDateTime.now(), -1000.0, "miguel", Categoria.GASTO)));
+        assertEquals(ResultadoTransaccion.ID_DUPLICADO, billetera.intentarTransaccion(new RegistroTransaccion(
+                "1", LocalDateTime.now(), 5.0, "miguel", Categoria.INGRESO)));
+        assertEquals(0.0, billetera.consultarSaldo());
+
+        // El método que lanza excepciones conserva sus mensajes
+        Exception exception = assertThrows(IllegalArgumentException.class, () -> billetera.realizarTransaccion(
+                new RegistroTransaccion("2", LocalDateTime.MAX, 1.0, "miguel", Categoria.INGRESO)));
+        assertTrue(exception.getMessage().startsWith("La fecha de la transacción está fuera de rango"));
+        exception = assertThrows(Exception.class, () -> billetera.realizarTransaccion(
+                new RegistroTransaccion("1", LocalDateTime.now(), 5.0, "miguel", Categoria.INGRESO)));
+        assertEquals("Ya existe una transacción con el ID: 1", exception.getMessage());
+    }
+
     @Test
     void testObtenerPorcentajeGastosIngresos() throws Exception {
         // Agregar transacciones de ingreso y gasto
@@ -96,4 +131,324 @@ class BilleteraVirtualTest {
         });
         assertEquals("No hay ingresos registrados para calcular el porcentaje.", exception.getMessage());
     }
-}
\ No newline at end of file
+
+    @Test
+    void testTransaccionesConcurrentesSinPerdidas() throws Exception {
+        int hilos = 16;
+        int transaccionesPorHilo = 5_000;
+        ExecutorService ejecutor = Executors.newFixedThreadPool(hilos);
+        CountDownLatch inicio = new CountDownLatch(1);
+        List<Future<?>> tareas = new ArrayList<>();
+
+        // Cada hilo deposita 2 y retira 1 repetidamente sobre la misma billetera
+        for (int h = 0; h < hilos; h++) {
+            int hilo = h;
+            tareas.add(ejecutor.submit(() -> {
+                inicio.await();
+                for (int i = 0; i < transaccionesPorHilo; i++) {
+                    billetera.realizarTransaccion(new RegistroTransaccion(
+                            hilo + "-" + i + "-i", LocalDateTime.now(), 2.0, "miguel", Categoria.INGRESO
+                    ));
+                    billetera.realizarTransaccion(new RegistroTransaccion(
+                            hilo + "-" + i + "-g", LocalDateTime.now(), -1.0, "miguel", Categoria.GASTO
+                    ));
+                }
+                return null;
+            }));
+        }
+        inicio.countDown();
+        for (Future<?> tarea : tareas) {
+            tarea.get();
+        }
+        ejecutor.shutdown();
+
+        // Verificar que no se perdió ninguna actualización
+        assertEquals(1000.0 + hilos * transaccionesPorHilo, billetera.consultarSaldo());
+        assertEquals(hilos * transaccionesPorHilo * 2, billetera.getRegistroTransacciones().size());
+    }
+
+    @Test
+    void testRetirosConcurrentesNoSobregiran() throws Exception {
+        int hilos = 8;
+        ExecutorService ejecutor = Executors.newFixedThreadPool(hilos);
+        CountDownLatch inicio = new CountDownLatch(1);
+        AtomicInteger aceptados = new AtomicInteger();
+        List<Future<?>> tareas = new ArrayList<>();
+
+        // Todos los hilos intentan retirar más de lo que hay disponible
+        for (int h = 0; h < hilos; h++) {
+            int hilo = h;
+            tareas.add(ejecutor.submit(() -> {
+                inicio.await();
+                for (int i = 0; i < 500; i++) {
+                    try {
+                        billetera.realizarTransaccion(new RegistroTransaccion(
+                                hilo + "-" + i, LocalDateTime.now(), -1.0, "miguel", Categoria.GASTO
+                        ));
+                        aceptados.incrementAndGet();
+                    } catch (Exception e) {
+                        assertEquals("Saldo insuficiente para realizar la transacción.", e.getMessage());
+                    }
+                }
+                return null;
+            }));
+        }
+        inicio.countDown();
+        for (Future<?> tarea : tareas) {
+            tarea.get();
+        }
+        ejecutor.shutdown();
+
+        // Verificar que solo se aceptó exactamente el saldo disponible
+        assertEquals(1000, aceptados.get());
+        assertEquals(0.0, billetera.consultarSaldo());
+    }
+
+    @Test
+    void testRegistroTransaccionesConservaDatos() throws Exception {
+        LocalDateTime fecha = LocalDateTime.of(2026, 3, 15, 10, 30, 0, 123_456_789);
+        billetera.realizarTransaccion(new RegistroTransaccion("1", fecha, 12.34, "miguel", Categoria.INGRESO));
+        billetera.realizarTransaccion(new RegistroTransaccion("2", fecha, -0.1, "Felipe Garcia", Categoria.VIAJES));
+        billetera.realizarTransaccion(new RegistroTransaccion("3", fecha, -1.0, "miguel", null));
+
+        // Verificar que cada transacción se reconstruye igual a la registrada
+        List<RegistroTransaccion> registro = billetera.getRegistroTransacciones();
+        assertEquals(3, registro.size());
+        assertEquals(fecha, registro.get(0).getFecha());
+        assertEquals(12.34, registro.get(0).getMonto());
+        assertEquals(-0.1, registro.get(1).getMonto());
+        assertEquals("Felipe Garcia", registro.get(1).getTitular());
+        assertEquals(Categoria.VIAJES, registro.get(1).getCategoria());
+        assertNull(registro.get(2).getCategoria());
+        assertEquals("miguel", registro.get(2).getTitular());
+    }
+
+    @Test
+    void testRegistroTransaccionesEsSoloLectura() {
+        assertThrows(UnsupportedOperationException.class, () -> billetera.getRegistroTransacciones().add(
+                new RegistroTransaccion("1", LocalDateTime.now(), 500.0, "miguel", Categoria.INGRESO)
+        ));
+    }
+
+    @Test
+    void testSetRegistroTransacciones() throws Exception {
+        RegistroTransaccion transaccion = new RegistroTransaccion(
+                "7", LocalDateTime.now(), 500.0, "miguel", Categoria.INGRESO
+        );
+        billetera.setRegistroTransacciones(List.of(transaccion));
+
+        assertEquals(1, billetera.getRegistroTransacciones().size());
+        assertEquals(transaccion, billetera.consultarTransaccion("7"));
+    }
+
+    @Test
+    void testTotalesPorCategoria() throws Exception {
+        billetera.realizarTransaccion(new RegistroTransaccion("1", LocalDateTime.now(), 500.0, "miguel", Categoria.INGRESO));
+        billetera.realizarTransaccion(new RegistroTransaccion("2", LocalDateTime.now(), -200.0, "miguel", Categoria.GASOLINA));
+        billetera.realizarTransaccion(new RegistroTransaccion("3", LocalDateTime.now(), -50.0, "miguel", Categoria.GASOLINA));
+        billetera.realizarTransaccion(new RegistroTransaccion("4", LocalDateTime.now(), -100.0, "miguel", Categoria.FACTURAS));
+
+        assertEquals(500.0, billetera.obtenerTotalIngresos());
+        assertEquals(350.0, billetera.obtenerTotalGastos());
+        assertEquals(250.0, billetera.obtenerGastosPorCategoria().get(Categoria.GASOLINA));
+        assertEquals(100.0, billetera.obtenerGastosPorCategoria().get(Categoria.FACTURAS));
+        assertNull(billetera.obtenerGastosPorCategoria().get(Categoria.VIAJES));
+        assertEquals(500.0, billetera.obtenerIngresosPorCategoria().get(Categoria.INGRESO));
+        assertEquals(70.0, billetera.obtenerPorcentajeGastosIngresos());
+    }
+
+    @Test
+    void testTotalesConsistentesConEscriturasConcurrentes() throws Exception {
+        AtomicInteger inconsistencias = new AtomicInteger();
+        Thread escritor = new Thread(() -> {
+            try {
+                // Cada ingreso va seguido de un gasto igual, así que los gastos nunca superan a los ingresos
+                for (int i = 0; i < 50_000; i++) {
+                    billetera.realizarTransaccion(new RegistroTransaccion(
+                            "i" + i, LocalDateTime.now(), 100.0, "miguel", Categoria.INGRESO));
+                    billetera.realizarTransaccion(new RegistroTransaccion(
+                            "g" + i, LocalDateTime.now(), -100.0, "miguel", Categoria.GASTO));
+                }
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        });
+        escritor.start();
+        while (escritor.isAlive()) {
+            long[] totales = billetera.getHistorial().totales();
+            long diferencia = totales[0] - totales[1];
+            if (billetera.getHistorial().porcentajeGastosIngresos() > 100.0 || (diferencia != 0 && diferencia != 10_000)) {
+                inconsistencias.incrementAndGet();
+            }
+        }
+        escritor.join();
+
+        assertEquals(0, inconsistencias.get());
+        assertEquals(100.0, billetera.obtenerPorcentajeGastosIngresos());
+    }
+
+    @Test
+    void testVersionImparDuranteTodoElCambio() throws Exception {
+        // Un lector mira la versión mientras un cambio abierto escribe el saldo muchas veces: nunca debe verla par
+        AtomicInteger versionesPares = new AtomicInteger();
+        AtomicInteger muestras = new AtomicInteger();
+        AtomicBoolean enCambio = new AtomicBoolean();
+        AtomicBoolean terminado = new AtomicBoolean();
+        Thread lector = new Thread(() -> {
+            while (!terminado.get()) {
+                boolean antes = enCambio.get();
+                long version = billetera.getVersionSaldo();
+                if (antes && enCambio.get()) {
+                    muestras.incrementAndGet();
+                    if ((version & 1) == 0) {
+                        versionesPares.incrementAndGet();
+                    }
+                }
+            }
+        });
+        lector.start();
+
+        long inicio;
+        billetera.getCerrojo().lock();
+        try {
+            inicio = billetera.getVersionSaldo();
+            billetera.abrirCambio();
+            enCambio.set(true);
+            long fin = System.nanoTime() + 300_000_000L;
+            for (int i = 0; System.nanoTime() < fin || muestras.get() < 1000; i++) {
+                billetera.ajustarSaldo(i % 2 == 0 ? 1 : -1);
+            }
+            enCambio.set(false);
+            assertEquals(inicio + 1, billetera.getVersionSaldo());
+            billetera.cerrarCambio();
+        } finally {
+            billetera.getCerrojo().unlock();
+        }
+        terminado.set(true);
+        lector.join();
+
+        assertEquals(0, versionesPares.get());
+        assertEquals(inicio + 2, billetera.getVersionSaldo());
+
+        // Fuera de un cambio abierto, cada escritura abre y cierra su propia ventana
+        billetera.setSaldo(5.0);
+        assertEquals(inicio + 4, billetera.getVersionSaldo());
+    }
+
+    @Test
+    void testTransaccionConIdRepetido() throws Exception {
+        billetera.realizarTransaccion(new RegistroTransaccion(
+                "1", LocalDateTime.now(), 500.0, "miguel", Categoria.INGRESO
+        ));
+
+        // Verificar que un ID repetido se rechaza sin modificar el saldo
+        Exception exception = assertThrows(Exception.class, () -> billetera.realizarTransaccion(
+                new RegistroTransaccion("1", LocalDateTime.now(), 500.0, "miguel", Categoria.INGRESO)));
+        assertEquals("Ya existe una transacción con el ID: 1", exception.getMessage());
+        assertEquals(1500.0, billetera.consultarSaldo());
+    }
+
+    @Test
+    void testConsultarTransaccionEntreMuchas() throws Exception {
+        for (int i = 0; i < 10_000; i++) {
+            billetera.realizarTransaccion(new RegistroTransaccion(
+                    "T" + i, LocalDateTime.now(), 1.0, "miguel", Categoria.INGRESO
+            ));
+        }
+
+        for (int i = 0; i < 10_000; i++) {
+            assertEquals("T" + i, billetera.consultarTransaccion("T" + i).getId());
+        }
+    }
+
+    @Test
+    void testConsultarTransaccionesPorRango() throws Exception {
+        LocalDateTime inicio = LocalDateTime.of(2026, 3, 1, 0, 0);
+        for (int dia = 0; dia < 60; dia++) {
+            billetera.realizarTransaccion(new RegistroTransaccion("D" + dia, inicio.plusDays(dia), dia % 2 == 0 ? 10.0 : -5.0,
+                    "miguel", dia % 2 == 0 ? Categoria.INGRESO : Categoria.FACTURAS));
+        }
+
+        // Marzo: desde el 1 incluido hasta el 1 de abril excluido
+        List<String> marzo = billetera.consultarTransacciones(inicio, LocalDateTime.of(2026, 4, 1, 0, 0))
+                .map(RegistroTransaccion::getId).toList();
+        assertEquals(31, marzo.size());
+        assertEquals("D0", marzo.get(0));
+        assertEquals("D30", marzo.get(30));
+
+        // Filtro por categoría y rangos sin acotar
+        assertEquals(15, billetera.consultarTransacciones(inicio, LocalDateTime.of(2026, 3, 31, 0, 0),
+                Categoria.FACTURAS).count());
+        assertEquals(60, billetera.consultarTransacciones(null, null).count());
+        assertEquals(0, billetera.consultarTransacciones(LocalDateTime.MAX, null).count());
+    }
+
+    @Test
+    void testConsultarTransaccionesPorRangoFueraDeOrden() throws Exception {
+        // Fechas desordenadas, suficientes para que las pendientes se junten con el orden principal
+        LocalDateTime inicio = LocalDateTime.of(2026, 1, 1, 0, 0);
+        List<Integer> minutos = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            minutos.add((i * 7919) % 500);
+        }
+        for (int minuto : minutos) {
+            billetera.realizarTransaccion(new RegistroTransaccion("M" + minuto, inicio.plusMinutes(minuto), 1.0,
+                    "miguel", Categoria.INGRESO));
+        }
+
+        List<LocalDateTime> fechas = billetera.consultarTransacciones(inicio.plusMinutes(100), inicio.plusMinutes(400))
+                .map(RegistroTransaccion::getFecha).toList();
+        assertEquals(300, fechas.size());
+        for (int i = 0; i < fechas.size(); i++) {
+            assertEquals(inicio.plusMinutes(100 + i), fechas.get(i));
+        }
+
+        // Una transacción atrasada después de consultar aparece en la siguiente consulta, en su lugar
+        billetera.realizarTransaccion(new RegistroTransaccion("Atrasada", inicio.plusMinutes(150).plusSeconds(30), 1.0,
+                "miguel", Categoria.INGRESO));
+        List<String> ids = billetera.consultarTransacciones(inicio.plusMinutes(150), inicio.plusMinutes(152))
+                .map(RegistroTransaccion::getId).toList();
+        assertEquals(List.of("M150", "Atrasada", "M151"), ids);
+    }
+
+    @Test
+    void testConsultarTransaccionesConMuchasAtrasadas() throws Exception {
+        // Cada lote llega después de uno más nuevo, con fechas repetidas: se mezclan en varios tramos a la vez
+        LocalDateTime inicio = LocalDateTime.of(2026, 1, 1, 0, 0);
+        List<RegistroTransaccion> esperadas = new ArrayList<>();
+        int contador = 0;
+        for (int lote = 49; lote >= 0; lote--) {
+            for (int i = 0; i < 200; i++) {
+                RegistroTransaccion tx = new RegistroTransaccion("T" + contador++,
+                        inicio.plusMinutes(lote * 100L + (i * 37) % 100), 1.0, "miguel", Categoria.INGRESO);
+                billetera.realizarTransaccion(tx);
+                esperadas.add(tx);
+            }
+        }
+
+        // Ordenadas por fecha y, en fechas iguales, en el orden en que llegaron
+        List<String> orden = esperadas.stream()
+                .sorted(Comparator.comparing(RegistroTransaccion::getFecha))
+                .filter(tx -> !tx.getFecha().isBefore(inicio.plusMinutes(1234))
+                        && tx.getFecha().isBefore(inicio.plusMinutes(3456)))
+                .map(RegistroTransaccion::getId).toList();
+        List<String> ids = billetera.consultarTransacciones(inicio.plusMinutes(1234), inicio.plusMinutes(3456))
+                .map(RegistroTransaccion::getId).toList();
+        assertEquals(orden, ids);
+    }
+
+    @Test
+    void testHistorialSeCreaConLaPrimeraTransaccion() throws Exception {
+        // Las billeteras sin transacciones comparten un historial vacío
+        BilleteraVirtual otra = new BilleteraVirtual(0.0, usuario);
+        assertSame(billetera.getHistorial(), otra.getHistorial());
+        assertTrue(billetera.getRegistroTransacciones().isEmpty());
+        assertEquals(0, billetera.consultarTransacciones(null, null).count());
+        assertThrows(Exception.class, () -> billetera.consultarTransaccion("T1"));
+
+        billetera.realizarTransaccion(new RegistroTransaccion("T1", LocalDateTime.now(), -10.0, "miguel", Categoria.GASTO));
+        assertNotSame(billetera.getHistorial(), otra.getHistorial());
+        assertEquals(1, billetera.getRegistroTransacciones().size());
+        assertTrue(otra.getRegistroTransacciones().isEmpty());
+    }
+}
@@ -0,0 +1,41 @@
+import org.junit.jupiter.api.Test;
+import java.time.LocalDateTime;
+import static org.junit.jupiter.api.Assertions.*;
+
+class DineroTest {
+
+    @Test
+    void testConversion() {
+        assertEquals(1234, Dinero.desdeDouble(12.34));
+        assertEquals(-10, Dinero.desdeDouble(-0.1));
+        assertEquals(12.34, Dinero.aDouble(1234));
+        assertEquals("-12.05", Dinero.formatear(-1205));
+        assertEquals("0.00", Dinero.formatear(0));
+        assertThrows(IllegalArgumentException.class, () -> Dinero.desdeDouble(Double.NaN));
+        assertThrows(IllegalArgumentException.class, () -> Dinero.desdeDouble(1e18));
+    }
+
+    @Test
+    void testDesbordamiento() {
+        assertThrows(ArithmeticException.class, () -> Dinero.sumar(Long.MAX_VALUE, 1));
+        assertThrows(ArithmeticException.class, () -> Dinero.restar(Long.MIN_VALUE, 1));
+        assertThrows(ArithmeticException.class, () -> Dinero.absoluto(Long.MIN_VALUE));
+        assertEquals(-1, Dinero.sumar(Long.MAX_VALUE, Long.MIN_VALUE));
+    }
+
+    @Test
+    void testSaldoExactoTrasMuchasTransacciones() throws Exception {
+        Usuario usuario = new Usuario("miguel", "Calle 123", "12345", "miguel@gmail.com", "123", true);
+        BilleteraVirtual billetera = new BilleteraVirtual(0.0, usuario);
+
+        // Con double, sumar 0.1 un millón de veces no da exactamente 100000
+        for (int i = 0; i < 1_000_000; i++) {
+            billetera.realizarTransaccion(new RegistroTransaccion(
+                    "T" + i, LocalDateTime.now(), 0.1, "miguel", Categoria.INGRESO
+            ));
+        }
+
+        assertEquals(10_000_000, billetera.consultarSaldoCentavos());
+        assertEquals(100_000.0, billetera.consultarSaldo());
+    }
+}
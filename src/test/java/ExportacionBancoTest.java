@@ -0,0 +1,147 @@
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExportacionBancoTest {
+
+    private Banco banco;
+    private final LocalDateTime fecha = LocalDateTime.of(2026, 3, 15, 10, 30);
+
+    @BeforeEach
+    void setUp() throws Exception {
+        banco = new Banco("Mi Banco");
+        Usuario usuario = new Usuario("miguel", "Calle 123, Centro", "12345", "miguel@gmail.com", "123", true);
+        banco.agregarUsuario(usuario);
+
+        // Billeteras con 3, 0 y 2 transacciones
+        banco.crearBilleteraVirtual(usuario, 100.0);
+        banco.crearBilleteraVirtual(usuario, 50.0);
+        banco.crearBilleteraVirtual(usuario, 10.0);
+        String primera = banco.getBilleterasVirtuales().get(0).getNumero();
+        String tercera = banco.getBilleterasVirtuales().get(2).getNumero();
+        for (int i = 0; i < 3; i++) {
+            banco.realizarTransaccion(primera, new RegistroTransaccion("A" + i, fecha, 1.0, "miguel", Categoria.INGRESO));
+        }
+        for (int i = 0; i < 2; i++) {
+            banco.realizarTransaccion(tercera, new RegistroTransaccion("C" + i, fecha, -2.5, "Tienda \"La 5\"", Categoria.GASTO));
+        }
+    }
+
+    @Test
+    void testPaginarTransacciones() {
+        ExportacionBanco exportacion = banco.iniciarExportacion();
+        assertEquals(5, exportacion.cantidadTransacciones());
+
+        // Recorrer de a dos páginas que cruzan la billetera vacía
+        List<String> ids = new ArrayList<>();
+        long cursor = 0;
+        int paginas = 0;
+        while (cursor >= 0) {
+            ExportacionBanco.Pagina<ExportacionBanco.FilaTransaccion> pagina = exportacion.paginaTransacciones(cursor, 2);
+            pagina.getElementos().forEach(fila -> ids.add(fila.getTransaccion().getId()));
+            cursor = pagina.getSiguienteCursor();
+            paginas++;
+        }
+        assertEquals(List.of("A0", "A1", "A2", "C0", "C1"), ids);
+        assertEquals(3, paginas);
+        assertEquals(banco.getBilleterasVirtuales().get(2).getNumero(),
+                exportacion.paginaTransacciones(3, 1).getElementos().get(0).getNumeroBilletera());
+    }
+
+    @Test
+    void testExportacionNoVeCambiosPosteriores() throws Exception {
+        ExportacionBanco exportacion = banco.iniciarExportacion();
+        String primera = banco.getBilleterasVirtuales().get(0).getNumero();
+        banco.realizarTransaccion(primera, new RegistroTransaccion("A3", fecha, 1.0, "miguel", Categoria.INGRESO));
+
+        assertEquals(5, exportacion.paginaTransacciones(0, 100).getElementos().size());
+        assertEquals(10300, exportacion.paginaBilleteras(0, 100).getElementos().get(0).getSaldoCentavos());
+        assertEquals(6, banco.iniciarExportacion().cantidadTransacciones());
+    }
+
+    @Test
+    void testExportarCsv() throws Exception {
+        ExportacionBanco exportacion = banco.iniciarExportacion();
+        ByteArrayOutputStream salida = new ByteArrayOutputStream();
+        long siguiente = exportacion.exportarTransacciones(salida, ExportacionBanco.Formato.CSV, 3, 10);
+
+        String numero = banco.getBilleterasVirtuales().get(2).getNumero();
+        assertEquals(-1, siguiente);
+        assertEquals("numeroBilletera,id,fecha,monto,titular,categoria\n"
+                + numero + ",C0,2026-03-15T10:30,-2.50,\"Tienda \"\"La 5\"\"\",GASTO\n"
+                + numero + ",C1,2026-03-15T10:30,-2.50,\"Tienda \"\"La 5\"\"\",GASTO\n",
+                salida.toString(StandardCharsets.UTF_8));
+
+        // La contraseña no se exporta
+        salida.reset();
+        exportacion.exportarUsuarios(salida, ExportacionBanco.Formato.CSV);
+        assertEquals("id,nombre,direccion,correo,estado\n12345,miguel,\"Calle 123, Centro\",miguel@gmail.com,true\n",
+                salida.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void testExportarBinario() throws Exception {
+        ByteArrayOutputStream salida = new ByteArrayOutputStream();
+        banco.iniciarExportacion().exportarBilleteras(salida, ExportacionBanco.Formato.BINARIO);
+
+        DataInputStream entrada = new DataInputStream(new ByteArrayInputStream(salida.toByteArray()));
+        assertEquals(0x42455850, entrada.readInt());
+        assertEquals(1, entrada.readInt());
+        assertEquals('B', entrada.readByte());
+        assertEquals(3, entrada.readLong());
+        assertEquals(banco.getBilleterasVirtuales().get(0).getNumero(), DiarioBanco.leerTexto(entrada));
+        assertEquals("12345", DiarioBanco.leerTexto(entrada));
+        assertEquals(10300, entrada.readLong());
+    }
+
+    @Test
+    void testCorteConsistenteConTransferencias() throws Exception {
+        String primera = banco.getBilleterasVirtuales().get(0).getNumero();
+        String tercera = banco.getBilleterasVirtuales().get(2).getNumero();
+        AtomicBoolean terminar = new AtomicBoolean();
+        Thread transferencias = new Thread(() -> {
+            for (int i = 0; !terminar.get(); i++) {
+                boolean ida = i % 2 == 0;
+                banco.intentarTransferencia(new Transferencia("T" + i, ida ? primera : tercera,
+                        ida ? tercera : primera, 1.0));
+            }
+        });
+        transferencias.start();
+        try {
+            // Cada corte ve cada transferencia en las dos billeteras o en ninguna
+            for (int corte = 0; corte < 200; corte++) {
+                ExportacionBanco exportacion = banco.iniciarExportacion();
+                long total = 0;
+                for (ExportacionBanco.FilaBilletera fila : exportacion.paginaBilleteras(0, 10).getElementos()) {
+                    total += fila.getSaldoCentavos();
+                }
+                assertEquals(10300 + 5000 + 500, total);
+                assertEquals(1, exportacion.cantidadTransacciones() % 2);
+            }
+        } finally {
+            terminar.set(true);
+            transferencias.join();
+        }
+    }
+
+    @Test
+    void testUsuariosCopiadosAlCrearla() throws Exception {
+        ExportacionBanco exportacion = banco.iniciarExportacion();
+        Usuario usuario = banco.getBilleterasVirtuales().get(0).getUsuario();
+        usuario.setNombre("otro");
+        assertThrows(IllegalStateException.class, () -> usuario.setId("999"));
+
+        Usuario copia = exportacion.paginaUsuarios(0, 10).getElementos().get(0);
+        assertEquals("miguel", copia.getNombre());
+        assertNull(copia.getContraseña());
+        assertEquals("12345", exportacion.paginaBilleteras(0, 10).getElementos().get(0).getIdUsuario());
+    }
+}
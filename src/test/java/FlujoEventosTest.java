@@ -0,0 +1,228 @@
+import org.junit.jupiter.api.Test;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class FlujoEventosTest {
+
+    @Test
+    void testEventosDelBanco() throws Exception {
+        Banco banco = new Banco("Mi Banco");
+        FlujoEventos flujo = new FlujoEventos(50, FlujoEventos.PoliticaSaturacion.BLOQUEAR);
+        assertEquals(64, flujo.getCapacidad());
+        banco.setFlujoEventos(flujo);
+        FlujoEventos.Consumidor contabilidad = flujo.suscribir();
+        FlujoEventos.Consumidor fraude = flujo.suscribir();
+
+        Usuario usuario = new Usuario("miguel", "Calle 123", "12345", "miguel@gmail.com", "123", true);
+        banco.agregarUsuario(usuario);
+        String numero = banco.crearBilleteraVirtual(usuario, 100.0).getNumero();
+        banco.realizarTransaccion(numero, new RegistroTransaccion("T1", LocalDateTime.now(), -30.0, "miguel", Categoria.GASTO));
+        assertThrows(Exception.class, () -> banco.realizarTransaccion(numero,
+                new RegistroTransaccion("T2", LocalDateTime.now(), -500.0, "miguel", Categoria.GASTO)));
+        banco.realizarTransacciones(new String[]{numero, numero, "0000000000"}, new RegistroTransaccion[]{
+                new RegistroTransaccion("L1", LocalDateTime.now(), 10.0, "miguel", Categoria.INGRESO),
+                new RegistroTransaccion("L2", LocalDateTime.now(), -5.0, "miguel", Categoria.GASTO),
+                new RegistroTransaccion("L3", LocalDateTime.now(), 1.0, "miguel", Categoria.INGRESO)});
+
+        // Un consumidor lee todo en un lote
+        List<String> eventos = new ArrayList<>();
+        List<Boolean> finesDeLote = new ArrayList<>();
+        assertEquals(7, contabilidad.leer((evento, finDeLote) -> {
+            eventos.add(evento.getTipo() + " " + (evento.getIdTransaccion() != null ? evento.getIdTransaccion() + " "
+                    + evento.getResultado() + " " + evento.getSaldoCentavos() : evento.getIdUsuario()));
+            finesDeLote.add(finDeLote);
+        }, 100));
+        assertEquals(List.of(
+                "USUARIO_AGREGADO 12345",
+                "BILLETERA_CREADA 12345",
+                "TRANSACCION T1 ACEPTADA 7000",
+                "TRANSACCION T2 SALDO_INSUFICIENTE 0",
+                "TRANSACCION L1 ACEPTADA 8000",
+                "TRANSACCION L2 ACEPTADA 7500",
+                "TRANSACCION L3 BILLETERA_DESCONOCIDA 0"), eventos);
+        assertEquals(List.of(false, false, false, false, false, false, true), finesDeLote);
+        assertEquals(0, contabilidad.leer((evento, finDeLote) -> fail(), 100));
+
+        // El otro consumidor lleva su propia secuencia y lee de a dos
+        List<Long> secuencias = new ArrayList<>();
+        assertEquals(7, fraude.getPendientes());
+        assertEquals(2, fraude.leer((evento, finDeLote) -> secuencias.add(evento.getSecuencia()), 2));
+        assertEquals(2, fraude.leer((evento, finDeLote) -> secuencias.add(evento.getSecuencia()), 2));
+        assertEquals(List.of(0L, 1L, 2L, 3L), secuencias);
+
+        // Un manejador que falla no marca su evento como leído
+        assertThrows(IllegalStateException.class, () -> fraude.leer((evento, finDeLote) -> {
+            throw new IllegalStateException();
+        }, 10));
+        assertEquals(4, fraude.getSecuencia());
+        fraude.close();
+        banco.setFlujoEventos(null);
+        banco.realizarTransaccion(numero, new RegistroTransaccion("T3", LocalDateTime.now(), 1.0, "miguel", Categoria.INGRESO));
+        assertEquals(7, flujo.getPublicados());
+    }
+
+    @Test
+    void testTransferenciasPublicanSusMovimientos() throws Exception {
+        Banco banco = new Banco("Mi Banco");
+        Usuario usuario = new Usuario("miguel", "Calle 123", "12345", "miguel@gmail.com", "123", true);
+        banco.agregarUsuario(usuario);
+        String a = banco.crearBilleteraVirtual(usuario, 1000.0).getNumero();
+        String b = banco.crearBilleteraVirtual(usuario, 1000.0).getNumero();
+        FlujoEventos flujo = new FlujoEventos(16, FlujoEventos.PoliticaSaturacion.BLOQUEAR);
+        banco.setFlujoEventos(flujo);
+        FlujoEventos.Consumidor consumidor = flujo.suscribir();
+
+        // Cada movimiento sale con el saldo que deja en su billetera, que incluye el costo de envío de 200
+        banco.transferir(new Transferencia("X", a, b, 10.0));
+        assertEquals(ResultadoTransaccion.SALDO_INSUFICIENTE, banco.intentarTransferencia(new Transferencia("Z", b, a, 5000.0)));
+        banco.transferirLote(List.of(new Transferencia("Y1", a, b, 5.0), new Transferencia("Y2", b, a, 3.0)));
+
+        List<String> eventos = new ArrayList<>();
+        assertEquals(6, consumidor.leer((evento, finDeLote) -> eventos.add(evento.getIdTransaccion() + " "
+                + evento.getNumeroBilletera() + " " + evento.getResultado() + " " + evento.getSaldoCentavos()), 100));
+        assertEquals(List.of("X-E " + a + " ACEPTADA 79000", "X-R " + b + " ACEPTADA 101000"), eventos.subList(0, 2));
+        assertEquals(List.of(
+                "Y1-E " + a + " ACEPTADA 58500",
+                "Y1-R " + b + " ACEPTADA 101500",
+                "Y2-E " + b + " ACEPTADA 81200",
+                "Y2-R " + a + " ACEPTADA 58800"), eventos.subList(2, 6).stream().sorted().toList());
+    }
+
+    @Test
+    void testFallaDelDiarioCorrigeLoPublicado() throws Exception {
+        // En /dev/full cada escritura falla, así el diario acepta el registro pero no llega a hacerlo durable
+        Path lleno = Path.of("/dev/full");
+        assumeTrue(Files.isWritable(lleno));
+        Banco banco = new Banco("Mi Banco");
+        Usuario usuario = new Usuario("miguel", "Calle 123", "12345", "miguel@gmail.com", "123", true);
+        banco.agregarUsuario(usuario);
+        String a = banco.crearBilleteraVirtual(usuario, 1000.0).getNumero();
+        String b = banco.crearBilleteraVirtual(usuario, 1000.0).getNumero();
+        FlujoEventos flujo = new FlujoEventos(16, FlujoEventos.PoliticaSaturacion.BLOQUEAR);
+        banco.setFlujoEventos(flujo);
+        FlujoEventos.Consumidor consumidor = flujo.suscribir();
+
+        banco.setDiario(new DiarioBanco(lleno, false));
+        assertThrows(UncheckedIOException.class, () -> banco.realizarTransaccion(a,
+                new RegistroTransaccion("T1", LocalDateTime.now(), -30.0, "miguel", Categoria.GASTO)));
+        banco.setDiario(new DiarioBanco(lleno, false));
+        assertThrows(UncheckedIOException.class, () -> banco.transferir(new Transferencia("X", a, b, 10.0)));
+        banco.setDiario(null);
+
+        // Cada evento aceptado va seguido de su corrección, con el mismo ID
+        List<String> eventos = new ArrayList<>();
+        assertEquals(6, consumidor.leer((evento, finDeLote) -> eventos.add(evento.getIdTransaccion() + " "
+                + evento.getNumeroBilletera() + " " + evento.getResultado()), 100));
+        assertEquals(List.of(
+                "T1 " + a + " ACEPTADA",
+                "T1 " + a + " NO_REGISTRADA",
+                "X-E " + a + " ACEPTADA",
+                "X-R " + b + " ACEPTADA",
+                "X-E " + a + " NO_REGISTRADA",
+                "X-R " + b + " NO_REGISTRADA"), eventos);
+    }
+
+    @Test
+    void testPoliticasDeSaturacion() throws Exception {
+        FlujoEventos descartar = new FlujoEventos(4, FlujoEventos.PoliticaSaturacion.DESCARTAR);
+        FlujoEventos.Consumidor lento = descartar.suscribir();
+        for (int i = 0; i < 6; i++) {
+            assertEquals(i < 4, descartar.publicar(EventoBanco.Tipo.USUARIO_ACTUALIZADO, "u" + i, null, null, null, 0));
+        }
+        assertEquals(2, descartar.getDescartados());
+        List<String> usuarios = new ArrayList<>();
+        assertEquals(4, lento.leer((evento, finDeLote) -> usuarios.add(evento.getIdUsuario()), 10));
+        assertEquals(List.of("u0", "u1", "u2", "u3"), usuarios);
+
+        // Al sobrescribir, el consumidor atrasado salta al evento más viejo que queda y cuenta los perdidos
+        FlujoEventos sobrescribir = new FlujoEventos(4, FlujoEventos.PoliticaSaturacion.SOBRESCRIBIR);
+        FlujoEventos.Consumidor atrasado = sobrescribir.suscribir();
+        for (int i = 0; i < 10; i++) {
+            assertTrue(sobrescribir.publicar(EventoBanco.Tipo.USUARIO_ACTUALIZADO, "u" + i, null, null, null, 0));
+        }
+        List<Long> secuencias = new ArrayList<>();
+        assertEquals(4, atrasado.leer((evento, finDeLote) -> secuencias.add(evento.getSecuencia()), 10));
+        assertEquals(List.of(6L, 7L, 8L, 9L), secuencias);
+        assertEquals(6, atrasado.getPerdidos());
+
+        // Al bloquear, quien publica espera al consumidor y no se pierde nada
+        FlujoEventos bloquear = new FlujoEventos(4, FlujoEventos.PoliticaSaturacion.BLOQUEAR);
+        FlujoEventos.Consumidor consumidor = bloquear.suscribir();
+        Thread productor = new Thread(() -> {
+            for (int i = 0; i < 100; i++) {
+                bloquear.publicar(EventoBanco.Tipo.USUARIO_ACTUALIZADO, "u" + i, null, null, null, 0);
+            }
+        });
+        productor.start();
+        List<String> leidos = new ArrayList<>();
+        while (leidos.size() < 100) {
+            consumidor.leer((evento, finDeLote) -> leidos.add(evento.getIdUsuario()), 3, Duration.ofSeconds(5));
+        }
+        productor.join();
+        for (int i = 0; i < 100; i++) {
+            assertEquals("u" + i, leidos.get(i));
+        }
+    }
+
+    @Test
+    void testProductoresYConsumidoresConcurrentes() throws Exception {
+        FlujoEventos flujo = new FlujoEventos(256, FlujoEventos.PoliticaSaturacion.BLOQUEAR);
+        int productores = 4;
+        int porProductor = 20_000;
+        List<FlujoEventos.Consumidor> consumidores = List.of(flujo.suscribir(), flujo.suscribir());
+        ExecutorService executor = Executors.newFixedThreadPool(productores + consumidores.size());
+        try {
+            List<Future<long[]>> lecturas = new ArrayList<>();
+            for (FlujoEventos.Consumidor consumidor : consumidores) {
+                lecturas.add(executor.submit(() -> {
+                    // Las secuencias llegan sin huecos y cada productor aparece en su orden
+                    long[] estado = new long[1 + productores]; // Siguiente secuencia y último monto de cada productor
+                    for (int p = 0; p < productores; p++) {
+                        estado[1 + p] = -1;
+                    }
+                    while (estado[0] < (long) productores * porProductor) {
+                        consumidor.leer((evento, finDeLote) -> {
+                            assertEquals(estado[0]++, evento.getSecuencia());
+                            int p = (int) evento.getMontoCentavos() / porProductor;
+                            assertTrue(evento.getMontoCentavos() > estado[1 + p]);
+                            estado[1 + p] = evento.getMontoCentavos();
+                        }, 64, Duration.ofSeconds(5));
+                    }
+                    return estado;
+                }));
+            }
+            List<Future<?>> escrituras = new ArrayList<>();
+            for (int p = 0; p < productores; p++) {
+                int productor = p;
+                escrituras.add(executor.submit(() -> {
+                    for (int i = 0; i < porProductor; i++) {
+                        RegistroTransaccion transaccion = RegistroTransaccion.conCentavos("T", null,
+                                (long) productor * porProductor + i, "u", Categoria.INGRESO);
+                        flujo.publicar(EventoBanco.Tipo.TRANSACCION, null, "1", transaccion, ResultadoTransaccion.ACEPTADA, 0);
+                    }
+                }));
+            }
+            for (Future<?> escritura : escrituras) {
+                escritura.get(30, TimeUnit.SECONDS);
+            }
+            for (Future<long[]> lectura : lecturas) {
+                long[] estado = lectura.get(30, TimeUnit.SECONDS);
+                assertEquals((long) productores * porProductor, estado[0]);
+            }
+            assertEquals(0, flujo.getDescartados());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,88 @@
+import org.junit.jupiter.api.Test;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
+import static org.junit.jupiter.api.Assertions.*;
+
+class GeneradorNumerosPermutadoTest {
+
+    @Test
+    void testNumerosUnicosYValidos() {
+        GeneradorNumerosPermutado generador = new GeneradorNumerosPermutado(42L);
+        Set<String> numeros = new HashSet<>();
+
+        // Generar muchos números y verificar formato y unicidad
+        for (int i = 0; i < 200_000; i++) {
+            String numero = generador.siguiente();
+            assertTrue(numero.matches("[1-9]\\d{9}"), numero);
+            assertTrue(GeneradorNumerosPermutado.esValido(numero));
+            assertTrue(numeros.add(numero), "Número repetido: " + numero);
+        }
+    }
+
+    @Test
+    void testDigitoVerificadorDetectaErrores() {
+        String numero = new GeneradorNumerosPermutado(7L).siguiente();
+        char ultimo = numero.charAt(9);
+        String alterado = numero.substring(0, 9) + (char) ('0' + (ultimo - '0' + 1) % 10);
+
+        assertFalse(GeneradorNumerosPermutado.esValido(alterado));
+        assertFalse(GeneradorNumerosPermutado.esValido("123"));
+    }
+
+    @Test
+    void testAsignacionRepartidaEntreNodos() {
+        GeneradorNumerosPermutado nodo0 = new GeneradorNumerosPermutado(99L, 0, 3);
+        GeneradorNumerosPermutado nodo2 = new GeneradorNumerosPermutado(99L, 2, 3);
+        Set<String> numeros = new HashSet<>();
+
+        // Los nodos no comparten números y se puede saber quién asignó cada uno
+        for (int i = 0; i < 10_000; i++) {
+            String a = nodo0.siguiente();
+            String b = nodo2.siguiente();
+            assertTrue(numeros.add(a));
+            assertTrue(numeros.add(b));
+            assertEquals(0, nodo2.nodoDe(a));
+            assertEquals(2, nodo0.nodoDe(b));
+        }
+    }
+
+    @Test
+    void testMarcarUtilizadoEvitaRepetirTrasReinicio() {
+        GeneradorNumerosPermutado original = new GeneradorNumerosPermutado(5L);
+        Set<String> asignados = new HashSet<>();
+        for (int i = 0; i < 1_000; i++) {
+            asignados.add(original.siguiente());
+        }
+
+        // Un generador nuevo con la misma clave continúa después de los números recuperados
+        GeneradorNumerosPermutado reiniciado = new GeneradorNumerosPermutado(5L);
+        asignados.forEach(reiniciado::marcarUtilizado);
+        for (int i = 0; i < 1_000; i++) {
+            assertFalse(asignados.contains(reiniciado.siguiente()));
+        }
+    }
+
+    @Test
+    void testMarcarUtilizadoIgnoraNumerosAjenos() {
+        // Un número de 10 dígitos sin dígito verificador válido, como los que acepta setNumero
+        String ajeno = "1234567890";
+        assertFalse(GeneradorNumerosPermutado.esValido(ajeno));
+        GeneradorNumerosPermutado generador = new GeneradorNumerosPermutado(3L);
+        String primero = new GeneradorNumerosPermutado(3L).siguiente();
+        generador.marcarUtilizado(ajeno);
+        generador.marcarUtilizado(null);
+        assertEquals(primero, generador.siguiente());
+    }
+
+    @Test
+    void testAsignacionConcurrente() {
+        GeneradorNumerosPermutado generador = new GeneradorNumerosPermutado(11L);
+        Set<String> numeros = ConcurrentHashMap.newKeySet();
+
+        IntStream.range(0, 100_000).parallel().forEach(i -> numeros.add(generador.siguiente()));
+
+        assertEquals(100_000, numeros.size());
+    }
+}
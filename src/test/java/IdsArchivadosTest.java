@@ -0,0 +1,32 @@
+import org.junit.jupiter.api.Test;
+import java.time.LocalDateTime;
+import static org.junit.jupiter.api.Assertions.*;
+
+class IdsArchivadosTest {
+
+    @Test
+    void testAgregarYBuscar() {
+        IdsArchivados ids = new IdsArchivados();
+        assertFalse(ids.contiene("T1"));
+
+        // Suficientes IDs para que crezcan la tabla y los datos varias veces
+        HistorialTransacciones historial = new HistorialTransacciones();
+        for (int i = 0; i < 5000; i++) {
+            historial.agregar(RegistroTransaccion.conCentavos("T" + i, LocalDateTime.of(2024, 1, 1, 0, 0), 1, "miguel",
+                    Categoria.INGRESO));
+        }
+        historial.agregar(RegistroTransaccion.conCentavos("pagó-ñandú", LocalDateTime.of(2024, 1, 1, 0, 0), 1, "miguel",
+                Categoria.INGRESO));
+        ids.agregar(historial);
+        ids.agregar(historial); // Los repetidos se ignoran
+
+        assertEquals(5001, ids.cantidad());
+        for (int i = 0; i < 5000; i++) {
+            assertTrue(ids.contiene("T" + i));
+        }
+        assertTrue(ids.contiene("pagó-ñandú"));
+        assertFalse(ids.contiene("T5000"));
+        assertFalse(ids.contiene("T"));
+        assertFalse(ids.contiene("pagó"));
+    }
+}
@@ -0,0 +1,99 @@
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import java.time.LocalDateTime;
+import static org.junit.jupiter.api.Assertions.*;
+
+class MetricasBancoTest {
+
+    private Banco banco;
+    private Usuario usuario;
+
+    @BeforeEach
+    void setUp() {
+        banco = new Banco("Mi Banco");
+        banco.getMetricas().setMuestreoLatencias(1); // Medir todas las llamadas
+        usuario = new Usuario("miguel", "Calle 123", "12345", "miguel@gmail.com", "123", true);
+    }
+
+    @Test
+    void testContadoresPorResultado() throws Exception {
+        banco.agregarUsuario(usuario);
+        assertThrows(Exception.class, () -> banco.agregarUsuario(usuario));
+        String numero = banco.crearBilleteraVirtual(usuario, 100.0).getNumero();
+
+        banco.realizarTransaccion(numero, new RegistroTransaccion("T1", LocalDateTime.now(), -30.0, "miguel", Categoria.GASTO));
+        assertThrows(Exception.class, () -> banco.realizarTransaccion(numero,
+                new RegistroTransaccion("T2", LocalDateTime.now(), -300.0, "miguel", Categoria.GASTO)));
+        assertThrows(Exception.class, () -> banco.realizarTransaccion(numero,
+                new RegistroTransaccion("T1", LocalDateTime.now(), 1.0, "miguel", Categoria.INGRESO)));
+        assertThrows(Exception.class, () -> banco.realizarTransaccion("0000000000",
+                new RegistroTransaccion("T3", LocalDateTime.now(), 1.0, "miguel", Categoria.INGRESO)));
+        banco.realizarTransacciones(new String[]{numero, numero},
+                new RegistroTransaccion[]{new RegistroTransaccion("L1", LocalDateTime.now(), 1.0, "miguel", Categoria.INGRESO), null});
+        assertNull(banco.obtenerUsuario("otro"));
+
+        MetricasBanco.Instantanea metricas = banco.obtenerMetricas();
+        assertEquals(1, metricas.contar(MetricasBanco.Operacion.AGREGAR_USUARIO, MetricasBanco.Resultado.EXITO));
+        assertEquals(1, metricas.contar(MetricasBanco.Operacion.AGREGAR_USUARIO, MetricasBanco.Resultado.USUARIO_DUPLICADO));
+        assertEquals(1, metricas.contar(MetricasBanco.Operacion.CREAR_BILLETERA, MetricasBanco.Resultado.EXITO));
+        assertEquals(2, metricas.contar(MetricasBanco.Operacion.REALIZAR_TRANSACCION, MetricasBanco.Resultado.EXITO));
+        assertEquals(1, metricas.contar(MetricasBanco.Operacion.REALIZAR_TRANSACCION, MetricasBanco.Resultado.SALDO_INSUFICIENTE));
+        assertEquals(1, metricas.contar(MetricasBanco.Operacion.REALIZAR_TRANSACCION, MetricasBanco.Resultado.ID_DUPLICADO));
+        assertEquals(1, metricas.contar(MetricasBanco.Operacion.REALIZAR_TRANSACCION, MetricasBanco.Resultado.BILLETERA_DESCONOCIDA));
+        assertEquals(1, metricas.contar(MetricasBanco.Operacion.REALIZAR_TRANSACCION, MetricasBanco.Resultado.INVALIDA));
+        assertEquals(6, metricas.contar(MetricasBanco.Operacion.REALIZAR_TRANSACCION));
+        assertEquals(1, metricas.contar(MetricasBanco.Operacion.OBTENER_USUARIO, MetricasBanco.Resultado.USUARIO_DESCONOCIDO));
+
+        // Las transacciones del lote no tienen latencia propia
+        assertEquals(4, metricas.getLatencia(MetricasBanco.Operacion.REALIZAR_TRANSACCION).getCantidad());
+        assertEquals(1, metricas.getUsuarios());
+        assertEquals(1, metricas.getBilleteras());
+        assertEquals(2, metricas.getTransacciones());
+        assertEquals(0, metricas.getBytesDiario());
+    }
+
+    @Test
+    void testEscribirTexto() throws Exception {
+        banco.agregarUsuario(usuario);
+        banco.obtenerUsuario("12345");
+
+        StringBuilder texto = new StringBuilder();
+        banco.obtenerMetricas().escribirTexto(texto);
+        assertTrue(texto.toString().contains("banco_operaciones_total{operacion=\"agregar_usuario\",resultado=\"exito\"} 1\n"));
+        assertTrue(texto.toString().contains("banco_latencia_segundos_count{operacion=\"obtener_usuario\"} 1\n"));
+        assertTrue(texto.toString().contains("banco_latencia_segundos{operacion=\"obtener_usuario\",quantile=\"0.99\"} "));
+        assertTrue(texto.toString().contains("banco_usuarios 1\n"));
+        assertFalse(texto.toString().contains("crear_billetera"));
+    }
+
+    @Test
+    void testMuestreoDeLatencias() throws Exception {
+        banco.agregarUsuario(usuario);
+        banco.getMetricas().setMuestreoLatencias(0);
+        for (int i = 0; i < 100; i++) {
+            banco.obtenerUsuario("12345");
+        }
+        MetricasBanco.Instantanea metricas = banco.obtenerMetricas();
+        assertEquals(100, metricas.contar(MetricasBanco.Operacion.OBTENER_USUARIO));
+        assertEquals(0, metricas.getLatencia(MetricasBanco.Operacion.OBTENER_USUARIO).getCantidad());
+        assertThrows(IllegalArgumentException.class, () -> banco.getMetricas().setMuestreoLatencias(3));
+    }
+
+    @Test
+    void testPercentilesDelHistograma() {
+        HistogramaLatencias histograma = new HistogramaLatencias();
+        for (long i = 1; i <= 1000; i++) {
+            histograma.registrar(i * 1000); // De 1 a 1000 microsegundos
+        }
+        HistogramaLatencias.Instantanea copia = histograma.instantanea();
+        assertEquals(1000, copia.getCantidad());
+        assertEquals(1_000_000, copia.getMaximo());
+        assertEquals(500_500.0, copia.getPromedio());
+        // Cada percentil se redondea hacia arriba, con un error menor al 7%
+        assertEquals(500_000, copia.percentil(50), 500_000 * 0.07);
+        assertTrue(copia.percentil(50) >= 500_000);
+        assertEquals(990_000, copia.percentil(99), 990_000 * 0.07);
+        assertEquals(1_000_000, copia.percentil(100));
+        assertEquals(0, new HistogramaLatencias().instantanea().percentil(99));
+    }
+}
@@ -0,0 +1,118 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.stream.Stream;
+import static org.junit.jupiter.api.Assertions.*;
+
+class PersistenciaBancoParticionadoTest {
+
+    @TempDir
+    Path directorio;
+
+    private String[] numeros; // Una billetera de la partición 0 y una de la 1
+    private String[] usuarios;
+
+    // Crea usuarios hasta tener una billetera en cada una de las dos particiones
+    private void poblar(BancoParticionado banco) throws Exception {
+        numeros = new String[2];
+        usuarios = new String[2];
+        for (int i = 0; numeros[0] == null || numeros[1] == null; i++) {
+            Usuario usuario = new Usuario("usuario" + i, "Calle " + i, "id" + i, "u" + i + "@gmail.com", "123", true);
+            banco.agregarUsuario(usuario);
+            BilleteraVirtual billetera = banco.crearBilleteraVirtual(usuario, 1000.0);
+            int particion = banco.getParticion(0).obtenerUsuario(usuario.getId()) != null ? 0 : 1;
+            if (numeros[particion] == null) {
+                numeros[particion] = billetera.getNumero();
+                usuarios[particion] = usuario.getId();
+            }
+        }
+    }
+
+    @Test
+    void testRecuperarTransferenciasEntreParticiones() throws Exception {
+        try (PersistenciaBancoParticionado persistencia = PersistenciaBancoParticionado.abrir(directorio, "Mi Banco", 2, false)) {
+            BancoParticionado banco = persistencia.getBanco();
+            poblar(banco);
+            banco.transferir(new Transferencia("X", numeros[0], numeros[1], 100.0));
+            persistencia.tomarInstantanea();
+            banco.transferir(new Transferencia("Y", numeros[1], numeros[0], 40.0));
+        }
+
+        try (PersistenciaBancoParticionado persistencia = PersistenciaBancoParticionado.abrir(directorio, "Mi Banco", 2, false)) {
+            // Los envíos cobran su costo fijo de 200
+            BancoParticionado banco = persistencia.getBanco();
+            assertEquals(1000.0 - 100.0 - 200.0 + 40.0, banco.consultarSaldo(numeros[0]));
+            assertEquals(1000.0 + 100.0 - 40.0 - 200.0, banco.consultarSaldo(numeros[1]));
+            assertEquals(usuarios[1], banco.obtenerUsuario(usuarios[1]).getId());
+
+            // El índice compartido de IDs se reconstruyó desde las dos particiones
+            assertEquals(100.0, banco.consultarTransaccion("X-R").getMonto());
+            assertEquals(-240.0, banco.consultarTransaccion("Y-E").getMonto());
+            assertThrows(Exception.class, () -> banco.transferir(new Transferencia("Y", numeros[0], numeros[1], 1.0)));
+        }
+
+        assertThrows(IOException.class, () -> PersistenciaBancoParticionado.abrir(directorio, "Mi Banco", 3, false));
+    }
+
+    @Test
+    void testInstantaneaNoDejaTramosSinPar() throws Exception {
+        Path copia = directorio.resolve("copia");
+        Path original = directorio.resolve("banco");
+        try (PersistenciaBancoParticionado persistencia = PersistenciaBancoParticionado.abrir(original, "Mi Banco", 2, false)) {
+            BancoParticionado banco = persistencia.getBanco();
+            poblar(banco);
+            banco.transferir(new Transferencia("X", numeros[0], numeros[1], 100.0));
+            persistencia.tomarInstantanea();
+
+            // Los archivos como quedarían si el proceso se detuviera justo después de la instantánea
+            try (Stream<Path> archivos = Files.walk(original)) {
+                for (Path archivo : (Iterable<Path>) archivos::iterator) {
+                    Files.copy(archivo, copia.resolve(original.relativize(archivo).toString()));
+                }
+            }
+        }
+
+        try (PersistenciaBancoParticionado persistencia = PersistenciaBancoParticionado.abrir(copia, "Mi Banco", 2, false)) {
+            BancoParticionado banco = persistencia.getBanco();
+            assertEquals(1000.0 - 100.0 - 200.0, banco.consultarSaldo(numeros[0]));
+            assertEquals(1000.0 + 100.0, banco.consultarSaldo(numeros[1]));
+        }
+    }
+
+    @Test
+    void testTramoSinParSeDescarta() throws Exception {
+        try (PersistenciaBancoParticionado persistencia = PersistenciaBancoParticionado.abrir(directorio, "Mi Banco", 2, false)) {
+            poblar(persistencia.getBanco());
+        }
+
+        // Como si el proceso se hubiera detenido entre los dos diarios de Z; W llegó a registrar los dos tramos
+        LocalDateTime fecha = LocalDateTime.of(2026, 5, 1, 12, 0);
+        registrarTramo(0, numeros[0], RegistroTransaccion.conCentavos("Z-E", fecha, -50_00, "otro", Categoria.GASTO));
+        registrarTramo(0, numeros[0], RegistroTransaccion.conCentavos("W-E", fecha, -20_00, "otro", Categoria.GASTO));
+        registrarTramo(1, numeros[1], RegistroTransaccion.conCentavos("W-R", fecha, 20_00, "otro", Categoria.INGRESO));
+
+        try (PersistenciaBancoParticionado persistencia = PersistenciaBancoParticionado.abrir(directorio, "Mi Banco", 2, false)) {
+            BancoParticionado banco = persistencia.getBanco();
+            assertEquals(1000.0 - 20.0, banco.consultarSaldo(numeros[0]));
+            assertEquals(1000.0 + 20.0, banco.consultarSaldo(numeros[1]));
+            assertThrows(Exception.class, () -> banco.consultarTransaccion("Z-E"));
+
+            // El ID de la transferencia que no se confirmó queda libre
+            banco.transferir(new Transferencia("Z", numeros[0], numeros[1], 50.0));
+            assertEquals(1000.0 - 20.0 - 250.0, banco.consultarSaldo(numeros[0]));
+        }
+    }
+
+    // Agrega un tramo de transferencia al diario de una partición cerrada
+    private void registrarTramo(int particion, String numero, RegistroTransaccion tramo) throws Exception {
+        try (DiarioBanco diario = new DiarioBanco(directorio.resolve("particion-" + particion).resolve("diario-0.log"), true)) {
+            diario.esperarDurable(diario.registrar(DiarioBanco.TRAMO_TRANSFERENCIA, salida -> {
+                DiarioBanco.escribirTexto(salida, numero);
+                DiarioBanco.escribirTransaccion(salida, tramo);
+            }));
+        }
+    }
+}
@@ -0,0 +1,313 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+import static org.junit.jupiter.api.Assertions.*;
+
+class PersistenciaBancoTest {
+
+    @TempDir
+    Path directorio;
+
+    private Usuario nuevoUsuario(String id) {
+        return new Usuario("miguel", "Calle 123", id, "miguel@gmail.com", "123", true);
+    }
+
+    @Test
+    void testRecuperarDesdeElDiario() throws Exception {
+        String numero;
+        String otro;
+        try (PersistenciaBanco persistencia = PersistenciaBanco.abrir(directorio, "Mi Banco", true)) {
+            Banco banco = persistencia.getBanco();
+            banco.agregarUsuario(nuevoUsuario("1"));
+            banco.agregarUsuario(nuevoUsuario("2"));
+            banco.crearBilleteraVirtual(banco.obtenerUsuario("1"), 1000.0);
+            banco.crearBilleteraVirtual(banco.obtenerUsuario("2"), 0.0);
+            numero = banco.getBilleterasVirtuales().get(0).getNumero();
+            otro = banco.getBilleterasVirtuales().get(1).getNumero();
+            banco.realizarTransaccion(numero, new RegistroTransaccion(
+                    "T1", LocalDateTime.of(2026, 3, 1, 8, 0), -250.5, "miguel", Categoria.FACTURAS));
+            banco.transferir(new Transferencia("X", numero, otro, 100.0));
+            banco.actualizarUsuario(new Usuario("Maria", "Avenida 456", "2", "maria@gmail.com", "456", false));
+
+            // Eliminar al usuario 2 cierra y archiva su billetera, que debe quedar sin saldo
+            assertThrows(Exception.class, () -> banco.eliminarUsuario("2"));
+            banco.realizarTransaccion(otro, new RegistroTransaccion(
+                    "T2", LocalDateTime.now(), -100.0, "maria", Categoria.GASTO));
+            banco.eliminarUsuario("2");
+        }
+
+        try (PersistenciaBanco persistencia = PersistenciaBanco.abrir(directorio, "Mi Banco", true)) {
+            Banco banco = persistencia.getBanco();
+            assertEquals("Mi Banco", banco.getNombre());
+            assertNull(banco.obtenerUsuario("2"));
+            assertNotNull(banco.obtenerUsuario("1"));
+            assertEquals(1, banco.getBilleterasVirtuales().size());
+            BilleteraVirtual billetera = banco.getBilleterasVirtuales().get(0);
+            assertEquals(numero, billetera.getNumero());
+            assertEquals(1000.0 - 250.5 - 300.0, billetera.consultarSaldo());
+            BilleteraVirtual archivada = banco.consultarBilleteraArchivada(otro);
+            assertEquals(EstadoBilletera.CERRADA, archivada.getEstado());
+            assertEquals(2, archivada.getRegistroTransacciones().size());
+            assertEquals(Categoria.FACTURAS, banco.consultarTransaccion("T1").getCategoria());
+            assertEquals(LocalDateTime.of(2026, 3, 1, 8, 0), banco.consultarTransaccion("T1").getFecha());
+
+            // Los números recuperados no se vuelven a asignar
+            String nuevo = banco.crearBilleteraVirtual(banco.obtenerUsuario("1"), 0.0).getNumero();
+            assertNotEquals(numero, nuevo);
+            assertNotEquals(otro, nuevo);
+        }
+    }
+
+    @Test
+    void testFallaDelDiarioNoCambiaLasBilleteras() throws Exception {
+        Banco banco = new Banco("Mi Banco");
+        banco.agregarUsuario(nuevoUsuario("1"));
+        String a = banco.crearBilleteraVirtual(banco.obtenerUsuario("1"), 1000.0).getNumero();
+        String b = banco.crearBilleteraVirtual(banco.obtenerUsuario("1"), 0.0).getNumero();
+        DiarioBanco diario = new DiarioBanco(directorio.resolve("diario.log"), false);
+        banco.setDiario(diario);
+        banco.realizarTransaccion(a, new RegistroTransaccion("T1", LocalDateTime.now(), -100.0, "miguel", Categoria.GASTO));
+        diario.close();
+
+        // Con el diario cerrado cada camino falla sin aplicar nada
+        assertThrows(IllegalStateException.class, () -> banco.realizarTransaccion(a,
+                new RegistroTransaccion("T2", LocalDateTime.now(), -100.0, "miguel", Categoria.GASTO)));
+        assertThrows(IllegalStateException.class, () -> banco.transferir(new Transferencia("X1", a, b, 100.0)));
+        assertThrows(IllegalStateException.class, () -> banco.transferirLote(List.of(
+                new Transferencia("X2", a, b, 100.0), new Transferencia("X3", a, b, 100.0))));
+        ResultadoLote lote = banco.realizarTransacciones(new String[]{a, b}, new RegistroTransaccion[]{
+                new RegistroTransaccion("L1", LocalDateTime.now(), -100.0, "miguel", Categoria.GASTO),
+                new RegistroTransaccion("L2", LocalDateTime.now(), 100.0, "miguel", Categoria.INGRESO)});
+        assertEquals(ResultadoTransaccion.NO_REGISTRADA, lote.get(0));
+        assertEquals(ResultadoTransaccion.NO_REGISTRADA, lote.get(1));
+        assertEquals(900.0, banco.consultarSaldo(a));
+        assertEquals(0.0, banco.consultarSaldo(b));
+        assertEquals(1, banco.getBilleterasVirtuales().get(0).getRegistroTransacciones().size());
+        assertEquals(0, banco.getBilleterasVirtuales().get(1).getRegistroTransacciones().size());
+
+        // Los IDs de los intentos quedaron libres
+        banco.setDiario(null);
+        assertEquals(ResultadoTransaccion.ACEPTADA, banco.intentarTransaccion(a,
+                new RegistroTransaccion("T2", LocalDateTime.now(), -100.0, "miguel", Categoria.GASTO)));
+        banco.transferirLote(List.of(new Transferencia("X1", a, b, 100.0), new Transferencia("X2", a, b, 100.0)));
+        assertEquals(800.0 - 600.0, banco.consultarSaldo(a));
+    }
+
+    @Test
+    void testInstantaneaYDiarioPosterior() throws Exception {
+        try (PersistenciaBanco persistencia = PersistenciaBanco.abrir(directorio, "Mi Banco", false)) {
+            Banco banco = persistencia.getBanco();
+            banco.agregarUsuario(nuevoUsuario("1"));
+            banco.crearBilleteraVirtual(banco.obtenerUsuario("1"), 0.0);
+            String numero = banco.getBilleterasVirtuales().get(0).getNumero();
+            for (int i = 0; i < 1000; i++) {
+                banco.realizarTransaccion(numero, new RegistroTransaccion(
+                        "A" + i, LocalDateTime.now(), 1.0, "miguel", Categoria.INGRESO));
+            }
+            persistencia.tomarInstantanea();
+            for (int i = 0; i < 500; i++) {
+                banco.realizarTransaccion(numero, new RegistroTransaccion(
+                        "B" + i, LocalDateTime.now(), -1.0, "miguel", Categoria.GASTO));
+            }
+        }
+
+        // Solo quedan la instantánea nueva y el diario posterior, además del archivo de billeteras cerradas
+        try (Stream<Path> archivos = Files.list(directorio)) {
+            assertEquals(3, archivos.count());
+        }
+
+        try (PersistenciaBanco persistencia = PersistenciaBanco.abrir(directorio, "Mi Banco", false)) {
+            BilleteraVirtual billetera = persistencia.getBanco().getBilleterasVirtuales().get(0);
+            assertEquals(500.0, billetera.consultarSaldo());
+            assertEquals(1500, billetera.getRegistroTransacciones().size());
+            assertEquals(50.0, billetera.obtenerPorcentajeGastosIngresos());
+        }
+    }
+
+    @Test
+    void testFinalCortadoSeDescarta() throws Exception {
+        String numero;
+        try (PersistenciaBanco persistencia = PersistenciaBanco.abrir(directorio, "Mi Banco", true)) {
+            Banco banco = persistencia.getBanco();
+            banco.agregarUsuario(nuevoUsuario("1"));
+            banco.crearBilleteraVirtual(banco.obtenerUsuario("1"), 100.0);
+            numero = banco.getBilleterasVirtuales().get(0).getNumero();
+            banco.realizarTransaccion(numero, new RegistroTransaccion(
+                    "T1", LocalDateTime.now(), 10.0, "miguel", Categoria.INGRESO));
+        }
+
+        // Simular una caída a mitad de escribir el último evento
+        Path diario = directorio.resolve("diario-0.log");
+        cortar(diario, Files.size(diario) - 3);
+
+        try (PersistenciaBanco persistencia = PersistenciaBanco.abrir(directorio, "Mi Banco", true)) {
+            Banco banco = persistencia.getBanco();
+            assertEquals(100.0, banco.getBilleterasVirtuales().get(0).consultarSaldo());
+
+            // El diario sigue siendo válido después del recorte
+            banco.realizarTransaccion(numero, new RegistroTransaccion(
+                    "T2", LocalDateTime.now(), 5.0, "miguel", Categoria.INGRESO));
+        }
+        try (PersistenciaBanco persistencia = PersistenciaBanco.abrir(directorio, "Mi Banco", true)) {
+            assertEquals(105.0, persistencia.getBanco().getBilleterasVirtuales().get(0).consultarSaldo());
+        }
+    }
+
+    @Test
+    void testTransferenciaCortadaNoSeAplicaAMedias() throws Exception {
+        String origen;
+        String destino;
+        try (PersistenciaBanco persistencia = PersistenciaBanco.abrir(directorio, "Mi Banco", true)) {
+            Banco banco = persistencia.getBanco();
+            banco.agregarUsuario(nuevoUsuario("1"));
+            origen = banco.crearBilleteraVirtual(banco.obtenerUsuario("1"), 1000.0).getNumero();
+            destino = banco.crearBilleteraVirtual(banco.obtenerUsuario("1"), 500.0).getNumero();
+            banco.transferir(new Transferencia("X", origen, destino, 100.0));
+        }
+
+        // Cortar el diario entre el envío y el recibo: el final se pierde junto con el recibo
+        Path diario = directorio.resolve("diario-0.log");
+        cortar(diario, Files.size(diario) - 30);
+
+        try (PersistenciaBanco persistencia = PersistenciaBanco.abrir(directorio, "Mi Banco", true)) {
+            Banco banco = persistencia.getBanco();
+            assertEquals(1000.0, banco.consultarSaldo(origen));
+            assertEquals(500.0, banco.consultarSaldo(destino));
+            assertThrows(Exception.class, () -> banco.consultarTransaccion("X-E"));
+
+            // Un lote compensado también se recupera entero
+            banco.transferirLote(List.of(new Transferencia("Y1", origen, destino, 10.0),
+                    new Transferencia("Y2", destino, origen, 5.0)));
+        }
+        try (PersistenciaBanco persistencia = PersistenciaBanco.abrir(directorio, "Mi Banco", true)) {
+            Banco banco = persistencia.getBanco();
+            assertEquals(1000.0 - 210.0 + 5.0, banco.consultarSaldo(origen));
+            assertEquals(500.0 + 10.0 - 205.0, banco.consultarSaldo(destino));
+        }
+    }
+
+    @Test
+    void testLoteMasGrandeQueElBufer() throws Exception {
+        int cantidad = 30_000;
+        String numero;
+        try (PersistenciaBanco persistencia = PersistenciaBanco.abrir(directorio, "Mi Banco", true)) {
+            Banco banco = persistencia.getBanco();
+            banco.agregarUsuario(nuevoUsuario("1"));
+            numero = banco.crearBilleteraVirtual(banco.obtenerUsuario("1"), 0.0).getNumero();
+            banco.realizarTransaccion(numero, new RegistroTransaccion("A", LocalDateTime.now(), 1.0, "miguel", Categoria.INGRESO));
+
+            // Una liquidación con todas sus filas para la misma billetera no cabe en un búfer del diario
+            String[] numeros = new String[cantidad];
+            RegistroTransaccion[] transacciones = new RegistroTransaccion[cantidad];
+            LocalDateTime fecha = LocalDateTime.of(2024, 1, 1, 0, 0);
+            for (int i = 0; i < cantidad; i++) {
+                numeros[i] = numero;
+                transacciones[i] = new RegistroTransaccion("L" + i, fecha.plusSeconds(i), 1.0, "comercio", Categoria.INGRESO);
+            }
+            assertEquals(cantidad, banco.realizarTransacciones(numeros, transacciones).contar(ResultadoTransaccion.ACEPTADA));
+            banco.realizarTransaccion(numero, new RegistroTransaccion("B", LocalDateTime.now(), 2.0, "miguel", Categoria.INGRESO));
+        }
+
+        try (PersistenciaBanco persistencia = PersistenciaBanco.abrir(directorio, "Mi Banco", true)) {
+            Banco banco = persistencia.getBanco();
+            assertEquals(cantidad + 3.0, banco.consultarSaldo(numero));
+            assertEquals(cantidad + 2, banco.getBilleterasVirtuales().get(0).getRegistroTransacciones().size());
+        }
+    }
+
+    @Test
+    void testLoteDeTransferenciasGrande() throws Exception {
+        int cantidad = 10_000;
+        String a;
+        String b;
+        try (PersistenciaBanco persistencia = PersistenciaBanco.abrir(directorio, "Mi Banco", true)) {
+            Banco banco = persistencia.getBanco();
+            banco.agregarUsuario(nuevoUsuario("1"));
+            a = banco.crearBilleteraVirtual(banco.obtenerUsuario("1"), 3_000_000.0).getNumero();
+            b = banco.crearBilleteraVirtual(banco.obtenerUsuario("1"), 3_000_000.0).getNumero();
+            List<Transferencia> transferencias = new ArrayList<>();
+            for (int i = 0; i < cantidad; i++) {
+                transferencias.add(i % 2 == 0 ? new Transferencia("T" + i, a, b, 3.0) : new Transferencia("T" + i, b, a, 1.0));
+            }
+            banco.transferirLote(transferencias);
+        }
+
+        // Cada lado envía la mitad de las transferencias y paga 200 por cada una
+        try (PersistenciaBanco persistencia = PersistenciaBanco.abrir(directorio, "Mi Banco", true)) {
+            Banco banco = persistencia.getBanco();
+            int mitad = cantidad / 2;
+            assertEquals(3_000_000.0 - mitad * 203.0 + mitad * 1.0, banco.consultarSaldo(a));
+            assertEquals(3_000_000.0 - mitad * 201.0 + mitad * 3.0, banco.consultarSaldo(b));
+            assertEquals(-201.0, banco.consultarTransaccion("T" + (cantidad - 1) + "-E").getMonto());
+        }
+    }
+
+    @Test
+    void testLongitudImposibleSeDescarta() throws Exception {
+        try (PersistenciaBanco persistencia = PersistenciaBanco.abrir(directorio, "Mi Banco", true)) {
+            Banco banco = persistencia.getBanco();
+            banco.agregarUsuario(nuevoUsuario("1"));
+            banco.crearBilleteraVirtual(banco.obtenerUsuario("1"), 100.0);
+        }
+
+        // Un final cortado cuya longitud es basura no debe reservar memoria para ella
+        Path diario = directorio.resolve("diario-0.log");
+        long tamano = Files.size(diario);
+        try (FileChannel canal = FileChannel.open(diario, StandardOpenOption.APPEND)) {
+            canal.write(ByteBuffer.allocate(8).putInt(Integer.MAX_VALUE - 4).putInt(7).flip());
+        }
+
+        try (PersistenciaBanco persistencia = PersistenciaBanco.abrir(directorio, "Mi Banco", true)) {
+            assertEquals(100.0, persistencia.getBanco().getBilleterasVirtuales().get(0).consultarSaldo());
+        }
+        assertEquals(tamano, Files.size(diario));
+    }
+
+    @Test
+    void testEstadoYArchivoSobrevivenAlReinicio() throws Exception {
+        String congelada;
+        String cerrada;
+        try (PersistenciaBanco persistencia = PersistenciaBanco.abrir(directorio, "Mi Banco", true)) {
+            Banco banco = persistencia.getBanco();
+            banco.agregarUsuario(nuevoUsuario("1"));
+            congelada = banco.crearBilleteraVirtual(banco.obtenerUsuario("1"), 100.0).getNumero();
+            cerrada = banco.crearBilleteraVirtual(banco.obtenerUsuario("1"), 0.0).getNumero();
+            banco.crearBilleteraVirtual(banco.obtenerUsuario("1"), 0.0);
+            banco.realizarTransaccion(cerrada, new RegistroTransaccion("A1", LocalDateTime.now(), 10.0, "1", Categoria.INGRESO));
+            banco.realizarTransaccion(cerrada, new RegistroTransaccion("A2", LocalDateTime.now(), -10.0, "1", Categoria.GASTO));
+            banco.congelarBilletera(congelada);
+            persistencia.tomarInstantanea();
+            banco.cerrarBilletera(cerrada);
+        }
+
+        for (int reinicio = 0; reinicio < 2; reinicio++) {
+            try (PersistenciaBanco persistencia = PersistenciaBanco.abrir(directorio, "Mi Banco", true)) {
+                Banco banco = persistencia.getBanco();
+                assertEquals(EstadoBilletera.CONGELADA, banco.getBilleterasVirtuales().get(0).getEstado());
+                assertEquals(2, banco.getBilleterasVirtuales().size());
+                assertNotNull(banco.consultarBilleteraArchivada(cerrada));
+
+                // Los IDs de la billetera archivada siguen reservados después de reiniciar
+                String activa = banco.getBilleterasVirtuales().get(1).getNumero();
+                assertEquals(ResultadoTransaccion.ID_DUPLICADO, banco.intentarTransaccion(activa,
+                        new RegistroTransaccion("A1", LocalDateTime.now(), 1.0, "1", Categoria.INGRESO)));
+                persistencia.tomarInstantanea();
+            }
+        }
+    }
+
+    private static void cortar(Path archivo, long tamano) throws IOException {
+        try (FileChannel canal = FileChannel.open(archivo, StandardOpenOption.WRITE)) {
+            canal.truncate(tamano);
+        }
+    }
+}
@@ -0,0 +1,195 @@
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProgramadorPagosTest {
+    private static final LocalDateTime INICIO = LocalDateTime.of(2024, 1, 1, 0, 0);
+
+    private Banco banco;
+    private RelojManual reloj;
+    private String numero;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        banco = new Banco("Mi Banco");
+        reloj = new RelojManual();
+        Usuario usuario = new Usuario("miguel", "Calle 123", "12345", "miguel@gmail.com", "123", true);
+        banco.agregarUsuario(usuario);
+        numero = banco.crearBilleteraVirtual(usuario, 100.0).getNumero();
+    }
+
+    @Test
+    void testPagosDiariosYFallos() throws Exception {
+        ProgramadorPagos programador = new ProgramadorPagos(banco, reloj);
+        List<ResultadoTransaccion> fallos = new ArrayList<>();
+        programador.setAvisoFallo((pago, resultado) -> fallos.add(resultado));
+        programador.programar(numero, new RegistroTransaccion("LUZ", null, -40.0, "miguel", Categoria.FACTURAS),
+                INICIO.plusHours(1), Duration.ofDays(1));
+        assertThrows(Exception.class, () -> programador.programar(numero,
+                new RegistroTransaccion("LUZ", null, -1.0, "miguel", Categoria.FACTURAS), INICIO, Duration.ofDays(1)));
+
+        assertEquals(0, programador.ejecutarPendientes());
+        reloj.avanzar(Duration.ofHours(1));
+        assertEquals(1, programador.ejecutarPendientes());
+        assertEquals(60.0, banco.consultarSaldo(numero));
+        assertEquals(0, programador.ejecutarPendientes());
+
+        // Tres días atrasados se cobran una vez por día; los que no tienen saldo se avisan y el pago sigue programado
+        reloj.avanzar(Duration.ofDays(3));
+        assertEquals(3, programador.ejecutarPendientes());
+        assertEquals(20.0, banco.consultarSaldo(numero));
+        assertEquals(List.of(ResultadoTransaccion.SALDO_INSUFICIENTE, ResultadoTransaccion.SALDO_INSUFICIENTE), fallos);
+        assertEquals(2, programador.getEjecutados());
+        assertEquals(2, programador.getFallidos());
+        PagoRecurrente pago = programador.buscar("LUZ");
+        assertEquals(4, pago.getEjecuciones());
+        assertEquals(INICIO.plusDays(4).plusHours(1).toInstant(ZoneOffset.UTC).toEpochMilli(), pago.getProximaEjecucion());
+
+        assertTrue(programador.cancelar("LUZ"));
+        assertFalse(programador.cancelar("LUZ"));
+        reloj.avanzar(Duration.ofDays(10));
+        assertEquals(0, programador.ejecutarPendientes());
+        assertEquals(0, programador.getCantidadProgramados());
+    }
+
+    @Test
+    void testFallaDelBancoNoSaltaElPeriodo() throws Exception {
+        boolean[] fallar = {true};
+        ProgramadorPagos programador = new ProgramadorPagos((numeros, transacciones) -> {
+            if (fallar[0]) {
+                throw new IllegalStateException("El diario está cerrado.");
+            }
+            return banco.realizarTransacciones(numeros, transacciones);
+        }, reloj, Duration.ofSeconds(1), Duration.ZERO, 1000);
+        programador.programar(numero, new RegistroTransaccion("LUZ", null, -40.0, "miguel", Categoria.FACTURAS),
+                INICIO.plusHours(1), Duration.ofDays(1));
+
+        // El pago que no llegó a cobrarse sigue en el mismo período
+        reloj.avanzar(Duration.ofHours(1));
+        assertThrows(IllegalStateException.class, programador::ejecutarPendientes);
+        PagoRecurrente pago = programador.buscar("LUZ");
+        assertEquals(0, pago.getEjecuciones());
+        assertEquals(INICIO.plusHours(1).toInstant(ZoneOffset.UTC).toEpochMilli(), pago.getProximaEjecucion());
+
+        // Vuelve a la rueda en el tick siguiente
+        fallar[0] = false;
+        assertEquals(0, programador.ejecutarPendientes());
+        reloj.avanzar(Duration.ofSeconds(1));
+        assertEquals(1, programador.ejecutarPendientes());
+        assertEquals(60.0, banco.consultarSaldo(numero));
+        long vencimiento = INICIO.plusHours(1).toInstant(ZoneOffset.UTC).toEpochMilli();
+        assertEquals(-40.0, banco.consultarTransaccion("LUZ-" + vencimiento).getMonto());
+        assertEquals(1, pago.getEjecuciones());
+    }
+
+    @Test
+    void testFallaDelBancoNoPierdeLosAtrasados() throws Exception {
+        banco.realizarTransaccion(numero, new RegistroTransaccion("D", INICIO, 1000.0, "miguel", Categoria.INGRESO));
+        int[] llamadas = {0};
+        ProgramadorPagos programador = new ProgramadorPagos((numeros, transacciones) -> {
+            if (++llamadas[0] == 2) {
+                throw new IllegalStateException("El diario está cerrado.");
+            }
+            return banco.realizarTransacciones(numeros, transacciones);
+        }, reloj, Duration.ofSeconds(1), Duration.ZERO, 1);
+        PagoRecurrente a = programador.programar(numero,
+                new RegistroTransaccion("A", null, -1.0, "miguel", Categoria.FACTURAS), INICIO.plusDays(1), Duration.ofDays(1));
+        PagoRecurrente b = programador.programar(numero,
+                new RegistroTransaccion("B", null, -1.0, "miguel", Categoria.FACTURAS), INICIO.plusDays(1), Duration.ofDays(1));
+
+        // Tres períodos atrasados: el primer lote se cobra y queda atrasado, el segundo falla en el banco
+        reloj.avanzar(Duration.ofDays(3));
+        assertThrows(IllegalStateException.class, programador::ejecutarPendientes);
+        assertEquals(1, a.getEjecuciones() + b.getEjecuciones());
+        assertEquals(2, programador.getCantidadProgramados());
+
+        // Los dos vuelven a la rueda y se ponen al día en el tick siguiente
+        reloj.avanzar(Duration.ofSeconds(1));
+        assertEquals(5, programador.ejecutarPendientes());
+        assertEquals(3, a.getEjecuciones());
+        assertEquals(3, b.getEjecuciones());
+        assertEquals(1000.0 + 100.0 - 6.0, banco.consultarSaldo(numero));
+    }
+
+    @Test
+    void testReprogramarNoCobraDosVecesElMismoVencimiento() throws Exception {
+        ProgramadorPagos programador = new ProgramadorPagos(banco, reloj);
+        List<ResultadoTransaccion> fallos = new ArrayList<>();
+        programador.setAvisoFallo((pago, resultado) -> fallos.add(resultado));
+        RegistroTransaccion plantilla = new RegistroTransaccion("LUZ", null, -40.0, "miguel", Categoria.FACTURAS);
+        programador.programar(numero, plantilla, INICIO.plusHours(1), Duration.ofDays(1));
+        reloj.avanzar(Duration.ofHours(1));
+        assertEquals(1, programador.ejecutarPendientes());
+
+        // Al volver a programarlo, como después de reiniciar, la ejecución ya cobrada se rechaza
+        assertTrue(programador.cancelar("LUZ"));
+        programador.programar(numero, plantilla, INICIO.plusHours(1), Duration.ofDays(1));
+        reloj.avanzar(Duration.ofSeconds(1));
+        assertEquals(1, programador.ejecutarPendientes());
+        assertEquals(List.of(ResultadoTransaccion.ID_DUPLICADO), fallos);
+        assertEquals(60.0, banco.consultarSaldo(numero));
+    }
+
+    @Test
+    void testDispersionYPeriodosLargos() throws Exception {
+        banco.realizarTransaccion(numero, new RegistroTransaccion("D", INICIO, 10_000.0, "miguel", Categoria.INGRESO));
+        ProgramadorPagos programador = new ProgramadorPagos(banco, reloj, Duration.ofSeconds(1), Duration.ofMinutes(10), 7);
+        for (int i = 0; i < 100; i++) {
+            programador.programar(numero, new RegistroTransaccion("P" + i, null, -1.0, "miguel", Categoria.FACTURAS),
+                    INICIO.plusDays(1), Duration.ofDays(1));
+        }
+
+        // Los pagos de medianoche se reparten en los diez minutos siguientes
+        reloj.avanzar(Duration.ofDays(1).plusMinutes(1));
+        int primerMinuto = programador.ejecutarPendientes();
+        assertTrue(primerMinuto > 0 && primerMinuto < 50, "Cobrados en el primer minuto: " + primerMinuto);
+        reloj.avanzar(Duration.ofMinutes(9));
+        assertEquals(100, primerMinuto + programador.ejecutarPendientes());
+        assertEquals(100, programador.getEjecutados());
+
+        // Un período de cuarenta días baja por varios niveles de la rueda antes de vencer
+        programador.programar(numero, new RegistroTransaccion("ANUAL", null, -500.0, "miguel", Categoria.FACTURAS),
+                INICIO.plusDays(41), Duration.ofDays(40));
+        for (int i = 0; i < 100; i++) {
+            programador.cancelar("P" + i);
+        }
+        for (int dia = 0; dia < 39; dia++) {
+            reloj.avanzar(Duration.ofDays(1));
+            assertEquals(0, programador.ejecutarPendientes());
+        }
+        reloj.avanzar(Duration.ofDays(1));
+        assertEquals(1, programador.ejecutarPendientes());
+        assertEquals(10_000.0 + 100.0 - 100.0 - 500.0, banco.consultarSaldo(numero));
+    }
+
+    private static final class RelojManual extends Clock {
+        private volatile Instant instante = INICIO.toInstant(ZoneOffset.UTC);
+
+        void avanzar(Duration duracion) {
+            instante = instante.plus(duracion);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return instante;
+        }
+    }
+}
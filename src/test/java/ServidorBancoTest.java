@@ -0,0 +1,126 @@
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import static org.junit.jupiter.api.Assertions.*;
+
+class ServidorBancoTest {
+
+    private Banco banco;
+    private ServidorBanco servidor;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        banco = new Banco("Mi Banco");
+        servidor = new ServidorBanco(banco, 0, 2, 8);
+        servidor.iniciar();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        servidor.close();
+    }
+
+    @Test
+    void testOperacionesPorElSocket() throws Exception {
+        try (Socket socket = conectar()) {
+            BufferedReader entrada = lector(socket);
+            OutputStream salida = socket.getOutputStream();
+
+            // Solicitudes encadenadas sin esperar cada respuesta
+            enviar(salida, "USUARIO\t12345\tmiguel\tCalle 123\tmiguel@gmail.com\t123\n"
+                    + "BILLETERA\t12345\t100\n");
+            assertEquals("OK", entrada.readLine());
+            String[] billetera = entrada.readLine().split("\t");
+            assertEquals("OK", billetera[0]);
+            String numero = billetera[1];
+            assertEquals(numero, banco.getBilleterasVirtuales().get(0).getNumero());
+
+            enviar(salida, "TRANSACCION\t" + numero + "\tT1\t-30.5\tmiguel\tGASTO\nSALDO\t" + numero + "\n");
+            assertEquals("OK", entrada.readLine());
+            assertEquals("OK\t69.50", entrada.readLine());
+
+            enviar(salida, "TRANSACCION\t" + numero + "\tT1\t1\tmiguel\tGASTO\n");
+            assertEquals("ERROR\tYa existe una transacción con el ID: T1", entrada.readLine());
+        }
+    }
+
+    @Test
+    void testSolicitudesInvalidas() {
+        assertEquals("ERROR\tOperación desconocida: BORRAR", servidor.procesar("BORRAR\t1"));
+        assertEquals("ERROR\tLa operación SALDO espera 1 campos.", servidor.procesar("SALDO"));
+        assertEquals("ERROR\tNo se encontró una billetera con el número: 123", servidor.procesar("SALDO\t123"));
+        assertEquals("ERROR\tEl usuario no está registrado en el banco.", servidor.procesar("BILLETERA\tx\t10"));
+        assertEquals("OK", servidor.procesar("USUARIO\tx\tana\tCalle\ta@gmail.com\t1"));
+        assertEquals("ERROR\tEl monto no es válido: diez", servidor.procesar("BILLETERA\tx\tdiez"));
+    }
+
+    @Test
+    void testConexionesDeMasSeRechazan() throws Exception {
+        try (Socket primera = conectar(); Socket segunda = conectar(); Socket tercera = conectar()) {
+            // Esperar a que las dos primeras estén admitidas
+            for (Socket socket : List.of(primera, segunda)) {
+                enviar(socket.getOutputStream(), "SALDO\t123\n");
+                assertTrue(lector(socket).readLine().startsWith("ERROR"));
+            }
+            assertEquals(ServidorBanco.OCUPADO, lector(tercera).readLine());
+            assertNull(lector(tercera).readLine());
+        }
+    }
+
+    @Test
+    void testTransaccionesConcurrentes() throws Exception {
+        banco.agregarUsuario(new Usuario("miguel", "Calle 123", "12345", "miguel@gmail.com", "123", true));
+        String numero = banco.crearBilleteraVirtual(banco.obtenerUsuario("12345"), 0).getNumero();
+
+        ExecutorService ejecutor = Executors.newVirtualThreadPerTaskExecutor();
+        List<Future<Integer>> tareas = new ArrayList<>();
+        for (int c = 0; c < 2; c++) {
+            int cliente = c;
+            tareas.add(ejecutor.submit(() -> {
+                int aceptadas = 0;
+                try (Socket socket = conectar()) {
+                    BufferedReader entrada = lector(socket);
+                    for (int i = 0; i < 200; i++) {
+                        enviar(socket.getOutputStream(), "TRANSACCION\t" + numero + "\tC" + cliente + "-" + i
+                                + "\t1\tmiguel\tINGRESO\n");
+                        if (entrada.readLine().equals("OK")) {
+                            aceptadas++;
+                        }
+                    }
+                }
+                return aceptadas;
+            }));
+        }
+        int aceptadas = 0;
+        for (Future<Integer> tarea : tareas) {
+            aceptadas += tarea.get();
+        }
+        ejecutor.shutdown();
+        assertEquals(400, aceptadas);
+        assertEquals(400.0, banco.consultarSaldo(numero));
+    }
+
+    private Socket conectar() throws Exception {
+        return new Socket(InetAddress.getLoopbackAddress(), servidor.getPuerto());
+    }
+
+    private static BufferedReader lector(Socket socket) throws Exception {
+        return new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+    }
+
+    private static void enviar(OutputStream salida, String texto) throws Exception {
+        salida.write(texto.getBytes(StandardCharsets.UTF_8));
+        salida.flush();
+    }
+}
@@ -0,0 +1,112 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import static org.junit.jupiter.api.Assertions.*;
+
+class TablaSaldosTest {
+
+    @TempDir
+    Path directorio;
+
+    @Test
+    void testAgregarBuscarYQuitar() throws Exception {
+        try (TablaSaldos tabla = TablaSaldos.abrir(directorio.resolve("saldos.bin"), 100)) {
+            assertEquals(128, tabla.getCapacidad());
+            int[] ranuras = new int[90];
+            for (int i = 0; i < ranuras.length; i++) {
+                ranuras[i] = tabla.agregar(1_000_000_000L + i, i * 100L);
+            }
+            for (int i = 0; i < ranuras.length; i++) {
+                assertEquals(ranuras[i], tabla.buscar(1_000_000_000L + i));
+                assertEquals(i * 100L, tabla.saldoEn(ranuras[i]));
+            }
+            assertEquals(-1, tabla.buscar(2_000_000_000L));
+            assertThrows(IllegalArgumentException.class, () -> tabla.agregar(1_000_000_000L, 0));
+
+            // Un registro liberado no corta la búsqueda de los que están después y se puede volver a usar
+            tabla.quitar(ranuras[0]);
+            assertEquals(-1, tabla.buscar(1_000_000_000L));
+            for (int i = 1; i < ranuras.length; i++) {
+                assertEquals(ranuras[i], tabla.buscar(1_000_000_000L + i));
+            }
+            tabla.agregar(3_000_000_000L, 7);
+            assertEquals(90, tabla.getCantidad());
+
+            // Tres cuartos de la capacidad como máximo, contando los registros liberados que no se reusaron
+            assertThrows(IllegalStateException.class, () -> {
+                for (long numero = 4_000_000_000L; ; numero++) {
+                    tabla.agregar(numero, 0);
+                }
+            });
+            assertTrue(tabla.getCantidad() >= 95 && tabla.getCantidad() <= 96);
+        }
+    }
+
+    @Test
+    void testSoltarLaTablaConservaElSaldo() throws Exception {
+        try (TablaSaldos tabla = TablaSaldos.abrir(directorio.resolve("saldos.bin"), 16)) {
+            BilleteraVirtual billetera = new BilleteraVirtual("1000000001", null, tabla, tabla.agregar(1_000_000_001L, 500_00));
+            billetera.realizarTransaccion(new RegistroTransaccion("T1", LocalDateTime.now(), -100.0, "miguel", Categoria.GASTO));
+            billetera.getCerrojo().lock();
+            try {
+                billetera.soltarTabla();
+            } finally {
+                billetera.getCerrojo().unlock();
+            }
+            assertEquals(0, tabla.getCantidad());
+            assertEquals(400.0, billetera.consultarSaldo());
+
+            // El registro liberado se reusa sin cambiar el saldo de la billetera, que ahora vive en el heap
+            int ranura = tabla.agregar(1_000_000_002L, 7);
+            tabla.escribirSaldo(ranura, 9);
+            billetera.realizarTransaccion(new RegistroTransaccion("T2", LocalDateTime.now(), 50.0, "miguel", Categoria.INGRESO));
+            assertEquals(450.0, billetera.consultarSaldo());
+            assertEquals(9, tabla.saldoEn(ranura));
+        }
+    }
+
+    @Test
+    void testSaldosSobrevivenAlReinicio() throws Exception {
+        Path archivo = directorio.resolve("saldos.bin");
+        Usuario usuario = new Usuario("miguel", "Calle 123", "12345", "miguel@gmail.com", "123", true);
+        String numero;
+        try (TablaSaldos tabla = TablaSaldos.abrir(archivo, 1 << 20)) {
+            Banco banco = new Banco("Mi Banco", tabla);
+            banco.agregarUsuario(usuario);
+            numero = banco.crearBilleteraVirtual(usuario, 1000.0).getNumero();
+            String otro = banco.crearBilleteraVirtual(usuario, 0.0).getNumero();
+            banco.realizarTransaccion(numero, new RegistroTransaccion("T1", LocalDateTime.now(), -250.5, "miguel", Categoria.GASTO));
+            banco.transferir(new Transferencia("X", numero, otro, 100.0));
+            assertEquals(449.5, banco.consultarSaldo(numero));
+            assertEquals(2, tabla.getCantidad());
+
+            // Al archivar una billetera su saldo pasa a la billetera y el registro se libera
+            banco.realizarTransaccion(otro, new RegistroTransaccion("T2", LocalDateTime.now(), -100.0, "miguel", Categoria.GASTO));
+            banco.cerrarBilletera(otro);
+            assertEquals(1, tabla.getCantidad());
+        }
+
+        // El archivo es disperso: solo ocupa disco lo que se escribió
+        assertEquals(64 + (1L << 20) * 16, Files.size(archivo));
+
+        try (TablaSaldos tabla = TablaSaldos.abrir(archivo, 16)) {
+            assertEquals(1 << 20, tabla.getCapacidad());
+            Banco banco = new Banco("Mi Banco", tabla);
+            banco.agregarUsuario(usuario);
+            assertThrows(Exception.class, () -> banco.restaurarBilletera("1234567890", usuario));
+            BilleteraVirtual billetera = banco.restaurarBilletera(numero, usuario);
+            assertEquals(449.5, billetera.consultarSaldo());
+            assertThrows(Exception.class, () -> banco.restaurarBilletera(numero, usuario));
+            banco.realizarTransaccion(numero, new RegistroTransaccion("T3", LocalDateTime.now(), 0.5, "miguel", Categoria.INGRESO));
+            assertEquals(450.0, banco.consultarSaldo(numero));
+
+            // Sin historial, el reintento de una transacción anterior al reinicio se vuelve a cobrar
+            assertTrue(billetera.getRegistroTransacciones().stream().noneMatch(t -> t.getId().equals("T1")));
+            banco.realizarTransaccion(numero, new RegistroTransaccion("T1", LocalDateTime.now(), -250.5, "miguel", Categoria.GASTO));
+            assertEquals(199.5, banco.consultarSaldo(numero));
+            assertNotEquals(numero, banco.crearBilleteraVirtual(usuario, 0.0).getNumero());
+        }
+    }
+}